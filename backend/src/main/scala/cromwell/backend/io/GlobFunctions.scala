@@ -15,6 +15,9 @@ trait GlobFunctions extends IoFunctionSet with AsyncIoFunctions {
 
   private lazy val evaluateFileFunctions = new IoFunctionSetAdapter(this) with FileEvaluationIoFunctionSet
 
+  // Maximum number of Bytes of a glob list file read at once
+  private val GlobListChunkBytes = 8 * 1024 * 1024
+
   def callContext: CallContext
 
   def findGlobOutputs(call: CommandCallNode, jobDescriptor: BackendJobDescriptor): ErrorOr[List[WomGlobFile]] = {
@@ -38,10 +41,10 @@ trait GlobFunctions extends IoFunctionSet with AsyncIoFunctions {
     import GlobFunctions._
     val globPatternName = globName(pattern)
     val listFilePath = callContext.root.resolve(s"${globName(pattern)}.list")
-    asyncIo.readLinesAsync(listFilePath.toRealPath()) map { lines =>
-      lines.toList map { fileName =>
-        (callContext.root /  globPatternName  / fileName).pathAsString
-      }
+    val globDirectory = callContext.root / globPatternName
+    // Glob list files can be huge, read them by chunks to avoid loading them entirely into the I/O actor's memory
+    asyncIo.foldLinesAsync(listFilePath.toRealPath(), GlobListChunkBytes)(Vector.empty[String]) { (paths, fileName) =>
+      paths :+ (globDirectory / fileName).pathAsString
     }
   }
 }
@@ -1,12 +1,23 @@
 package cloud.nio.impl.ftp
 
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong}
+import java.util.concurrent.{Semaphore, TimeUnit}
+
 import com.typesafe.scalalogging.StrictLogging
-import io.github.andrebeat.pool.{ExpiringPool, ReferenceType}
+import io.github.andrebeat.pool.{ExpiringPool, Lease, ReferenceType}
 import org.apache.commons.net.ftp.FTPClient
 
 import scala.concurrent.duration._
+import scala.util.control.NonFatal
 
 object FtpClientPool extends StrictLogging {
+  // We need at least 2 connections to copy a file (one for downstream and one for upstream)
+  val MinimumSize = 2
+  // Leases that waited longer than this are a sign the pool is too small
+  val GrowthWaitThreshold = 1.second
+  // After a server error, don't grow the pool again before this much time has passed
+  val ErrorCoolDown = 1.minute
+
   def dispose(ftpClient: FTPClient) = try {
     if (ftpClient.isConnected) {
       ftpClient.logout()
@@ -15,17 +26,139 @@ object FtpClientPool extends StrictLogging {
   } catch {
     case e: Exception => logger.debug("Failed to disconnect ftp client", e)
   }
+
+  private class ResizableSemaphore(permits: Int) extends Semaphore(permits, true) {
+    def reduce(reduction: Int) = reducePermits(reduction)
+  }
+
+  /**
+    * Lease handed out by the pool. Gives the permit back when the underlying lease is released or invalidated.
+    */
+  private class GatedLease(underlying: Lease[FTPClient], onReturn: () => Unit) extends Lease[FTPClient] {
+    override protected[this] def a = underlying.get()
+    override protected[this] def handleRelease() = try underlying.release() finally onReturn()
+    override protected[this] def handleInvalidate() = try underlying.invalidate() finally onReturn()
+  }
 }
 
-class FtpClientPool(capacity: Int, maxIdleTime: FiniteDuration, factory: () => FTPClient) extends ExpiringPool[FTPClient](
-  capacity = capacity,
-  maxIdleTime = maxIdleTime,
-  referenceType = ReferenceType.Strong,
-  _factory = factory,
-  // Reset is called every time a client is added or released back to the pool. We don't want to actually reset the connection here
-  // otherwise we'd need to login again and reconfigure the connection every time
-  _reset = Function.const(()),
-  _dispose = FtpClientPool.dispose,
-  // Could not find a good health check at the moment (isAvailable and isConnected on the socket seem to both return false sometimes even if the client is fine)
-  _healthCheck = Function.const(true)
-)
+/**
+  * Pool of FTP clients for a single host.
+  * The pool starts with initialCapacity connections and adapts its size to the observed lease wait times and server errors:
+  *   - leases that had to wait longer than GrowthWaitThreshold grow the pool by one connection, up to maxCapacity
+  *   - failures to connect or login halve the pool, down to MinimumSize
+  */
+class FtpClientPool(host: String,
+                    initialCapacity: Int,
+                    maxCapacity: Int,
+                    maxIdleTime: FiniteDuration,
+                    factory: () => FTPClient,
+                    listener: FtpClientPoolListener = FtpClientPoolListener.instance) extends StrictLogging {
+  import FtpClientPool._
+
+  private val ceiling = Math.max(initialCapacity, maxCapacity)
+  private val openConnections = new AtomicInteger(0)
+  private val currentSize = new AtomicInteger(initialCapacity)
+  private val lastServerError = new AtomicLong(0L)
+  private val permits = new ResizableSemaphore(initialCapacity)
+
+  private val countingFactory = () => {
+    val client = try factory() catch {
+      case NonFatal(e) =>
+        onServerError()
+        throw e
+    }
+    listener.connectionCount(host, openConnections.incrementAndGet())
+    client
+  }
+
+  private val countingDispose = (client: FTPClient) => {
+    dispose(client)
+    listener.connectionCount(host, openConnections.decrementAndGet())
+  }
+
+  // The underlying pool is sized to the ceiling, the permits are what limits the effective size
+  private val pool = new ExpiringPool[FTPClient](
+    capacity = ceiling,
+    maxIdleTime = maxIdleTime,
+    referenceType = ReferenceType.Strong,
+    _factory = countingFactory,
+    // Reset is called every time a client is added or released back to the pool. We don't want to actually reset the connection here
+    // otherwise we'd need to login again and reconfigure the connection every time
+    _reset = Function.const(()),
+    _dispose = countingDispose,
+    // Could not find a good health check at the moment (isAvailable and isConnected on the socket seem to both return false sometimes even if the client is fine)
+    _healthCheck = Function.const(true)
+  )
+
+  listener.poolSize(host, initialCapacity)
+
+  def size: Int = currentSize.get()
+
+  def connections: Int = openConnections.get()
+
+  def live(): Int = pool.live()
+
+  def acquire(): Lease[FTPClient] = {
+    val start = System.nanoTime()
+    permits.acquire()
+    leaseAfterPermit(start)
+  }
+
+  def tryAcquire(timeout: FiniteDuration): Option[Lease[FTPClient]] = {
+    val start = System.nanoTime()
+    if (permits.tryAcquire(timeout.toNanos, TimeUnit.NANOSECONDS)) Option(leaseAfterPermit(start))
+    else None
+  }
+
+  /**
+    * Opens up to `count` connections ahead of time so that they are ready to be leased.
+    * Never waits for a permit: if the pool is busy there is nothing to prewarm.
+    */
+  def prewarm(count: Int): Int = {
+    val leases = (1 to Math.min(count, size)).iterator
+      .takeWhile(_ => permits.tryAcquire())
+      .flatMap(_ => try Option(leaseAfterPermit(System.nanoTime())) catch {
+        case NonFatal(e) =>
+          logger.debug(s"Failed to prewarm ftp connection to $host", e)
+          None
+      })
+      .toList
+    leases.foreach(_.release())
+    leases.size
+  }
+
+  def close(): Unit = pool.close()
+
+  private def leaseAfterPermit(start: Long): Lease[FTPClient] = {
+    val lease = try pool.acquire() catch {
+      case NonFatal(e) =>
+        permits.release()
+        throw e
+    }
+    val waitTime = (System.nanoTime() - start).nanos
+    listener.leaseAcquired(host, waitTime)
+    if (waitTime > GrowthWaitThreshold) grow()
+    new GatedLease(lease, () => permits.release())
+  }
+
+  private def grow(): Unit = {
+    val coolingDown = System.currentTimeMillis() - lastServerError.get() < ErrorCoolDown.toMillis
+    val current = currentSize.get()
+    if (!coolingDown && current < ceiling && currentSize.compareAndSet(current, current + 1)) {
+      permits.release()
+      listener.poolSize(host, current + 1)
+    }
+  }
+
+  private def onServerError(): Unit = {
+    lastServerError.set(System.currentTimeMillis())
+    listener.serverError(host)
+    val current = currentSize.get()
+    val shrunk = Math.max(MinimumSize, current / 2)
+    if (shrunk < current && currentSize.compareAndSet(current, shrunk)) {
+      permits.reduce(current - shrunk)
+      logger.info(s"Reducing ftp connection pool for $host from $current to $shrunk connections after a server error")
+      listener.poolSize(host, shrunk)
+    }
+  }
+}
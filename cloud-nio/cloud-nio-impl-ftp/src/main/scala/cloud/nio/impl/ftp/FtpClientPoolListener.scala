@@ -0,0 +1,34 @@
+package cloud.nio.impl.ftp
+
+import scala.concurrent.duration.FiniteDuration
+
+/**
+  * Receives events from every FtpClientPool in the JVM.
+  * This module has no dependency on Cromwell's services, so the instrumentation is plugged in from the outside
+  * by registering a listener.
+  */
+trait FtpClientPoolListener {
+  /** A lease was handed out after waiting for the given time */
+  def leaseAcquired(host: String, waitTime: FiniteDuration): Unit
+  /** Number of connections currently opened against the host by a pool */
+  def connectionCount(host: String, count: Int): Unit
+  /** Number of connections the pool currently allows against the host */
+  def poolSize(host: String, size: Int): Unit
+  /** The server rejected a connection or a login attempt */
+  def serverError(host: String): Unit
+}
+
+object FtpClientPoolListener {
+  object Noop extends FtpClientPoolListener {
+    override def leaseAcquired(host: String, waitTime: FiniteDuration) = ()
+    override def connectionCount(host: String, count: Int) = ()
+    override def poolSize(host: String, size: Int) = ()
+    override def serverError(host: String) = ()
+  }
+
+  @volatile private var registered: FtpClientPoolListener = Noop
+
+  def register(listener: FtpClientPoolListener): Unit = registered = listener
+
+  def instance: FtpClientPoolListener = registered
+}
@@ -30,7 +30,7 @@ class FtpCloudNioFileSystem(provider: FtpCloudNioFileSystemProvider, host: Strin
     client
   }
 
-  private val clientPool = new FtpClientPool(ftpConfig.capacity, ftpConfig.idleConnectionTimeout, clientFactory)
+  private val clientPool = new FtpClientPool(host, ftpConfig.capacity, ftpConfig.capacityCeiling, ftpConfig.idleConnectionTimeout, clientFactory)
 
   def leaseClient = ftpConfig.leaseTimeout match {
     case Some(timeout) => clientPool.tryAcquire(timeout).getOrElse(throw new TimeoutException("Timed out waiting for an available connection, try again later."))
@@ -42,6 +42,12 @@ class FtpCloudNioFileSystem(provider: FtpCloudNioFileSystemProvider, host: Strin
     (leaseClient, leaseClient)
   }
 
+  /**
+    * Opens connections ahead of time, up to the configured number of prewarmed connections.
+    * Returns the number of connections that were opened.
+    */
+  def prewarm(): Int = clientPool.prewarm(ftpConfig.prewarmConnections)
+
   override def close() = {
     clientPool.close()
     super.close()
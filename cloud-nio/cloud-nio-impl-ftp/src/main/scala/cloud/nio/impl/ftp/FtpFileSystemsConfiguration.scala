@@ -9,7 +9,14 @@ case class FtpFileSystemsConfiguration(cacheTTL: FiniteDuration,
                                        capacity: Int,
                                        idleConnectionTimeout: FiniteDuration,
                                        connectionPort: Int,
-                                       connectionMode: ConnectionMode)
+                                       connectionMode: ConnectionMode,
+                                       maxCapacity: Option[Int] = None,
+                                       prewarmConnections: Int = 0) {
+  /**
+    * Maximum number of connections the pools can grow to when they adapt to lease wait times
+    */
+  def capacityCeiling: Int = maxCapacity.map(Math.max(_, capacity)).getOrElse(capacity)
+}
 
 object FtpFileSystemsConfiguration {
   sealed trait ConnectionMode
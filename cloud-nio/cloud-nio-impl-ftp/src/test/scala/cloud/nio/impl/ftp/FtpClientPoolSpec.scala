@@ -26,10 +26,40 @@ class FtpClientPoolSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matche
       disconnected = true
     })
 
-    val clientPool = new FtpClientPool(1, 10.minutes, () => { client })
+    val clientPool = new FtpClientPool("localhost", 1, 1, 10.minutes, () => { client })
     clientPool.acquire().invalidate()
 
     loggedOut shouldBe true
     disconnected shouldBe true
   }
+
+  it should "shrink the pool when the server rejects connections" in {
+    var attempts = 0
+    val clientPool = new FtpClientPool("localhost", 8, 8, 10.minutes, () => {
+      attempts += 1
+      if (attempts == 1) throw new java.io.IOException("421 Too many connections")
+      mock[FTPClient]
+    })
+
+    an[java.io.IOException] shouldBe thrownBy clientPool.acquire()
+    clientPool.size shouldBe 4
+    clientPool.acquire().release()
+    clientPool.connections shouldBe 1
+  }
+
+  it should "prewarm connections and report them to the listener" in {
+    var reportedConnections = 0
+    val listener = new FtpClientPoolListener {
+      override def leaseAcquired(host: String, waitTime: FiniteDuration) = ()
+      override def connectionCount(host: String, count: Int) = reportedConnections = count
+      override def poolSize(host: String, size: Int) = ()
+      override def serverError(host: String) = ()
+    }
+    val clientPool = new FtpClientPool("localhost", 3, 6, 10.minutes, () => mock[FTPClient], listener)
+
+    clientPool.prewarm(5) shouldBe 3
+    clientPool.connections shouldBe 3
+    reportedConnections shouldBe 3
+    clientPool.live() shouldBe 3
+  }
 }
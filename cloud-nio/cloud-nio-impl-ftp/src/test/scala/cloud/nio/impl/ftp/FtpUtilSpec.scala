@@ -17,7 +17,7 @@ class FtpUtilSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers wit
   behavior of "autoRelease"
 
   it should "release the lease when the client fails the operation without throwing" in {
-    val clientPool = new FtpClientPool(1, 10.minutes, () => { new FTPClient })
+    val clientPool = new FtpClientPool("localhost", 1, 1, 10.minutes, () => { new FTPClient })
     val lease = clientPool.acquire()
     
     val action = autoRelease(IO.pure(lease)) { _ =>
@@ -29,7 +29,7 @@ class FtpUtilSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers wit
   }
 
   it should "invalidate the lease when the client fails the operation by throwing" in {
-    val clientPool = new FtpClientPool(1, 10.minutes, () => { new FTPClient })
+    val clientPool = new FtpClientPool("localhost", 1, 1, 10.minutes, () => { new FTPClient })
     val lease = clientPool.acquire()
     
     val action = autoRelease(IO.pure(lease)) { _ =>
@@ -41,7 +41,7 @@ class FtpUtilSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers wit
   }
 
   it should "release the lease when the operation succeeds" in {
-    val clientPool = new FtpClientPool(1, 10.minutes, () => { new FTPClient })
+    val clientPool = new FtpClientPool("localhost", 1, 1, 10.minutes, () => { new FTPClient })
     val lease = clientPool.acquire()
     
     val action = autoRelease(IO.pure(lease)) { _ =>
@@ -26,7 +26,7 @@ class LeaseInputStreamSpec extends AnyFlatSpec with CromwellTimeoutSpec with Mat
       completed = true
       true
     })
-    val clientPool = new FtpClientPool(1, 10.minutes, () => { mockClient })
+    val clientPool = new FtpClientPool("localhost", 1, 1, 10.minutes, () => { mockClient })
     val lease = clientPool.acquire()
     val leasedInputStream = new LeasedInputStream("host", "path", is, lease)
 
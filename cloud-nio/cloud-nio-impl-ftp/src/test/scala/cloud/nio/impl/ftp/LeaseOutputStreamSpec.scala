@@ -22,7 +22,7 @@ class LeaseOutputStreamSpec extends AnyFlatSpec with CromwellTimeoutSpec with Ma
       completed = true
       true
     })
-    val clientPool = new FtpClientPool(1, 10.minutes, () => { mockClient })
+    val clientPool = new FtpClientPool("localhost", 1, 1, 10.minutes, () => { mockClient })
     val lease = clientPool.acquire()
     val leasedOutputStream = new LeasedOutputStream("host", "path", os, lease)
 
@@ -0,0 +1,101 @@
+package cromwell.core.actor
+
+import com.typesafe.config.Config
+import net.ceedubs.ficus.Ficus._
+
+import scala.concurrent.duration._
+
+/**
+  * Bounds and targets within which a BatchActor tunes its batch size and flush rate.
+  *
+  * @param minBatchSize The batch size never goes below this.
+  * @param maxBatchSize The batch size never goes above this.
+  * @param batchSizeIncrement Added to the batch size when batches are processed within the target commit latency
+  *                           while more than a batch is queued.
+  * @param minFlushRate The flush interval never goes below this.
+  * @param maxFlushRate The flush interval never goes above this.
+  * @param flushRateIncrement Added to the flush interval when the flush timer only finds a small batch to process.
+  * @param decreaseFactor What the batch size or flush interval is multiplied by when its target is missed.
+  * @param targetCommitLatency Batches taking longer than this to process, or failing, decrease the batch size.
+  * @param targetQueueLatency Commands waiting longer than this to be processed decrease the flush interval.
+  */
+final case class AdaptiveBatchingConfig(minBatchSize: Int,
+                                        maxBatchSize: Int,
+                                        batchSizeIncrement: Int,
+                                        minFlushRate: FiniteDuration,
+                                        maxFlushRate: FiniteDuration,
+                                        flushRateIncrement: FiniteDuration,
+                                        decreaseFactor: Double,
+                                        targetCommitLatency: FiniteDuration,
+                                        targetQueueLatency: FiniteDuration)
+
+object AdaptiveBatchingConfig {
+  /**
+    * Reads the `adaptive-batching` section of `config`, if enabled. The bounds default to a tenth and ten times the
+    * static batch size and flush rate, which are the initial values.
+    */
+  def fromConfig(config: Config, batchSize: Int, flushRate: FiniteDuration): Option[AdaptiveBatchingConfig] = {
+    config.getAs[Config]("adaptive-batching").filter(_.getOrElse("enabled", false)) map { adaptive =>
+      AdaptiveBatchingConfig(
+        minBatchSize = adaptive.getOrElse("min-batch-size", (batchSize / 10) max 1),
+        maxBatchSize = adaptive.getOrElse("max-batch-size", batchSize * 10),
+        batchSizeIncrement = adaptive.getOrElse("batch-size-increment", (batchSize / 10) max 1),
+        minFlushRate = adaptive.getOrElse("min-flush-rate", flushRate / 10),
+        maxFlushRate = adaptive.getOrElse("max-flush-rate", flushRate * 10),
+        flushRateIncrement = adaptive.getOrElse("flush-rate-increment", flushRate / 10),
+        decreaseFactor = adaptive.getOrElse("decrease-factor", 0.5),
+        targetCommitLatency = adaptive.getOrElse("target-commit-latency", 5.seconds),
+        targetQueueLatency = adaptive.getOrElse("target-queue-latency", flushRate * 2),
+      )
+    }
+  }
+}
+
+/**
+  * Additive increase, multiplicative decrease of the batch size and flush interval of a BatchActor.
+  *
+  * The batch size grows by a fixed increment while batches are committed within the target latency and there is a
+  * backlog to write, and is cut by the decrease factor as soon as a batch is slow or fails. The flush interval grows by
+  * a fixed increment while the flush timer only finds small batches to write, and is cut as soon as commands wait for
+  * longer than the target queue latency.
+  */
+final class AdaptiveBatchController(config: AdaptiveBatchingConfig, initialBatchSize: Int, initialFlushRate: FiniteDuration) {
+  private var _batchSize: Int = clampBatchSize(initialBatchSize)
+  private var _flushRate: FiniteDuration = clampFlushRate(initialFlushRate)
+
+  def batchSize: Int = _batchSize
+  def flushRate: FiniteDuration = _flushRate
+
+  /**
+    * Adjusts the batch size after a batch was processed.
+    *
+    * @param backlog The weight left queued after the batch was taken.
+    */
+  def batchProcessed(succeeded: Boolean, commitLatency: FiniteDuration, backlog: Int): Unit = {
+    if (!succeeded || commitLatency > config.targetCommitLatency)
+      _batchSize = clampBatchSize((_batchSize * config.decreaseFactor).toInt)
+    else if (backlog >= _batchSize)
+      _batchSize = clampBatchSize(_batchSize + config.batchSizeIncrement)
+  }
+
+  /**
+    * Adjusts the flush interval after a batch was taken from the queue.
+    *
+    * @return true if the flush interval changed.
+    */
+  def batchFlushed(weight: Int, byTimer: Boolean, longestQueueLatency: FiniteDuration): Boolean = {
+    val previous = _flushRate
+    if (longestQueueLatency > config.targetQueueLatency)
+      _flushRate = clampFlushRate(_flushRate * config.decreaseFactor)
+    else if (byTimer && weight < _batchSize / 4)
+      _flushRate = clampFlushRate(_flushRate + config.flushRateIncrement)
+    _flushRate != previous
+  }
+
+  private def clampBatchSize(batchSize: Int): Int = batchSize max config.minBatchSize min config.maxBatchSize
+
+  private def clampFlushRate(flushRate: Duration): FiniteDuration = {
+    val clamped = flushRate max config.minFlushRate min config.maxFlushRate
+    FiniteDuration(clamped.toMillis, MILLISECONDS)
+  }
+}
@@ -10,9 +10,10 @@ import cromwell.core.actor.BatchActor._
 import cromwell.util.GracefulShutdownHelper.ShutdownCommand
 import org.slf4j.LoggerFactory
 
+import scala.collection.mutable
 import scala.concurrent.Future
-import scala.concurrent.duration.{Duration, FiniteDuration}
-import scala.util.{Failure, Success}
+import scala.concurrent.duration._
+import scala.util.{Failure, Random, Success}
 
 
 /** A collection of state, data, and message types to support BatchActor. */
@@ -32,12 +33,16 @@ object BatchActor {
     */
   sealed trait BatchActorControlMessage extends ControlMessage
   case object ProcessingComplete extends BatchActorControlMessage
+  case object ProcessingFailed extends BatchActorControlMessage
   case object ScheduledFlushKey
   case object ScheduledProcessAction extends BatchActorControlMessage
 
   case class CommandAndReplyTo[C](command: C, replyTo: ActorRef)
 
   case class QueueWeight(weight: Int)
+
+  // Number of queue latencies kept between two reads of the queue latencies, sampled beyond that
+  private val QueueLatencySamples = 10000
 }
 
 /**
@@ -62,14 +67,62 @@ abstract class BatchActor[C](val flushRate: FiniteDuration,
     */
   protected def routed: Boolean = false
 
+  /**
+    * Override to tune the batch size and flush rate to the observed processing and queue latencies, starting from
+    * `batchSize` and `flushRate`.
+    */
+  protected def adaptiveBatching: Option[AdaptiveBatchingConfig] = None
+
+  private lazy val adaptiveController = adaptiveBatching map { new AdaptiveBatchController(_, batchSize, flushRate) }
+
+  /** The batch size currently in use, which only differs from `batchSize` with adaptive batching. */
+  protected def currentBatchSize: Int = adaptiveController.map(_.batchSize).getOrElse(batchSize)
+
+  /** The flush rate currently in use, which only differs from `flushRate` with adaptive batching. */
+  protected def currentFlushRate: FiniteDuration = adaptiveController.map(_.flushRate).getOrElse(flushRate)
+
+  // When each queued command arrived, in queue order
+  private val arrivalNanos = mutable.Queue.empty[Long]
+  private val queueLatencyNanos = mutable.ArrayBuffer.empty[Long]
+  private var queueLatenciesSeen = 0L
+  private var processingStartNanos = 0L
+
+  /**
+    * Returns how long the commands processed since the last call waited in the queue, in nanoseconds. Beyond
+    * 10000 commands, a uniform sample of them.
+    */
+  protected def drainQueueLatencies(): Vector[Long] = {
+    val latencies = queueLatencyNanos.toVector
+    queueLatencyNanos.clear()
+    queueLatenciesSeen = 0L
+    latencies
+  }
+
+  private def recordQueueLatency(latency: Long): Unit = {
+    queueLatenciesSeen += 1
+    if (queueLatencyNanos.size < QueueLatencySamples) queueLatencyNanos += latency
+    else {
+      val index = (Random.nextDouble() * queueLatenciesSeen).toLong
+      if (index < QueueLatencySamples) queueLatencyNanos(index.toInt) = latency
+    }
+  }
+
   override def preStart(): Unit = {
     if (logOnStartUp) log.info("{} configured to flush with batch size {} and process rate {}.", name, batchSize, flushRate)
+    adaptiveBatching foreach { adaptive =>
+      if (logOnStartUp) log.info("{} adapting its batch size and process rate within {}.", name, adaptive)
+    }
     if (flushRate != Duration.Zero) {
       timers.startPeriodicTimer(ScheduledFlushKey, ScheduledProcessAction, flushRate)
     }
     super.preStart()
   }
 
+  private def enqueue(data: BatchData[C], command: C): BatchData[C] = {
+    arrivalNanos.enqueue(System.nanoTime())
+    data.enqueue(command)
+  }
+
   startWith(WaitingToProcess, WeightedQueue.empty[C, Int](weightFunction))
 
   def commandToData(snd: ActorRef): PartialFunction[Any, C]
@@ -87,12 +140,12 @@ abstract class BatchActor[C](val flushRate: FiniteDuration,
     // On a regular event, only process if the batch size has been reached.
     case Event(command, data) if commandToData(sender).isDefinedAt(command) =>
       recentArrivalThreshold foreach { _ => mostRecentArrival = Option(OffsetDateTime.now()) }
-      processIfBatchSizeReached(data.enqueue(commandToData(sender)(command)))
+      processIfBatchSizeReached(enqueue(data, commandToData(sender)(command)))
     // On a scheduled process, always process
     case Event(ScheduledProcessAction, data) =>
       if (suitableIntervalSinceLastArrival()) {
         gossip(QueueWeight(data.weight))
-        processHead(data)
+        processHead(data, byTimer = true)
       } else {
         stay()
       }
@@ -105,17 +158,19 @@ abstract class BatchActor[C](val flushRate: FiniteDuration,
   when(Processing) {
     // Already processing, enqueue the command
     case Event(command, data) if commandToData(sender).isDefinedAt(command) =>
-      stay() using data.enqueue(commandToData(sender)(command))
+      stay() using enqueue(data, commandToData(sender)(command))
     // Already processing, can only do one at a time
     case Event(ScheduledProcessAction, data) => 
       gossip(QueueWeight(data.weight))
       stay()
     // Process is complete and we're shutting down so process even if we're under the batch size.
-    case Event(ProcessingComplete, data) if shuttingDown =>
+    case Event(outcome @ (ProcessingComplete | ProcessingFailed), data) if shuttingDown =>
+      adaptToProcessing(outcome == ProcessingComplete, data)
       logger.info(s"{} Shutting down: processing ${data.weight} queued messages", self.path.name)
       processHead(data)
     // Processing is complete, re-process only if needed    
-    case Event(ProcessingComplete, data) if !shuttingDown =>
+    case Event(outcome @ (ProcessingComplete | ProcessingFailed), data) if !shuttingDown =>
+      adaptToProcessing(outcome == ProcessingComplete, data)
       processIfBatchSizeReached(data)
     case Event(ShutdownCommand, _) =>
       shuttingDown = true
@@ -133,20 +188,40 @@ abstract class BatchActor[C](val flushRate: FiniteDuration,
     */
   protected def process(data: NonEmptyVector[C]): Future[Int]
 
+  private def adaptToProcessing(succeeded: Boolean, data: BatchData[C]): Unit = {
+    val commitLatency = (System.nanoTime() - processingStartNanos).nanos
+    adaptiveController foreach { _.batchProcessed(succeeded, commitLatency, data.weight) }
+  }
+
+  private def adaptToFlush(weight: Int, byTimer: Boolean, longestQueueLatency: FiniteDuration): Unit = {
+    adaptiveController foreach { controller =>
+      if (controller.batchFlushed(weight, byTimer, longestQueueLatency) && flushRate != Duration.Zero) {
+        // Replaces the periodic timer with the same key
+        timers.startPeriodicTimer(ScheduledFlushKey, ScheduledProcessAction, controller.flushRate)
+      }
+    }
+  }
+
   private def processIfBatchSizeReached(data: BatchData[C]) = {
-    if (data.weight >= batchSize) processHead(data)
+    if (data.weight >= currentBatchSize) processHead(data)
     else goto(WaitingToProcess) using data
   }
 
-  private def processHead(data: BatchData[C]) = if (data.innerQueue.nonEmpty) {
-    val (head, newQueue) = data.behead(batchSize)
+  private def processHead(data: BatchData[C], byTimer: Boolean = false) = if (data.innerQueue.nonEmpty) {
+    val (head, newQueue) = data.behead(currentBatchSize)
+
+    val now = System.nanoTime()
+    val latencies = head.map(_ => if (arrivalNanos.nonEmpty) now - arrivalNanos.dequeue() else 0L)
+    latencies foreach recordQueueLatency
+    adaptToFlush(data.weight - newQueue.weight, byTimer, latencies.foldLeft(0L)(_ max _).nanos)
+    processingStartNanos = now
 
     def processNonEmptyHead(nev: NonEmptyVector[C]) = process(nev) onComplete {
       case Success(_) =>
         self ! ProcessingComplete
       case Failure(regerts) =>
         log.error(regerts, "{} Failed to properly process data", name)
-        self ! ProcessingComplete
+        self ! ProcessingFailed
     }
 
     head.headOption match {
@@ -3,10 +3,11 @@ package cromwell.core.io
 import akka.actor.ActorRef
 import com.typesafe.config.{Config, ConfigFactory}
 import cromwell.core.io.IoPromiseProxyActor.IoCommandWithPromise
+import cromwell.core.io.IoReadLinesCommand.IoReadLinesOptions
 import cromwell.core.path.BetterFileMethods.OpenOptions
 import cromwell.core.path.Path
 
-import scala.concurrent.Future
+import scala.concurrent.{ExecutionContext, Future}
 import scala.concurrent.duration._
 import net.ceedubs.ficus.Ficus._
 
@@ -62,8 +63,24 @@ class AsyncIo(ioEndpoint: ActorRef, ioCommandBuilder: IoCommandBuilder) {
     asyncCommand(ioCommandBuilder.existsCommand(path))
   }
 
-  def readLinesAsync(path: Path): Future[Traversable[String]] = {
-    asyncCommand(ioCommandBuilder.readLines(path))
+  /**
+    * Folds over the lines of a file, reading them chunkBytes Bytes at a time.
+    * The I/O actor never holds more than one chunk of the file in memory.
+    */
+  def foldLinesAsync[A](path: Path, chunkBytes: Int)(zero: A)(op: (A, String) => A)
+                       (implicit ec: ExecutionContext): Future[A] = {
+    def foldFrom(fromByte: Long, acc: A): Future[A] = {
+      val options = IoReadLinesOptions(fromByte = fromByte, maxBytes = Option(chunkBytes), failOnOverflow = false)
+      asyncCommand(ioCommandBuilder.readLines(path, options)) flatMap { chunk =>
+        val folded = chunk.lines.foldLeft(acc)(op)
+        chunk.nextByte match {
+          case Some(nextByte) => foldFrom(nextByte, folded)
+          case None => Future.successful(folded)
+        }
+      }
+    }
+
+    foldFrom(0L, zero)
   }
   
   def isDirectory(path: Path): Future[Boolean] = {
@@ -2,6 +2,7 @@ package cromwell.core.io
 
 import better.files.File.OpenOptions
 import cromwell.core.io.IoContentAsStringCommand.IoReadOptions
+import cromwell.core.io.IoReadLinesCommand.IoReadLinesOptions
 import cromwell.core.path.Path
 
 object DefaultIoCommand {
@@ -48,8 +49,8 @@ object DefaultIoCommand {
     override def commandDescription: String = s"DefaultIoExistsCommand file '$file'"
   }
 
-  case class DefaultIoReadLinesCommand(override val file: Path) extends IoReadLinesCommand(file) {
-    override def commandDescription: String = s"DefaultIoReadLinesCommand file '$file'"
+  case class DefaultIoReadLinesCommand(override val file: Path, override val options: IoReadLinesOptions) extends IoReadLinesCommand(file, options) {
+    override def commandDescription: String = s"DefaultIoReadLinesCommand file '$file' options '$options'"
   }
 
   case class DefaultIoIsDirectoryCommand(override val file: Path) extends IoIsDirectoryCommand(file) {
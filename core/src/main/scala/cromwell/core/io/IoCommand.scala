@@ -8,6 +8,7 @@ import com.google.api.client.util.ExponentialBackOff
 import common.util.Backoff
 import common.util.StringUtil.EnhancedToStringable
 import cromwell.core.io.IoContentAsStringCommand.IoReadOptions
+import cromwell.core.io.IoReadLinesCommand.{IoLinesChunk, IoReadLinesOptions, ReadAllLines}
 import cromwell.core.path.Path
 import cromwell.core.retry.SimpleExponentialBackoff
 import org.slf4j.LoggerFactory
@@ -169,10 +170,30 @@ abstract class IoExistsCommand(val file: Path) extends SingleFileIoCommand[Boole
   override lazy val name = "exist"
 }
 
+object IoReadLinesCommand {
+
+  /**
+    * Options to customize reading the lines of a file.
+    * @param fromByte Offset in Bytes at which to start reading. Must be the start of a line.
+    * @param maxBytes If specified, only reads the lines fitting in maxBytes Bytes from fromByte.
+    * @param failOnOverflow If this is true, maxBytes is specified, and the lines don't fit in maxBytes, fail the command.
+    */
+  case class IoReadLinesOptions(fromByte: Long, maxBytes: Option[Int], failOnOverflow: Boolean)
+
+  val ReadAllLines = IoReadLinesOptions(fromByte = 0L, maxBytes = None, failOnOverflow = false)
+
+  /**
+    * Lines read from a file.
+    * @param nextByte If the lines have been cut short by maxBytes, the offset at which to resume reading.
+    */
+  case class IoLinesChunk(lines: Vector[String], nextByte: Option[Long])
+}
+
 /**
-  * Return the lines of a file in a collection
+  * Return the lines of a file in a collection.
+  * Use maxBytes to bound the number of lines read at once and fromByte to read the following chunk.
   */
-abstract class IoReadLinesCommand(val file: Path) extends SingleFileIoCommand[Traversable[String]] {
+abstract class IoReadLinesCommand(val file: Path, val options: IoReadLinesOptions = ReadAllLines) extends SingleFileIoCommand[IoLinesChunk] {
   override def toString = s"read lines of ${file.pathAsString}"
   override lazy val name = "read lines"
 }
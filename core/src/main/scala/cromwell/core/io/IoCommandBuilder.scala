@@ -2,6 +2,7 @@ package cromwell.core.io
 
 import cromwell.core.io.DefaultIoCommand._
 import cromwell.core.io.IoContentAsStringCommand.IoReadOptions
+import cromwell.core.io.IoReadLinesCommand.{IoReadLinesOptions, ReadAllLines}
 import cromwell.core.path.BetterFileMethods.OpenOptions
 import cromwell.core.path.Path
 
@@ -22,7 +23,7 @@ abstract class PartialIoCommandBuilder {
   def touchCommand: PartialFunction[Path, Try[IoTouchCommand]] = PartialFunction.empty
   def existsCommand: PartialFunction[Path, Try[IoExistsCommand]] = PartialFunction.empty
   def isDirectoryCommand: PartialFunction[Path, Try[IoIsDirectoryCommand]] = PartialFunction.empty
-  def readLinesCommand: PartialFunction[Path, Try[IoReadLinesCommand]] = PartialFunction.empty
+  def readLinesCommand: PartialFunction[(Path, IoReadLinesOptions), Try[IoReadLinesCommand]] = PartialFunction.empty
 }
 
 object IoCommandBuilder {
@@ -96,8 +97,8 @@ class IoCommandBuilder(partialBuilders: List[PartialIoCommandBuilder] = List.emp
     buildOrDefault(_.isDirectoryCommand, file, DefaultIoIsDirectoryCommand(file))
   }
 
-  def readLines(file: Path): Try[IoReadLinesCommand] = {
-    buildOrDefault(_.readLinesCommand, file, DefaultIoReadLinesCommand(file))
+  def readLines(file: Path, options: IoReadLinesOptions = ReadAllLines): Try[IoReadLinesCommand] = {
+    buildOrDefault(_.readLinesCommand, (file, options), DefaultIoReadLinesCommand(file, options))
   }
 }
 
@@ -0,0 +1,178 @@
+package cromwell.core.io
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Path => NioPath, StandardOpenOption}
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{Callable, ExecutorService, Executors, ThreadFactory}
+import java.util.zip.CRC32C
+
+import com.typesafe.config.Config
+import cromwell.core.io.LocalFileHasher._
+import cromwell.util.TryWithResource._
+import net.ceedubs.ficus.Ficus._
+import net.jpountz.xxhash.XXHashFactory
+import org.apache.commons.codec.binary.Hex
+
+import scala.collection.JavaConverters._
+
+object LocalFileHasher {
+  private val BufferSize = 1024 * 1024
+  // A memory mapped region can't be larger than Int.MaxValue
+  val MaxChunkSize: Long = 1024L * 1024 * 1024
+  private lazy val xxhashFactory = XXHashFactory.fastestInstance()
+
+  /**
+    * Computes the digest of a file, in one go or chunk by chunk.
+    */
+  sealed abstract class HashAlgorithm(val name: String) {
+    def newDigester(): Digester
+  }
+
+  /**
+    * The hashes produced with md5 are the same as they always were, so that existing call cache entries stay valid.
+    */
+  case object Md5 extends HashAlgorithm("md5") {
+    override def newDigester() = new Digester {
+      private val digest = MessageDigest.getInstance("MD5")
+      override def update(buffer: ByteBuffer) = digest.update(buffer)
+      override def hexDigest = Hex.encodeHexString(digest.digest())
+    }
+  }
+
+  /**
+    * Hardware accelerated on most CPUs.
+    */
+  case object Crc32c extends HashAlgorithm("crc32c") {
+    override def newDigester() = new Digester {
+      private val crc = new CRC32C()
+      override def update(buffer: ByteBuffer) = crc.update(buffer)
+      override def hexDigest = f"${crc.getValue}%08x"
+    }
+  }
+
+  case object Xxh64 extends HashAlgorithm("xxh64") {
+    override def newDigester() = new Digester {
+      private val hasher = xxhashFactory.newStreamingHash64(0L)
+      private val array = new Array[Byte](BufferSize)
+      override def update(buffer: ByteBuffer) = {
+        while (buffer.hasRemaining) {
+          val length = Math.min(buffer.remaining(), array.length)
+          buffer.get(array, 0, length)
+          hasher.update(array, 0, length)
+        }
+      }
+      override def hexDigest = f"${hasher.getValue}%016x"
+    }
+  }
+
+  val Algorithms: List[HashAlgorithm] = List(Md5, Crc32c, Xxh64)
+
+  def algorithmFromName(name: String): HashAlgorithm = Algorithms.find(_.name == name).getOrElse(
+    throw new IllegalArgumentException(s"Unrecognized hashing algorithm '$name'. Valid algorithms are ${Algorithms.map(_.name).mkString(", ")}")
+  )
+
+  trait Digester {
+    def update(buffer: ByteBuffer): Unit
+    def hexDigest: String
+  }
+
+  /**
+    * @param algorithm Algorithm used to hash the content of the file
+    * @param chunkSize If specified, the file is split in chunks of this size, memory mapped and hashed in parallel.
+    *                  The digests of the chunks are then hashed together.
+    * @param parallelism Number of chunks hashed concurrently
+    */
+  case class LocalHashingConfig(algorithm: HashAlgorithm, chunkSize: Option[Long], parallelism: Int) {
+    chunkSize foreach { size =>
+      require(size > 0 && size <= MaxChunkSize, s"The hashing chunk size must be between 1 and $MaxChunkSize Bytes")
+    }
+    require(parallelism > 0, "The hashing parallelism must be positive")
+
+    /**
+      * Prefix recorded with the hashes, so that hashes computed differently never match.
+      * Md5 without chunks has no prefix to keep the hashes produced before these options existed.
+      */
+    def hashPrefix: String = (algorithm, chunkSize) match {
+      case (Md5, None) => ""
+      case (_, None) => s"${algorithm.name}:"
+      case (_, Some(size)) => s"${algorithm.name}-tree-$size:"
+    }
+  }
+
+  val DefaultConfig = LocalHashingConfig(Md5, None, 1)
+
+  def parseConfig(config: Config): LocalHashingConfig = {
+    val algorithm = config.getAs[String]("algorithm").map(algorithmFromName).getOrElse(DefaultConfig.algorithm)
+    val chunkSize = config.getAs[Long]("chunk-size")
+    val parallelism = config.getAs[Int]("parallelism").getOrElse(Runtime.getRuntime.availableProcessors())
+    LocalHashingConfig(algorithm, chunkSize, parallelism)
+  }
+
+  private class DaemonThreadFactory(name: String) extends ThreadFactory {
+    private val counter = new AtomicInteger(0)
+    override def newThread(runnable: Runnable) = {
+      val thread = new Thread(runnable, s"$name-${counter.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }
+  }
+}
+
+/**
+  * Hashes local files, either by streaming them or by hashing memory mapped chunks of the file in parallel.
+  */
+class LocalFileHasher(config: LocalHashingConfig) {
+  private lazy val executor: ExecutorService =
+    Executors.newFixedThreadPool(config.parallelism, new DaemonThreadFactory("local-file-hasher"))
+
+  def hash(file: NioPath): String = {
+    val hex = config.chunkSize match {
+      case Some(chunkSize) => hashChunks(file, chunkSize)
+      case None => hashStream(file)
+    }
+    config.hashPrefix + hex
+  }
+
+  private def hashStream(file: NioPath): String = {
+    tryWithResource(() => FileChannel.open(file, StandardOpenOption.READ)) { channel =>
+      val digester = config.algorithm.newDigester()
+      val buffer = ByteBuffer.allocateDirect(BufferSize)
+      while (channel.read(buffer) != -1) {
+        buffer.flip()
+        digester.update(buffer)
+        buffer.clear()
+      }
+      digester.hexDigest
+    }.get
+  }
+
+  /**
+    * Hashes every chunk of the file separately and then hashes the concatenation of the chunk digests.
+    * The result only depends on the content of the file and the chunk size, not on the order in which chunks are processed.
+    */
+  private def hashChunks(file: NioPath, chunkSize: Long): String = {
+    tryWithResource(() => FileChannel.open(file, StandardOpenOption.READ)) { channel =>
+      val size = channel.size()
+      val offsets = 0L.until(Math.max(size, 1L), chunkSize).toList
+
+      val chunkTasks = offsets map { offset =>
+        new Callable[String] {
+          override def call() = {
+            val digester = config.algorithm.newDigester()
+            digester.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(chunkSize, size - offset)))
+            digester.hexDigest
+          }
+        }
+      }
+
+      val chunkDigests = executor.invokeAll(chunkTasks.asJava).asScala.map(_.get())
+
+      val root = config.algorithm.newDigester()
+      chunkDigests foreach { digest => root.update(ByteBuffer.wrap(digest.getBytes(StandardCharsets.US_ASCII))) }
+      root.hexDigest
+    }.get
+  }
+}
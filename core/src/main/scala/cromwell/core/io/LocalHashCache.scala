@@ -0,0 +1,164 @@
+package cromwell.core.io
+
+import java.io.{BufferedWriter, IOException}
+import java.nio.charset.StandardCharsets
+import java.nio.file.attribute.BasicFileAttributes
+import java.nio.file.{Files, Paths, StandardCopyOption, StandardOpenOption, Path => NioPath}
+import java.util.concurrent.{ConcurrentHashMap, TimeUnit}
+
+import com.typesafe.config.Config
+import com.typesafe.scalalogging.StrictLogging
+import cromwell.core.io.LocalHashCache._
+import cromwell.core.path.Path
+import net.ceedubs.ficus.Ficus._
+
+import scala.collection.JavaConverters._
+import scala.util.{Success, Try}
+import scala.util.control.NonFatal
+
+/**
+  * Cache of the hashes of local files, shared by all the jobs and workflows hashing the same files, e.g. reference
+  * genomes.
+  *
+  * Entries are keyed by the hashing strategy, the absolute path, the inode, the size and the modification time of the
+  * file: any change to the file or its replacement by another one misses the cache.
+  * The entries are kept in memory and, if `journalPath` is defined, appended to a journal file replayed when Cromwell
+  * starts. The least recently used entries are evicted beyond `maxEntries`, and the journal is rewritten once it holds
+  * twice that many lines.
+  *
+  * The journal must not be shared by Cromwell processes running at the same time.
+  */
+class LocalHashCache(journalPath: Option[NioPath], maxEntries: Int) extends StrictLogging {
+  require(maxEntries > 0, "The hash cache max-entries must be positive")
+
+  // Access ordered, guarded by `this`
+  private val entries = new java.util.LinkedHashMap[Key, String](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[Key, String]): Boolean = size() > maxEntries
+  }
+  private var journalLines = 0L
+  private var hits = 0L
+  private var misses = 0L
+
+  journalPath foreach load
+  private var journal: Option[BufferedWriter] = journalPath map openJournal
+
+  /**
+    * Returns the cached hash of `file` for `strategy`, or computes and caches it.
+    */
+  def getOrCompute(strategy: String, file: Path)(compute: => Try[String]): Try[String] = {
+    keyOf(strategy, file.nioPath) match {
+      case Some(key) =>
+        lookup(key) match {
+          case Some(hash) => Success(hash)
+          case None =>
+            val hash = compute
+            hash foreach { put(key, _) }
+            hash
+        }
+      case None => compute
+    }
+  }
+
+  def stats: LocalHashCacheStats = synchronized { LocalHashCacheStats(hits, misses, entries.size()) }
+
+  private def lookup(key: Key): Option[String] = synchronized {
+    val hash = Option(entries.get(key))
+    if (hash.isDefined) hits += 1 else misses += 1
+    hash
+  }
+
+  private def put(key: Key, hash: String): Unit = synchronized {
+    entries.put(key, hash)
+    for {
+      path <- journalPath
+      writer <- journal
+    } try {
+      writer.write(toLine(key, hash))
+      writer.flush()
+      journalLines += 1
+      if (journalLines >= 2L * maxEntries) compact(path, writer)
+    } catch {
+      case NonFatal(e) => logger.warn(s"Unable to write to the hash cache journal $path", e)
+    }
+  }
+
+  private def load(journalPath: NioPath): Unit = if (Files.exists(journalPath)) {
+    try {
+      val lines = Files.lines(journalPath, StandardCharsets.UTF_8)
+      // A line may have been partially written if Cromwell stopped abruptly, such lines are skipped
+      try lines.iterator().asScala foreach { line =>
+        fromLine(line) foreach { case (key, hash) => entries.put(key, hash) }
+        journalLines += 1
+      } finally lines.close()
+    } catch {
+      case NonFatal(e) => logger.warn(s"Unable to read the hash cache journal $journalPath, starting with an empty cache", e)
+    }
+    logger.info(s"Loaded ${entries.size()} hashes from $journalPath")
+  }
+
+  private def openJournal(journalPath: NioPath): BufferedWriter = {
+    Option(journalPath.getParent) foreach { Files.createDirectories(_) }
+    Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+  }
+
+  // Rewrites the journal with the current entries only, replacing it at once
+  private def compact(journalPath: NioPath, current: BufferedWriter): Unit = {
+    val compacted = journalPath.resolveSibling(journalPath.getFileName.toString + ".tmp")
+    val writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)
+    try entries.asScala foreach { case (key, hash) => writer.write(toLine(key, hash)) } finally writer.close()
+    current.close()
+    Files.move(compacted, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    journal = Option(openJournal(journalPath))
+    journalLines = entries.size().toLong
+  }
+}
+
+object LocalHashCache {
+  case class LocalHashCacheStats(hits: Long, misses: Long, entries: Int)
+
+  private case class Key(strategy: String, path: String, inode: String, size: Long, modified: Long)
+
+  private val Separator = '\t'
+  // Written last, so that a line cut short by an abrupt stop never yields a truncated hash
+  private val EndOfLine = "$"
+
+  private def keyOf(strategy: String, file: NioPath): Option[Key] = {
+    try {
+      val path = file.toAbsolutePath.toString
+      val attributes = Files.readAttributes(file, classOf[BasicFileAttributes])
+      for {
+        // Without an inode a file replaced by another one with the same size and time would hit the cache
+        inode <- Option(attributes.fileKey())
+        // Such paths can't be written to the journal, they are never cached
+        if !path.exists(c => c == Separator || c == '\n' || c == '\r')
+      } yield Key(strategy, path, inode.toString, attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS))
+    } catch {
+      case _: IOException => None
+    }
+  }
+
+  private def toLine(key: Key, hash: String): String =
+    List(key.strategy, key.path, key.inode, key.size, key.modified, hash, EndOfLine).mkString(Separator.toString) + "\n"
+
+  private def fromLine(line: String): Option[(Key, String)] = {
+    line.split(Separator) match {
+      case Array(strategy, path, inode, size, modified, hash, EndOfLine) =>
+        Try(Key(strategy, path, inode, size.toLong, modified.toLong) -> hash).toOption
+      case _ => None
+    }
+  }
+
+  private val caches = new ConcurrentHashMap[String, LocalHashCache]()
+
+  /**
+    * Returns the cache configured by `hash-cache` in `hashingConfig`, if any. Without a `path` the cache is only kept in
+    * memory. Caches configured with the same journal, or without one, are the same cache.
+    */
+  def fromConfig(hashingConfig: Config): Option[LocalHashCache] = {
+    hashingConfig.getAs[Config]("hash-cache") filter { _.getAs[Boolean]("enabled").getOrElse(true) } map { cacheConfig =>
+      val journalPath = cacheConfig.getAs[String]("path")
+      val maxEntries = cacheConfig.getAs[Int]("max-entries").getOrElse(100000)
+      caches.computeIfAbsent(journalPath.getOrElse(""), _ => new LocalHashCache(journalPath.map(Paths.get(_)), maxEntries))
+    }
+  }
+}
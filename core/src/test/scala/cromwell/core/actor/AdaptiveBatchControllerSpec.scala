@@ -0,0 +1,103 @@
+package cromwell.core.actor
+
+import com.typesafe.config.ConfigFactory
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration._
+
+class AdaptiveBatchControllerSpec extends AnyFlatSpec with Matchers {
+
+  behavior of "AdaptiveBatchController"
+
+  private val config = AdaptiveBatchingConfig(
+    minBatchSize = 10,
+    maxBatchSize = 1000,
+    batchSizeIncrement = 10,
+    minFlushRate = 500.milliseconds,
+    maxFlushRate = 50.seconds,
+    flushRateIncrement = 500.milliseconds,
+    decreaseFactor = 0.5,
+    targetCommitLatency = 5.seconds,
+    targetQueueLatency = 10.seconds,
+  )
+
+  it should "grow the batch size additively while batches are fast and more than a batch is queued" in {
+    val controller = new AdaptiveBatchController(config, 200, 5.seconds)
+    controller.batchProcessed(succeeded = true, 1.second, backlog = 500)
+    controller.batchSize shouldBe 210
+    controller.batchProcessed(succeeded = true, 1.second, backlog = 500)
+    controller.batchSize shouldBe 220
+  }
+
+  it should "keep the batch size when less than a batch is queued" in {
+    val controller = new AdaptiveBatchController(config, 200, 5.seconds)
+    controller.batchProcessed(succeeded = true, 1.second, backlog = 100)
+    controller.batchSize shouldBe 200
+  }
+
+  it should "halve the batch size when a batch is slow or fails" in {
+    val controller = new AdaptiveBatchController(config, 200, 5.seconds)
+    controller.batchProcessed(succeeded = true, 6.seconds, backlog = 500)
+    controller.batchSize shouldBe 100
+    controller.batchProcessed(succeeded = false, 1.second, backlog = 500)
+    controller.batchSize shouldBe 50
+  }
+
+  it should "keep the batch size within its bounds" in {
+    val controller = new AdaptiveBatchController(config, 15, 5.seconds)
+    controller.batchProcessed(succeeded = false, 1.second, backlog = 0)
+    controller.batchSize shouldBe 10
+
+    val large = new AdaptiveBatchController(config, 995, 5.seconds)
+    large.batchProcessed(succeeded = true, 1.second, backlog = 5000)
+    large.batchSize shouldBe 1000
+  }
+
+  it should "lengthen the flush interval when the timer only finds small batches" in {
+    val controller = new AdaptiveBatchController(config, 200, 5.seconds)
+    controller.batchFlushed(weight = 10, byTimer = true, longestQueueLatency = 5.seconds) shouldBe true
+    controller.flushRate shouldBe 5500.milliseconds
+    controller.batchFlushed(weight = 200, byTimer = false, longestQueueLatency = 1.second) shouldBe false
+    controller.flushRate shouldBe 5500.milliseconds
+  }
+
+  it should "halve the flush interval when commands wait longer than the target" in {
+    val controller = new AdaptiveBatchController(config, 200, 5.seconds)
+    controller.batchFlushed(weight = 10, byTimer = true, longestQueueLatency = 11.seconds) shouldBe true
+    controller.flushRate shouldBe 2500.milliseconds
+  }
+
+  it should "keep the flush interval within its bounds" in {
+    val controller = new AdaptiveBatchController(config, 200, 600.milliseconds)
+    controller.batchFlushed(weight = 10, byTimer = true, longestQueueLatency = 11.seconds) shouldBe true
+    controller.flushRate shouldBe 500.milliseconds
+    controller.batchFlushed(weight = 10, byTimer = true, longestQueueLatency = 11.seconds) shouldBe false
+  }
+
+  behavior of "AdaptiveBatchingConfig"
+
+  it should "only be read when enabled" in {
+    AdaptiveBatchingConfig.fromConfig(ConfigFactory.empty, 200, 5.seconds) shouldBe None
+    AdaptiveBatchingConfig.fromConfig(
+      ConfigFactory.parseString("adaptive-batching.enabled = false"), 200, 5.seconds
+    ) shouldBe None
+  }
+
+  it should "default its bounds around the static batch size and flush rate" in {
+    val adaptive = AdaptiveBatchingConfig.fromConfig(
+      ConfigFactory.parseString("adaptive-batching { enabled = true, max-batch-size = 500 }"), 200, 5.seconds
+    )
+    adaptive shouldBe Option(AdaptiveBatchingConfig(
+      minBatchSize = 20,
+      maxBatchSize = 500,
+      batchSizeIncrement = 20,
+      minFlushRate = 500.milliseconds,
+      maxFlushRate = 50.seconds,
+      flushRateIncrement = 500.milliseconds,
+      decreaseFactor = 0.5,
+      targetCommitLatency = 5.seconds,
+      targetQueueLatency = 10.seconds,
+    ))
+  }
+}
@@ -189,8 +189,35 @@ class BatchActorSpec extends TestKitSuite with AnyFlatSpecLike with Matchers wit
     }
   }
 
-  class BatchActorTest(processingTime: FiniteDuration = Duration.Zero, fail: Boolean = false) extends BatchActor[String](10.hours, 10) {
+  it should "shrink its batch size when adaptive and processing fails" in {
+    val adaptive = AdaptiveBatchingConfig(
+      minBatchSize = 2,
+      maxBatchSize = 40,
+      batchSizeIncrement = 1,
+      minFlushRate = 1.hour,
+      maxFlushRate = 100.hours,
+      flushRateIncrement = 1.hour,
+      decreaseFactor = 0.5,
+      targetCommitLatency = 1.minute,
+      targetQueueLatency = 1.minute,
+    )
+    val batch = TestFSMRef(new BatchActorTest(Duration.Zero, true, Option(adaptive)))
+    batch ! "bonjour"
+    batch ! "hello"
+
+    eventually {
+      // "bonjour" fails with a batch size of 10, then "hello" with a batch size of 5
+      batch.stateName shouldBe WaitingToProcess
+      batch.stateData.weight shouldBe 0
+      batch.underlyingActor.adaptedBatchSize shouldBe 2
+    }
+  }
+
+  class BatchActorTest(processingTime: FiniteDuration = Duration.Zero,
+                       fail: Boolean = false,
+                       override protected val adaptiveBatching: Option[AdaptiveBatchingConfig] = None) extends BatchActor[String](10.hours, 10) {
     var processed: Vector[String] = Vector.empty
+    def adaptedBatchSize: Int = currentBatchSize
     override def commandToData(snd: ActorRef) = {
       case command: String => command
     }
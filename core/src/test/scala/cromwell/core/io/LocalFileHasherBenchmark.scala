@@ -0,0 +1,51 @@
+package cromwell.core.io
+
+import java.nio.file.{Files, Path => NioPath}
+
+import cromwell.core.io.LocalFileHasher._
+import org.scalameter.api._
+import org.scalameter.picklers.Implicits._
+import org.scalameter.reporting.RegressionReporter.Historian.Window
+import org.scalameter.reporting.RegressionReporter.Tester.Accepter
+
+/**
+  * Compares the hashing algorithms available for local files, streamed or chunked in parallel.
+  * This is not run automatically by "sbt test". To run this test specifically, either use intellij integration, or run
+  * sbt "core/benchmark:testOnly cromwell.core.io.LocalFileHasherBenchmark"
+  */
+object LocalFileHasherBenchmark extends Bench[Double] {
+  /* Benchmark configuration */
+  lazy val measurer = new Measurer.Default
+  lazy val executor = LocalExecutor(new Executor.Warmer.Default, Aggregator.average, measurer)
+  lazy val reporter = new RegressionReporter[Double](Accepter(), Window(0))
+  lazy val persistor = Persistor.None
+
+  private val ChunkSize = 64L * 1024 * 1024
+  private val parallelism = Runtime.getRuntime.availableProcessors()
+
+  // File sizes in MB
+  private val sizes: Gen[Int] = Gen.range("size")(from = 256, upto = 1024, hop = 256)
+
+  private def files(sizes: Gen[Int]): Gen[NioPath] = sizes map { size =>
+    val file = Files.createTempFile("local-file-hasher-benchmark", ".bin")
+    file.toFile.deleteOnExit()
+    val block = Array.tabulate[Byte](1024 * 1024)(_.toByte)
+    val output = Files.newOutputStream(file)
+    try (1 to size) foreach { _ => output.write(block) } finally output.close()
+    file
+  }
+
+  performance of "LocalFileHasher" in {
+    Algorithms foreach { algorithm =>
+      val streaming = new LocalFileHasher(LocalHashingConfig(algorithm, None, 1))
+      measure method s"${algorithm.name} streaming" in {
+        using(files(sizes)) in { streaming.hash }
+      }
+
+      val chunked = new LocalFileHasher(LocalHashingConfig(algorithm, Option(ChunkSize), parallelism))
+      measure method s"${algorithm.name} parallel chunks" in {
+        using(files(sizes)) in { chunked.hash }
+      }
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package cromwell.core.io
+
+import common.assertion.CromwellTimeoutSpec
+import cromwell.core.io.LocalFileHasher._
+import cromwell.core.path.DefaultPathBuilder
+import org.apache.commons.codec.digest.DigestUtils
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+class LocalFileHasherSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers {
+
+  behavior of "LocalFileHasher"
+
+  private val content = "hello world\n" * 10000
+  private lazy val file = {
+    val path = DefaultPathBuilder.createTempFile()
+    path.write(content)
+    path.nioPath
+  }
+
+  it should "produce the same md5 as before when not chunking" in {
+    new LocalFileHasher(DefaultConfig).hash(file) shouldBe DigestUtils.md5Hex(content)
+  }
+
+  it should "record the algorithm in the hash" in {
+    new LocalFileHasher(LocalHashingConfig(Crc32c, None, 1)).hash(file) should startWith("crc32c:")
+    new LocalFileHasher(LocalHashingConfig(Xxh64, None, 1)).hash(file) should fullyMatch regex "xxh64:[0-9a-f]{16}"
+    new LocalFileHasher(LocalHashingConfig(Md5, Option(1024L), 1)).hash(file) should startWith("md5-tree-1024:")
+  }
+
+  it should "produce the same chunked hash whatever the parallelism" in {
+    Algorithms foreach { algorithm =>
+      val sequential = new LocalFileHasher(LocalHashingConfig(algorithm, Option(1000L), 1)).hash(file)
+      val parallel = new LocalFileHasher(LocalHashingConfig(algorithm, Option(1000L), 4)).hash(file)
+      parallel shouldBe sequential
+    }
+  }
+
+  it should "hash empty files" in {
+    val empty = DefaultPathBuilder.createTempFile().nioPath
+    new LocalFileHasher(LocalHashingConfig(Xxh64, Option(1000L), 2)).hash(empty) should startWith("xxh64-tree-1000:")
+  }
+
+  it should "reject chunks that can't be memory mapped" in {
+    an[IllegalArgumentException] shouldBe thrownBy LocalHashingConfig(Crc32c, Option(4L * 1024 * 1024 * 1024), 1)
+  }
+}
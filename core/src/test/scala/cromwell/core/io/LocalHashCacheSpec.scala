@@ -0,0 +1,108 @@
+package cromwell.core.io
+
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+import java.time.Instant
+
+import com.typesafe.config.ConfigFactory
+import common.assertion.CromwellTimeoutSpec
+import cromwell.core.io.LocalHashCache.LocalHashCacheStats
+import cromwell.core.path.{DefaultPathBuilder, Path}
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.util.{Failure, Success, Try}
+
+class LocalHashCacheSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers {
+  behavior of "LocalHashCache"
+
+  private def newJournal(): Path = DefaultPathBuilder.createTempDirectory("LocalHashCacheSpec")./("journal")
+
+  private def newFile(content: String): Path = DefaultPathBuilder.createTempFile("LocalHashCacheSpec").write(content)
+
+  private class CountingHasher {
+    var count = 0
+    def hash(file: Path): Try[String] = {
+      count += 1
+      Success(file.contentAsString.reverse)
+    }
+  }
+
+  it should "only compute the hash of an unchanged file once" in {
+    val cache = new LocalHashCache(Option(newJournal().nioPath), 10)
+    val file = newFile("steak")
+    val hasher = new CountingHasher
+
+    cache.getOrCompute("strategy", file)(hasher.hash(file)) shouldBe Success("kaets")
+    cache.getOrCompute("strategy", file)(hasher.hash(file)) shouldBe Success("kaets")
+    hasher.count shouldBe 1
+    cache.stats shouldBe LocalHashCacheStats(hits = 1, misses = 1, entries = 1)
+  }
+
+  it should "compute the hash again when the file changed or the strategy differs" in {
+    val cache = new LocalHashCache(Option(newJournal().nioPath), 10)
+    val file = newFile("steak")
+    val hasher = new CountingHasher
+
+    cache.getOrCompute("strategy", file)(hasher.hash(file))
+    cache.getOrCompute("other strategy", file)(hasher.hash(file))
+    hasher.count shouldBe 2
+
+    file.write("salad")
+    Files.setLastModifiedTime(file.nioPath, FileTime.from(Instant.now.plusSeconds(10)))
+    cache.getOrCompute("strategy", file)(hasher.hash(file)) shouldBe Success("dalas")
+    hasher.count shouldBe 3
+  }
+
+  it should "not cache failures" in {
+    val cache = new LocalHashCache(Option(newJournal().nioPath), 10)
+    val file = newFile("steak")
+    val failure = Failure(new RuntimeException("boom"))
+
+    cache.getOrCompute("strategy", file)(failure) shouldBe failure
+    cache.stats.entries shouldBe 0
+  }
+
+  it should "keep its entries across restarts" in {
+    val journal = newJournal()
+    val file = newFile("steak")
+    new LocalHashCache(Option(journal.nioPath), 10).getOrCompute("strategy", file)(Success("hash"))
+    // Simulates a line cut short by an abrupt stop
+    journal.appendLine("strategy\t/truncated\t(dev=1,ino=2)\t5\t1\tha")
+
+    val restarted = new LocalHashCache(Option(journal.nioPath), 10)
+    restarted.stats.entries shouldBe 1
+    restarted.getOrCompute("strategy", file)(fail("The hash should have been cached")) shouldBe Success("hash")
+  }
+
+  it should "evict the least recently used entries and compact its journal" in {
+    val journal = newJournal()
+    val cache = new LocalHashCache(Option(journal.nioPath), 2)
+    val files = List("a", "b", "c", "d") map newFile
+
+    files foreach { file => cache.getOrCompute("strategy", file)(Success(file.contentAsString)) }
+    cache.stats.entries shouldBe 2
+    // The journal reached twice the maximum number of entries and was rewritten
+    journal.lines.size shouldBe 2
+    new LocalHashCache(Option(journal.nioPath), 2).getOrCompute("strategy", files.head)(Success("recomputed")) shouldBe Success("recomputed")
+  }
+
+  it should "work without a journal" in {
+    val cache = new LocalHashCache(None, 1)
+    val files = List("a", "b") map newFile
+    val hasher = new CountingHasher
+
+    files foreach { file => cache.getOrCompute("strategy", file)(hasher.hash(file)) }
+    cache.getOrCompute("strategy", files(1))(hasher.hash(files(1))) shouldBe Success("b")
+    hasher.count shouldBe 2
+    cache.stats shouldBe LocalHashCacheStats(hits = 1, misses = 2, entries = 1)
+  }
+
+  it should "only be created when configured" in {
+    LocalHashCache.fromConfig(ConfigFactory.parseString("""hashing-strategy: "md5"""")) shouldBe None
+    val journal = newJournal()
+    LocalHashCache.fromConfig(ConfigFactory.parseString(s"""hash-cache.path: "${journal.pathAsString}"""")) should not be empty
+    LocalHashCache.fromConfig(ConfigFactory.parseString(s"""hash-cache { path: "${journal.pathAsString}", enabled: false }""")) shouldBe None
+    LocalHashCache.fromConfig(ConfigFactory.parseString("hash-cache.max-entries: 10")) should not be empty
+  }
+}
@@ -159,6 +159,22 @@ object DiffResultFilter {
     }
   }
 
+  /**
+    * Returns true if the object is a view, or a column of a view. Views are only created by liquibase, as Slick only
+    * generates tables.
+    *
+    * @param database The source database.
+    * @param databaseObject The database object.
+    * @return True if the object is a view or a column of a view.
+    */
+  def isView(database: Database, databaseObject: DatabaseObject): Boolean = {
+    databaseObject match {
+      case _: View => true
+      case column: Column => column.getRelation.isInstanceOf[View]
+      case _ => false
+    }
+  }
+
   /**
     * Returns true if the object is liquibase database object.
     *
@@ -216,6 +232,13 @@ object DiffResultFilter {
       */
     def filterLiquibaseObjects = filter(diffResult, Seq.empty, isLiquibaseObject)
 
+    /**
+      * Filters views from a diff result.
+      *
+      * @return The diff result without views.
+      */
+    def filterViews = filter(diffResult, Seq.empty, isView)
+
     /**
       * Filters changed objects. Filters that return false are removed.
       *
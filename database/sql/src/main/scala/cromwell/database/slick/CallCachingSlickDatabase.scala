@@ -10,6 +10,8 @@ import com.rms.miu.slickcats.DBIOInstances._
 import cromwell.database.sql._
 import cromwell.database.sql.joins.CallCachingJoin
 import cromwell.database.sql.tables._
+import slick.basic.DatabasePublisher
+import slick.jdbc.{MySQLProfile, PostgresProfile, ResultSetConcurrency, ResultSetType}
 
 import scala.concurrent.{ExecutionContext, Future}
 
@@ -42,7 +44,7 @@ trait CallCachingSlickDatabase extends CallCachingSqlDatabase {
     def aggregationAssigner(id: Int, aggregation: CallCachingAggregationEntry) = aggregation.copy(callCachingEntryId = Option(id))
 
     val action = for {
-      entryIds <- dataAccess.callCachingEntryIdsAutoInc ++= entries
+      entryIds <- insertCallCachingEntries(entries)
 
       hashEntries = assignEntryIdsToChildren(entryIds, hashes, hashAssigner)
       _ <- batchInsert(hashEntries, dataAccess.callCachingHashEntries)
@@ -59,6 +61,18 @@ trait CallCachingSlickDatabase extends CallCachingSqlDatabase {
     runTransaction(action)
   }
 
+  /*
+    On MySQL and PostgreSQL the entries are inserted in a single batch returning their ids, which MySQL sends as a
+    multi-row insert with `rewriteBatchedStatements=true`. Other DBMS insert the entries one by one.
+   */
+  private def insertCallCachingEntries(entries: Seq[CallCachingEntry])(implicit ec: ExecutionContext): DBIO[Seq[Int]] = {
+    dataAccess.driver match {
+      case MySQLProfile | PostgresProfile =>
+        createBatchInsertReturningIds("CallCachingEntry", dataAccess.callCachingEntriesCompiledInsert, "CALL_CACHING_ENTRY_ID", entries)
+      case _ => dataAccess.callCachingEntryIdsAutoInc ++= entries
+    }
+  }
+
   case class PrefixAndLength(prefix: String, length: Int)
 
   private def prefixesAndLengths(prefixes: List[String]): List[PrefixAndLength] = {
@@ -85,6 +99,36 @@ trait CallCachingSlickDatabase extends CallCachingSqlDatabase {
     runTransaction(action)
   }
 
+  override def baseAggregationsWithCallCachingEntries(baseAggregationHashes: Set[String], callCachePathPrefixes: Option[List[String]])
+                                                     (implicit ec: ExecutionContext): Future[Set[String]] = {
+    val action = callCachePathPrefixes match {
+      case None => dataAccess.baseAggregationsWithCallCachingEntries(baseAggregationHashes).result
+      case Some(ps) =>
+        val one :: two :: three :: _ = prefixesAndLengths(ps)
+        dataAccess.baseAggregationsWithCallCachingEntriesWithCallCachePrefix(
+          baseAggregationHashes,
+          one.prefix, one.length,
+          two.prefix, two.length,
+          three.prefix, three.length).result
+    }
+    runTransaction(action).map(_.toSet)
+  }
+
+  override def streamReusableBaseAggregations(afterCallCachingEntryId: Int, lastCallCachingEntryId: Int): DatabasePublisher[String] = {
+    val action = dataAccess.reusableBaseAggregations((afterCallCachingEntryId, lastCallCachingEntryId))
+      .result
+      .withStatementParameters(
+        rsType = ResultSetType.ForwardOnly,
+        rsConcurrency = ResultSetConcurrency.ReadOnly,
+        // Magic number alert: fetchSize is set to MIN_VALUE for MySQL to stream rather than cache in memory first.
+        fetchSize = Integer.MIN_VALUE)
+    database.stream(action)
+  }
+
+  override def maxCallCachingEntryId()(implicit ec: ExecutionContext): Future[Option[Int]] = {
+    runTransaction(dataAccess.maxCallCachingEntryId.result)
+  }
+
   override def findCacheHitForAggregation(baseAggregationHash: String, inputFilesAggregationHash: Option[String], callCachePathPrefixes: Option[List[String]], hitNumber: Int)
                                          (implicit ec: ExecutionContext): Future[Option[Int]] = {
 
@@ -0,0 +1,25 @@
+package cromwell.database.slick
+
+import java.util
+
+import scala.collection.JavaConverters._
+
+/**
+  * The dictionary ids of the most recently written metadata keys or call FQNs, so that only the strings not seen
+  * recently are looked up in or added to their dictionary table.
+  */
+private[slick] class MetadataDictionaryCache(maxEntries: Int) {
+  private val ids = new util.LinkedHashMap[String, Int](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: util.Map.Entry[String, Int]): Boolean = size() > maxEntries
+  }
+
+  /** Returns the cached ids of `values`, and the values not in the cache. */
+  def lookup(values: Set[String]): (Map[String, Int], Set[String]) = ids.synchronized {
+    val (cached, missing) = values.partition(ids.containsKey)
+    (cached.map(value => value -> ids.get(value)).toMap, missing)
+  }
+
+  def add(valueIds: Map[String, Int]): Unit = ids.synchronized {
+    ids.putAll(valueIds.asJava)
+  }
+}
@@ -1,6 +1,6 @@
 package cromwell.database.slick
 
-import java.sql.Timestamp
+import java.sql.{SQLException, SQLIntegrityConstraintViolationException, Timestamp}
 
 import cats.syntax.functor._
 import cats.instances.future._
@@ -10,8 +10,9 @@ import cromwell.database.sql.MetadataSqlDatabase
 import cromwell.database.sql.SqlConverters._
 import cromwell.database.sql.joins.{CallOrWorkflowQuery, CallQuery, MetadataJobQueryValue, WorkflowQuery}
 import cromwell.database.sql.tables.{CustomLabelEntry, InformationSchemaEntry, MetadataEntry, WorkflowMetadataSummaryEntry}
+import net.ceedubs.ficus.Ficus._
 import slick.basic.DatabasePublisher
-import slick.jdbc.{ResultSetConcurrency, ResultSetType}
+import slick.jdbc.{MySQLProfile, ResultSetConcurrency, ResultSetType}
 
 import scala.concurrent.{ExecutionContext, Future}
 import scala.concurrent.duration._
@@ -22,6 +23,18 @@ object MetadataSlickDatabase {
     new MetadataSlickDatabase(databaseConfig)
   }
 
+  // The last digit of the workflow UUIDs, by which the summary queue is partitioned
+  val WorkflowIdHexDigits = "0123456789abcdef"
+
+  // The most workflow UUIDs bound in one query when looking up the labels of a page of workflows
+  val WorkflowsLabelsBatchSize = 1000
+
+  /** Whether `exception` is a constraint violation, such as a duplicate key. All drivers use the SQLState class 23. */
+  def isIntegrityConstraintViolation(exception: SQLException): Boolean = exception match {
+    case _: SQLIntegrityConstraintViolationException => true
+    case _ => Option(exception.getSQLState).exists(_.startsWith("23"))
+  }
+
   case class SummarizationPartitionedMetadata(nonSummarizableMetadata: Seq[MetadataEntry],
                                               summarizableMetadata: Seq[MetadataEntry])
 
@@ -55,7 +68,19 @@ class MetadataSlickDatabase(originalDatabaseConfig: Config)
     with MetadataSqlDatabase
     with SummaryStatusSlickDatabase
     with SummaryQueueSlickDatabase {
-  override lazy val dataAccess = new MetadataDataAccessComponent(slickConfig.profile)
+  override lazy val dataAccess = new MetadataDataAccessComponent(slickConfig.profile, dictionaryDecoding)
+
+  private lazy val dictionaryEncoding = databaseConfig.getOrElse("dictionary-encoding", false)
+  // Reading through the decoding view costs a join, only needed once entries were written with dictionary encoding
+  private lazy val dictionaryDecoding = dictionaryEncoding || databaseConfig.getOrElse("dictionary-decoding", false)
+  private lazy val dictionaryCacheSize = databaseConfig.getOrElse("dictionary-cache-size", 100000)
+  private lazy val metadataKeyIdCache = new MetadataDictionaryCache(dictionaryCacheSize)
+  private lazy val callFqnIdCache = new MetadataDictionaryCache(dictionaryCacheSize)
+
+  override lazy val metadataKeyLikeIsCaseInsensitive: Boolean = dataAccess.driver match {
+    case MySQLProfile => true
+    case _ => false
+  }
 
   import dataAccess.driver.api._
   import MetadataSlickDatabase._
@@ -88,10 +113,13 @@ class MetadataSlickDatabase(originalDatabaseConfig: Config)
         labelMetadataKey)
 
     // These entries also require a write to the summary queue.
-    def writeSummarizable(): Future[Unit] = if (partitioned.summarizableMetadata.isEmpty) Future.successful(()) else {
+    def writeSummarizable(encoder: Option[MetadataEntry => dataAccess.EncodedMetadataEntry]): Future[Unit] = if (partitioned.summarizableMetadata.isEmpty) Future.successful(()) else {
       val batchesToWrite = partitioned.summarizableMetadata.grouped(insertBatchSize).toList
       val insertActions = batchesToWrite.map { batch =>
-        val insertMetadata = dataAccess.metadataEntryIdsAutoInc ++= batch
+        val insertMetadata = encoder match {
+          case Some(encode) => dataAccess.encodedMetadataEntryIdsAutoInc ++= batch.map(encode)
+          case None => dataAccess.metadataEntryIdsAutoInc ++= batch
+        }
         insertMetadata.flatMap(ids => writeSummaryQueueEntries(ids))
       }
       runTransaction(DBIO.sequence(insertActions)).void
@@ -99,17 +127,71 @@ class MetadataSlickDatabase(originalDatabaseConfig: Config)
 
     // Non-summarizable metadata that only needs to go to the metadata table can be written much more efficiently
     // than summarizable metadata.
-    def writeNonSummarizable(): Future[Unit] = if (partitioned.nonSummarizableMetadata.isEmpty) Future.successful(()) else {
-      val action = DBIO.sequence(partitioned.nonSummarizableMetadata.grouped(insertBatchSize).map(dataAccess.metadataEntries ++= _))
+    def writeNonSummarizable(encoder: Option[MetadataEntry => dataAccess.EncodedMetadataEntry]): Future[Unit] = if (partitioned.nonSummarizableMetadata.isEmpty) Future.successful(()) else {
+      val batchesToWrite = partitioned.nonSummarizableMetadata.grouped(insertBatchSize)
+      val action = encoder match {
+        case Some(encode) => DBIO.sequence(batchesToWrite.map(batch => dataAccess.encodedMetadataEntries ++= batch.map(encode)))
+        case None => DBIO.sequence(batchesToWrite.map(dataAccess.metadataEntriesTable ++= _))
+      }
       runLobAction(action).void
     }
 
     for {
-      _ <- writeSummarizable()
-      _ <- writeNonSummarizable()
+      encoder <- if (dictionaryEncoding) dictionaryEncoder(metadataEntries).map(Option(_)) else Future.successful(None)
+      _ <- writeSummarizable(encoder)
+      _ <- writeNonSummarizable(encoder)
     } yield ()
   }
 
+  /**
+    * Interns the metadata keys and call FQNs of the entries into their dictionaries, and returns the function encoding
+    * the entries with their references.
+    */
+  private def dictionaryEncoder(metadataEntries: Iterable[MetadataEntry])
+                               (implicit ec: ExecutionContext): Future[MetadataEntry => dataAccess.EncodedMetadataEntry] = {
+    val metadataKeys = metadataEntries.map(_.metadataKey).toSet
+    val callFqns = metadataEntries.flatMap(_.callFullyQualifiedName).toSet
+
+    for {
+      metadataKeyIds <- intern(metadataKeys, metadataKeyIdCache)(
+        keys => dataAccess.metadataKeyDictionaryEntriesForMetadataKeys(keys).map(e => (e.metadataKey, e.metadataKeyDictionaryEntryId)).result,
+        key => dataAccess.metadataKeyDictionaryEntries.map(_.metadataKey) += key,
+      )
+      callFqnIds <- intern(callFqns, callFqnIdCache)(
+        fqns => dataAccess.callFqnDictionaryEntriesForCallFqns(fqns).map(e => (e.callFqn, e.callFqnDictionaryEntryId)).result,
+        fqn => dataAccess.callFqnDictionaryEntries.map(_.callFqn) += fqn,
+      )
+    } yield { (metadataEntry: MetadataEntry) =>
+      dataAccess.encodeMetadataEntry(
+        metadataEntry,
+        metadataKeyIds.get(metadataEntry.metadataKey),
+        metadataEntry.callFullyQualifiedName.flatMap(callFqnIds.get),
+      )
+    }
+  }
+
+  /**
+    * Returns the dictionary ids of `values`, adding the values not in the dictionary yet. Each new value is added on
+    * its own, as another Cromwell writing the same value may add it first and fail the insert on the unique
+    * constraint, which is ignored. A value whose id can't be found is written inline by the caller.
+    */
+  private def intern(values: Set[String], cache: MetadataDictionaryCache)
+                    (lookup: Set[String] => DBIO[Seq[(String, Int)]], insert: String => DBIO[Int])
+                    (implicit ec: ExecutionContext): Future[Map[String, Int]] = {
+    val (cached, missing) = cache.lookup(values)
+    if (missing.isEmpty) Future.successful(cached) else {
+      for {
+        found <- runTransaction(lookup(missing)).map(_.toMap)
+        notFound = missing -- found.keySet
+        _ <- Future.traverse(notFound.toList) { value =>
+          runTransaction(insert(value)).recover { case exception: SQLException if isIntegrityConstraintViolation(exception) => 0 }
+        }
+        added <- if (notFound.isEmpty) Future.successful(Map.empty[String, Int]) else runTransaction(lookup(notFound)).map(_.toMap)
+        _ = cache.add(found ++ added)
+      } yield cached ++ found ++ added
+    }
+  }
+
   override def metadataEntryExists(workflowExecutionUuid: String)(implicit ec: ExecutionContext): Future[Boolean] = {
     val action = dataAccess.metadataEntryExistsForWorkflowExecutionUuid(workflowExecutionUuid).result
     runTransaction(action)
@@ -128,8 +210,30 @@ class MetadataSlickDatabase(originalDatabaseConfig: Config)
   }
 
   override def streamMetadataEntries(workflowExecutionUuid: String): DatabasePublisher[MetadataEntry] = {
-    val action = dataAccess.metadataEntriesForWorkflowSortedById(workflowExecutionUuid)
-      .result
+    streamEntries(dataAccess.metadataEntriesForWorkflowSortedById(workflowExecutionUuid).result)
+  }
+
+  override def streamMetadataEntriesGroupedByCall(workflowExecutionUuid: String): DatabasePublisher[MetadataEntry] = {
+    streamEntries(dataAccess.metadataEntriesForWorkflowSortedByCall(workflowExecutionUuid).result)
+  }
+
+  override def queryMetadataEntriesPage(workflowExecutionUuid: String,
+                                        afterMetadataEntryId: Option[Long],
+                                        callFullyQualifiedName: Option[String],
+                                        jobIndex: Option[Int],
+                                        jobAttempt: Option[Int],
+                                        metadataKeyPrefix: Option[String],
+                                        limit: Int,
+                                        timeout: Duration)
+                                       (implicit ec: ExecutionContext): Future[Seq[MetadataEntry]] = {
+    val action = dataAccess.metadataEntriesPage(
+      workflowExecutionUuid, afterMetadataEntryId, callFullyQualifiedName, jobIndex, jobAttempt, metadataKeyPrefix, limit
+    ).result
+    runTransaction(action, timeout = timeout)
+  }
+
+  private def streamEntries(query: StreamingDBIO[Seq[MetadataEntry], MetadataEntry]): DatabasePublisher[MetadataEntry] = {
+    val action = query
       .withStatementParameters(
         rsType = ResultSetType.ForwardOnly,
         rsConcurrency = ResultSetConcurrency.ReadOnly,
@@ -314,12 +418,26 @@ class MetadataSlickDatabase(originalDatabaseConfig: Config)
 
   override def summarizeIncreasing(labelMetadataKey: String,
                                    limit: Int,
+                                   partition: Int,
+                                   partitionCount: Int,
                                    buildUpdatedSummary:
                                    (Option[WorkflowMetadataSummaryEntry], Seq[MetadataEntry])
                                      => WorkflowMetadataSummaryEntry)
                                   (implicit ec: ExecutionContext): Future[Long] = {
+    require(partitionCount >= 1 && partitionCount <= WorkflowIdHexDigits.length,
+      s"Summarization partition count must be between 1 and ${WorkflowIdHexDigits.length}: $partitionCount")
+    val rawMetadataEntriesAction = if (partitionCount == 1) {
+      dataAccess.metadataEntriesToSummarizeQuery(limit.toLong).result
+    } else {
+      val workflowIdSuffixes = WorkflowIdHexDigits.zipWithIndex collect {
+        case (digit, index) if index % partitionCount == partition => digit
+      }
+      // Cromwell writes lower case UUIDs, but don't leave upper case ones unsummarized
+      val suffixes = workflowIdSuffixes.flatMap(digit => Set(digit.toString, digit.toString.toUpperCase)).toSet
+      dataAccess.metadataEntriesToSummarizeForWorkflowIdSuffixes(limit.toLong, suffixes).result
+    }
     val action = for {
-      rawMetadataEntries <- dataAccess.metadataEntriesToSummarizeQuery(limit.toLong).result
+      rawMetadataEntries <- rawMetadataEntriesAction
       _ <-
         buildMetadataSummaryFromRawMetadataAndWriteToDb(
           rawMetadataEntries = rawMetadataEntries,
@@ -401,18 +519,28 @@ class MetadataSlickDatabase(originalDatabaseConfig: Config)
     runTransaction(action).map(_.toMap)
   }
 
+  override def getWorkflowsLabels(workflowExecutionUuids: Set[String])(implicit ec: ExecutionContext): Future[Map[String, Map[String, String]]] = {
+    // Bound the number of parameters of each query for large pages
+    val action = DBIO.sequence(workflowExecutionUuids.grouped(WorkflowsLabelsBatchSize).toList map { batch =>
+      dataAccess.labelsForWorkflowExecutionUuids(batch).result
+    })
+    runTransaction(action) map { seqs => groupLabelsByWorkflow(seqs.flatten) }
+  }
+
   override def getRootAndSubworkflowLabels(rootWorkflowExecutionUuid: String)(implicit ec: ExecutionContext): Future[Map[String, Map[String, String]]] = {
     val action = dataAccess.labelsForWorkflowAndSubworkflows(rootWorkflowExecutionUuid).result
+    runTransaction(action) map groupLabelsByWorkflow
+  }
+
+  private def groupLabelsByWorkflow(labelEntries: Seq[(String, String, String)]): Map[String, Map[String, String]] = {
     // An empty Map of String workflow IDs to an inner Map of label keys to label values.
     // The outer Map has a default value so any request for a workflow ID not already present
     // will return an empty inner Map.
     val zero: Map[String, Map[String, String]] = Map.empty.withDefaultValue(Map.empty)
 
-    runTransaction(action) map { seq =>
-      seq.foldLeft(zero) { case (labels, (id, labelKey, labelValue)) =>
-        val labelsForId = labels(id)
-        labels + (id -> (labelsForId + (labelKey -> labelValue)))
-      }
+    labelEntries.foldLeft(zero) { case (labels, (id, labelKey, labelValue)) =>
+      val labelsForId = labels(id)
+      labels + (id -> (labelsForId + (labelKey -> labelValue)))
     }
   }
 
@@ -463,12 +591,27 @@ class MetadataSlickDatabase(originalDatabaseConfig: Config)
   override def deleteAllMetadataForWorkflowAndUpdateArchiveStatus(workflowId: String, newArchiveStatus: Option[String])(implicit ec: ExecutionContext): Future[Int] = {
     runTransaction {
       for {
-        numDeleted <- dataAccess.metadataEntriesForWorkflowSortedById(workflowId).delete
+        numDeleted <- dataAccess.metadataEntriesToDeleteForWorkflowExecutionUuid(workflowId).delete
         _ <- dataAccess.metadataArchiveStatusByWorkflowId(workflowId).update(newArchiveStatus)
       } yield numDeleted
     }
   }
 
+  override def deleteMetadataEntriesChunkForWorkflow(workflowExecutionUuid: String, afterMetadataEntryId: Long, chunkSize: Int)
+                                                    (implicit ec: ExecutionContext): Future[Option[(Int, Long)]] = {
+    val action = for {
+      chunkEnd <- dataAccess.metadataEntryChunkEndForWorkflowExecutionUuid(workflowExecutionUuid, afterMetadataEntryId, chunkSize).result
+      deleted <- chunkEnd match {
+        case Some(lastMetadataEntryId) =>
+          dataAccess.metadataEntriesToDeleteForWorkflowExecutionUuidInRange(workflowExecutionUuid, afterMetadataEntryId, lastMetadataEntryId)
+            .delete
+            .map(deleteCount => Option((deleteCount, lastMetadataEntryId)))
+        case None => DBIO.successful(None)
+      }
+    } yield deleted
+    runTransaction(action)
+  }
+
   override def getRootWorkflowId(workflowId: String)(implicit ec: ExecutionContext): Future[Option[String]] = {
     runAction(
       dataAccess.rootWorkflowId(workflowId).result.headOption
@@ -486,6 +629,11 @@ class MetadataSlickDatabase(originalDatabaseConfig: Config)
       countSummaryQueueEntries()
     )
 
+  override def getSummaryQueueOldestTimestamp()(implicit ec: ExecutionContext): Future[Option[Timestamp]] =
+    runAction(
+      dataAccess.summaryQueueOldestTimestamp.result.headOption
+    )
+
   override def getMetadataArchiveStatusAndEndTime(workflowId: String)(implicit ec: ExecutionContext):  Future[(Option[String], Option[Timestamp])] = {
     val action = dataAccess.metadataArchiveStatusAndEndTimeByWorkflowId(workflowId).result.headOption
     runTransaction(action).map(_.getOrElse((None, None)))
@@ -239,6 +239,39 @@ abstract class SlickDatabase(override val originalDatabaseConfig: Config) extend
     }(actionExecutionContext)
   }
 
+  /*
+    * Inserts the provided values in a single batch and returns the ids generated in `idColumn`, in the order of the values.
+    * Slick runs `returning ++=` as one statement per row, this sends all the rows at once.
+    * Only for DBMS whose drivers return the keys generated by a batch.
+   */
+  protected[this] def createBatchInsertReturningIds[T](description: String,
+                                                      compiled: dataAccess.driver.JdbcCompiledInsert,
+                                                      idColumn: String,
+                                                      values: Seq[T]
+                                                     )(implicit ec: ExecutionContext): DBIO[Seq[Int]] = {
+    SimpleDBIO { context =>
+      context.session.withPreparedInsertStatement[Seq[Int]](compiled.standardInsert.sql, Array(idColumn)) { st: PreparedStatement =>
+        values.foreach { value =>
+          st.clearParameters()
+          compiled.standardInsert.converter.set(value, st)
+          st.addBatch()
+        }
+        st.executeBatch()
+        val keys = st.getGeneratedKeys
+        val ids = Vector.newBuilder[Int]
+        try {
+          while (keys.next()) ids += keys.getInt(1)
+        } finally keys.close()
+        ids.result()
+      }
+    } flatMap { ids =>
+      if (ids.size == values.size) DBIO.successful(ids)
+      else DBIO.failed(new RuntimeException(
+        s"$description inserted ${values.size} rows but the database returned ${ids.size} generated ids"
+      ))
+    }
+  }
+
   /*
     * Upsert the provided values in batch.
     * Fails the query if one or more upsert failed.
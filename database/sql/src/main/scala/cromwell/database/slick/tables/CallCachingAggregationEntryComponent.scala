@@ -69,6 +69,46 @@ trait CallCachingAggregationEntryComponent {
         (detritusPath.substring(0, prefix3Length) === prefix3)} yield ()).exists
   )
 
+  val reusableBaseAggregations = Compiled(
+    (afterCallCachingEntryId: Rep[Int], lastCallCachingEntryId: Rep[Int]) => for {
+      callCachingEntry <- callCachingEntries
+      if callCachingEntry.callCachingEntryId > afterCallCachingEntryId
+      if callCachingEntry.callCachingEntryId <= lastCallCachingEntryId
+      if callCachingEntry.allowResultReuse
+      callCachingAggregationEntry <- callCachingAggregationEntries
+      if callCachingEntry.callCachingEntryId === callCachingAggregationEntry.callCachingEntryId
+    } yield callCachingAggregationEntry.baseAggregation
+  )
+
+  def baseAggregationsWithCallCachingEntries(baseAggregations: Set[String]) = {
+    (for {
+      callCachingEntry <- callCachingEntries
+      if callCachingEntry.allowResultReuse
+      callCachingAggregationEntry <- callCachingAggregationEntries
+      if callCachingEntry.callCachingEntryId === callCachingAggregationEntry.callCachingEntryId
+      if callCachingAggregationEntry.baseAggregation inSetBind baseAggregations
+    } yield callCachingAggregationEntry.baseAggregation).distinct
+  }
+
+  def baseAggregationsWithCallCachingEntriesWithCallCachePrefix(baseAggregations: Set[String],
+                                                                 prefix1: String, prefix1Length: Int,
+                                                                 prefix2: String, prefix2Length: Int,
+                                                                 prefix3: String, prefix3Length: Int) = {
+    (for {
+      callCachingEntry <- callCachingEntries
+      if callCachingEntry.allowResultReuse
+      callCachingAggregationEntry <- callCachingAggregationEntries
+      if callCachingEntry.callCachingEntryId === callCachingAggregationEntry.callCachingEntryId
+      if callCachingAggregationEntry.baseAggregation inSetBind baseAggregations
+      detritus <- callCachingDetritusEntries
+      if detritus.callCachingEntryId === callCachingEntry.callCachingEntryId
+      detritusPath = detritus.detritusValue.map(clobToString)
+      if (detritusPath.substring(0, prefix1Length) === prefix1) ||
+        (detritusPath.substring(0, prefix2Length) === prefix2) ||
+        (detritusPath.substring(0, prefix3Length) === prefix3)
+    } yield callCachingAggregationEntry.baseAggregation).distinct
+  }
+
   def callCachingEntriesForAggregatedHashes(baseAggregation: Rep[String], inputFilesAggregation: Rep[Option[String]], number: Int) = {
     (for {
       callCachingEntry <- callCachingEntries
@@ -35,6 +35,10 @@ trait CallCachingEntryComponent {
 
   val callCachingEntryIdsAutoInc = callCachingEntries returning callCachingEntries.map(_.callCachingEntryId)
 
+  lazy val callCachingEntriesCompiledInsert = driver.compileInsert(callCachingEntries.toNode)
+
+  def maxCallCachingEntryId = callCachingEntries.map(_.callCachingEntryId).max
+
   val callCachingEntriesForId = Compiled(
     (callCachingEntryId: Rep[Int]) => for {
       callCachingEntry <- callCachingEntries
@@ -0,0 +1,26 @@
+package cromwell.database.slick.tables
+
+import cromwell.database.sql.tables.CallFqnDictionaryEntry
+
+trait CallFqnDictionaryEntryComponent {
+  this: DriverComponent =>
+
+  import driver.api._
+
+  class CallFqnDictionaryEntries(tag: Tag) extends Table[CallFqnDictionaryEntry](tag, "CALL_FQN_DICTIONARY_ENTRY") {
+    def callFqnDictionaryEntryId = column[Int]("CALL_FQN_DICTIONARY_ENTRY_ID", O.PrimaryKey, O.AutoInc)
+
+    def callFqn = column[String]("CALL_FQN", O.Length(255))
+
+    override def * = (callFqn, callFqnDictionaryEntryId.?) <>
+      (CallFqnDictionaryEntry.tupled, CallFqnDictionaryEntry.unapply)
+
+    def ucCallFqnDictionaryEntryCf = index("UC_CALL_FQN_DICTIONARY_ENTRY_CF", callFqn, unique = true)
+  }
+
+  val callFqnDictionaryEntries = TableQuery[CallFqnDictionaryEntries]
+
+  def callFqnDictionaryEntriesForCallFqns(callFqns: Iterable[String]): Query[CallFqnDictionaryEntries, CallFqnDictionaryEntry, Seq] = {
+    callFqnDictionaryEntries.filter(_.callFqn inSet callFqns)
+  }
+}
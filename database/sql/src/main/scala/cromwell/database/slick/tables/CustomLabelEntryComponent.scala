@@ -37,6 +37,9 @@ trait CustomLabelEntryComponent {
       (customLabelKey, workflowExecutionUuid), unique = true)
 
     def ixCustomLabelEntryClkClv = index("IX_CUSTOM_LABEL_ENTRY_CLK_CLV", (customLabelKey, customLabelValue), unique = false)
+
+    def ixCustomLabelEntryWeuClkClv = index("IX_CUSTOM_LABEL_ENTRY_WEU_CLK_CLV",
+      (workflowExecutionUuid, customLabelKey, customLabelValue), unique = false)
 }
 
   val customLabelEntries = TableQuery[CustomLabelEntries]
@@ -68,6 +71,11 @@ trait CustomLabelEntryComponent {
     } yield (customLabelEntry.customLabelKey, customLabelEntry.customLabelValue)
   )
 
+  def labelsForWorkflowExecutionUuids(workflowExecutionUuids: Set[String]) = for {
+    customLabelEntry <- customLabelEntries
+    if customLabelEntry.workflowExecutionUuid inSetBind workflowExecutionUuids
+  } yield (customLabelEntry.workflowExecutionUuid, customLabelEntry.customLabelKey, customLabelEntry.customLabelValue)
+
   val labelsForWorkflowAndSubworkflows = Compiled(
     (workflowExecutionUuid: Rep[String]) => for {
       summary <- workflowMetadataSummaryEntries
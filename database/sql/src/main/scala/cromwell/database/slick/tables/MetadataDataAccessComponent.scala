@@ -2,9 +2,12 @@ package cromwell.database.slick.tables
 
 import slick.jdbc.JdbcProfile
 
-class MetadataDataAccessComponent(val driver: JdbcProfile) extends DataAccessComponent
+class MetadataDataAccessComponent(val driver: JdbcProfile, val dictionaryDecoding: Boolean = false)
+  extends DataAccessComponent
+  with CallFqnDictionaryEntryComponent
   with CustomLabelEntryComponent
   with MetadataEntryComponent
+  with MetadataKeyDictionaryEntryComponent
   with SummaryStatusEntryComponent
   with SummaryQueueEntryComponent
   with WorkflowMetadataSummaryEntryComponent {
@@ -12,8 +15,10 @@ class MetadataDataAccessComponent(val driver: JdbcProfile) extends DataAccessCom
   import driver.api._
 
   override lazy val schema: driver.SchemaDescription =
+      callFqnDictionaryEntries.schema ++
       customLabelEntries.schema ++
-      metadataEntries.schema ++
+      metadataEntriesTable.schema ++
+      metadataKeyDictionaryEntries.schema ++
       summaryStatusEntries.schema ++
       workflowMetadataSummaryEntries.schema ++
       summaryQueueEntries.schema
@@ -28,4 +33,26 @@ class MetadataDataAccessComponent(val driver: JdbcProfile) extends DataAccessCom
       } yield metadataEntry).sortBy(_.metadataEntryId)
     )
   }
+
+  /**
+    * The oldest queued entries of the workflows whose UUID ends with one of `workflowIdSuffixes`. UUIDs are random, so
+    * partitioning the hex digits splits the queue evenly across workflows, leaving every workflow to a single partition.
+    */
+  def metadataEntriesToSummarizeForWorkflowIdSuffixes(limit: Long, workflowIdSuffixes: Set[String]) = {
+    (for {
+      summaryEntry <- summaryQueueEntries
+      metadataEntry <- metadataEntries if metadataEntry.metadataEntryId === summaryEntry.metadataJournalId
+      if metadataEntry.workflowExecutionUuid.substring(metadataEntry.workflowExecutionUuid.length - 1).inSet(workflowIdSuffixes)
+    } yield (summaryEntry.metadataJournalId, metadataEntry))
+      .sortBy(_._1)
+      .take(limit)
+      .map(_._2)
+  }
+
+  val summaryQueueOldestTimestamp = Compiled(
+    (for {
+      summaryEntry <- summaryQueueEntries.sortBy(_.metadataJournalId).take(1)
+      metadataEntry <- metadataEntriesTable if metadataEntry.metadataEntryId === summaryEntry.metadataJournalId
+    } yield metadataEntry.metadataTimestamp)
+  )
 }
@@ -12,7 +12,13 @@ trait MetadataEntryComponent {
 
   import driver.api._
 
-  class MetadataEntries(tag: Tag) extends Table[MetadataEntry](tag, "METADATA_ENTRY") {
+  /**
+    * When true, entries are read from the METADATA_ENTRY_DECODED view, which resolves the dictionary references of the
+    * entries written with dictionary encoding. Must stay true once any entry was written with dictionary encoding.
+    */
+  def dictionaryDecoding: Boolean
+
+  class MetadataEntries(tag: Tag, tableName: String) extends Table[MetadataEntry](tag, tableName) {
     /*
     DO NOT COPY/PASTE THIS CLASS!
 
@@ -43,6 +49,10 @@ trait MetadataEntryComponent {
 
     def metadataTimestamp = column[Timestamp]("METADATA_TIMESTAMP")
 
+    def metadataKeyDictionaryEntryId = column[Option[Int]]("METADATA_KEY_DICTIONARY_ENTRY_ID")
+
+    def callFqnDictionaryEntryId = column[Option[Int]]("CALL_FQN_DICTIONARY_ENTRY_ID")
+
     override def * = (workflowExecutionUuid, callFullyQualifiedName, jobIndex, jobAttempt, metadataKey, metadataValue,
       metadataValueType, metadataTimestamp, metadataEntryId.?) <> (MetadataEntry.tupled, MetadataEntry.unapply)
 
@@ -50,9 +60,86 @@ trait MetadataEntryComponent {
     def ixMetadataEntryWeu = index("METADATA_WORKFLOW_IDX", workflowExecutionUuid, unique = false)
   }
 
-  val metadataEntries = TableQuery[MetadataEntries]
+  /** The table itself, which entries are written to and deleted from. */
+  val metadataEntriesTable = TableQuery(new MetadataEntries(_, "METADATA_ENTRY"))
+
+  /** The entries as read, with their dictionary references resolved when dictionary decoding is enabled. */
+  val metadataEntries =
+    if (dictionaryDecoding) TableQuery(new MetadataEntries(_, "METADATA_ENTRY_DECODED")) else metadataEntriesTable
+
+  val metadataEntryIdsAutoInc = metadataEntriesTable returning metadataEntriesTable.map(_.metadataEntryId)
+
+  /**
+    * An entry as written with dictionary encoding: its columns, followed by the dictionary references of its metadata
+    * key and call FQN.
+    */
+  type EncodedMetadataEntry = (String, Option[String], Option[Int], Option[Int], String, Option[SerialClob],
+    Option[String], Timestamp, Option[Int], Option[Int])
+
+  /**
+    * Encodes an entry with the dictionary references of its key and call FQN, when found. The inline key of an entry
+    * referencing the key dictionary is left empty and the inline call FQN of one referencing the call FQN dictionary
+    * null, so that they are only stored once.
+    */
+  def encodeMetadataEntry(metadataEntry: MetadataEntry,
+                          metadataKeyId: Option[Int],
+                          callFqnId: Option[Int]): EncodedMetadataEntry = (
+    metadataEntry.workflowExecutionUuid,
+    if (callFqnId.isDefined) None else metadataEntry.callFullyQualifiedName,
+    metadataEntry.jobIndex,
+    metadataEntry.jobAttempt,
+    if (metadataKeyId.isDefined) "" else metadataEntry.metadataKey,
+    metadataEntry.metadataValue,
+    metadataEntry.metadataValueType,
+    metadataEntry.metadataTimestamp,
+    metadataKeyId,
+    callFqnId,
+  )
 
-  val metadataEntryIdsAutoInc = metadataEntries returning metadataEntries.map(_.metadataEntryId)
+  val encodedMetadataEntries = metadataEntriesTable.map(metadataEntry => (
+    metadataEntry.workflowExecutionUuid,
+    metadataEntry.callFullyQualifiedName,
+    metadataEntry.jobIndex,
+    metadataEntry.jobAttempt,
+    metadataEntry.metadataKey,
+    metadataEntry.metadataValue,
+    metadataEntry.metadataValueType,
+    metadataEntry.metadataTimestamp,
+    metadataEntry.metadataKeyDictionaryEntryId,
+    metadataEntry.callFqnDictionaryEntryId,
+  ))
+
+  val encodedMetadataEntryIdsAutoInc = encodedMetadataEntries returning metadataEntriesTable.map(_.metadataEntryId)
+
+  val metadataEntriesToDeleteForWorkflowExecutionUuid = Compiled(
+    (workflowExecutionUuid: Rep[String]) => for {
+      metadataEntry <- metadataEntriesTable
+      if metadataEntry.workflowExecutionUuid === workflowExecutionUuid
+    } yield metadataEntry
+  )
+
+  /** The journal id of the last of the next `chunkSize` entries of a workflow after `afterMetadataEntryId`, if any. */
+  def metadataEntryChunkEndForWorkflowExecutionUuid(workflowExecutionUuid: String,
+                                                    afterMetadataEntryId: Long,
+                                                    chunkSize: Int) = {
+    metadataEntriesTable
+      .filter(_.workflowExecutionUuid === workflowExecutionUuid)
+      .filter(_.metadataEntryId > afterMetadataEntryId)
+      .sortBy(_.metadataEntryId)
+      .take(chunkSize)
+      .map(_.metadataEntryId)
+      .max
+  }
+
+  def metadataEntriesToDeleteForWorkflowExecutionUuidInRange(workflowExecutionUuid: String,
+                                                             afterMetadataEntryId: Long,
+                                                             lastMetadataEntryId: Long) = {
+    metadataEntriesTable.filter(metadataEntry =>
+      metadataEntry.workflowExecutionUuid === workflowExecutionUuid &&
+        metadataEntry.metadataEntryId > afterMetadataEntryId &&
+        metadataEntry.metadataEntryId <= lastMetadataEntryId
+    )
+  }
 
   val metadataEntriesExists = Compiled(metadataEntries.take(1).exists)
 
@@ -70,6 +157,46 @@ trait MetadataEntryComponent {
     } yield metadataEntry).sortBy(_.metadataEntryId)
   )
 
+  /**
+    * Workflow level entries first, then the entries of each call attempt together, each group in timestamp order.
+    */
+  val metadataEntriesForWorkflowSortedByCall = Compiled(
+    (workflowExecutionUuid: Rep[String]) => (for {
+      metadataEntry <- metadataEntries
+      if metadataEntry.workflowExecutionUuid === workflowExecutionUuid
+    } yield metadataEntry).sortBy(metadataEntry => (
+      metadataEntry.callFullyQualifiedName.asc.nullsFirst,
+      metadataEntry.jobIndex.asc.nullsFirst,
+      metadataEntry.jobAttempt.asc.nullsFirst,
+      metadataEntry.metadataTimestamp,
+      metadataEntry.metadataEntryId
+    ))
+  )
+
+  /**
+    * Up to `limit` entries of a workflow after the entry `afterMetadataEntryId`, in METADATA_JOURNAL_ID order, so that
+    * pages never overlap and keep their order however many entries are written in between. Entries committed after
+    * entries with greater ids are not seen by the pages after those. Only the filters defined apply.
+    */
+  def metadataEntriesPage(workflowExecutionUuid: String,
+                          afterMetadataEntryId: Option[Long],
+                          callFullyQualifiedName: Option[String],
+                          jobIndex: Option[Int],
+                          jobAttempt: Option[Int],
+                          metadataKeyPrefix: Option[String],
+                          limit: Int) = {
+    metadataEntries
+      // Uses `METADATA_WORKFLOW_IDX`, whose entries are ordered by primary key within a workflow on MySQL and MariaDB
+      .filter(_.workflowExecutionUuid === workflowExecutionUuid)
+      .filterOpt(afterMetadataEntryId)(_.metadataEntryId > _)
+      .filterOpt(callFullyQualifiedName)(_.callFullyQualifiedName === _)
+      .filterOpt(jobIndex)(_.jobIndex === _)
+      .filterOpt(jobAttempt)(_.jobAttempt === _)
+      .filterOpt(metadataKeyPrefix)((metadataEntry, prefix) => metadataEntry.metadataKey like s"$prefix%")
+      .sortBy(_.metadataEntryId)
+      .take(limit)
+  }
+
   val countMetadataEntriesForWorkflowExecutionUuid = Compiled(
     (rootWorkflowId: Rep[String], expandSubWorkflows: Rep[Boolean]) => {
       val targetWorkflowIds = for {
@@ -0,0 +1,27 @@
+package cromwell.database.slick.tables
+
+import cromwell.database.sql.tables.MetadataKeyDictionaryEntry
+
+trait MetadataKeyDictionaryEntryComponent {
+  this: DriverComponent =>
+
+  import driver.api._
+
+  class MetadataKeyDictionaryEntries(tag: Tag)
+    extends Table[MetadataKeyDictionaryEntry](tag, "METADATA_KEY_DICTIONARY_ENTRY") {
+    def metadataKeyDictionaryEntryId = column[Int]("METADATA_KEY_DICTIONARY_ENTRY_ID", O.PrimaryKey, O.AutoInc)
+
+    def metadataKey = column[String]("METADATA_KEY", O.Length(255))
+
+    override def * = (metadataKey, metadataKeyDictionaryEntryId.?) <>
+      (MetadataKeyDictionaryEntry.tupled, MetadataKeyDictionaryEntry.unapply)
+
+    def ucMetadataKeyDictionaryEntryMk = index("UC_METADATA_KEY_DICTIONARY_ENTRY_MK", metadataKey, unique = true)
+  }
+
+  val metadataKeyDictionaryEntries = TableQuery[MetadataKeyDictionaryEntries]
+
+  def metadataKeyDictionaryEntriesForMetadataKeys(metadataKeys: Iterable[String]): Query[MetadataKeyDictionaryEntries, MetadataKeyDictionaryEntry, Seq] = {
+    metadataKeyDictionaryEntries.filter(_.metadataKey inSet metadataKeys)
+  }
+}
@@ -56,14 +56,14 @@ trait WorkflowMetadataSummaryEntryComponent {
     def ixWorkflowMetadataSummaryEntryWs =
       index("IX_WORKFLOW_METADATA_SUMMARY_ENTRY_WS", workflowStatus, unique = false)
 
-    def ixWorkflowMetadataSummaryEntryPweu =
-      index("IX_WORKFLOW_METADATA_SUMMARY_ENTRY_PWEU", parentWorkflowExecutionUuid, unique = false)
-
     def ixWorkflowMetadataSummaryEntryRweu =
       index("IX_WORKFLOW_METADATA_SUMMARY_ENTRY_RWEU", rootWorkflowExecutionUuid, unique = false)
 
     def ixWorkflowMetadataSummaryEntryMasEt =
       index("IX_WORKFLOW_METADATA_SUMMARY_ENTRY_MAS_ET", (metadataArchiveStatus, endTimestamp), unique = false)
+
+    def ixWorkflowMetadataSummaryEntryPweuWs =
+      index("IX_WORKFLOW_METADATA_SUMMARY_ENTRY_PWEU_WS", (parentWorkflowExecutionUuid, workflowStatus), unique = false)
   }
 
   val workflowMetadataSummaryEntries = TableQuery[WorkflowMetadataSummaryEntries]
@@ -2,6 +2,7 @@ package cromwell.database.sql
 
 import cromwell.database.sql.joins.CallCachingJoin
 import cromwell.database.sql.tables.CallCachingEntry
+import slick.basic.DatabasePublisher
 
 import scala.concurrent.{ExecutionContext, Future}
 
@@ -11,6 +12,24 @@ trait CallCachingSqlDatabase {
   def hasMatchingCallCachingEntriesForBaseAggregation(baseAggregationHash: String, callCachePathPrefixes: Option[List[String]])
                                                      (implicit ec: ExecutionContext): Future[Boolean]
 
+  /**
+    * Returns the base aggregation hashes among `baseAggregationHashes` that have at least one reusable entry, in a
+    * single query.
+    */
+  def baseAggregationsWithCallCachingEntries(baseAggregationHashes: Set[String], callCachePathPrefixes: Option[List[String]])
+                                            (implicit ec: ExecutionContext): Future[Set[String]]
+
+  /**
+    * Streams the base aggregation hashes of the reusable entries with ids after `afterCallCachingEntryId` up to
+    * `lastCallCachingEntryId`, with duplicates.
+    */
+  def streamReusableBaseAggregations(afterCallCachingEntryId: Int, lastCallCachingEntryId: Int): DatabasePublisher[String]
+
+  /**
+    * Returns the id of the latest call caching entry, if any.
+    */
+  def maxCallCachingEntryId()(implicit ec: ExecutionContext): Future[Option[Int]]
+
   def findCacheHitForAggregation(baseAggregationHash: String, inputFilesAggregationHash: Option[String], callCachePathPrefixes: Option[List[String]], hitNumber: Int)
                                 (implicit ec: ExecutionContext): Future[Option[Int]]
 
@@ -21,6 +21,9 @@ trait MetadataSqlDatabase extends SqlDatabase {
 |__|  |__| |_______|    |__|    /__/     \__\ |_______/ /__/     \__\  |__|    /__/     \__\
    */
 
+  /** Whether the LIKE constraints on metadata keys ignore case, as they do with the default MySQL and MariaDB collations. */
+  def metadataKeyLikeIsCaseInsensitive: Boolean
+
   def existsMetadataEntries()(implicit ec: ExecutionContext): Future[Boolean]
 
   /**
@@ -46,6 +49,25 @@ trait MetadataSqlDatabase extends SqlDatabase {
 
   def streamMetadataEntries(workflowExecutionUuid: String): DatabasePublisher[MetadataEntry]
 
+  /**
+    * Streams the workflow level entries first, then the entries of each call attempt together, in timestamp order.
+    */
+  def streamMetadataEntriesGroupedByCall(workflowExecutionUuid: String): DatabasePublisher[MetadataEntry]
+
+  /**
+    * Returns up to `limit` entries of a workflow in METADATA_JOURNAL_ID order, starting after the entry
+    * `afterMetadataEntryId` if defined. The call, shard, attempt and key prefix filters only apply when defined.
+    */
+  def queryMetadataEntriesPage(workflowExecutionUuid: String,
+                               afterMetadataEntryId: Option[Long],
+                               callFullyQualifiedName: Option[String],
+                               jobIndex: Option[Int],
+                               jobAttempt: Option[Int],
+                               metadataKeyPrefix: Option[String],
+                               limit: Int,
+                               timeout: Duration)
+                              (implicit ec: ExecutionContext): Future[Seq[MetadataEntry]]
+
   def countMetadataEntries(workflowExecutionUuid: String,
                            expandSubWorkflows: Boolean,
                            timeout: Duration)
@@ -112,11 +134,16 @@ trait MetadataSqlDatabase extends SqlDatabase {
   /**
     * Retrieves next summarizable block of metadata satisfying the specified criteria.
     *
+    * @param partition Only summarizes the workflows of this partition, out of `partitionCount` partitions of the
+    *                  workflow ids. Partitions touch disjoint summaries, so they can be summarized concurrently.
+    * @param partitionCount Between 1 and 16. With 1, summarizes all workflows.
     * @param buildUpdatedSummary Takes in the optional existing summary and the metadata, returns the new summary.
     * @return A `Future` with the number of rows summarized by the invocation, and the number of rows still to summarize.
     */
   def summarizeIncreasing(labelMetadataKey: String,
                           limit: Int,
+                          partition: Int,
+                          partitionCount: Int,
                           buildUpdatedSummary:
                           (Option[WorkflowMetadataSummaryEntry], Seq[MetadataEntry])
                             => WorkflowMetadataSummaryEntry)
@@ -143,6 +170,9 @@ trait MetadataSqlDatabase extends SqlDatabase {
 
   def getWorkflowLabels(workflowExecutionUuid: String)(implicit ec: ExecutionContext): Future[Map[String, String]]
 
+  /** The labels of each of `workflowExecutionUuids`, omitting the workflows without labels. */
+  def getWorkflowsLabels(workflowExecutionUuids: Set[String])(implicit ec: ExecutionContext): Future[Map[String, Map[String, String]]]
+
   def getRootAndSubworkflowLabels(rootWorkflowExecutionUuid: String)(implicit ec: ExecutionContext): Future[Map[String, Map[String, String]]]
 
   def queryWorkflowSummaries(parentIdWorkflowMetadataKey: String,
@@ -179,12 +209,24 @@ trait MetadataSqlDatabase extends SqlDatabase {
 
   def deleteAllMetadataForWorkflowAndUpdateArchiveStatus(rootWorkflowId: String, newArchiveStatus: Option[String])(implicit ec: ExecutionContext): Future[Int]
 
+  /**
+    * Deletes the next chunk of the metadata of a workflow: its at most `chunkSize` entries with the lowest journal ids
+    * after `afterMetadataEntryId`, in a transaction of its own.
+    *
+    * @return The number of entries deleted and the journal id of the last of them, or None if no entries remain.
+    */
+  def deleteMetadataEntriesChunkForWorkflow(workflowExecutionUuid: String, afterMetadataEntryId: Long, chunkSize: Int)
+                                           (implicit ec: ExecutionContext): Future[Option[(Int, Long)]]
+
   def getRootWorkflowId(workflowId: String)(implicit ec: ExecutionContext): Future[Option[String]]
 
   def queryWorkflowIdsByArchiveStatusAndEndedOnOrBeforeThresholdTimestamp(archiveStatus: Option[String], thresholdTimestamp: Timestamp, batchSizeOpt: Long)(implicit ec: ExecutionContext): Future[Seq[String]]
 
   def getSummaryQueueSize()(implicit ec: ExecutionContext): Future[Int]
 
+  /** The timestamp of the oldest metadata entry still waiting to be summarized, if any. */
+  def getSummaryQueueOldestTimestamp()(implicit ec: ExecutionContext): Future[Option[Timestamp]]
+
   def getMetadataArchiveStatusAndEndTime(workflowId: String)(implicit ec: ExecutionContext): Future[(Option[String], Option[Timestamp])]
 
   def queryWorkflowsToArchiveThatEndedOnOrBeforeThresholdTimestamp(workflowStatuses: List[String],
@@ -0,0 +1,7 @@
+package cromwell.database.sql.tables
+
+case class CallFqnDictionaryEntry
+(
+  callFqn: String,
+  callFqnDictionaryEntryId: Option[Int] = None
+)
@@ -0,0 +1,7 @@
+package cromwell.database.sql.tables
+
+case class MetadataKeyDictionaryEntry
+(
+  metadataKey: String,
+  metadataKeyDictionaryEntryId: Option[Int] = None
+)
@@ -0,0 +1,26 @@
+package cromwell.engine.instrumentation
+
+import akka.actor.ActorRef
+import cats.data.NonEmptyList
+import cloud.nio.impl.ftp.FtpClientPoolListener
+import cromwell.core.instrumentation.InstrumentationPrefixes._
+import cromwell.services.instrumentation.CromwellInstrumentation
+
+import scala.concurrent.duration.FiniteDuration
+
+/**
+  * Sends the events of the FTP client pools to the instrumentation service:
+  *   io.ftp.[host].lease_wait: timing of how long leases waited for a connection
+  *   io.ftp.[host].connections: gauge of the connections currently opened
+  *   io.ftp.[host].pool_size: gauge of the connections currently allowed by the pool
+  *   io.ftp.[host].server_error: count of rejected connections or logins
+  */
+class FtpInstrumentation(override val serviceRegistryActor: ActorRef) extends FtpClientPoolListener with CromwellInstrumentation {
+  // Dots would be interpreted as separators by statsd
+  private def hostPath(host: String, key: String) = NonEmptyList.of("ftp", host.replace('.', '_'), key)
+
+  override def leaseAcquired(host: String, waitTime: FiniteDuration): Unit = sendTiming(hostPath(host, "lease_wait"), waitTime, IoPrefix)
+  override def connectionCount(host: String, count: Int): Unit = sendGauge(hostPath(host, "connections"), count.toLong, IoPrefix)
+  override def poolSize(host: String, size: Int): Unit = sendGauge(hostPath(host, "pool_size"), size.toLong, IoPrefix)
+  override def serverError(host: String): Unit = increment(hostPath(host, "server_error"), IoPrefix)
+}
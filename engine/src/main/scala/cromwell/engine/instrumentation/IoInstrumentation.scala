@@ -6,6 +6,7 @@ import akka.actor.Actor
 import cats.data.NonEmptyList
 import cromwell.core.instrumentation.InstrumentationKeys._
 import cromwell.core.instrumentation.InstrumentationPrefixes._
+import cromwell.core.io.LocalHashCache.LocalHashCacheStats
 import cromwell.core.io._
 import cromwell.engine.io.IoActor.IoResult
 import cromwell.filesystems.gcs.{GcsPath, GoogleUtil}
@@ -22,6 +23,7 @@ private object IoInstrumentationImplicits {
   val UnknownFileSystemPath = NonEmptyList.of("unknown")
 
   val backpressure = NonEmptyList.of("backpressure")
+  val hashCache = NonEmptyList.of("hash_cache")
 
   /**
     * Augments IoResult to provide instrumentation conversion methods
@@ -105,6 +107,15 @@ trait IoInstrumentation extends CromwellInstrumentationActor { this: Actor =>
 
   final def incrementBackpressure(): Unit = incrementIo(backpressure)
 
+  /**
+    * Sends the cumulative hits and misses of the local hash cache, from which the hit rate is derived.
+    */
+  final def instrumentHashCache(stats: LocalHashCacheStats): Unit = {
+    sendGauge(hashCache.concatNel("hits"), stats.hits, IoPrefix)
+    sendGauge(hashCache.concatNel("misses"), stats.misses, IoPrefix)
+    sendGauge(hashCache.concatNel("entries"), stats.entries.toLong, IoPrefix)
+  }
+
   /**
     * Increment an IoCommand to the proper bucket depending on the request type.
     */
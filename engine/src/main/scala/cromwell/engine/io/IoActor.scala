@@ -19,6 +19,7 @@ import cromwell.engine.io.gcs.{GcsBatchCommandContext, ParallelGcsBatchFlow}
 import cromwell.engine.io.nio.NioFlow
 import cromwell.engine.io.nio.NioFlow.NioFlowConfig
 import cromwell.filesystems.gcs.batch.GcsBatchIoCommand
+import cromwell.services.instrumentation.CromwellInstrumentation
 import cromwell.services.loadcontroller.LoadControllerService.{HighLoad, LoadMetric, NormalLoad}
 import net.ceedubs.ficus.readers.ValueReader
 
@@ -58,6 +59,8 @@ final class IoActor(ioConfig: IoConfig,
   override def preStart(): Unit = {
     // On start up, let the controller know that the load is normal
     serviceRegistryActor ! LoadMetric("IO", NormalLoad)
+    if (ioConfig.nio.hashCache.isDefined)
+      timers.startPeriodicTimer(HashCacheStatsTimerKey, ReportHashCacheStats, CromwellInstrumentation.InstrumentationRate)
     super.preStart()
   }
 
@@ -67,7 +70,10 @@ final class IoActor(ioConfig: IoConfig,
       onRetryCallback = onRetry,
       onBackpressure = onBackpressure,
       numberOfAttempts = ioConfig.numberOfAttempts,
-      commandBackpressureStaleness = ioConfig.commandBackpressureStaleness)
+      commandBackpressureStaleness = ioConfig.commandBackpressureStaleness,
+      localCopyStrategies = ioConfig.nio.localCopyStrategies,
+      localHashing = ioConfig.nio.localHashing,
+      hashCache = ioConfig.nio.hashCache)
       .flow
       .withAttributes(ActorAttributes.dispatcher(Dispatcher.IoDispatcher))
 
@@ -206,6 +212,8 @@ final class IoActor(ioConfig: IoConfig,
         case _ => // Ignore proposed expiries that would be before the current expiry
       }
 
+    case ReportHashCacheStats => ioConfig.nio.hashCache foreach { cache => instrumentHashCache(cache.stats) }
+
     case BackPressureTimerResetAction =>
       log.info("IoActor backpressure off")
       backpressureExpiration = None
@@ -240,6 +248,10 @@ object IoActor {
 
   case class BackPressure(duration: FiniteDuration) extends ControlMessage
 
+  case object HashCacheStatsTimerKey
+
+  case object ReportHashCacheStats
+
   def props(ioConfig: IoConfig,
             serviceRegistryActor: ActorRef,
             applicationName: String,
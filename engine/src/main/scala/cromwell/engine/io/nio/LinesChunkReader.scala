@@ -0,0 +1,78 @@
+package cromwell.engine.io.nio
+
+import java.io.{ByteArrayOutputStream, IOException, InputStream}
+import java.nio.charset.StandardCharsets
+
+import cromwell.core.io.IoReadLinesCommand.{IoLinesChunk, IoReadLinesOptions}
+
+/**
+  * Reads the lines of a stream positioned at fromByte, stopping at the last complete line fitting in maxBytes.
+  * Works on bytes rather than characters so that the offset of the next chunk is exact.
+  * Lines are terminated by '\n', a trailing '\r' is dropped.
+  */
+private[nio] object LinesChunkReader {
+  private val BufferSize = 64 * 1024
+
+  def read(inputStream: InputStream, options: IoReadLinesOptions, description: => String): IoLinesChunk = {
+    val limit = options.maxBytes.map(_.toLong).getOrElse(Long.MaxValue)
+    val buffer = new Array[Byte](BufferSize)
+    val lines = Vector.newBuilder[String]
+    val currentLine = new ByteArrayOutputStream()
+    // Bytes of the complete lines read so far, including their terminators
+    var consumed = 0L
+    var currentLineBytes = 0L
+    var overflow = false
+    var read = inputStream.read(buffer)
+
+    while (read != -1 && !overflow) {
+      var i = 0
+      while (i < read && !overflow) {
+        val byte = buffer(i)
+        currentLineBytes += 1
+        if (consumed + currentLineBytes > limit) {
+          overflow = true
+        } else if (byte == '\n') {
+          lines += decode(currentLine)
+          consumed += currentLineBytes
+          currentLine.reset()
+          currentLineBytes = 0
+        } else {
+          currentLine.write(byte.toInt)
+        }
+        i += 1
+      }
+      if (!overflow) read = inputStream.read(buffer)
+    }
+
+    // Last line of the file, not terminated by a new line
+    if (!overflow && currentLineBytes > 0) {
+      lines += decode(currentLine)
+      consumed += currentLineBytes
+    }
+
+    if (overflow && options.failOnOverflow) {
+      throw new IOException(s"Lines of $description are larger than requested maximum of $limit Bytes.")
+    }
+    if (overflow && consumed == 0) {
+      throw new IOException(s"$description has a line larger than requested maximum of $limit Bytes.")
+    }
+
+    IoLinesChunk(lines.result(), if (overflow) Option(options.fromByte + consumed) else None)
+  }
+
+  private def decode(line: ByteArrayOutputStream): String = {
+    val string = new String(line.toByteArray, StandardCharsets.UTF_8)
+    if (string.endsWith("\r")) string.dropRight(1) else string
+  }
+
+  /** Positions a stream at fromByte when the file can't be read from there directly. */
+  def skipFully(inputStream: InputStream, bytes: Long): Unit = {
+    var remaining = bytes
+    while (remaining > 0) {
+      val skipped = inputStream.skip(remaining)
+      if (skipped > 0) remaining -= skipped
+      else if (inputStream.read() == -1) throw new IOException(s"Reached the end of the stream before offset $bytes")
+      else remaining -= 1
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package cromwell.engine.io.nio
+
+import java.io.IOException
+import java.nio.channels.FileChannel
+import java.nio.file.attribute.PosixFileAttributeView
+import java.nio.file.{Files, StandardOpenOption}
+
+import com.typesafe.scalalogging.StrictLogging
+import cromwell.core.path.DefaultPath
+import cromwell.util.TryWithResource._
+
+import scala.sys.process._
+import scala.util.{Failure, Success, Try}
+
+/**
+  * Copies between two local paths without buffering the content in the JVM.
+  *
+  * Strategies are attempted in the configured order, the first one to succeed wins:
+  *   - reflink: copy-on-write clone of the file (`cp --reflink=always`), only supported by some filesystems (btrfs, xfs, ...)
+  *   - hard-link: the destination shares the inode of the source, only possible on the same filesystem
+  *   - transfer: FileChannel.transferTo, which lets the kernel move the bytes (copy_file_range / sendfile where available)
+  * Transfer is always attempted last as it works for any pair of local files.
+  */
+object LocalFileCopy extends StrictLogging {
+  sealed abstract class LocalCopyStrategy(val name: String)
+  case object Reflink extends LocalCopyStrategy("reflink")
+  case object HardLink extends LocalCopyStrategy("hard-link")
+  case object Transfer extends LocalCopyStrategy("transfer")
+
+  val Strategies: List[LocalCopyStrategy] = List(Reflink, HardLink, Transfer)
+  val DefaultStrategies: List[LocalCopyStrategy] = List(Transfer)
+
+  def strategyFromName(name: String): LocalCopyStrategy = Strategies.find(_.name == name).getOrElse(
+    throw new IllegalArgumentException(s"Unrecognized local copy strategy '$name'. Valid strategies are ${Strategies.map(_.name).mkString(", ")}")
+  )
+
+  /**
+    * Copying a file onto itself is a no-op, as with Files.copy: truncating or deleting the destination would lose the
+    * source. The destination is given the POSIX permissions of the source, so that executables stay executable.
+    */
+  def copy(source: DefaultPath, destination: DefaultPath, strategies: List[LocalCopyStrategy]): Unit = {
+    if (!(Files.exists(destination.nioPath) && Files.isSameFile(source.nioPath, destination.nioPath))) {
+      val orderedStrategies = strategies.filterNot(_ == Transfer) :+ Transfer
+
+      orderedStrategies.iterator.map({ strategy =>
+        strategy -> Try(copyWith(strategy, source, destination))
+      }).collectFirst({
+        case (_, Success(_)) => ()
+        case (Transfer, Failure(failure)) => throw failure
+      }).getOrElse(())
+
+      copyPermissions(source, destination)
+    }
+  }
+
+  // Hard links share the permissions of the source already, setting them again is harmless
+  private def copyPermissions(source: DefaultPath, destination: DefaultPath): Unit = {
+    if (Files.getFileAttributeView(source.nioPath, classOf[PosixFileAttributeView]) != null) {
+      Files.setPosixFilePermissions(destination.nioPath, Files.getPosixFilePermissions(source.nioPath))
+      ()
+    }
+  }
+
+  private def copyWith(strategy: LocalCopyStrategy, source: DefaultPath, destination: DefaultPath): Unit = strategy match {
+    case Reflink =>
+      val exitCode = Seq("cp", "--reflink=always", source.pathAsString, destination.pathAsString).!(ProcessLogger(_ => ()))
+      if (exitCode != 0) {
+        logger.debug(s"Could not reflink $source to $destination (exit code $exitCode)")
+        throw new UnsupportedOperationException(s"reflink not supported for $source")
+      }
+    case HardLink =>
+      Files.deleteIfExists(destination.nioPath)
+      Files.createLink(destination.nioPath, source.nioPath)
+      ()
+    case Transfer => transfer(source, destination)
+  }
+
+  private def transfer(source: DefaultPath, destination: DefaultPath): Unit = {
+    tryWithResource(() => FileChannel.open(source.nioPath, StandardOpenOption.READ)) { in =>
+      tryWithResource(() => FileChannel.open(destination.nioPath,
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) { out =>
+        val size = in.size()
+        var position = 0L
+        // transferTo may transfer less than requested, loop until done. Nothing transferred means the source shrank under us.
+        while (position < size) {
+          val transferred = in.transferTo(position, size - position, out)
+          if (transferred <= 0)
+            throw new IOException(s"Could only transfer $position of the $size bytes of $source to $destination")
+          position += transferred
+        }
+      }.get
+    }.get
+  }
+}
@@ -5,10 +5,12 @@ import cats.effect.{IO, Timer}
 import cloud.nio.impl.drs.DrsCloudNioFileSystemProvider
 import com.typesafe.config.Config
 import common.util.IORetry
+import cromwell.core.io.LocalFileHasher.LocalHashingConfig
 import cromwell.core.io._
-import cromwell.core.path.Path
+import cromwell.core.path.{DefaultPath, Path}
 import cromwell.engine.io.IoActor._
 import cromwell.engine.io.RetryableRequestSupport.{isInfinitelyRetryable, isRetryable}
+import cromwell.engine.io.nio.LocalFileCopy.LocalCopyStrategy
 import cromwell.engine.io.{IoAttempts, IoCommandContext, IoCommandStalenessBackpressuring}
 import cromwell.filesystems.drs.DrsPath
 import cromwell.filesystems.gcs.GcsPath
@@ -19,9 +21,12 @@ import net.ceedubs.ficus.Ficus._
 import net.ceedubs.ficus.readers.ValueReader
 
 import java.io._
+import java.nio.channels.{Channels, SeekableByteChannel}
 import java.nio.charset.StandardCharsets
+import java.nio.file.Files
 import scala.concurrent.ExecutionContext
 import scala.concurrent.duration.FiniteDuration
+import scala.util.{Success, Try}
 
 
 /**
@@ -31,13 +36,20 @@ class NioFlow(parallelism: Int,
               onRetryCallback: IoCommandContext[_] => Throwable => Unit,
               onBackpressure: Option[Double] => Unit,
               numberOfAttempts: Int,
-              commandBackpressureStaleness: FiniteDuration
+              commandBackpressureStaleness: FiniteDuration,
+              localCopyStrategies: List[LocalCopyStrategy] = LocalFileCopy.DefaultStrategies,
+              localHashing: LocalHashingConfig = LocalFileHasher.DefaultConfig,
+              hashCache: Option[LocalHashCache] = None
               )(implicit ec: ExecutionContext) extends IoCommandStalenessBackpressuring {
 
   implicit private val timer: Timer[IO] = IO.timer(ec)
 
   override def maxStaleness: FiniteDuration = commandBackpressureStaleness
 
+  private val localFileHasher = new LocalFileHasher(localHashing)
+  // Distinguishes the hashes computed here from the ones computed by the backends sharing the same cache
+  private val hashCacheStrategy = s"io:${localHashing.hashPrefix}"
+
   private val processCommand: DefaultCommandContext[_] => IO[IoResult] = commandContext => {
 
     val onRetry: (Throwable, IoAttempts) => IoAttempts = (t, s) => {
@@ -90,7 +102,13 @@ class NioFlow(parallelism: Int,
 
   private def copy(copy: IoCopyCommand) = IO {
     createDirectories(copy.destination)
-    copy.source.copyTo(copy.destination, overwrite = true)
+    (copy.source, copy.destination) match {
+      // Local to local copies are handled by the kernel rather than streamed through the JVM
+      case (source: DefaultPath, destination: DefaultPath) if source.isRegularFile =>
+        LocalFileCopy.copy(source, destination, localCopyStrategies)
+      case (source, destination) =>
+        source.copyTo(destination, overwrite = true)
+    }
     ()
   }
 
@@ -106,11 +124,7 @@ class NioFlow(parallelism: Int,
   }
 
   private def readAsString(read: IoContentAsStringCommand) = IO {
-    new String(
-      read.file.limitFileContent(read.options.maxBytes, read.options.failOnOverflow),
-      StandardCharsets.UTF_8
-    )
-      .replaceAll("\\r\\n", "\\\n")
+    NioFlow.decodeNormalizingNewLines(read.file.limitFileContent(read.options.maxBytes, read.options.failOnOverflow))
   }
 
   private def size(size: IoSizeCommand) = IO {
@@ -123,6 +137,7 @@ class NioFlow(parallelism: Int,
       case drsPath: DrsPath => getFileHashForDrsPath(drsPath)
       case s3Path: S3Path => IO { s3Path.eTag }
       case ossPath: OssPath => IO { ossPath.eTag}
+      case localPath: DefaultPath => hashLocalFile(localPath)
       case path =>
         IO.fromEither(
         tryWithResource(() => path.newInputStream) { inputStream =>
@@ -132,6 +147,11 @@ class NioFlow(parallelism: Int,
     }
   }
 
+  private def hashLocalFile(file: DefaultPath): IO[String] = hashCache match {
+    case Some(cache) => IO.fromTry { cache.getOrCompute(hashCacheStrategy, file)(Try(localFileHasher.hash(file.nioPath))) }
+    case None => IO { localFileHasher.hash(file.nioPath) }
+  }
+
   private def touch(touch: IoTouchCommand) = IO {
     touch.file.touch()
   }
@@ -140,10 +160,45 @@ class NioFlow(parallelism: Int,
     exists.file.exists
   }
 
-  private def readLines(exists: IoReadLinesCommand) = IO {
-    exists.file.withReader { reader =>
-      Stream.continually(reader.readLine()).takeWhile(_ != null).toList
-    }
+  /**
+    * Reads the chunk from a byte channel positioned at its offset. File systems without seekable channels would skip
+    * all the chunks before it on every read, making reading a file by chunks quadratic: all the lines from the offset
+    * are read at once instead, unless the read is meant to fail on lines beyond the maximum.
+    */
+  private def readLines(readLines: IoReadLinesCommand) = IO.fromEither {
+    val file = readLines.file
+    val options = readLines.options
+    positionedChannel(file, options.fromByte).flatMap({
+      case Some(channel) =>
+        tryWithResource(() => Channels.newInputStream(channel)) { inputStream =>
+          LinesChunkReader.read(inputStream, options, file.pathAsString)
+        }
+      case None =>
+        val unchunked = if (options.failOnOverflow) options else options.copy(maxBytes = None)
+        tryWithResource(() => file.newInputStream) { inputStream =>
+          LinesChunkReader.skipFully(inputStream, options.fromByte)
+          LinesChunkReader.read(inputStream, unchunked, file.pathAsString)
+        }
+    }).toEither
+  }
+
+  /** A channel of `file` positioned at `position`, or None if its file system doesn't support seekable channels. */
+  private def positionedChannel(file: Path, position: Long): Try[Option[SeekableByteChannel]] = {
+    Try(Option(Files.newByteChannel(file.nioPath))).recover({
+      case _: UnsupportedOperationException => None
+    }).flatMap({
+      case Some(channel) =>
+        val positioned = Try({
+          if (position > channel.size())
+            throw new IOException(s"Reached the end of ${file.pathAsString} before offset $position")
+          Option(channel.position(position))
+        }).recover({
+          case _: UnsupportedOperationException => None
+        })
+        if (!positioned.toOption.exists(_.isDefined)) channel.close()
+        positioned
+      case None => Success(None)
+    })
   }
 
   private def isDirectory(isDirectory: IoIsDirectoryCommand) = IO {
@@ -172,11 +227,41 @@ class NioFlow(parallelism: Int,
 }
 
 object NioFlow {
-  case class NioFlowConfig(parallelism: Int)
+
+  /**
+    * Decodes UTF-8 bytes into a String, replacing \r\n with \n.
+    * The bytes are compacted in place before being decoded, which avoids a regex and a second copy of the content.
+    * This is safe on UTF-8: the bytes of \r and \n never appear within a multi-byte character.
+    * Note that the array is modified.
+    */
+  private [nio] def decodeNormalizingNewLines(bytes: Array[Byte]): String = {
+    var read = 0
+    var written = 0
+    while (read < bytes.length) {
+      val byte = bytes(read)
+      if (!(byte == '\r' && read + 1 < bytes.length && bytes(read + 1) == '\n')) {
+        bytes(written) = byte
+        written += 1
+      }
+      read += 1
+    }
+    new String(bytes, 0, written, StandardCharsets.UTF_8)
+  }
+
+  case class NioFlowConfig(parallelism: Int,
+                           localCopyStrategies: List[LocalCopyStrategy] = LocalFileCopy.DefaultStrategies,
+                           localHashing: LocalHashingConfig = LocalFileHasher.DefaultConfig,
+                           hashCache: Option[LocalHashCache] = None)
 
   implicit val nioFlowConfigReader: ValueReader[NioFlowConfig] = (config: Config, path: String) => {
     val base = config.as[Config](path)
     val parallelism = base.as[Int]("parallelism")
-    NioFlowConfig(parallelism)
+    val localCopyStrategies = base.getAs[List[String]]("local-copy-strategies")
+      .map(_.map(LocalFileCopy.strategyFromName))
+      .getOrElse(LocalFileCopy.DefaultStrategies)
+    val localHashing = base.getAs[Config]("local-hashing")
+      .map(LocalFileHasher.parseConfig)
+      .getOrElse(LocalFileHasher.DefaultConfig)
+    NioFlowConfig(parallelism, localCopyStrategies, localHashing, LocalHashCache.fromConfig(base))
   }
 }
@@ -23,8 +23,10 @@ import scala.concurrent.{ExecutionContext, Future}
 
 /**
   * Given a database-layer CallCacheStore, this accessor can access the database with engine-friendly data types.
+  *
+  * If a bloom filter is given, the initial hash lookups it rules out are answered without querying the database.
   */
-class CallCache(database: CallCachingSqlDatabase) {
+class CallCache(database: CallCachingSqlDatabase, bloomFilter: Option[CallCacheBloomFilter] = None) {
   def addToCache(bundles: Seq[CallCacheHashBundle], batchSize: Int)(implicit ec: ExecutionContext): Future[Unit] = {
     val joins = bundles map { b =>
       val metaInfo = CallCachingEntry(
@@ -39,7 +41,25 @@ class CallCache(database: CallCachingSqlDatabase) {
       buildCallCachingJoin(metaInfo, b.callCacheHashes, result, jobDetritus)
     }
 
-    database.addCallCaching(joins, batchSize)
+    val added = database.addCallCaching(joins, batchSize)
+    bloomFilter foreach { filter =>
+      added foreach { _ => bundles filter { _.allowResultReuse } foreach { b => filter.add(b.callCacheHashes.aggregatedInitialHash) } }
+    }
+    added
+  }
+
+  /**
+    * Loads the reusable base aggregated hashes into the bloom filter, if any.
+    */
+  def rebuildBloomFilter()(implicit ec: ExecutionContext): Future[Long] = {
+    bloomFilter.map(_.rebuild(database)).getOrElse(Future.successful(0L))
+  }
+
+  /**
+    * Loads the reusable base aggregated hashes written since the bloom filter was last loaded, if any.
+    */
+  def refreshBloomFilter()(implicit ec: ExecutionContext): Future[Long] = {
+    bloomFilter.map(_.refresh(database)).getOrElse(Future.successful(0L))
   }
 
   private def buildCallCachingJoin(callCachingEntry: CallCachingEntry, callCacheHashes: CallCacheHashes,
@@ -73,8 +93,27 @@ class CallCache(database: CallCachingSqlDatabase) {
   }
 
   def hasBaseAggregatedHashMatch(baseAggregatedHash: String, hints: List[CacheHitHint])(implicit ec: ExecutionContext): Future[Boolean] = {
-    val ccpp = hints collectFirst { case h: CallCachePathPrefixes => h.prefixes }
-    database.hasMatchingCallCachingEntriesForBaseAggregation(baseAggregatedHash, ccpp)
+    if (bloomFilter.exists(!_.mightMatch(baseAggregatedHash))) Future.successful(false)
+    else {
+      val matched = database.hasMatchingCallCachingEntriesForBaseAggregation(baseAggregatedHash, pathPrefixes(hints))
+      bloomFilter foreach { filter => matched foreach filter.recordLookup }
+      matched
+    }
+  }
+
+  /**
+    * Returns the hashes among `baseAggregatedHashes` that have a match, in a single query.
+    */
+  def baseAggregatedHashMatches(baseAggregatedHashes: Set[String], hints: List[CacheHitHint])(implicit ec: ExecutionContext): Future[Set[String]] = {
+    val candidates = bloomFilter.map(filter => baseAggregatedHashes.filter(filter.mightMatch)).getOrElse(baseAggregatedHashes)
+    if (candidates.isEmpty) Future.successful(Set.empty)
+    else {
+      val matches = database.baseAggregationsWithCallCachingEntries(candidates, pathPrefixes(hints))
+      bloomFilter foreach { filter =>
+        matches foreach { matching => candidates foreach { hash => filter.recordLookup(matching.contains(hash)) } }
+      }
+      matches
+    }
   }
 
   def callCachingHitForAggregatedHashes(aggregatedCallHashes: AggregatedCallHashes, prefixesHint: Option[CallCachePathPrefixes], hitNumber: Int)
@@ -171,6 +210,9 @@ object CallCache {
   }
 
   sealed trait CacheHitHint
+
+  def pathPrefixes(hints: List[CacheHitHint]): Option[List[String]] = hints collectFirst { case h: CallCachePathPrefixes => h.prefixes }
+
   case class CallCachePathPrefixes(callCacheRootPrefix: Option[String], workflowOptionPrefixes: List[String]) extends CacheHitHint {
     lazy val prefixes: List[String] = (callCacheRootPrefix.toList ++ workflowOptionPrefixes) map { _.ensureSlashed }
   }
@@ -0,0 +1,89 @@
+package cromwell.engine.workflow.lifecycle.execution.callcaching
+
+import akka.actor.{ActorLogging, ActorRef, Props}
+import cats.data.{NonEmptyList, NonEmptyVector}
+import com.typesafe.config.Config
+import cromwell.core.Dispatcher.EngineDispatcher
+import cromwell.core.LoadConfig
+import cromwell.core.actor.BatchActor.CommandAndReplyTo
+import cromwell.core.instrumentation.InstrumentationPrefixes
+import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCache._
+import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCacheReadActor._
+import cromwell.services.EnhancedBatchActor
+import net.ceedubs.ficus.Ficus._
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+import scala.util.{Failure, Success}
+
+/**
+  * Alternative to the CallCacheReadActor gathering the requests received within `window`, up to `maxBatchSize`.
+  *
+  * The initial hash lookups of a batch, by far the most frequent requests, are answered with one query per set of call
+  * cache path prefixes instead of one query each. The other requests depend on the hit number of each job and are still
+  * looked up one by one.
+  */
+class CallCacheBatchedReadActor(cache: CallCache,
+                                override val serviceRegistryActor: ActorRef,
+                                override val threshold: Int,
+                                window: FiniteDuration,
+                                maxBatchSize: Int)
+  extends EnhancedBatchActor[CommandAndReplyTo[CallCacheReadActorRequest]](window, maxBatchSize)
+    with ActorLogging {
+  override def routed = true
+
+  private val batchSizePath = NonEmptyList.of("callcaching", "read", self.path.name, "batch_size")
+  private val batchTimePath = NonEmptyList.of("callcaching", "read", self.path.name, "batch_time")
+
+  override protected def process(data: NonEmptyVector[CommandAndReplyTo[CallCacheReadActorRequest]]): Future[Int] = instrumentedProcess {
+    val startTime = System.nanoTime()
+    val requests = data.toVector
+
+    val initialHashLookups = requests collect {
+      case CommandAndReplyTo(initialHashLookup: HasMatchingInitialHashLookup, replyTo) => initialHashLookup -> replyTo
+    }
+    val otherRequests = requests filterNot { _.command.isInstanceOf[HasMatchingInitialHashLookup] }
+
+    // Lookups restricted to the same path prefixes can share a query
+    val batchedLookups = initialHashLookups.groupBy({ case (initialHashLookup, _) => pathPrefixes(initialHashLookup.cacheHitHints) }).values map { group =>
+      val hints = group.head._1.cacheHitHints
+      val matches = cache.baseAggregatedHashMatches(group.map(_._1.aggregatedTaskHash).toSet, hints)
+      matches onComplete {
+        case Success(matching) => group foreach { case (initialHashLookup, replyTo) =>
+          replyTo ! (if (matching.contains(initialHashLookup.aggregatedTaskHash)) HasMatchingEntries else NoMatchingEntries)
+        }
+        case Failure(f) => group foreach { case (_, replyTo) => replyTo ! CacheResultLookupFailure(f) }
+      }
+      matches
+    }
+    val individualLookups = otherRequests map { lookup(cache, _) }
+
+    sendGauge(batchSizePath, requests.size.toLong, instrumentationPrefix)
+    val processed = Future.sequence(batchedLookups.toVector ++ individualLookups)
+    processed onComplete { _ => sendTiming(batchTimePath, (System.nanoTime() - startTime).nanos, instrumentationPrefix) }
+    processed.map(_ => requests.size)
+  }
+
+  // EnhancedBatchActor overrides
+  override def receive: Receive = enhancedReceive.orElse(super.receive)
+  override protected def weightFunction(command: CommandAndReplyTo[CallCacheReadActorRequest]) = 1
+  override protected def instrumentationPath = NonEmptyList.of("callcaching", "read")
+  override protected def instrumentationPrefix = InstrumentationPrefixes.JobPrefix
+  override def commandToData(snd: ActorRef) = {
+    case request: CallCacheReadActorRequest => CommandAndReplyTo(request, snd)
+  }
+}
+
+object CallCacheBatchedReadActor {
+  /**
+    * Returns the props of a batched read actor if `read-batching` is enabled in the call caching configuration.
+    */
+  def props(callCache: CallCache, serviceRegistryActor: ActorRef, callCachingConfig: Config): Option[Props] = {
+    callCachingConfig.getAs[Config]("read-batching") filter { _.getAs[Boolean]("enabled").getOrElse(false) } map { batchingConfig =>
+      val window = batchingConfig.getAs[FiniteDuration]("window").getOrElse(50.milliseconds)
+      val maxBatchSize = batchingConfig.getAs[Int]("max-batch-size").getOrElse(500)
+      Props(new CallCacheBatchedReadActor(callCache, serviceRegistryActor, LoadConfig.CallCacheReadThreshold, window, maxBatchSize))
+        .withDispatcher(EngineDispatcher)
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package cromwell.engine.workflow.lifecycle.execution.callcaching
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicLong
+
+import com.google.common.hash.{BloomFilter, Funnels}
+import com.typesafe.config.Config
+import cromwell.database.sql.CallCachingSqlDatabase
+import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCacheBloomFilter._
+import net.ceedubs.ficus.Ficus._
+
+import scala.concurrent.duration._
+import scala.concurrent.{ExecutionContext, Future}
+
+/**
+  * In-memory bloom filter of the base aggregation hashes of the reusable call cache entries. Initial hash lookups the
+  * filter rules out don't query the database.
+  *
+  * Until the filter is first loaded every hash might match. The hashes of the entries written to the cache are added to
+  * the filter, and to the filter being rebuilt if any, so that a rebuild never loses them. Invalidated entries stay in
+  * the filter until the next rebuild, they only cost a query.
+  *
+  * The filter is only advisory: it records the id of the latest entry it was loaded with, and `refresh` looks up the
+  * id of the latest entry in the database, which may have been written by another Cromwell instance. While the filter
+  * lags behind the latest known entry every hash might match, until `refresh` has loaded the hashes of the entries
+  * since. Entries written by other instances after the last `refresh` are not known yet and may be ruled out, as may
+  * entries committed after entries with greater ids, until the next rebuild. Ruling out a hash that has an entry only
+  * costs a cache miss.
+  *
+  * @param expectedEntries Minimum number of hashes the filter is sized for
+  * @param falsePositiveRate Expected false positive rate when the filter holds as many hashes as it is sized for
+  */
+class CallCacheBloomFilter(expectedEntries: Long, falsePositiveRate: Double) {
+  require(expectedEntries > 0, "The call cache bloom filter expected-entries must be positive")
+  require(falsePositiveRate > 0 && falsePositiveRate < 1, "The call cache bloom filter false-positive-rate must be between 0 and 1")
+
+  // Guarded by `this` when written
+  @volatile private var filter: Option[BloomFilter[CharSequence]] = None
+  @volatile private var rebuilding: Option[BloomFilter[CharSequence]] = None
+  // The id of the latest entry whose hash was loaded into the filter
+  @volatile private var loadedThroughEntryId = 0
+  // The id of the latest entry known to be in the database
+  @volatile private var latestKnownEntryId = 0
+
+  private val ruledOut = new AtomicLong(0)
+  private val queried = new AtomicLong(0)
+  private val behind = new AtomicLong(0)
+  private val falsePositives = new AtomicLong(0)
+
+  /**
+    * Returns false if `baseAggregatedHash` can't have a reusable entry.
+    */
+  def mightMatch(baseAggregatedHash: String): Boolean = {
+    filter match {
+      case Some(_) if !isCurrent =>
+        behind.incrementAndGet()
+        true
+      case Some(loaded) =>
+        val result = loaded.mightContain(baseAggregatedHash)
+        if (result) queried.incrementAndGet() else ruledOut.incrementAndGet()
+        result
+      case None => true
+    }
+  }
+
+  /**
+    * Records the result of a database lookup performed for a hash the filter could not rule out.
+    */
+  def recordLookup(matched: Boolean): Unit = if (!matched && filter.isDefined && isCurrent) {
+    falsePositives.incrementAndGet()
+    ()
+  }
+
+  private def isCurrent: Boolean = loadedThroughEntryId >= latestKnownEntryId
+
+  def add(baseAggregatedHash: String): Unit = synchronized {
+    filter foreach { _.put(baseAggregatedHash) }
+    rebuilding foreach { _.put(baseAggregatedHash) }
+  }
+
+  /**
+    * Loads the hashes of the reusable entries into a new filter, which replaces the current one once loaded.
+    * Returns the number of hashes loaded.
+    *
+    * Not to be run concurrently with `refresh`.
+    */
+  def rebuild(database: CallCachingSqlDatabase)(implicit ec: ExecutionContext): Future[Long] = {
+    val newFilter = synchronized {
+      // Sized after the current filter, so that the false positive rate holds as the cache grows
+      val size = Math.max(expectedEntries, filter.map(_.approximateElementCount() * 2).getOrElse(0L))
+      val created = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), size, falsePositiveRate)
+      rebuilding = Option(created)
+      created
+    }
+
+    val loading = for {
+      lastEntryId <- latestEntryId(database)
+      loaded <- load(database, newFilter, afterEntryId = 0, lastEntryId = lastEntryId)
+    } yield (loaded, lastEntryId)
+
+    loading transform { result =>
+      synchronized {
+        result foreach { case (_, lastEntryId) =>
+          filter = Option(newFilter)
+          loadedThroughEntryId = lastEntryId
+        }
+        rebuilding = None
+      }
+      result.map { case (loaded, _) => loaded }
+    }
+  }
+
+  /**
+    * Looks up the latest entry in the database and loads the hashes of the reusable entries written since the filter
+    * was last loaded, so that it can rule hashes out again. Returns the number of hashes loaded.
+    *
+    * Not to be run concurrently with `rebuild`.
+    */
+  def refresh(database: CallCachingSqlDatabase)(implicit ec: ExecutionContext): Future[Long] = {
+    filter match {
+      case Some(loaded) =>
+        val afterEntryId = loadedThroughEntryId
+        for {
+          lastEntryId <- latestEntryId(database)
+          count <- if (lastEntryId > afterEntryId) load(database, loaded, afterEntryId, lastEntryId) else Future.successful(0L)
+          _ = synchronized { loadedThroughEntryId = Math.max(loadedThroughEntryId, lastEntryId) }
+        } yield count
+      case None => Future.successful(0L)
+    }
+  }
+
+  /** Looks up the id of the latest entry, from which on the filter can't rule hashes out until it is loaded. */
+  private def latestEntryId(database: CallCachingSqlDatabase)(implicit ec: ExecutionContext): Future[Int] = {
+    database.maxCallCachingEntryId() map { maxEntryId =>
+      val lastEntryId = maxEntryId.getOrElse(0)
+      synchronized { latestKnownEntryId = Math.max(latestKnownEntryId, lastEntryId) }
+      lastEntryId
+    }
+  }
+
+  private def load(database: CallCachingSqlDatabase,
+                   into: BloomFilter[CharSequence],
+                   afterEntryId: Int,
+                   lastEntryId: Int)
+                  (implicit ec: ExecutionContext): Future[Long] = {
+    val loaded = new AtomicLong(0)
+    database.streamReusableBaseAggregations(afterEntryId, lastEntryId) foreach { hash =>
+      into.put(hash)
+      loaded.incrementAndGet()
+      ()
+    } map { _ => loaded.get() }
+  }
+
+  def stats: CallCacheBloomFilterStats = CallCacheBloomFilterStats(
+    loaded = filter.isDefined,
+    approximateEntries = filter.map(_.approximateElementCount()).getOrElse(0L),
+    ruledOut = ruledOut.get(),
+    queried = queried.get(),
+    behind = behind.get(),
+    falsePositives = falsePositives.get()
+  )
+}
+
+object CallCacheBloomFilter {
+  /**
+    * @param ruledOut Lookups answered without querying the database
+    * @param queried Lookups the filter could not rule out
+    * @param behind Lookups not checked against the filter because it lagged behind the latest known entry
+    * @param falsePositives Lookups the filter could not rule out that had no match
+    */
+  case class CallCacheBloomFilterStats(loaded: Boolean,
+                                       approximateEntries: Long,
+                                       ruledOut: Long,
+                                       queried: Long,
+                                       behind: Long,
+                                       falsePositives: Long)
+
+  case class CallCacheBloomFilterSettings(expectedEntries: Long,
+                                          falsePositiveRate: Double,
+                                          rebuildInterval: FiniteDuration,
+                                          refreshInterval: FiniteDuration)
+
+  /**
+    * Returns the settings of the bloom filter if `bloom-filter` is enabled in the call caching configuration.
+    */
+  def settings(callCachingConfig: Config): Option[CallCacheBloomFilterSettings] = {
+    callCachingConfig.getAs[Config]("bloom-filter") filter { _.getAs[Boolean]("enabled").getOrElse(false) } map { filterConfig =>
+      CallCacheBloomFilterSettings(
+        expectedEntries = filterConfig.getAs[Long]("expected-entries").getOrElse(10000000L),
+        falsePositiveRate = filterConfig.getAs[Double]("false-positive-rate").getOrElse(0.01),
+        rebuildInterval = filterConfig.getAs[FiniteDuration]("rebuild-interval").getOrElse(6.hours),
+        refreshInterval = filterConfig.getAs[FiniteDuration]("refresh-interval").getOrElse(10.seconds)
+      )
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package cromwell.engine.workflow.lifecycle.execution.callcaching
+
+import akka.actor.{Actor, ActorLogging, ActorRef, Props, Timers}
+import akka.pattern.pipe
+import cats.data.NonEmptyList
+import cromwell.core.Dispatcher.EngineDispatcher
+import cromwell.core.instrumentation.InstrumentationPrefixes
+import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCacheBloomFilter.{CallCacheBloomFilterSettings, CallCacheBloomFilterStats}
+import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCacheBloomFilterActor._
+import cromwell.services.instrumentation.{CromwellInstrumentation, CromwellInstrumentationActor}
+
+import scala.concurrent.duration._
+
+/**
+  * Loads the call cache bloom filter on startup, rebuilds it every `rebuildInterval` so that invalidated entries
+  * eventually leave it, refreshes it every `refreshInterval` with the entries written since, possibly by other
+  * Cromwell instances, and reports how many lookups it saves. Rebuilds and refreshes never run concurrently.
+  */
+class CallCacheBloomFilterActor(callCache: CallCache,
+                                filter: CallCacheBloomFilter,
+                                rebuildInterval: FiniteDuration,
+                                refreshInterval: FiniteDuration,
+                                override val serviceRegistryActor: ActorRef)
+  extends Actor with Timers with ActorLogging with CromwellInstrumentationActor {
+  implicit val ec = context.dispatcher
+
+  private var lastReported = filter.stats
+  private var rebuilding = false
+  private var refreshing = false
+
+  self ! Rebuild
+  timers.startPeriodicTimer(ReportStatsKey, ReportStats, CromwellInstrumentation.InstrumentationRate)
+  timers.startPeriodicTimer(RefreshKey, Refresh, refreshInterval)
+
+  override def receive: Receive = {
+    case Rebuild if refreshing =>
+      // Rebuild once the refresh completes
+      timers.startSingleTimer(Rebuild, Rebuild, RebuildDelay)
+    case Rebuild =>
+      rebuilding = true
+      val startTime = System.nanoTime()
+      callCache.rebuildBloomFilter() map { RebuildComplete(_, (System.nanoTime() - startTime).nanos) } recover {
+        case failure => RebuildFailed(failure)
+      } pipeTo self
+      ()
+    case RebuildComplete(loaded, duration) =>
+      rebuilding = false
+      log.info("Loaded {} call cache hashes into the bloom filter in {} seconds", loaded, duration.toSeconds)
+      sendTiming(InstrumentationPath :+ "rebuild_time", duration, InstrumentationPrefixes.JobPrefix)
+      timers.startSingleTimer(Rebuild, Rebuild, rebuildInterval)
+    case RebuildFailed(reason) =>
+      rebuilding = false
+      log.error(reason, "Failed to load the call cache hashes into the bloom filter")
+      timers.startSingleTimer(Rebuild, Rebuild, rebuildInterval.min(RetryInterval))
+    case Refresh if !rebuilding && !refreshing =>
+      refreshing = true
+      callCache.refreshBloomFilter() map RefreshComplete recover {
+        case failure => RefreshFailed(failure)
+      } pipeTo self
+      ()
+    case Refresh => // A rebuild or refresh is in progress
+    case RefreshComplete(loaded) =>
+      refreshing = false
+      if (loaded > 0) log.debug("Loaded {} new call cache hashes into the bloom filter", loaded)
+    case RefreshFailed(reason) =>
+      refreshing = false
+      log.warning("Failed to load the new call cache hashes into the bloom filter: {}", reason.getMessage)
+    case ReportStats => reportStats(filter.stats)
+  }
+
+  private def reportStats(stats: CallCacheBloomFilterStats): Unit = {
+    count(InstrumentationPath :+ "ruled_out", stats.ruledOut - lastReported.ruledOut, InstrumentationPrefixes.JobPrefix)
+    count(InstrumentationPath :+ "queried", stats.queried - lastReported.queried, InstrumentationPrefixes.JobPrefix)
+    count(InstrumentationPath :+ "behind", stats.behind - lastReported.behind, InstrumentationPrefixes.JobPrefix)
+    count(InstrumentationPath :+ "false_positives", stats.falsePositives - lastReported.falsePositives, InstrumentationPrefixes.JobPrefix)
+    sendGauge(InstrumentationPath :+ "entries", stats.approximateEntries, InstrumentationPrefixes.JobPrefix)
+    if (stats.queried > 0)
+      sendGauge(InstrumentationPath :+ "false_positive_permille", stats.falsePositives * 1000 / stats.queried, InstrumentationPrefixes.JobPrefix)
+    lastReported = stats
+  }
+}
+
+object CallCacheBloomFilterActor {
+  private val InstrumentationPath = NonEmptyList.of("callcaching", "bloom_filter")
+  private val RetryInterval = 5.minutes
+  private val RebuildDelay = 1.second
+
+  case object Rebuild
+  case object ReportStats
+  case object ReportStatsKey
+  case object Refresh
+  case object RefreshKey
+  case class RebuildComplete(loaded: Long, duration: FiniteDuration)
+  case class RebuildFailed(reason: Throwable)
+  case class RefreshComplete(loaded: Long)
+  case class RefreshFailed(reason: Throwable)
+
+  def props(callCache: CallCache, filter: CallCacheBloomFilter, settings: CallCacheBloomFilterSettings, serviceRegistryActor: ActorRef): Props = {
+    Props(new CallCacheBloomFilterActor(callCache, filter, settings.rebuildInterval, settings.refreshInterval, serviceRegistryActor)).withDispatcher(EngineDispatcher)
+  }
+}
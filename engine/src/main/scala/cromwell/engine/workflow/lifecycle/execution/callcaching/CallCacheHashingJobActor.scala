@@ -28,6 +28,7 @@ import javax.xml.bind.DatatypeConverter
   * If it was the last batch and all the files have been hashed, send all the hashes along with the aggregated file hash.
   * If at any point the callCacheReadingJobActor dies (either because it decided this was a CacheMiss or it found a successful
   * CacheHit), either keep hashing the files if writeToCache is true, or die if it's not.
+  * Without a callCacheReadingJobActor, all the remaining files are hashed at once instead of batch by batch.
   * Both this actor and the CCRJA are children of the EJHA. 
   * The CCRJA reports its findings (cache hit / miss) directly to the EJHA that forwards them to the EJEA.
   * This actor does not need nor care about cache hit/miss.
@@ -63,10 +64,12 @@ class CallCacheHashingJobActor(jobDescriptor: BackendJobDescriptor,
 
   when(WaitingForHashFileRequest) {
     case Event(NextBatchOfFileHashesRequest, data) =>
-      data.fileHashRequestsRemaining.headOption match {
+      // Without a reader nothing looks at partial results, all the remaining files are hashed at once
+      val batchedData = if (data.callCacheReadingJobActor.isEmpty) data.inSingleBatch else data
+      batchedData.fileHashRequestsRemaining.headOption match {
         case Some(batch) if batch.nonEmpty =>
           batch foreach { fileHashingActor ! _ }
-          goto(HashingFiles)
+          goto(HashingFiles) using batchedData
         case _ =>
           sendToCallCacheReadingJobActor(NoFileHashesResult, data)
           stopAndStay(Option(NoFileHashesResult))
@@ -89,7 +92,9 @@ class CallCacheHashingJobActor(jobDescriptor: BackendJobDescriptor,
           stay() using newData
       }
     case Event(Terminated(_), data) if callCachingActivity.writeToCache =>
-      stay() using data.copy(callCacheReadingJobActor = None)
+      // The batches after the one being hashed no longer need to wait for the reader
+      data.fileHashRequestsRemaining.drop(1).flatten foreach { fileHashingActor ! _ }
+      stay() using data.copy(callCacheReadingJobActor = None).inSingleBatch
   }
 
   whenUnhandled {
@@ -243,7 +248,13 @@ object CallCacheHashingJobActor {
                                                 fileHashResults: List[HashResult],
                                                 callCacheReadingJobActor: Option[ActorRef],
                                                 batchSize: Int) {
-    private val md5Digest = MessageDigest.getInstance("MD5")
+    /**
+      * Merges the remaining batches into one, so that no partial result is produced until all the files are hashed.
+      */
+    def inSingleBatch: CallCacheHashingJobActorData = fileHashRequestsRemaining.flatten match {
+      case Nil => this.copy(fileHashRequestsRemaining = List.empty)
+      case requests => this.copy(fileHashRequestsRemaining = List(requests))
+    }
 
     /**
       * Returns the updated state data along with an optional message to be sent back to CCRJA and parent.
@@ -256,14 +267,14 @@ object CallCacheHashingJobActor {
       val (updatedRequestsList, responseMessage) = fileHashRequestsRemaining match {
         case Nil => (List.empty, Option(NoFileHashesResult))
         case lastBatch :: Nil =>
-          val updatedBatch = lastBatch.filterNot(_.hashKey == hashResult.hashKey)
+          val updatedBatch = withoutRequest(lastBatch, hashResult.hashKey)
           // If we're processing the last batch, and it's now empty, then we're done
           // In that case compute the aggregated hash and send that
-          if (updatedBatch.isEmpty) (List.empty, Option(CompleteFileHashingResult(newFileHashResults.toSet, calculateHashAggregation(newFileHashResults, md5Digest))))
+          if (updatedBatch.isEmpty) (List.empty, Option(CompleteFileHashingResult(newFileHashResults.toSet, calculateHashAggregation(newFileHashResults, MessageDigest.getInstance("MD5")))))
           // Otherwise just return the updated batch and no message
           else (List(updatedBatch), None)
         case currentBatch :: otherBatches =>
-          val updatedBatch = currentBatch.filterNot(_.hashKey == hashResult.hashKey)
+          val updatedBatch = withoutRequest(currentBatch, hashResult.hashKey)
           // If the current batch is empty, we got a partial result, take the first fileHashBatchSize of the list
           if (updatedBatch.isEmpty) {
             // hashResult + fileHashResults.take(batchSize - 1) -> batchSize elements
@@ -277,6 +288,12 @@ object CallCacheHashingJobActor {
 
       (this.copy(fileHashRequestsRemaining = updatedRequestsList, fileHashResults = newFileHashResults), responseMessage)
     }
+
+    // Hashes mostly come back in the order they were requested, so the request is usually found at the head of the batch
+    private def withoutRequest(batch: List[SingleFileHashRequest], hashKey: HashKey): List[SingleFileHashRequest] = {
+      val (before, after) = batch.span(_.hashKey != hashKey)
+      before ::: after.drop(1)
+    }
   }
 
   object UnspecifiedRuntimeAttributeHashValue extends HashValue("N/A")
@@ -10,7 +10,7 @@ import cromwell.core.instrumentation.InstrumentationPrefixes
 import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCacheReadActor._
 import cromwell.services.EnhancedThrottlerActor
 
-import scala.concurrent.Future
+import scala.concurrent.{ExecutionContext, Future}
 import scala.util.{Failure, Success}
 import CallCache._
 import cromwell.services.CallCaching.CallCachingEntryId
@@ -27,6 +27,28 @@ class CallCacheReadActor(cache: CallCache,
     with ActorLogging {
   override def routed = true
   override def processHead(request: CommandAndReplyTo[CallCacheReadActorRequest]): Future[Int] = instrumentedProcess {
+    lookup(cache, request).map(_ => 1)
+  }
+
+  // EnhancedBatchActor overrides
+  override def receive: Receive = enhancedReceive.orElse(super.receive)
+  override protected def instrumentationPath = NonEmptyList.of("callcaching", "read")
+  override protected def instrumentationPrefix = InstrumentationPrefixes.JobPrefix
+  override def commandToData(snd: ActorRef) = {
+    case request: CallCacheReadActorRequest => CommandAndReplyTo(request, snd)
+  }
+}
+
+object CallCacheReadActor {
+  def props(callCache: CallCache, serviceRegistryActor: ActorRef): Props = {
+    Props(new CallCacheReadActor(callCache, serviceRegistryActor, LoadConfig.CallCacheReadThreshold)).withDispatcher(EngineDispatcher)
+  }
+
+  /**
+    * Performs the lookup requested and replies to the requester.
+    */
+  private[callcaching] def lookup(cache: CallCache, request: CommandAndReplyTo[CallCacheReadActorRequest])
+                                 (implicit ec: ExecutionContext, sender: ActorRef): Future[Any] = {
     val response = request.command match {
       case HasMatchingInitialHashLookup(initialHash, hints) =>
         cache.hasBaseAggregatedHashMatch(initialHash, hints) map {
@@ -51,21 +73,7 @@ class CallCacheReadActor(cache: CallCache,
       case Failure(f) => request.replyTo ! CacheResultLookupFailure(f)
     }
 
-    response.map(_ => 1)
-  }
-
-  // EnhancedBatchActor overrides
-  override def receive: Receive = enhancedReceive.orElse(super.receive)
-  override protected def instrumentationPath = NonEmptyList.of("callcaching", "read")
-  override protected def instrumentationPrefix = InstrumentationPrefixes.JobPrefix
-  override def commandToData(snd: ActorRef) = {
-    case request: CallCacheReadActorRequest => CommandAndReplyTo(request, snd)
-  }
-}
-
-object CallCacheReadActor {
-  def props(callCache: CallCache, serviceRegistryActor: ActorRef): Props = {
-    Props(new CallCacheReadActor(callCache, serviceRegistryActor, LoadConfig.CallCacheReadThreshold)).withDispatcher(EngineDispatcher)
+    response
   }
 
   private[CallCacheReadActor] case class RequestTuple(requester: ActorRef, request: CallCacheReadActorRequest)
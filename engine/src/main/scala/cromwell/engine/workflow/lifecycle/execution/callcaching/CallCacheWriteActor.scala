@@ -3,22 +3,28 @@ package cromwell.engine.workflow.lifecycle.execution.callcaching
 import akka.actor.{ActorRef, Props}
 import cats.data.{NonEmptyList, NonEmptyVector}
 import cats.implicits._
+import com.typesafe.config.Config
 import cromwell.core.Dispatcher.EngineDispatcher
 import cromwell.core.LoadConfig
+import cromwell.core.actor.AdaptiveBatchingConfig
 import cromwell.core.actor.BatchActor._
 import cromwell.core.instrumentation.InstrumentationPrefixes
 import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCache.CallCacheHashBundle
-import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCacheWriteActor.SaveCallCacheHashes
+import cromwell.engine.workflow.lifecycle.execution.callcaching.CallCacheWriteActor.{CallCacheWriteSettings, SaveCallCacheHashes}
 import cromwell.services.EnhancedBatchActor
+import net.ceedubs.ficus.Ficus._
 
 import scala.concurrent.Future
 import scala.concurrent.duration._
 import scala.language.postfixOps
 
-case class CallCacheWriteActor(callCache: CallCache, serviceRegistryActor: ActorRef, threshold: Int)
+case class CallCacheWriteActor(callCache: CallCache,
+                               serviceRegistryActor: ActorRef,
+                               threshold: Int,
+                               settings: CallCacheWriteSettings = CallCacheWriteSettings.Default)
   extends EnhancedBatchActor[CommandAndReplyTo[SaveCallCacheHashes]](
-    CallCacheWriteActor.dbFlushRate,
-    CallCacheWriteActor.dbBatchSize) {
+    settings.flushRate,
+    settings.batchSize) {
 
   override protected def process(data: NonEmptyVector[CommandAndReplyTo[SaveCallCacheHashes]]) = instrumentedProcess {
     log.debug("Flushing {} call cache hashes sets to the DB", data.length)
@@ -27,7 +33,7 @@ case class CallCacheWriteActor(callCache: CallCache, serviceRegistryActor: Actor
     //     success or failure.
     val (bundles, replyTos) = data.toList.foldMap { case CommandAndReplyTo(s: SaveCallCacheHashes, r: ActorRef) => (List(s.bundle), List(r)) }
     if (bundles.nonEmpty) {
-      val futureMessage = callCache.addToCache(bundles, batchSize) map { _ => CallCacheWriteSuccess } recover { case t => CallCacheWriteFailure(t) }
+      val futureMessage = callCache.addToCache(bundles, settings.insertBatchSize) map { _ => CallCacheWriteSuccess } recover { case t => CallCacheWriteFailure(t) }
       futureMessage map { message =>
         replyTos foreach { _ ! message }
       }
@@ -36,6 +42,7 @@ case class CallCacheWriteActor(callCache: CallCache, serviceRegistryActor: Actor
   }
 
   // EnhancedBatchActor overrides
+  override protected def adaptiveBatching = settings.adaptiveBatching
   override def receive = enhancedReceive.orElse(super.receive)
   override protected def weightFunction(command: CommandAndReplyTo[SaveCallCacheHashes]) = 1
   override protected def instrumentationPath = NonEmptyList.of("callcaching", "write")
@@ -47,13 +54,45 @@ case class CallCacheWriteActor(callCache: CallCache, serviceRegistryActor: Actor
 
 object CallCacheWriteActor {
   def props(callCache: CallCache, registryActor: ActorRef): Props = {
-    Props(CallCacheWriteActor(callCache, registryActor, LoadConfig.CallCacheWriteThreshold)).withDispatcher(EngineDispatcher)
+    props(callCache, registryActor, CallCacheWriteSettings.Default)
+  }
+
+  def props(callCache: CallCache, registryActor: ActorRef, settings: CallCacheWriteSettings): Props = {
+    Props(CallCacheWriteActor(callCache, registryActor, LoadConfig.CallCacheWriteThreshold, settings)).withDispatcher(EngineDispatcher)
   }
 
   case class SaveCallCacheHashes(bundle: CallCacheHashBundle)
 
   val dbBatchSize = 100
   val dbFlushRate = 3 seconds
+  val dbInsertBatchSize = 1000
+
+  /**
+    * @param batchSize Maximum number of jobs whose results are written in a single transaction
+    * @param flushRate Maximum time results wait before being written
+    * @param insertBatchSize Number of hash, simpleton, detritus or aggregation rows sent per batch statement
+    * @param adaptiveBatching If defined, bounds within which the batch size and flush rate adapt to the write latency
+    */
+  case class CallCacheWriteSettings(batchSize: Int,
+                                    flushRate: FiniteDuration,
+                                    insertBatchSize: Int,
+                                    adaptiveBatching: Option[AdaptiveBatchingConfig] = None)
+
+  object CallCacheWriteSettings {
+    val Default = CallCacheWriteSettings(dbBatchSize, dbFlushRate, dbInsertBatchSize)
+
+    def apply(callCachingConfig: Config): CallCacheWriteSettings = {
+      val writeConfig = callCachingConfig.getAs[Config]("write-batching")
+      val batchSize = writeConfig.flatMap(_.getAs[Int]("max-batch-size")).getOrElse(dbBatchSize)
+      val flushRate = writeConfig.flatMap(_.getAs[FiniteDuration]("flush-rate")).getOrElse(dbFlushRate)
+      CallCacheWriteSettings(
+        batchSize = batchSize,
+        flushRate = flushRate,
+        insertBatchSize = writeConfig.flatMap(_.getAs[Int]("insert-batch-size")).getOrElse(dbInsertBatchSize),
+        adaptiveBatching = writeConfig.flatMap(AdaptiveBatchingConfig.fromConfig(_, batchSize, flushRate))
+      )
+    }
+  }
 }
 
 sealed trait CallCacheWriteResponse
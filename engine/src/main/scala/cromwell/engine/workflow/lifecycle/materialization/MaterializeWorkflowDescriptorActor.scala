@@ -26,12 +26,13 @@ import cromwell.core.callcaching._
 import cromwell.core.io.AsyncIo
 import cromwell.core.labels.{Label, Labels}
 import cromwell.core.logging.WorkflowLogging
-import cromwell.core.path.{PathBuilder, PathBuilderFactory}
+import cromwell.core.path.{PathBuilder, PathBuilderFactory, PathFactory}
 import cromwell.engine._
 import cromwell.engine.backend.CromwellBackends
 import cromwell.engine.workflow.WorkflowProcessingEventPublishing._
 import cromwell.engine.workflow.lifecycle.EngineLifecycleActorAbortCommand
 import cromwell.engine.workflow.lifecycle.materialization.MaterializeWorkflowDescriptorActor._
+import cromwell.filesystems.ftp.FtpConnectionPrewarming
 import cromwell.filesystems.gcs.batch.GcsBatchCommandBuilder
 import cromwell.languages.util.ImportResolver._
 import cromwell.languages.util.LanguageFactoryUtil
@@ -47,7 +48,7 @@ import wom.expression.{NoIoFunctionSet, WomExpression}
 import wom.graph.CommandCallNode
 import wom.graph.GraphNodePort.OutputPort
 import wom.runtime.WomOutputRuntimeExtractor
-import wom.values.{WomString, WomValue}
+import wom.values.{WomSingleFile, WomString, WomValue}
 
 import scala.concurrent.Future
 import scala.language.postfixOps
@@ -221,6 +222,7 @@ class MaterializeWorkflowDescriptorActor(serviceRegistryActor: ActorRef,
 
   when(MaterializingState) {
     case Event(Valid(descriptor: EngineWorkflowDescriptor), _) =>
+      prewarmFtpConnections(descriptor)
       sender() ! MaterializeWorkflowDescriptorSuccessResponse(descriptor)
       goto(MaterializationSuccessfulState)
     case Event(Invalid(error: NonEmptyList[String]@unchecked), _) =>
@@ -252,6 +254,19 @@ class MaterializeWorkflowDescriptorActor(serviceRegistryActor: ActorRef,
       stay
   }
 
+  /**
+    * Opens connections to the FTP servers the workflow inputs live on, in the background.
+    */
+  private def prewarmFtpConnections(descriptor: EngineWorkflowDescriptor): Unit = {
+    val inputFiles = descriptor.knownValues.values.toList.flatMap(_.collectAsSeq({ case file: WomSingleFile => file }))
+    val ftpPaths = inputFiles
+      .map(_.value)
+      .filter(_.startsWith("ftp://"))
+      .flatMap(file => Try(PathFactory.buildPath(file, descriptor.pathBuilders)).toOption)
+    if (ftpPaths.nonEmpty) FtpConnectionPrewarming.prewarm(ftpPaths)(iOExecutionContext)
+    ()
+  }
+
   private def workflowInitializationFailed(errors: NonEmptyList[String], replyTo: ActorRef) = {
     sender() ! MaterializeWorkflowDescriptorFailureResponse(
       new IllegalArgumentException with MessageAggregation {
@@ -6,6 +6,7 @@ import akka.event.Logging
 import akka.pattern.GracefulStopSupport
 import akka.routing.RoundRobinPool
 import akka.stream.ActorMaterializer
+import cloud.nio.impl.ftp.FtpClientPoolListener
 import com.typesafe.config.Config
 import cromwell.cloudsupport.gcp.GoogleConfiguration
 import cromwell.core._
@@ -15,11 +16,12 @@ import cromwell.docker.DockerInfoActor
 import cromwell.docker.local.DockerCliFlow
 import cromwell.engine.CromwellTerminator
 import cromwell.engine.backend.{BackendSingletonCollection, CromwellBackends}
+import cromwell.engine.instrumentation.FtpInstrumentation
 import cromwell.engine.io.IoActor.IoConfig
 import cromwell.engine.io.{IoActor, IoActorProxy}
 import cromwell.engine.workflow.WorkflowManagerActor
 import cromwell.engine.workflow.WorkflowManagerActor.AbortAllWorkflowsCommand
-import cromwell.engine.workflow.lifecycle.execution.callcaching.{CallCache, CallCacheReadActor, CallCacheWriteActor}
+import cromwell.engine.workflow.lifecycle.execution.callcaching.{CallCache, CallCacheBatchedReadActor, CallCacheBloomFilter, CallCacheBloomFilterActor, CallCacheReadActor, CallCacheWriteActor}
 import cromwell.engine.workflow.lifecycle.finalization.CopyWorkflowLogsActor
 import cromwell.engine.workflow.tokens.{DynamicRateLimiter, JobExecutionTokenDispenserActor}
 import cromwell.engine.workflow.workflowstore.AbortRequestScanningActor.AbortConfig
@@ -115,6 +117,9 @@ abstract class CromwellRootActor(terminator: CromwellTerminator,
   // Register the IoActor with the service registry:
   serviceRegistryActor ! IoActorRef(ioActorProxy)
 
+  // Send the FTP connection pool metrics to the instrumentation service
+  FtpClientPoolListener.register(new FtpInstrumentation(serviceRegistryActor))
+
   lazy val workflowLogCopyRouter: ActorRef = context.actorOf(RoundRobinPool(numberOfWorkflowLogCopyWorkers)
     .withSupervisorStrategy(CopyWorkflowLogsActor.strategy)
     .props(CopyWorkflowLogsActor.props(serviceRegistryActor, ioActor)),
@@ -125,14 +130,23 @@ abstract class CromwellRootActor(terminator: CromwellTerminator,
   lazy val callCachingEnabled = callCachingConfig.getBoolean("enabled")
   lazy val callInvalidateBadCacheResults = callCachingConfig.getBoolean("invalidate-bad-cache-results")
 
-  lazy val callCache: CallCache = new CallCache(EngineServicesStore.engineDatabaseInterface)
+  lazy val callCacheBloomFilterSettings = CallCacheBloomFilter.settings(callCachingConfig)
+  lazy val callCacheBloomFilter = callCacheBloomFilterSettings map { settings =>
+    new CallCacheBloomFilter(settings.expectedEntries, settings.falsePositiveRate)
+  }
+  lazy val callCache: CallCache = new CallCache(EngineServicesStore.engineDatabaseInterface, callCacheBloomFilter)
 
   lazy val numberOfCacheReadWorkers = config.getConfig("system").as[Option[Int]]("number-of-cache-read-workers").getOrElse(DefaultNumberOfCacheReadWorkers)
   lazy val callCacheReadActor = context.actorOf(RoundRobinPool(numberOfCacheReadWorkers)
-    .props(CallCacheReadActor.props(callCache, serviceRegistryActor)),
+    .props(CallCacheBatchedReadActor.props(callCache, serviceRegistryActor, callCachingConfig).getOrElse(CallCacheReadActor.props(callCache, serviceRegistryActor))),
     "CallCacheReadActor")
 
-  lazy val callCacheWriteActor = context.actorOf(CallCacheWriteActor.props(callCache, serviceRegistryActor), "CallCacheWriteActor")
+  lazy val callCacheWriteActor = context.actorOf(CallCacheWriteActor.props(callCache, serviceRegistryActor, CallCacheWriteActor.CallCacheWriteSettings(callCachingConfig)), "CallCacheWriteActor")
+
+  val callCacheBloomFilterActor = for {
+    settings <- callCacheBloomFilterSettings
+    filter <- callCacheBloomFilter
+  } yield context.actorOf(CallCacheBloomFilterActor.props(callCache, filter, settings, serviceRegistryActor), "CallCacheBloomFilterActor")
 
   // Docker Actor
   lazy val ioEc = context.system.dispatchers.lookup(Dispatcher.IoDispatcher)
@@ -6,10 +6,11 @@ import java.util.concurrent.TimeUnit
 import akka.actor.{ActorRef, ActorRefFactory}
 import akka.http.scaladsl.marshallers.sprayjson.SprayJsonSupport._
 import akka.http.scaladsl.marshalling.ToResponseMarshallable
-import akka.http.scaladsl.model.StatusCodes
+import akka.http.scaladsl.model.{ContentTypes, HttpEntity, StatusCodes}
 import akka.http.scaladsl.server.Directives._
 import akka.http.scaladsl.server.Route
 import akka.pattern.{AskTimeoutException, ask}
+import akka.stream.scaladsl.Source
 import akka.util.Timeout
 import cats.data.NonEmptyList
 import cats.data.Validated.{Invalid, Valid}
@@ -17,14 +18,16 @@ import cromwell.core.Dispatcher.ApiDispatcher
 import cromwell.core.instrumentation.InstrumentationPrefixes.ServicesPrefix
 import cromwell.core.labels.Labels
 import cromwell.core.{WorkflowId, WorkflowMetadataKeys, path => _}
+import cromwell.database.sql.tables.MetadataEntry
 import cromwell.engine.instrumentation.HttpInstrumentation
 import cromwell.server.CromwellShutdown
 import cromwell.services._
 import cromwell.services.instrumentation.{CromwellBucket, CromwellIncrement, CromwellTiming}
 import cromwell.services.instrumentation.InstrumentationService.InstrumentationServiceMessage
-import cromwell.services.metadata.MetadataArchiveStatus
+import cromwell.services.metadata.{MetadataArchiveStatus, MetadataJsonSupport, MetadataPage, MetadataPageQuery}
 import cromwell.services.metadata.MetadataService._
-import cromwell.services.metadata.impl.MetadataServiceActor
+import cromwell.services.metadata.impl.{MetadataDatabaseAccess, MetadataServiceActor}
+import cromwell.services.metadata.impl.builder.StreamingMetadataBuilder
 import cromwell.webservice.LabelsManagerActor
 import cromwell.webservice.LabelsManagerActor._
 import cromwell.webservice.WebServiceUtils.EnhancedThrowable
@@ -32,11 +35,12 @@ import cromwell.webservice.WorkflowJsonSupport._
 import cromwell.webservice.routes.CromwellApiService._
 import cromwell.webservice.routes.MetadataRouteSupport._
 import cromwell.webservice.WebServiceUtils._
-import spray.json.{JsObject, JsString}
+import slick.basic.DatabasePublisher
+import spray.json.{JsArray, JsObject, JsString, JsValue}
 
 import scala.concurrent.duration._
 import scala.concurrent.{ExecutionContext, Future, TimeoutException}
-import scala.util.{Failure, Success}
+import scala.util.{Failure, Success, Try}
 
 
 trait MetadataRouteSupport extends HttpInstrumentation {
@@ -85,6 +89,32 @@ trait MetadataRouteSupport extends HttpInstrumentation {
         }
       }
     },
+    encodeResponse {
+      path("workflows" / Segment / Segment / "metadata" / "stream") { (_, possibleWorkflowId) =>
+        get {
+          instrumentRequest {
+            streamMetadata(possibleWorkflowId, serviceRegistryActor)
+          }
+        }
+      }
+    },
+    encodeResponse {
+      path("workflows" / Segment / Segment / "metadata" / "page") { (_, possibleWorkflowId) =>
+        get {
+          instrumentRequest {
+            parameters(('pageSize.as[Int] ? DefaultMetadataPageSize, 'pageToken.?, 'callFqn.?, 'shardIndex.as[Int].?, 'attempt.as[Int].?, 'keyPrefix.?)) {
+              (pageSize, pageToken, callFqn, shardIndex, attempt, keyPrefix) =>
+                metadataPage(
+                  possibleWorkflowId,
+                  (w: WorkflowId) => MetadataPageQuery(w, callFqn, shardIndex, attempt, keyPrefix),
+                  pageToken,
+                  pageSize,
+                  serviceRegistryActor)
+            }
+          }
+        }
+      }
+    },
     path("workflows" / Segment / Segment / "labels") { (_, possibleWorkflowId) =>
       concat(
         get {
@@ -127,6 +157,8 @@ trait MetadataRouteSupport extends HttpInstrumentation {
 
 object MetadataRouteSupport {
 
+  val DefaultMetadataPageSize = 1000
+
   private def processMetadataArchivedResponse(workflowId: WorkflowId,
                                               archiveStatus: MetadataArchiveStatus,
                                               endTime: Option[OffsetDateTime],
@@ -155,6 +187,114 @@ object MetadataRouteSupport {
     completeMetadataBuilderResponse(metadataBuilderActorRequest(possibleWorkflowId, request, serviceRegistryActor))
   }
 
+  /**
+    * Completes with the metadata of the workflow rendered as JSON while it is read from the database, so that the
+    * metadata of workflows of any size can be retrieved. Sub workflows are not expanded.
+    */
+  def streamMetadata(possibleWorkflowId: String,
+                     serviceRegistryActor: ActorRef)
+                    (implicit timeout: Timeout,
+                     ec: ExecutionContext): Route = {
+
+    def fetchStream(id: WorkflowId): Future[Either[JsObject, DatabasePublisher[MetadataEntry]]] = {
+      serviceRegistryActor.ask(GetMetadataStreamAction(id, groupedByCall = true)) flatMap {
+        case MetadataLookupStreamSuccess(_, publisher) => Future.successful(Right(publisher))
+        case MetadataLookupStreamFailed(_, reason) => Future.failed(reason)
+        case other => Future.failed(new RuntimeException(s"Unexpected response to a metadata stream request: $other"))
+      }
+    }
+
+    // The metadata of workflows archived and deleted is not in the database anymore
+    def checkIfMetadataDeletedAndFetchStream(id: WorkflowId): Future[Either[JsObject, DatabasePublisher[MetadataEntry]]] = {
+      serviceRegistryActor.ask(FetchWorkflowMetadataArchiveStatusAndEndTime(id)).mapTo[FetchWorkflowArchiveStatusAndEndTimeResponse] flatMap {
+        case WorkflowMetadataArchivedStatusAndEndTime(archiveStatus, endTime) =>
+          if (archiveStatus.isDeleted) Future.successful(Left(processMetadataArchivedResponse(id, archiveStatus, endTime)))
+          else fetchStream(id)
+        case FailedToGetArchiveStatusAndEndTime(e) => Future.failed(e)
+      }
+    }
+
+    val response = for {
+      id <- validateWorkflowIdInMetadata(possibleWorkflowId, serviceRegistryActor)
+      stream <- checkIfMetadataDeletedAndFetchStream(id)
+    } yield id -> stream
+
+    onComplete(response) {
+      case Success((_, Left(archivedResponse))) => complete(archivedResponse)
+      case Success((id, Right(publisher))) =>
+        val events = Source.fromPublisher(publisher).map(MetadataDatabaseAccess.metadataEntryToMetadataEvent(id))
+        complete(HttpEntity.Chunked.fromData(ContentTypes.`application/json`, StreamingMetadataBuilder.jsonSource(id, events)))
+      case Failure(_: AskTimeoutException) if CromwellShutdown.shutdownInProgress() => serviceShuttingDownResponse
+      case Failure(e: UnrecognizedWorkflowException) => e.failRequest(StatusCodes.NotFound)
+      case Failure(e: InvalidWorkflowException) => e.failRequest(StatusCodes.BadRequest)
+      case Failure(e: TimeoutException) => e.failRequest(StatusCodes.ServiceUnavailable)
+      case Failure(e) => e.errorRequest(StatusCodes.InternalServerError)
+    }
+  }
+
+  /**
+    * Completes with a page of the metadata events of the workflow in the order of their ids, and the token of the next
+    * page unless it is the last. Each page starts after the last event of the previous one, so paging through a running
+    * workflow never repeats events and returns them in a stable order. Events committed after events with greater ids,
+    * while a previous page was read, may be missed by the following pages.
+    */
+  def metadataPage(possibleWorkflowId: String,
+                   query: WorkflowId => MetadataPageQuery,
+                   pageToken: Option[String],
+                   pageSize: Int,
+                   serviceRegistryActor: ActorRef)
+                  (implicit timeout: Timeout,
+                   ec: ExecutionContext): Route = {
+
+    def parsePageToken: Future[Option[Long]] = pageToken match {
+      case Some(token) => Future.fromTry(Try(token.toLong)).map(Option(_)) recoverWith {
+        case _: NumberFormatException => Future.failed(new IllegalArgumentException(s"Invalid page token: $token"))
+      }
+      case None => Future.successful(None)
+    }
+
+    def fetchPage(id: WorkflowId, cursor: Option[Long]): Future[Either[JsObject, MetadataPage]] = {
+      serviceRegistryActor.ask(GetMetadataPageAction(query(id), cursor, pageSize)) flatMap {
+        case MetadataLookupPageResponse(_, page) => Future.successful(Right(page))
+        case MetadataLookupPageFailed(_, reason) => Future.failed(reason)
+        case other => Future.failed(new RuntimeException(s"Unexpected response to a metadata page request: $other"))
+      }
+    }
+
+    // The metadata of workflows archived and deleted is not in the database anymore
+    def checkIfMetadataDeletedAndFetchPage(id: WorkflowId, cursor: Option[Long]): Future[Either[JsObject, MetadataPage]] = {
+      serviceRegistryActor.ask(FetchWorkflowMetadataArchiveStatusAndEndTime(id)).mapTo[FetchWorkflowArchiveStatusAndEndTimeResponse] flatMap {
+        case WorkflowMetadataArchivedStatusAndEndTime(archiveStatus, endTime) =>
+          if (archiveStatus.isDeleted) Future.successful(Left(processMetadataArchivedResponse(id, archiveStatus, endTime)))
+          else fetchPage(id, cursor)
+        case FailedToGetArchiveStatusAndEndTime(e) => Future.failed(e)
+      }
+    }
+
+    val response = for {
+      cursor <- parsePageToken
+      id <- validateWorkflowIdInMetadata(possibleWorkflowId, serviceRegistryActor)
+      page <- checkIfMetadataDeletedAndFetchPage(id, cursor)
+    } yield id -> page
+
+    onComplete(response) {
+      case Success((_, Left(archivedResponse))) => complete(archivedResponse)
+      case Success((id, Right(page))) => complete(metadataPageJson(id, page))
+      case Failure(_: AskTimeoutException) if CromwellShutdown.shutdownInProgress() => serviceShuttingDownResponse
+      case Failure(e: UnrecognizedWorkflowException) => e.failRequest(StatusCodes.NotFound)
+      case Failure(e: InvalidWorkflowException) => e.failRequest(StatusCodes.BadRequest)
+      case Failure(e: IllegalArgumentException) => e.failRequest(StatusCodes.BadRequest)
+      case Failure(e: TimeoutException) => e.failRequest(StatusCodes.ServiceUnavailable)
+      case Failure(e) => e.errorRequest(StatusCodes.InternalServerError)
+    }
+  }
+
+  private def metadataPageJson(id: WorkflowId, page: MetadataPage): JsObject = {
+    val events = JsArray(page.events.map(MetadataJsonSupport.MetadataEventFormat.write).toVector)
+    val nextPageToken = page.nextCursor.map(cursor => "nextPageToken" -> JsString(cursor.toString))
+    JsObject(Map[String, JsValue](WorkflowMetadataKeys.Id -> JsString(id.toString), "events" -> events) ++ nextPageToken)
+  }
+
   def queryMetadata(parameters: Seq[(String, String)],
                     serviceRegistryActor: ActorRef)(implicit timeout: Timeout): Route = {
     completeMetadataQueryResponse(metadataQueryRequest(parameters, serviceRegistryActor))
@@ -0,0 +1,48 @@
+package cromwell.engine.io.nio
+
+import java.nio.file.Files
+
+import common.assertion.CromwellTimeoutSpec
+import cromwell.core.path.{DefaultPath, DefaultPathBuilder}
+import cromwell.engine.io.nio.LocalFileCopy._
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+class LocalFileCopySpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers {
+
+  behavior of "LocalFileCopy"
+
+  private def sourceAndDestination(content: String): (DefaultPath, DefaultPath) = {
+    val source = DefaultPathBuilder.createTempFile()
+    source.write(content)
+    val destination = DefaultPathBuilder.createTempFile()
+    destination.write("previous content that is longer than the new one")
+    (source.asInstanceOf[DefaultPath], destination.asInstanceOf[DefaultPath])
+  }
+
+  it should "transfer a file, truncating the destination" in {
+    val (source, destination) = sourceAndDestination("hello")
+    LocalFileCopy.copy(source, destination, List(Transfer))
+    destination.contentAsString shouldBe "hello"
+    Files.isSameFile(source.nioPath, destination.nioPath) shouldBe false
+  }
+
+  it should "hard link a file" in {
+    val (source, destination) = sourceAndDestination("hello")
+    LocalFileCopy.copy(source, destination, List(HardLink))
+    destination.contentAsString shouldBe "hello"
+    Files.isSameFile(source.nioPath, destination.nioPath) shouldBe true
+  }
+
+  it should "fall back to a transfer when reflinks are not supported by the filesystem" in {
+    val (source, destination) = sourceAndDestination("hello")
+    LocalFileCopy.copy(source, destination, List(Reflink))
+    destination.contentAsString shouldBe "hello"
+    Files.isSameFile(source.nioPath, destination.nioPath) shouldBe false
+  }
+
+  it should "parse strategy names" in {
+    LocalFileCopy.strategyFromName("hard-link") shouldBe HardLink
+    an[IllegalArgumentException] shouldBe thrownBy LocalFileCopy.strategyFromName("teleport")
+  }
+}
@@ -0,0 +1,45 @@
+package cromwell.engine.io.nio
+
+import java.nio.charset.StandardCharsets
+
+import org.scalameter.api._
+import org.scalameter.picklers.Implicits._
+import org.scalameter.reporting.RegressionReporter.Historian.Window
+import org.scalameter.reporting.RegressionReporter.Tester.Accepter
+
+/**
+  * Compares the decoding of file contents with new line normalization, as done by NioFlow.readAsString.
+  * This is not run automatically by "sbt test". To run this test specifically, either use intellij integration, or run
+  * sbt "engine/benchmark:testOnly cromwell.engine.io.nio.NioFlowReadAsStringBenchmark"
+  */
+object NioFlowReadAsStringBenchmark extends Bench[Double] {
+  /* Benchmark configuration */
+  lazy val measurer = new Measurer.Default
+  lazy val executor = LocalExecutor(new Executor.Warmer.Default, Aggregator.average, measurer)
+  lazy val reporter = new RegressionReporter[Double](Accepter(), Window(0))
+  lazy val persistor = Persistor.None
+
+  // Content sizes in MB, lines of 80 characters terminated by \r\n
+  private val sizes: Gen[Int] = Gen.range("size")(from = 16, upto = 128, hop = 16)
+
+  private def contents(sizes: Gen[Int]): Gen[Array[Byte]] = sizes map { size =>
+    val line = ("a" * 78 + "\r\n").getBytes(StandardCharsets.UTF_8)
+    Array.fill(size * 1024 * 1024 / line.length)(line).flatten
+  }
+
+  performance of "NioFlow.readAsString" in {
+    measure method "regex replaceAll" in {
+      using(contents(sizes)) in { bytes =>
+        // Copy the bytes like below so that both measures include the same copy
+        new String(bytes.clone(), StandardCharsets.UTF_8).replaceAll("\\r\\n", "\\\n")
+      }
+    }
+
+    measure method "decodeNormalizingNewLines" in {
+      // The normalization compacts the array in place, copy it so that every run sees \r\n
+      using(contents(sizes)) in { bytes =>
+        NioFlow.decodeNormalizingNewLines(bytes.clone())
+      }
+    }
+  }
+}
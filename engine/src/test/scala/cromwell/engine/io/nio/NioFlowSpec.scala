@@ -6,6 +6,8 @@ import akka.stream.scaladsl.{Keep, Sink, Source}
 import cats.effect.IO
 import com.google.cloud.storage.StorageException
 import cromwell.core.io.DefaultIoCommandBuilder._
+import cromwell.core.io.IoReadLinesCommand.{IoLinesChunk, IoReadLinesOptions}
+import cromwell.core.io.LocalHashCache.LocalHashCacheStats
 import cromwell.core.io._
 import cromwell.core.path.DefaultPathBuilder
 import cromwell.core.{CromwellFatalExceptionMarker, TestKitSuite}
@@ -18,7 +20,8 @@ import org.scalatest.matchers.should.Matchers
 import org.scalatestplus.mockito.MockitoSugar
 import org.specs2.mock.Mockito._
 
-import java.nio.file.NoSuchFileException
+import java.nio.file.attribute.PosixFilePermissions
+import java.nio.file.{Files, NoSuchFileException}
 import java.util.UUID
 import scala.concurrent.duration._
 import scala.language.postfixOps
@@ -75,6 +78,21 @@ class NioFlowSpec extends TestKitSuite with AsyncFlatSpecLike with Matchers with
     }
   }
 
+  it should "normalize new lines when reading from a Nio Path" in {
+    val testPath = DefaultPathBuilder.createTempFile()
+    testPath.write("h\u00e9llo\r\nworld\r\n\rend\r")
+
+    val context = DefaultCommandContext(contentAsStringCommand(testPath, None, failOnOverflow = false).get, replyTo)
+    val testSource = Source.single(context)
+
+    val stream = testSource.via(flow).toMat(readSink)(Keep.right)
+
+    stream.run() map {
+      case (success: IoSuccess[_], _) => assert(success.result.asInstanceOf[String] == "h\u00e9llo\nworld\n\rend\r")
+      case _ => fail("read returned an unexpected message")
+    }
+  }
+
   it should "get size from a Nio Path" in {
     val testPath = DefaultPathBuilder.createTempFile()
     testPath.write("hello")
@@ -90,6 +108,57 @@ class NioFlowSpec extends TestKitSuite with AsyncFlatSpecLike with Matchers with
     }
   }
   
+  it should "read lines from a Nio Path" in {
+    val testPath = DefaultPathBuilder.createTempFile()
+    testPath.write("one\r\ntwo\nthree")
+
+    val context = DefaultCommandContext(readLines(testPath).get, replyTo)
+    val testSource = Source.single(context)
+
+    val stream = testSource.via(flow).toMat(readSink)(Keep.right)
+
+    stream.run() map {
+      case (success: IoSuccess[_], _) =>
+        assert(success.result.asInstanceOf[IoLinesChunk] == IoLinesChunk(Vector("one", "two", "three"), None))
+      case _ => fail("read lines returned an unexpected message")
+    }
+  }
+
+  it should "read lines from a Nio Path by chunks" in {
+    val testPath = DefaultPathBuilder.createTempFile()
+    testPath.write("one\ntwo\nthree\n")
+
+    // Reading from byte 4, "two\n" takes 4 of the 6 Bytes and "three\n" doesn't fit in the remaining 2: the next chunk
+    // starts at byte 8
+    val options = IoReadLinesOptions(fromByte = 4L, maxBytes = Option(6), failOnOverflow = false)
+    val context = DefaultCommandContext(readLines(testPath, options).get, replyTo)
+    val testSource = Source.single(context)
+
+    val stream = testSource.via(flow).toMat(readSink)(Keep.right)
+
+    stream.run() map {
+      case (success: IoSuccess[_], _) =>
+        assert(success.result.asInstanceOf[IoLinesChunk] == IoLinesChunk(Vector("two"), Option(8L)))
+      case _ => fail("read lines returned an unexpected message")
+    }
+  }
+
+  it should "fail to read lines larger than the maximum if requested" in {
+    val testPath = DefaultPathBuilder.createTempFile()
+    testPath.write("one\ntwo\nthree\n")
+
+    val options = IoReadLinesOptions(fromByte = 0L, maxBytes = Option(6), failOnOverflow = true)
+    val context = DefaultCommandContext(readLines(testPath, options).get, replyTo)
+    val testSource = Source.single(context)
+
+    val stream = testSource.via(flow).toMat(readSink)(Keep.right)
+
+    stream.run() map {
+      case (failure: IoFailure[_], _) => assert(failure.failure.getMessage.contains("larger than requested maximum of 6 Bytes"))
+      case _ => fail("read lines returned an unexpected message")
+    }
+  }
+
   it should "get hash from a Nio Path" in {
     val testPath = DefaultPathBuilder.createTempFile()
     testPath.write("hello")
@@ -105,6 +174,31 @@ class NioFlowSpec extends TestKitSuite with AsyncFlatSpecLike with Matchers with
     }
   }
 
+  it should "get the hash of an unchanged local file from the hash cache" in {
+    val testPath = DefaultPathBuilder.createTempFile()
+    testPath.write("hello")
+    val hashCache = new LocalHashCache(None, 10)
+
+    val cachingFlow = new NioFlow(
+      parallelism = 1,
+      onRetryCallback = NoopOnRetry,
+      onBackpressure = NoopOnBackpressure,
+      numberOfAttempts = 5,
+      commandBackpressureStaleness = 5 seconds,
+      hashCache = Option(hashCache))(system.dispatcher).flow
+
+    val contexts = List.fill(2)(DefaultCommandContext(hashCommand(testPath).get, replyTo))
+    val stream = Source(contexts).via(cachingFlow).toMat(Sink.seq)(Keep.right)
+
+    stream.run() map { results =>
+      results.map(_._1) foreach {
+        case success: IoSuccess[_] => success.result shouldBe "5d41402abc4b2a76b9719d911017c592"
+        case unexpected => fail(s"hash returned an unexpected message: $unexpected")
+      }
+      hashCache.stats shouldBe LocalHashCacheStats(hits = 1, misses = 1, entries = 1)
+    }
+  }
+
   it should "get hash from a GcsPath" in {
     val exception = new Exception("everything's fine, I am an expected blob failure") with NoStackTrace
     val testPath = mock[GcsPath].smart
@@ -159,6 +253,41 @@ class NioFlowSpec extends TestKitSuite with AsyncFlatSpecLike with Matchers with
     }
   }
 
+  it should "copy the permissions of a Nio path" in {
+    val testPath = DefaultPathBuilder.createTempFile()
+    testPath.write("#!/bin/sh")
+    Files.setPosixFilePermissions(testPath.nioPath, PosixFilePermissions.fromString("rwxr-x---"))
+    val testCopyPath = testPath.sibling(UUID.randomUUID().toString)
+
+    val context = DefaultCommandContext(copyCommand(testPath, testCopyPath).get, replyTo)
+
+    val testSource = Source.single(context)
+
+    val stream = testSource.via(flow).toMat(readSink)(Keep.right)
+
+    stream.run() map {
+      case (_: IoSuccess[_], _) =>
+        assert(PosixFilePermissions.toString(Files.getPosixFilePermissions(testCopyPath.nioPath)) == "rwxr-x---")
+      case _ => fail("copy returned an unexpected message")
+    }
+  }
+
+  it should "copy a Nio path onto itself" in {
+    val testPath = DefaultPathBuilder.createTempFile()
+    testPath.write("hello")
+
+    val context = DefaultCommandContext(copyCommand(testPath, testPath).get, replyTo)
+
+    val testSource = Source.single(context)
+
+    val stream = testSource.via(flow).toMat(readSink)(Keep.right)
+
+    stream.run() map {
+      case (_: IoSuccess[_], _) => assert(testPath.contentAsString == "hello")
+      case _ => fail("copy returned an unexpected message")
+    }
+  }
+
   it should "delete a Nio path" in {
     val testPath = DefaultPathBuilder.createTempFile()
     val context = DefaultCommandContext(deleteCommand(testPath, swallowIoExceptions = false).get, replyTo)
@@ -285,6 +285,36 @@ class CallCacheHashingJobActorSpec extends TestKitSuite with AnyFlatSpecLike wit
     parent.expectMsg(CompleteFileHashingResult(Set(result), "45F27DD26834DBACBB05BBB1D651F5D1"))
   }
   
+  it should "hash all the remaining files at once if the read actor dies while hashing a batch" in {
+    val callCacheReadProbe = TestProbe()
+    val parent = TestProbe()
+    val fileHasher = TestProbe()
+    val cchja = makeCCHJA(Option(callCacheReadProbe.ref), fileHasher.ref, parent.ref)
+    parent.expectMsgClass(classOf[InitialHashingResult])
+
+    val hashKey1 = HashKey("file1")
+    val hashKey2 = HashKey("file2")
+    val hashKey3 = HashKey("file3")
+    val fileHashRequest1 = SingleFileHashRequest(null, hashKey1, null, null)
+    val fileHashRequest2 = SingleFileHashRequest(null, hashKey2, null, null)
+    val fileHashRequest3 = SingleFileHashRequest(null, hashKey3, null, null)
+    val data = CallCacheHashingJobActorData(List(fileHashRequest1, fileHashRequest2, fileHashRequest3), Option(callCacheReadProbe.ref), 1)
+
+    // The first batch has been sent to the file hasher
+    cchja.setState(HashingFiles, data)
+
+    system stop callCacheReadProbe.ref
+    fileHasher.expectMsg(fileHashRequest2)
+    fileHasher.expectMsg(fileHashRequest3)
+
+    val results = List(hashKey3, hashKey1, hashKey2) map { key => HashResult(key, HashValue(key.key)) }
+    results foreach { cchja ! FileHashResponse(_) }
+
+    parent.expectMsgPF() {
+      case CompleteFileHashingResult(fileHashes, _) => fileHashes shouldBe results.toSet
+    }
+  }
+
   it should "propagate HashingFailedMessage errors and die" in {
     val callCacheReadProbe = TestProbe()
     val parent = TestProbe()
@@ -0,0 +1,90 @@
+package cromwell.engine.workflow.lifecycle.execution.callcaching
+
+import com.dimafeng.testcontainers.Container
+import cromwell.core.WorkflowId
+import cromwell.database.sql.SqlConverters._
+import cromwell.database.sql.joins.CallCachingJoin
+import cromwell.database.sql.tables._
+import cromwell.services.database.{DatabaseSystem, DatabaseTestKit, EngineDatabaseType, HsqldbDatabaseSystem}
+import org.scalameter.api._
+import org.scalameter.picklers.Implicits._
+import org.scalameter.reporting.RegressionReporter.Historian.Window
+import org.scalameter.reporting.RegressionReporter.Tester.Accepter
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, ExecutionContext}
+
+/**
+  * Compares writing the results of jobs to the call cache one transaction per job and all in one transaction.
+  *
+  * Runs against an in memory HSQLDB by default, which inserts the call caching entries with the `returning ++=`
+  * fallback only. The single batch insert of the entries is only used by MySQL and PostgreSQL: to benchmark it, pass
+  * the name of one of their database systems, which starts its Docker container, for instance
+  * -Dcromwell.benchmark.database-system=MySQL
+  *
+  * This is not run automatically by "sbt test". To run this test specifically, either use intellij integration, or run
+  * sbt "engine/benchmark:testOnly cromwell.engine.workflow.lifecycle.execution.callcaching.CallCacheWriteBenchmark"
+  */
+object CallCacheWriteBenchmark extends Bench[Double] {
+  /* Benchmark configuration */
+  lazy val measurer = new Measurer.Default
+  lazy val executor = LocalExecutor(new Executor.Warmer.Default, Aggregator.average, measurer)
+  lazy val reporter = new RegressionReporter[Double](Accepter(), Window(0))
+  lazy val persistor = Persistor.None
+
+  implicit val ec = ExecutionContext.global
+
+  private val databaseSystem = sys.props.get("cromwell.benchmark.database-system") map { name =>
+    DatabaseSystem.All.find(_.name == name) getOrElse {
+      throw new IllegalArgumentException(s"Unknown database system '$name'. Known systems are ${DatabaseSystem.All.mkString(", ")}")
+    }
+  } getOrElse HsqldbDatabaseSystem
+
+  private val containerOpt: Option[Container] = DatabaseTestKit.getDatabaseTestContainer(databaseSystem)
+
+  private lazy val database = {
+    containerOpt.foreach { _.start }
+    DatabaseTestKit.initializeDatabaseByContainerOptTypeAndSystem(containerOpt, EngineDatabaseType, databaseSystem)
+  }
+
+  private val InsertBatchSize = 1000
+  private val HashesPerJob = 30
+
+  // Number of jobs written
+  private val jobCounts: Gen[Int] = Gen.range("jobs")(from = 100, upto = 500, hop = 200)
+
+  private def joins(jobCounts: Gen[Int]): Gen[Seq[CallCachingJoin]] = jobCounts map { count =>
+    val workflowId = WorkflowId.randomId().toString
+    (1 to count) map { index =>
+      CallCachingJoin(
+        CallCachingEntry(workflowId, "benchmark.job", index, None, Option(0), allowResultReuse = true),
+        (1 to HashesPerJob) map { hash => CallCachingHashEntry(s"input: File f$hash", s"$workflowId-$index-$hash") },
+        Option(CallCachingAggregationEntry(s"$workflowId-$index", Option(s"$workflowId-$index-files"))),
+        Seq(CallCachingSimpletonEntry("out", s"/cromwell-executions/$workflowId/call-job/shard-$index/out".toClobOption, "File")),
+        Seq(
+          CallCachingDetritusEntry("returnCode", s"/cromwell-executions/$workflowId/call-job/shard-$index/rc".toClobOption),
+          CallCachingDetritusEntry("stdout", s"/cromwell-executions/$workflowId/call-job/shard-$index/stdout".toClobOption)
+        )
+      )
+    }
+  }
+
+  performance of "CallCachingSlickDatabase" in {
+    measure method "addCallCaching one transaction per job" in {
+      using(joins(jobCounts)) in { js =>
+        js foreach { join => Await.result(database.addCallCaching(Seq(join), InsertBatchSize), 1.minute) }
+      }
+    }
+
+    measure method "addCallCaching one transaction for all jobs" in {
+      using(joins(jobCounts)) in { js =>
+        Await.result(database.addCallCaching(js, InsertBatchSize), 1.minute)
+      }
+    }
+  }
+
+  afterTests {
+    database.close()
+    containerOpt.foreach { _.stop }
+  }
+}
@@ -16,7 +16,7 @@ import org.scalatest.prop.TableDrivenPropertyChecks
 import org.scalatest.time.{Millis, Seconds, Span}
 import org.specs2.mock.Mockito
 
-import scala.concurrent.ExecutionContext
+import scala.concurrent.{ExecutionContext, Future}
 
 class CallCachingSlickDatabaseSpec
   extends AnyFlatSpec with CromwellTimeoutSpec with Matchers with ScalaFutures with BeforeAndAfterAll with Mockito with TableDrivenPropertyChecks {
@@ -99,6 +99,8 @@ class CallCachingSlickDatabaseSpec
             prefixOption
           )
           _ = hasBaseAggregation shouldBe false
+          baseAggregations <- dataAccess.baseAggregationsWithCallCachingEntries(Set("BASE_AGGREGATION"), prefixOption)
+          _ = baseAggregations shouldBe empty
           hit <- dataAccess.findCacheHitForAggregation(
             "BASE_AGGREGATION",
             Option("FILE_AGGREGATION"),
@@ -109,6 +111,28 @@ class CallCachingSlickDatabaseSpec
         } yield ()).futureValue
       }
 
+      it should s"find the base aggregations with reusable entries in a single query $description" taggedAs DbmsTest in {
+        val callCachingEntryB = CallCachingEntry(WorkflowId.randomId().toString, callA, 1, None, None, allowResultReuse = true)
+        (for {
+          _ <- dataAccess.addCallCaching(Seq(
+            CallCachingJoin(
+              callCachingEntryB,
+              callCachingHashEntriesA,
+              Option(CallCachingAggregationEntry("BASE_AGGREGATION_B", None)),
+              callCachingSimpletonsA,
+              Seq(CallCachingDetritusEntry("returnCode", "prefix1/call/rc".toClobOption))
+            )
+          ),
+            100
+          )
+          baseAggregations <- dataAccess.baseAggregationsWithCallCachingEntries(
+            Set("BASE_AGGREGATION", "BASE_AGGREGATION_B", "UNKNOWN_AGGREGATION"),
+            prefixOption
+          )
+          _ = baseAggregations shouldBe Set("BASE_AGGREGATION_B")
+        } yield ()).futureValue
+      }
+
       it should s"retrieve CallCacheJoin for call $description" taggedAs DbmsTest in {
         (for {
           join <- dataAccess.callCacheJoinForCall(idA, callA, 1)
@@ -136,6 +160,58 @@ class CallCachingSlickDatabaseSpec
 
     }
 
+    it should "assign the children of entries written in a single transaction to their entry" taggedAs DbmsTest in {
+      val workflowId = WorkflowId.randomId().toString
+      val joins = (1 to 5) map { index =>
+        CallCachingJoin(
+          CallCachingEntry(workflowId, "AwesomeWorkflow.ScatteredJob", index, None, None, allowResultReuse = true),
+          Seq(CallCachingHashEntry("input: String s", s"HASH_$index")),
+          Option(CallCachingAggregationEntry(s"BASE_AGGREGATION_$index", None)),
+          Seq(CallCachingSimpletonEntry("simpleKey", s"simpleValue$index".toClobOption, "string")),
+          Seq(CallCachingDetritusEntry("returnCode", s"prefix1/call-$index/rc".toClobOption))
+        )
+      }
+      (for {
+        _ <- dataAccess.addCallCaching(joins, 2)
+        written <- Future.sequence((1 to 5) map { index => dataAccess.callCacheJoinForCall(workflowId, "AwesomeWorkflow.ScatteredJob", index) })
+        _ = written.flatten.map(_.callCachingHashEntries.map(_.hashValue)) shouldBe (1 to 5).map(index => Seq(s"HASH_$index"))
+        _ = written.flatten.map(_.callCachingAggregationEntry.map(_.baseAggregation)) shouldBe (1 to 5).map(index => Option(s"BASE_AGGREGATION_$index"))
+      } yield ()).futureValue
+    }
+
+    it should "rule out the hashes without reusable entries with a bloom filter" taggedAs DbmsTest in {
+      def reusableEntry(baseAggregation: String) = CallCachingJoin(
+        CallCachingEntry(WorkflowId.randomId().toString, "AwesomeWorkflow.GoodJob", 1, None, None, allowResultReuse = true),
+        Seq(CallCachingHashEntry("input: String s", "HASH_S")),
+        Option(CallCachingAggregationEntry(baseAggregation, None)),
+        Seq.empty,
+        Seq(CallCachingDetritusEntry("returnCode", "prefix1/call/rc".toClobOption))
+      )
+
+      val bloomFilter = new CallCacheBloomFilter(expectedEntries = 1000, falsePositiveRate = 0.01)
+      val callCache = new CallCache(dataAccess, Option(bloomFilter))
+      (for {
+        _ <- dataAccess.addCallCaching(Seq(reusableEntry("BLOOM_FILTER_AGGREGATION")), 100)
+        // Before it is loaded the filter can't rule anything out
+        _ <- callCache.hasBaseAggregatedHashMatch("BLOOM_FILTER_AGGREGATION", List.empty) map { _ shouldBe true }
+        loaded <- callCache.rebuildBloomFilter()
+        _ = loaded should be > 0L
+        _ <- callCache.hasBaseAggregatedHashMatch("BLOOM_FILTER_AGGREGATION", List.empty) map { _ shouldBe true }
+        _ <- callCache.hasBaseAggregatedHashMatch("NEVER_WRITTEN_AGGREGATION", List.empty) map { _ shouldBe false }
+        matches <- callCache.baseAggregatedHashMatches(Set("BLOOM_FILTER_AGGREGATION", "NEVER_WRITTEN_AGGREGATION"), List.empty)
+        _ = matches shouldBe Set("BLOOM_FILTER_AGGREGATION")
+        // An entry written by another Cromwell instance is only known once the filter is refreshed
+        _ <- dataAccess.addCallCaching(Seq(reusableEntry("OTHER_INSTANCE_AGGREGATION")), 100)
+        _ <- callCache.hasBaseAggregatedHashMatch("OTHER_INSTANCE_AGGREGATION", List.empty) map { _ shouldBe false }
+        refreshed <- callCache.refreshBloomFilter()
+        _ = refreshed shouldBe 1L
+        _ <- callCache.hasBaseAggregatedHashMatch("OTHER_INSTANCE_AGGREGATION", List.empty) map { _ shouldBe true }
+        _ = bloomFilter.stats.loaded shouldBe true
+        _ = bloomFilter.stats.ruledOut + bloomFilter.stats.queried shouldBe 6L
+        _ = bloomFilter.stats.behind shouldBe 0L
+      } yield ()).futureValue
+    }
+
     it should "close the database" taggedAs DbmsTest in {
       dataAccess.close()
     }
@@ -0,0 +1,76 @@
+package cromwell.webservice
+
+import java.time.OffsetDateTime
+
+import akka.stream.ActorMaterializer
+import akka.stream.scaladsl.{Sink, Source}
+import cromwell.core._
+import cromwell.services.metadata._
+import cromwell.services.metadata.impl.builder.{MetadataBuilderActor, StreamingMetadataBuilder}
+import org.scalatest.flatspec.AsyncFlatSpecLike
+import org.scalatest.matchers.should.Matchers
+import spray.json._
+
+class StreamingMetadataBuilderSpec extends TestKitSuite with AsyncFlatSpecLike with Matchers {
+
+  behavior of "StreamingMetadataBuilder"
+
+  implicit val materializer: ActorMaterializer = ActorMaterializer()
+
+  override def afterAll(): Unit = {
+    materializer.shutdown()
+    super.afterAll()
+  }
+
+  private val workflowId = WorkflowId.randomId()
+  private val start = OffsetDateTime.now
+
+  private def event(jobKey: Option[MetadataJobKey], key: String, value: String, offset: Long) =
+    MetadataEvent(MetadataKey(workflowId, jobKey, key), Option(MetadataValue(value)), start.plusSeconds(offset))
+
+  private def streamed(events: Seq[MetadataEvent]) = {
+    StreamingMetadataBuilder.jsonSource(workflowId, Source(events.toList)).runWith(Sink.fold("")(_ + _.utf8String))
+  }
+
+  private def built(events: Seq[MetadataEvent]) = {
+    val query = MetadataQuery(workflowId, None, None, None, None, expandSubWorkflows = false)
+    MetadataBuilderActor.processMetadataEvents(query, MetadataBuilderActor.groupEvents(events), Map.empty)
+  }
+
+  it should "render the same metadata as the MetadataBuilderActor" in {
+    val shard0 = Option(MetadataJobKey("wf.scattered", Option(0), 1))
+    val shard1Attempt1 = Option(MetadataJobKey("wf.scattered", Option(1), 1))
+    val shard1Attempt2 = Option(MetadataJobKey("wf.scattered", Option(1), 2))
+    val single = Option(MetadataJobKey("wf.single", None, 1))
+
+    // In the order of streamMetadataEntriesGroupedByCall
+    val events = List(
+      event(None, "status", "Running", 0),
+      event(None, "inputs:x", "1", 1),
+      event(None, "status", "Succeeded", 2),
+      event(None, "id", "ignored", 3),
+      event(shard0, "executionStatus", "Done", 4),
+      event(shard0, "outputs:y", "2", 5),
+      event(shard1Attempt1, "executionStatus", "RetryableFailure", 6),
+      event(shard1Attempt2, "executionStatus", "Running", 7),
+      event(shard1Attempt2, "executionStatus", "Done", 8),
+      event(single, "executionEvents[0]:description", "Running", 9),
+      event(single, "executionEvents[0]:startTime", start.toString, 10),
+    )
+
+    streamed(events) map { json => json.parseJson shouldBe built(events) }
+  }
+
+  it should "render workflows without workflow level metadata or calls" in {
+    val callOnly = List(event(Option(MetadataJobKey("wf.call", None, 1)), "executionStatus", "Done", 0))
+    val workflowOnly = List(event(None, "status", "Submitted", 0))
+
+    for {
+      callOnlyJson <- streamed(callOnly)
+      workflowOnlyJson <- streamed(workflowOnly)
+    } yield {
+      callOnlyJson.parseJson shouldBe built(callOnly)
+      workflowOnlyJson.parseJson shouldBe built(workflowOnly)
+    }
+  }
+}
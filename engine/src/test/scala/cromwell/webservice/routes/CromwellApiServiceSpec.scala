@@ -640,6 +640,12 @@ object CromwellApiServiceSpec {
         val withKeysList = withKeys.map(_.toList).getOrElse(List.empty)
         val withoutKeysList = withoutKeys.map(_.toList).getOrElse(List.empty)
         sender ! SuccessfulMetadataJsonResponse(request, responseMetadataValues(id, withKeysList, withoutKeysList))
+      case GetMetadataPageAction(query, cursor, pageSize) =>
+        // The cursor of this mock is the position of the next event
+        val events = fullMetadataResponse(query.workflowId).filter(e => query.keyPrefix.forall(e.key.key.startsWith))
+        val from = cursor.getOrElse(0L).toInt
+        val nextCursor = if (from + pageSize < events.size) Option((from + pageSize).toLong) else None
+        sender ! MetadataLookupPageResponse(query, MetadataPage(events.slice(from, from + pageSize), nextCursor))
       case PutMetadataActionAndRespond(events, _, _) =>
         events.head.key.workflowId match {
           case CromwellApiServiceSpec.ExistingWorkflowId => sender ! MetadataWriteSuccess(events)
@@ -313,6 +313,68 @@ class MetadataRouteSupportSpec extends AsyncFlatSpec with ScalatestRouteTest wit
       }
   }
 
+  behavior of "REST API /metadata/page endpoint"
+  it should "return the metadata events a page at a time" in {
+    def eventKeys(result: JsObject) = result.fields("events").asInstanceOf[JsArray].elements map {
+      _.asJsObject.fields("key").asJsObject.fields("key")
+    }
+
+    Get(s"/workflows/$version/${CromwellApiServiceSpec.ExistingWorkflowId}/metadata/page?pageSize=2") ~>
+      akkaHttpService.metadataRoutes ~>
+      check {
+        status should be(StatusCodes.OK)
+        val result = responseAs[JsObject]
+        result.fields(WorkflowMetadataKeys.Id) should be(JsString(CromwellApiServiceSpec.ExistingWorkflowId.toString))
+        eventKeys(result) should be(Vector(JsString("testKey1a"), JsString("testKey1b")))
+        result.fields("nextPageToken") should be(JsString("2"))
+      }
+
+    Get(s"/workflows/$version/${CromwellApiServiceSpec.ExistingWorkflowId}/metadata/page?pageSize=2&pageToken=2") ~>
+      akkaHttpService.metadataRoutes ~>
+      check {
+        status should be(StatusCodes.OK)
+        val result = responseAs[JsObject]
+        eventKeys(result) should be(Vector(JsString("testKey2a")))
+        result.fields.keys shouldNot contain("nextPageToken")
+      }
+  }
+
+  it should "return the metadata events with keys starting with a prefix" in {
+    Get(s"/workflows/$version/${CromwellApiServiceSpec.ExistingWorkflowId}/metadata/page?keyPrefix=testKey2") ~>
+      akkaHttpService.metadataRoutes ~>
+      check {
+        status should be(StatusCodes.OK)
+        val events = responseAs[JsObject].fields("events").asInstanceOf[JsArray].elements
+        events.map(_.asJsObject.fields("key").asJsObject.fields("key")) should be(Vector(JsString("testKey2a")))
+        events.head.asJsObject.fields("value").asJsObject.fields("value") should be(JsString("myValue2a"))
+      }
+  }
+
+  it should "return 400 for a malformed page token" in {
+    Get(s"/workflows/$version/${CromwellApiServiceSpec.ExistingWorkflowId}/metadata/page?pageToken=notAToken") ~>
+      akkaHttpService.metadataRoutes ~>
+      check {
+        status should be(StatusCodes.BadRequest)
+      }
+  }
+
+  it should "return 404 for an unknown workflow" in {
+    Get(s"/workflows/$version/${CromwellApiServiceSpec.UnrecognizedWorkflowId}/metadata/page") ~>
+      akkaHttpService.metadataRoutes ~>
+      check {
+        status should be(StatusCodes.NotFound)
+      }
+  }
+
+  it should "return 200 with ArchivedAndDeleted status for workflow whose metadata is deleted" in {
+    Get(s"/workflows/$version/${CromwellApiServiceSpec.ArchivedAndDeletedWorkflowId}/metadata/page") ~>
+      akkaHttpService.metadataRoutes ~>
+      check {
+        status should be(StatusCodes.OK)
+        responseAs[JsObject].fields("metadataArchiveStatus") should be(JsString("ArchivedAndDeleted"))
+      }
+  }
+
   behavior of "REST API /query GET endpoint"
   it should "return good results for a good query" in {
     Get(s"/workflows/$version/query?status=Succeeded&id=${CromwellApiServiceSpec.ExistingWorkflowId}") ~>
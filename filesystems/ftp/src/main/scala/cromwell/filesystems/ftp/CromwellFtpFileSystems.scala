@@ -32,8 +32,10 @@ object CromwellFtpFileSystems {
     val idleConnectionTimeout = validate[FiniteDuration] { config.as[FiniteDuration]("idle-connection-timeout") }
     val connectionPort = validate[Int] { config.as[Int]("connection-port") }
     val connectionMode = validate[ConnectionMode] { config.as[ConnectionMode]("connection-mode") }
+    val maxCapacity = validate[Option[Int]] { config.getAs[Int]("max-connection-ceiling-per-server-per-user") }
+    val prewarmConnections = validate[Int] { config.getAs[Int]("prewarm-connections-per-server").getOrElse(0) }
 
-    (cacheTTL, leaseTimeout, capacity, idleConnectionTimeout, connectionPort, connectionMode)
+    (cacheTTL, leaseTimeout, capacity, idleConnectionTimeout, connectionPort, connectionMode, maxCapacity, prewarmConnections)
       .mapN(FtpFileSystemsConfiguration.apply)
       .unsafe("Failed to parse FTP configuration")
   }
@@ -0,0 +1,33 @@
+package cromwell.filesystems.ftp
+
+import cloud.nio.impl.ftp.FtpCloudNioFileSystem
+import cromwell.core.path.Path
+import org.slf4j.LoggerFactory
+
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.control.NonFatal
+
+/**
+  * Opens connections to the FTP servers referenced by a workflow's inputs before the jobs need them,
+  * so that the first wave of jobs does not trigger a storm of logins.
+  */
+object FtpConnectionPrewarming {
+  private val logger = LoggerFactory.getLogger("FtpConnectionPrewarming")
+
+  def prewarm(paths: Iterable[Path])(implicit ec: ExecutionContext): Future[Unit] = {
+    val fileSystems = paths.collect({
+      case ftpPath: FtpPath => ftpPath.ftpPath.getFileSystem
+    }).collect({
+      case ftpFileSystem: FtpCloudNioFileSystem => ftpFileSystem
+    }).toSet
+
+    Future.traverse(fileSystems) { fileSystem =>
+      Future {
+        val opened = fileSystem.prewarm()
+        logger.debug(s"Prewarmed $opened ftp connection(s) to ${fileSystem.host}")
+      } recover {
+        case NonFatal(e) => logger.warn(s"Failed to prewarm ftp connections to ${fileSystem.host}", e)
+      }
+    } map { _ => () }
+  }
+}
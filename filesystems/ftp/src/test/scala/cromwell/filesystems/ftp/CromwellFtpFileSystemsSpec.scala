@@ -19,7 +19,9 @@ class CromwellFtpFileSystemsSpec extends AnyFlatSpec with CromwellTimeoutSpec wi
         |max-connection-per-server-per-user = 1
         |idle-connection-timeout = 14 hours
         |connection-port: 212
-        |connection-mode = "active" """.stripMargin)
+        |connection-mode = "active"
+        |max-connection-ceiling-per-server-per-user = 10
+        |prewarm-connections-per-server = 3 """.stripMargin)
     
     val fs = new CromwellFtpFileSystems(config)
     fs.ftpFileSystems.config.cacheTTL shouldBe 10.days
@@ -29,6 +31,8 @@ class CromwellFtpFileSystemsSpec extends AnyFlatSpec with CromwellTimeoutSpec wi
     fs.ftpFileSystems.config.idleConnectionTimeout shouldBe 14.hours
     fs.ftpFileSystems.config.connectionPort shouldBe 212
     fs.ftpFileSystems.config.connectionMode shouldBe Active
+    fs.ftpFileSystems.config.capacityCeiling shouldBe 10
+    fs.ftpFileSystems.config.prewarmConnections shouldBe 3
   }
 
 }
@@ -457,6 +457,7 @@ object Dependencies {
     "com.chuusai" %% "shapeless" % shapelessV,
     "com.storm-enroute" %% "scalameter" % scalameterV % Test,
     "com.github.scopt" %% "scopt" % scoptV,
+    "org.lz4" % "lz4-java" % lz4JavaV,
     "org.scalamock" %% "scalamock" % scalamockV % Test
   ) ++ akkaStreamDependencies ++ configDependencies ++ catsDependencies ++ circeDependencies ++
     googleApiClientDependencies ++ statsDDependencies ++ betterFilesDependencies ++
@@ -516,10 +517,6 @@ object Dependencies {
 
   val tesBackendDependencies: List[ModuleID] = akkaHttpDependencies
 
-  val sfsBackendDependencies = List (
-    "org.lz4" % "lz4-java" % lz4JavaV
-  )
-
   val testDependencies: List[ModuleID] = List(
     "org.scalatest" %% "scalatest" % scalatestV,
     "org.scalatestplus" %% "scalatestplus-mockito" % scalatestPlusMockitoV,
@@ -574,7 +571,6 @@ object Dependencies {
       ossFileSystemDependencies ++
       perfDependencies ++
       serverDependencies ++
-      sfsBackendDependencies ++
       spiDependencies ++
       spiUtilDependencies ++
       statsDProxyDependencies ++
@@ -33,6 +33,9 @@ trait InstrumentedBatchActor[C] { this: BatchActor[C] with CromwellInstrumentati
   private val durationPath = makePath("time_per_batch")
   private val failurePath = makePath("failure")
   private val queueSizePath = makePath("queue")
+  private val batchSizePath = makePath("batch_size")
+  private val flushRatePath = makePath("flush_rate")
+  private val queueLatencyPath = makePath("queue_latency")
 
   timers.startSingleTimer(QueueSizeTimerKey, QueueSizeTimerAction, CromwellInstrumentation.InstrumentationRate)
 
@@ -43,9 +46,23 @@ trait InstrumentedBatchActor[C] { this: BatchActor[C] with CromwellInstrumentati
   protected def instrumentationReceive: Receive = {
     case QueueSizeTimerAction => 
       sendGauge(queueSizePath, stateData.weight.toLong, instrumentationPrefix)
+      sendGauge(batchSizePath, currentBatchSize.toLong, instrumentationPrefix)
+      sendGauge(flushRatePath, currentFlushRate.toMillis, instrumentationPrefix)
+      sendQueueLatencies()
       timers.startSingleTimer(QueueSizeTimerKey, QueueSizeTimerAction, CromwellInstrumentation.InstrumentationRate)
   }
 
+  // Percentiles in milliseconds of how long the commands processed since the last report waited in the queue
+  private def sendQueueLatencies(): Unit = {
+    val latencies = drainQueueLatencies().sorted
+    if (latencies.nonEmpty) {
+      List(50, 95, 99) foreach { percentile =>
+        val index = (latencies.size * percentile / 100) min (latencies.size - 1)
+        sendGauge(queueLatencyPath :+ s"p$percentile", latencies(index).nanos.toMillis, instrumentationPrefix)
+      }
+    }
+  }
+
   /**
     * Don't forget to wrap your `process` or `processHead` method with this function if you want
     * to instrument your processing rate:
@@ -101,6 +101,26 @@ case class MetadataQuery(workflowId: WorkflowId,
                          excludeKeysOption: Option[NonEmptyList[String]],
                          expandSubWorkflows: Boolean)
 
+/**
+  * The metadata events of a workflow to read a page at a time. The call, shard, attempt and key prefix only filter
+  * the events when defined.
+  */
+final case class MetadataPageQuery(workflowId: WorkflowId,
+                                   callFqn: Option[String],
+                                   index: Option[Int],
+                                   attempt: Option[Int],
+                                   keyPrefix: Option[String])
+
+object MetadataPageQuery {
+  def forWorkflow(workflowId: WorkflowId) = MetadataPageQuery(workflowId, None, None, None, None)
+}
+
+/**
+  * Metadata events in the order they were written, and the cursor to read the next page from unless this is the last
+  * page.
+  */
+final case class MetadataPage(events: Seq[MetadataEvent], nextCursor: Option[Long])
+
 object MetadataQuery {
   def forWorkflow(workflowId: WorkflowId) = MetadataQuery(workflowId, None, None, None, None, expandSubWorkflows = false)
 
@@ -107,7 +107,17 @@ object MetadataService {
     override def workflowId: WorkflowId = key.workflowId
   }
 
-  final case class GetMetadataStreamAction(workflowId: WorkflowId) extends MetadataServiceAction
+  /**
+    * @param groupedByCall If true, the workflow level entries come first and then the entries of each call attempt
+    *                      together, as needed to render the metadata JSON while streaming.
+    */
+  final case class GetMetadataStreamAction(workflowId: WorkflowId, groupedByCall: Boolean = false) extends MetadataServiceAction
+
+  /**
+    * Reads up to `pageSize` events of `query`, after `cursor` if it is the `nextCursor` of a previous page, or from the
+    * first event otherwise.
+    */
+  final case class GetMetadataPageAction(query: MetadataPageQuery, cursor: Option[Long], pageSize: Int) extends MetadataServiceAction
 
   final case class GetStatus(workflowId: WorkflowId) extends BuildWorkflowMetadataJsonAction
   final case class GetLabels(workflowId: WorkflowId) extends BuildWorkflowMetadataJsonAction
@@ -117,6 +127,7 @@ object MetadataService {
   final case class GetLogs(workflowId: WorkflowId) extends BuildWorkflowMetadataJsonWithOverridableSourceAction
   case object RefreshSummary extends MetadataServiceAction
   case object SendMetadataTableSizeMetrics extends MetadataServiceAction
+  case object SendMetadataSnapshotCacheMetrics extends MetadataServiceAction
   trait ValidationCallback {
     def onMalformed(possibleWorkflowId: String): Unit
     def onRecognized(workflowId: WorkflowId): Unit
@@ -138,6 +149,8 @@ object MetadataService {
 
   final case class MetadataLookupStreamSuccess(id: WorkflowId, result: DatabasePublisher[MetadataEntry]) extends MetadataServiceResponse
   final case class MetadataLookupStreamFailed(id: WorkflowId, reason: Throwable) extends MetadataServiceResponse
+  final case class MetadataLookupPageResponse(query: MetadataPageQuery, page: MetadataPage) extends MetadataServiceResponse
+  final case class MetadataLookupPageFailed(query: MetadataPageQuery, reason: Throwable) extends MetadataServiceFailure
   final case class MetadataLookupFailedTooLargeResponse(query: MetadataQuery, metadataSizeRows: Int) extends MetadataServiceResponse
   final case class MetadataLookupFailedTimeoutResponse(query: MetadataQuery) extends MetadataServiceResponse
 
@@ -4,10 +4,10 @@ import java.time.OffsetDateTime
 
 import cats.Semigroup
 import cats.data.NonEmptyList
-import cats.instances.future._
 import cats.instances.list._
 import cats.syntax.semigroup._
 import cats.syntax.traverse._
+import common.validation.ErrorOr.ErrorOr
 import common.validation.Validation._
 import cromwell.core._
 import cromwell.database.sql.SqlConverters._
@@ -17,10 +17,9 @@ import cromwell.services.MetadataServicesStore
 import cromwell.services.metadata.MetadataService.{QueryMetadata, WorkflowQueryResponse}
 import cromwell.services.metadata._
 import cromwell.services.metadata.impl.MetadataDatabaseAccess._
-import mouse.boolean._
 import slick.basic.DatabasePublisher
 
-import scala.concurrent.duration.Duration
+import scala.concurrent.duration._
 import scala.concurrent.{ExecutionContext, Future}
 import scala.util.Try
 
@@ -84,6 +83,21 @@ object MetadataDatabaseAccess {
     }
   }
 
+  def metadataEntryToMetadataEvent(workflowId: WorkflowId)(m: MetadataEntry): MetadataEvent = {
+    // If callFullyQualifiedName is non-null then attempt will also be non-null and there is a MetadataJobKey.
+    val metadataJobKey: Option[MetadataJobKey] = for {
+      callFqn <- m.callFullyQualifiedName
+      attempt <- m.jobAttempt
+    } yield MetadataJobKey(callFqn, m.jobIndex, attempt)
+
+    val key = MetadataKey(workflowId, metadataJobKey, m.metadataKey)
+    val value = m.metadataValueType.map(mType =>
+      MetadataValue(m.metadataValue.toRawString, MetadataType.fromString(mType))
+    )
+
+    MetadataEvent(key, value, m.metadataTimestamp.toSystemOffsetDateTime)
+  }
+
   final case class SummaryResult(rowsProcessedIncreasing: Long, rowsProcessedDecreasing: Long, decreasingGap: Long)
   final case class WorkflowArchiveStatusAndEndTimestamp(archiveStatus: Option[String], endTimestamp: Option[OffsetDateTime])
 }
@@ -115,20 +129,7 @@ trait MetadataDatabaseAccess {
   }
 
   private def metadataToMetadataEvents(workflowId: WorkflowId)(metadata: Seq[MetadataEntry]): Seq[MetadataEvent] = {
-    metadata map { m =>
-      // If callFullyQualifiedName is non-null then attempt will also be non-null and there is a MetadataJobKey.
-      val metadataJobKey: Option[MetadataJobKey] = for {
-        callFqn <- m.callFullyQualifiedName
-        attempt <- m.jobAttempt
-      } yield MetadataJobKey(callFqn, m.jobIndex, attempt)
-
-      val key = MetadataKey(workflowId, metadataJobKey, m.metadataKey)
-      val value = m.metadataValueType.map(mType =>
-        MetadataValue(m.metadataValue.toRawString, MetadataType.fromString(mType))
-      )
-
-      MetadataEvent(key, value, m.metadataTimestamp.toSystemOffsetDateTime)
-    }
+    metadata map metadataEntryToMetadataEvent(workflowId)
   }
 
   def getMetadataReadRowCount(query: MetadataQuery, timeout: Duration)(implicit ec: ExecutionContext): Future[Int] = {
@@ -157,8 +158,38 @@ trait MetadataDatabaseAccess {
     }
   }
 
-  def metadataEventsStream(workflowId: WorkflowId): Try[DatabasePublisher[MetadataEntry]] = {
-    Try(metadataDatabaseInterface.streamMetadataEntries(workflowId.id.toString))
+  /**
+    * @param groupedByCall If true, streams the workflow level entries first and then the entries of each call attempt
+    *                      together, otherwise streams the entries in the order they were written.
+    */
+  def metadataEventsStream(workflowId: WorkflowId, groupedByCall: Boolean = false): Try[DatabasePublisher[MetadataEntry]] = {
+    val uuid = workflowId.id.toString
+    Try {
+      if (groupedByCall) metadataDatabaseInterface.streamMetadataEntriesGroupedByCall(uuid)
+      else metadataDatabaseInterface.streamMetadataEntries(uuid)
+    }
+  }
+
+  /**
+    * Reads up to `pageSize` events of `query` after the `cursor` of the previous page. One more entry is read to tell
+    * whether this is the last page.
+    */
+  def queryMetadataEventsPage(query: MetadataPageQuery, cursor: Option[Long], pageSize: Int, timeout: Duration)
+                             (implicit ec: ExecutionContext): Future[MetadataPage] = {
+    metadataDatabaseInterface.queryMetadataEntriesPage(
+      workflowExecutionUuid = query.workflowId.id.toString,
+      afterMetadataEntryId = cursor,
+      callFullyQualifiedName = query.callFqn,
+      jobIndex = query.index,
+      jobAttempt = query.attempt,
+      metadataKeyPrefix = query.keyPrefix,
+      limit = pageSize + 1,
+      timeout = timeout,
+    ) map { entries =>
+      val page = entries.take(pageSize)
+      val nextCursor = if (entries.size > pageSize) page.lastOption.flatMap(_.metadataEntryId) else None
+      MetadataPage(metadataToMetadataEvents(query.workflowId)(page), nextCursor)
+    }
   }
 
   def queryMetadataEvents(query: MetadataQuery, timeout: Duration)(implicit ec: ExecutionContext): Future[Seq[MetadataEvent]] = {
@@ -208,12 +239,21 @@ trait MetadataDatabaseAccess {
       metadataToMetadataEvents(id)
   }
 
-  def refreshWorkflowMetadataSummaries(limit: Int)(implicit ec: ExecutionContext): Future[SummaryResult] = {
+  /**
+    * Summarizes up to `limit` queued rows in each of `partitions` partitions of the workflows concurrently, then
+    * `limit` rows of the metadata written before the summary queue existed.
+    */
+  def refreshWorkflowMetadataSummaries(limit: Int, partitions: Int = 1)(implicit ec: ExecutionContext): Future[SummaryResult] = {
     for {
-      increasingProcessed <- metadataDatabaseInterface.summarizeIncreasing(
-        labelMetadataKey = WorkflowMetadataKeys.Labels,
-        limit = limit,
-        buildUpdatedSummary = MetadataDatabaseAccess.buildUpdatedSummary)
+      increasingProcessedByPartition <- Future.traverse((0 until partitions).toList) { partition =>
+        metadataDatabaseInterface.summarizeIncreasing(
+          labelMetadataKey = WorkflowMetadataKeys.Labels,
+          limit = limit,
+          partition = partition,
+          partitionCount = partitions,
+          buildUpdatedSummary = MetadataDatabaseAccess.buildUpdatedSummary)
+      }
+      increasingProcessed = increasingProcessedByPartition.sum
       (decreasingProcessed, decreasingGap) <- metadataDatabaseInterface.summarizeDecreasing(
         summaryNameDecreasing = WorkflowMetadataKeys.SummaryNameDecreasing,
         summaryNameIncreasing = WorkflowMetadataKeys.SummaryNameIncreasing,
@@ -304,43 +344,72 @@ trait MetadataDatabaseAccess {
       }
     }
 
-    def summariesToQueryResults(workflows: Traversable[WorkflowMetadataSummaryEntry]): Future[List[MetadataService.WorkflowQueryResult]] = {
-      workflows.toList.traverse(summaryToQueryResult)
+    // The labels of the whole page in one query rather than one per workflow
+    def labelsForSummaries(workflows: Traversable[WorkflowMetadataSummaryEntry]): Future[Map[String, Map[String, String]]] = {
+      if (queryParameters.additionalQueryResultFields.contains(WorkflowMetadataKeys.Labels) && workflows.nonEmpty)
+        metadataDatabaseInterface.getWorkflowsLabels(workflows.map(_.workflowExecutionUuid).toSet)
+      else
+        Future.successful(Map.empty)
     }
 
-    def summaryToQueryResult(workflow: WorkflowMetadataSummaryEntry): Future[MetadataService.WorkflowQueryResult] = {
-
-      val workflowLabels: Future[Map[String, String]] =
-        queryParameters.additionalQueryResultFields.contains(WorkflowMetadataKeys.Labels).fold(
-          metadataDatabaseInterface.getWorkflowLabels(workflow.workflowExecutionUuid), Future.successful(Map.empty))
-
-      val archiveStatus = MetadataArchiveStatus.fromDatabaseValue(workflow.metadataArchiveStatus)
-
-      for {
-        labels <- workflowLabels
-        archived <- Future.fromTry(archiveStatus.toTry)
-      } yield MetadataService.WorkflowQueryResult(
+    def summaryToQueryResult(labels: Map[String, Map[String, String]])
+                            (workflow: WorkflowMetadataSummaryEntry): ErrorOr[MetadataService.WorkflowQueryResult] = {
+      MetadataArchiveStatus.fromDatabaseValue(workflow.metadataArchiveStatus) map { archived =>
+        MetadataService.WorkflowQueryResult(
           id = workflow.workflowExecutionUuid,
           name = workflow.workflowName,
           status = workflow.workflowStatus,
           submission = workflow.submissionTimestamp map {_.toSystemOffsetDateTime},
           start = workflow.startTimestamp map { _.toSystemOffsetDateTime },
           end = workflow.endTimestamp map { _.toSystemOffsetDateTime },
-          labels = labels.nonEmpty.option(labels),
+          labels = labels.get(workflow.workflowExecutionUuid).filter(_.nonEmpty),
           parentWorkflowId = workflow.parentWorkflowExecutionUuid,
           rootWorkflowId = workflow.rootWorkflowExecutionUuid,
           metadataArchiveStatus = archived
         )
+      }
     }
 
     for {
       count <- workflowSummaryCount
       workflows <- workflowSummaries
-      queryResults <- summariesToQueryResults(workflows)
+      labels <- labelsForSummaries(workflows)
+      queryResults <- Future.fromTry(workflows.toList.traverse(summaryToQueryResult(labels)).toTry)
     } yield (WorkflowQueryResponse(queryResults, count), queryMetadata(count))
   }
 
   def deleteAllMetadataEntriesForWorkflowAndUpdateArchiveStatus(workflowId: WorkflowId, newArchiveStatus: Option[String])(implicit ec: ExecutionContext): Future[Int] = {
+    ifTerminalForDeletion(workflowId) {
+      metadataDatabaseInterface.deleteAllMetadataForWorkflowAndUpdateArchiveStatus(workflowId.toString, newArchiveStatus)
+    }
+  }
+
+  /**
+    * Deletes the metadata of a workflow a chunk of at most `chunkSize` rows at a time, in journal id order, then updates
+    * its archive status. Each chunk is deleted in its own transaction so that deleting the metadata of a large workflow
+    * doesn't hold locks on the metadata table for long. If a chunk fails to be deleted the archive status is not
+    * updated, and deleting again resumes with the rows left.
+    */
+  def deleteMetadataEntriesInChunksForWorkflowAndUpdateArchiveStatus(workflowId: WorkflowId,
+                                                                     newArchiveStatus: Option[String],
+                                                                     chunkSize: Int)
+                                                                    (implicit ec: ExecutionContext): Future[Long] = {
+    def deleteChunksAfter(afterMetadataEntryId: Long, rowsDeleted: Long): Future[Long] = {
+      metadataDatabaseInterface.deleteMetadataEntriesChunkForWorkflow(workflowId.toString, afterMetadataEntryId, chunkSize) flatMap {
+        case Some((chunkRowsDeleted, lastMetadataEntryId)) => deleteChunksAfter(lastMetadataEntryId, rowsDeleted + chunkRowsDeleted)
+        case None => Future.successful(rowsDeleted)
+      }
+    }
+
+    ifTerminalForDeletion(workflowId) {
+      for {
+        rowsDeleted <- deleteChunksAfter(afterMetadataEntryId = 0L, rowsDeleted = 0L)
+        _ <- metadataDatabaseInterface.updateMetadataArchiveStatus(workflowId.toString, newArchiveStatus)
+      } yield rowsDeleted
+    }
+  }
+
+  private def ifTerminalForDeletion[A](workflowId: WorkflowId)(delete: => Future[A])(implicit ec: ExecutionContext): Future[A] = {
     import cromwell.core.WorkflowState
 
     (metadataDatabaseInterface.getWorkflowStatus(workflowId.toString)) flatMap {
@@ -348,7 +417,7 @@ trait MetadataDatabaseAccess {
         Future.failed(new Exception(s"""Metadata deletion precondition failed: workflow ID "$workflowId" did not have a status in the summary table"""))
       case Some(status) =>
         if (WorkflowState.withName(status).isTerminal)
-          metadataDatabaseInterface.deleteAllMetadataForWorkflowAndUpdateArchiveStatus(workflowId.toString, newArchiveStatus)
+          delete
         else
           Future.failed(new Exception(s"""Metadata deletion precondition failed: workflow ID "$workflowId" was in non-terminal status "$status""""))
 
@@ -363,6 +432,13 @@ trait MetadataDatabaseAccess {
   def getSummaryQueueSize()(implicit ec: ExecutionContext): Future[Int] =
     metadataDatabaseInterface.getSummaryQueueSize()
 
+  /** How long ago the oldest metadata still waiting to be summarized was written, zero if none is waiting. */
+  def getSummaryQueueLag()(implicit ec: ExecutionContext): Future[FiniteDuration] =
+    metadataDatabaseInterface.getSummaryQueueOldestTimestamp() map {
+      case Some(oldest) => (System.currentTimeMillis() - oldest.getTime).max(0L).millis
+      case None => Duration.Zero
+    }
+
   def getMetadataArchiveStatusAndEndTime(id: WorkflowId)(implicit ec: ExecutionContext): Future[WorkflowArchiveStatusAndEndTimestamp] = {
     metadataDatabaseInterface.getMetadataArchiveStatusAndEndTime(id.toString).map {
       case (statusOption, timestampOption) => WorkflowArchiveStatusAndEndTimestamp(statusOption, timestampOption.map(_.toSystemOffsetDateTime))
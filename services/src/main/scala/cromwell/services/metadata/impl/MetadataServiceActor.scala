@@ -8,6 +8,7 @@ import com.typesafe.config.Config
 import common.exception.AggregatedMessageException
 import common.validation.Validation._
 import cromwell.core.Dispatcher.ServiceDispatcher
+import cromwell.core.actor.AdaptiveBatchingConfig
 import cromwell.core.{LoadConfig, WorkflowId}
 import cromwell.services.MetadataServicesStore
 import cromwell.services.instrumentation.CromwellInstrumentation
@@ -59,6 +60,11 @@ case class MetadataServiceActor(serviceConfig: Config, globalConfig: Config, ser
 
   private val metadataSummaryRefreshLimit = serviceConfig.getOrElse("metadata-summary-refresh-limit", default = 5000)
 
+  // Summarization partitions the summary queue by the last hex digit of the workflow ids, hence at most 16 partitions
+  private val metadataSummaryRefreshPartitions = serviceConfig.getOrElse("metadata-summary-refresh-partitions", default = 1)
+  require(metadataSummaryRefreshPartitions >= 1 && metadataSummaryRefreshPartitions <= 16,
+    s"metadata-summary-refresh-partitions must be between 1 and 16: $metadataSummaryRefreshPartitions")
+
   private val metadataReadTimeout: Duration =
     serviceConfig.getOrElse[Duration]("metadata-read-query-timeout", Duration.Inf)
   private val metadataReadRowNumberSafetyThreshold: Int =
@@ -71,20 +77,28 @@ case class MetadataServiceActor(serviceConfig: Config, globalConfig: Config, ser
   private val dataLengthMetricsPath: NonEmptyList[String] = metadataTableMetricsPath :+ "data_length"
   private val indexLengthMetricsPath:  NonEmptyList[String] = metadataTableMetricsPath :+ "index_length"
 
+  private val metadataSnapshotCache: Option[MetadataSnapshotCache] =
+    MetadataSnapshotCache.fromConfig(serviceConfig, metadataDatabaseInterface.metadataKeyLikeIsCaseInsensitive)
+  private val metadataSnapshotCachePath: NonEmptyList[String] = MetadataServiceActor.MetadataInstrumentationPrefix :+ "snapshot_cache"
+
   def readMetadataWorkerActorProps(): Props =
     ReadDatabaseMetadataWorkerActor
-      .props(metadataReadTimeout, metadataReadRowNumberSafetyThreshold)
+      .props(metadataReadTimeout, metadataReadRowNumberSafetyThreshold, metadataSnapshotCache)
       .withDispatcher(ServiceDispatcher)
 
   def metadataBuilderActorProps(): Props = MetadataBuilderActor
-    .props(readMetadataWorkerActorProps, metadataReadRowNumberSafetyThreshold)
+    .props(readMetadataWorkerActorProps, metadataReadRowNumberSafetyThreshold, snapshotCache = metadataSnapshotCache)
     .withDispatcher(ServiceDispatcher)
 
   val readActor = context.actorOf(ReadMetadataRegulatorActor.props(metadataBuilderActorProps, readMetadataWorkerActorProps), "ClassicMSA-ReadMetadataRegulatorActor")
 
   val dbFlushRate = serviceConfig.getOrElse("db-flush-rate", 5.seconds)
   val dbBatchSize = serviceConfig.getOrElse("db-batch-size", 200)
-  val writeActor = context.actorOf(WriteMetadataActor.props(dbBatchSize, dbFlushRate, serviceRegistryActor, LoadConfig.MetadataWriteThreshold), "WriteMetadataActor")
+  val dbAdaptiveBatching = AdaptiveBatchingConfig.fromConfig(serviceConfig, dbBatchSize, dbFlushRate)
+  val writeActor = context.actorOf(
+    WriteMetadataActor.props(dbBatchSize, dbFlushRate, serviceRegistryActor, LoadConfig.MetadataWriteThreshold, dbAdaptiveBatching, metadataSnapshotCache),
+    "WriteMetadataActor"
+  )
 
   implicit val ec = context.dispatcher
   //noinspection ActorMutableStateInspection
@@ -101,6 +115,13 @@ case class MetadataServiceActor(serviceConfig: Config, globalConfig: Config, ser
   // if `metadata-table-size-metrics-interval` is specified, schedule sending size metrics at that interval
   metadataTableMetricsInterval.map(context.system.scheduler.schedule(1.minute, _, self, SendMetadataTableSizeMetrics)(context.dispatcher, self))
 
+  metadataSnapshotCache foreach { _ =>
+    log.info("Metadata snapshot cache enabled.")
+    context.system.scheduler.schedule(
+      CromwellInstrumentation.InstrumentationRate, CromwellInstrumentation.InstrumentationRate, self, SendMetadataSnapshotCacheMetrics
+    )(context.dispatcher, self)
+  }
+
   private def scheduleSummary(): Unit = {
     metadataSummaryRefreshInterval foreach { interval =>
       summaryRefreshCancellable = Option(context.system.scheduler.scheduleOnce(interval, self, RefreshSummary)(context.dispatcher, self))
@@ -114,7 +135,7 @@ case class MetadataServiceActor(serviceConfig: Config, globalConfig: Config, ser
 
   private def buildSummaryActor: Option[ActorRef] = {
     val actor = metadataSummaryRefreshInterval map {
-      _ => context.actorOf(MetadataSummaryRefreshActor.props(serviceRegistryActor), "metadata-summary-actor")
+      _ => context.actorOf(MetadataSummaryRefreshActor.props(serviceRegistryActor, metadataSummaryRefreshPartitions), "metadata-summary-actor")
     }
     val message = metadataSummaryRefreshInterval match {
       case Some(interval) => s"Metadata summary refreshing every $interval."
@@ -189,6 +210,16 @@ case class MetadataServiceActor(serviceConfig: Config, globalConfig: Config, ser
     }
   }
 
+  private def sendMetadataSnapshotCacheMetrics(): Unit = {
+    metadataSnapshotCache foreach { cache =>
+      val (hits, misses) = cache.drainHitsAndMisses()
+      count(metadataSnapshotCachePath :+ "hit", hits)
+      count(metadataSnapshotCachePath :+ "miss", misses)
+      sendGauge(metadataSnapshotCachePath :+ "entries", cache.size.toLong)
+      sendGauge(metadataSnapshotCachePath :+ "bytes", cache.estimatedBytes)
+    }
+  }
+
   def summarizerReceive: Receive = {
     case RefreshSummary => summaryActor foreach { _ ! SummarizeMetadata(metadataSummaryRefreshLimit, sender()) }
     case MetadataSummarySuccess => scheduleSummary()
@@ -200,6 +231,7 @@ case class MetadataServiceActor(serviceConfig: Config, globalConfig: Config, ser
   def receive = summarizerReceive orElse {
     case ShutdownCommand => waitForActorsAndShutdown(NonEmptyList.of(writeActor) ++ archiveMetadataActor.toList ++ deleteMetadataActor.toList)
     case SendMetadataTableSizeMetrics => sendMetadataTableSizeMetrics()
+    case SendMetadataSnapshotCacheMetrics => sendMetadataSnapshotCacheMetrics()
     case action: PutMetadataAction => writeActor forward action
     case action: PutMetadataActionAndRespond => writeActor forward action
     // Assume that listen messages are directed to the write metadata actor
@@ -209,5 +241,6 @@ case class MetadataServiceActor(serviceConfig: Config, globalConfig: Config, ser
     case g: FetchWorkflowMetadataArchiveStatusAndEndTime => fetchWorkflowMetadataArchiveStatusAndEndTime(g.workflowId, sender())
     case action: BuildMetadataJsonAction => readActor forward action
     case streamAction: GetMetadataStreamAction => readActor forward streamAction
+    case pageAction: GetMetadataPageAction => readActor forward pageAction
   }
 }
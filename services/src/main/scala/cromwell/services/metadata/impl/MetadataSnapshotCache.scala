@@ -0,0 +1,276 @@
+package cromwell.services.metadata.impl
+
+import java.util
+import java.util.concurrent.atomic.AtomicLong
+import java.util.regex.Pattern
+
+import com.typesafe.config.Config
+import cromwell.core.WorkflowId
+import cromwell.services.metadata.{MetadataEvent, MetadataQuery}
+import net.ceedubs.ficus.Ficus._
+import spray.json.JsObject
+
+import scala.collection.mutable
+import scala.concurrent.duration._
+
+/**
+  * The metadata events of recently read workflows, and the metadata JSON built from them, kept up to date with the
+  * metadata written since so that polling the metadata of a running workflow only costs the events written in between
+  * rather than reading and building all of its metadata again.
+  *
+  * Bounded by an estimate of the bytes held, evicting the least recently used queries first. Shared by the metadata
+  * writer, which patches the cached queries of a workflow once its events are committed, and by the metadata readers
+  * and builders.
+  *
+  * A read only populates the cache if no write of its workflow was in flight or completed while it was reading, so
+  * that the cached events are exactly those committed, and every later write patches them.
+  *
+  * Only the writes of this Cromwell instance patch the cache: the metadata written by other instances sharing the
+  * database is not seen until the snapshot is read again. Snapshots are therefore only served for `timeToLive` after
+  * the database read they were built from, which bounds how stale they can be when several instances write the
+  * metadata of the same workflows.
+  *
+  * @param caseInsensitiveKeys Whether the included and excluded keys match regardless of case, as the LIKE of the
+  *                            database does.
+  */
+final class MetadataSnapshotCache(maxBytes: Long,
+                                  timeToLive: FiniteDuration,
+                                  caseInsensitiveKeys: Boolean,
+                                  nanoTime: () => Long = () => System.nanoTime) {
+  import MetadataSnapshotCache._
+
+  // Access ordered, eldest first
+  private val snapshots = new util.LinkedHashMap[MetadataQuery, Snapshot](16, 0.75f, true)
+  private val workflows = mutable.HashMap.empty[WorkflowId, WorkflowActivity]
+  private var bytes = 0L
+
+  private val hits = new AtomicLong()
+  private val misses = new AtomicLong()
+
+  /** Only whole workflow reads are cached, optionally filtered by included or excluded keys. */
+  def isCacheable(query: MetadataQuery): Boolean = query.jobKey.isEmpty && query.key.isEmpty
+
+  /** The events matching `query`, counting a hit or a miss. */
+  def events(query: MetadataQuery): Option[Vector[MetadataEvent]] = synchronized {
+    val snapshot = live(snapshotKey(query))
+    if (snapshot.isDefined) hits.incrementAndGet() else misses.incrementAndGet()
+    snapshot.map(_.events)
+  }
+
+  /** The metadata JSON built for `query` since its events last changed, counting a hit if any. */
+  def json(query: MetadataQuery): Option[JsObject] = synchronized {
+    // The JSON of expanded sub workflows also depends on the metadata of the sub workflows
+    val json = if (query.expandSubWorkflows) None else live(snapshotKey(query)).flatMap(_.json)
+    json foreach { _ => hits.incrementAndGet() }
+    json
+  }
+
+  /**
+    * Records the JSON built for `query` from `events`, if they are still the cached events: if not, they have been
+    * patched since.
+    */
+  def putJson(query: MetadataQuery, events: Seq[MetadataEvent], json: JsObject): Unit = synchronized {
+    if (!query.expandSubWorkflows) {
+      val key = snapshotKey(query)
+      live(key) foreach { snapshot =>
+        if (snapshot.events eq events) replace(key, snapshot, snapshot.copy(json = Option(json)))
+      }
+    }
+  }
+
+  /** To be called before reading the metadata of `workflowId` from the database. */
+  def readStarted(workflowId: WorkflowId): ReadToken = synchronized {
+    val activity = workflows.getOrElseUpdate(workflowId, new WorkflowActivity)
+    activity.readsInFlight += 1
+    ReadToken(activity.version, nanoTime())
+  }
+
+  /**
+    * To be called once the metadata read for `query` completed, with the events read if it succeeded. Caches them if
+    * no write of the workflow interleaved with the read.
+    */
+  def readCompleted(query: MetadataQuery, token: ReadToken, events: Option[Seq[MetadataEvent]]): Unit = synchronized {
+    workflows.get(query.workflowId) foreach { activity =>
+      activity.readsInFlight -= 1
+      events foreach { es =>
+        if (activity.version == token.version && activity.writesInFlight == 0) {
+          val key = snapshotKey(query)
+          val snapshot = Snapshot(es.toVector, None, estimateBytes(es), eventFilter(query, caseInsensitiveKeys), token.startedNanos)
+          if (snapshot.bytes <= maxBytes) {
+            Option(snapshots.remove(key)) foreach { previous => bytes -= previous.bytes }
+            snapshots.put(key, snapshot)
+            bytes += snapshot.bytes
+            activity.queries += key
+            evict()
+          }
+        }
+      }
+      pruneIfIdle(query.workflowId, activity)
+    }
+  }
+
+  /** To be called before writing `events` to the database. */
+  def writeStarted(events: Iterable[MetadataEvent]): Unit = synchronized {
+    events.map(_.key.workflowId).toSet[WorkflowId] foreach { workflowId =>
+      val activity = workflows.getOrElseUpdate(workflowId, new WorkflowActivity)
+      activity.writesInFlight += 1
+      activity.version += 1
+    }
+  }
+
+  /**
+    * To be called once `events` were written to the database, or failed to. Patches the cached queries of their
+    * workflows on success, drops them on failure as the events may have been partially written.
+    */
+  def writeCompleted(events: Iterable[MetadataEvent], succeeded: Boolean): Unit = synchronized {
+    events.groupBy(_.key.workflowId) foreach { case (workflowId, workflowEvents) =>
+      workflows.get(workflowId) foreach { activity =>
+        activity.writesInFlight -= 1
+        activity.version += 1
+        activity.queries.toList foreach { key =>
+          Option(snapshots.get(key)) foreach { snapshot =>
+            if (succeeded) patch(key, snapshot, workflowEvents) else remove(key)
+          }
+        }
+        pruneIfIdle(workflowId, activity)
+      }
+    }
+  }
+
+  /** Returns the hits and misses since the last call. */
+  def drainHitsAndMisses(): (Long, Long) = (hits.getAndSet(0L), misses.getAndSet(0L))
+
+  def size: Int = synchronized { snapshots.size }
+
+  def estimatedBytes: Long = synchronized { bytes }
+
+  /** The snapshot cached for `key` if it was read less than `timeToLive` ago, removing it otherwise. */
+  private def live(key: MetadataQuery): Option[Snapshot] = {
+    Option(snapshots.get(key)) filter { snapshot =>
+      val expired = nanoTime() - snapshot.readNanos >= timeToLive.toNanos
+      if (expired) remove(key)
+      !expired
+    }
+  }
+
+  private def patch(key: MetadataQuery, snapshot: Snapshot, newEvents: Iterable[MetadataEvent]): Unit = {
+    val matching = newEvents.filter(snapshot.filter).toVector
+    if (matching.nonEmpty) {
+      val appended = snapshot.events ++ matching
+      // Keep the events ordered by timestamp as read from the database, the builders rely on it. Only sort when the
+      // written events don't already come after the cached ones.
+      val timestamps = snapshot.events.lastOption.toVector ++ matching map { _.offsetDateTime }
+      val inOrder = timestamps.sliding(2).forall {
+        case Vector(t1, t2) => !t2.isBefore(t1)
+        case _ => true
+      }
+      val events = if (inOrder) appended else appended.sortWith((e1, e2) => e1.offsetDateTime.isBefore(e2.offsetDateTime))
+      val patched = snapshot.copy(events = events, json = None, eventBytes = snapshot.eventBytes + estimateBytes(matching))
+      replace(key, snapshot, patched)
+      evict()
+    }
+  }
+
+  private def replace(key: MetadataQuery, previous: Snapshot, snapshot: Snapshot): Unit = {
+    snapshots.put(key, snapshot)
+    bytes += snapshot.bytes - previous.bytes
+  }
+
+  private def remove(key: MetadataQuery): Unit = {
+    Option(snapshots.remove(key)) foreach { snapshot => bytes -= snapshot.bytes }
+    workflows.get(key.workflowId) foreach { activity =>
+      activity.queries -= key
+      pruneIfIdle(key.workflowId, activity)
+    }
+  }
+
+  private def evict(): Unit = {
+    while (bytes > maxBytes && !snapshots.isEmpty) {
+      remove(snapshots.keySet.iterator.next)
+    }
+  }
+
+  private def pruneIfIdle(workflowId: WorkflowId, activity: WorkflowActivity): Unit = {
+    if (activity.writesInFlight == 0 && activity.readsInFlight == 0 && activity.queries.isEmpty) {
+      workflows.remove(workflowId)
+      ()
+    }
+  }
+}
+
+object MetadataSnapshotCache {
+  /** @param startedNanos When the read started, bounding when the events read were committed. */
+  final case class ReadToken(version: Long, startedNanos: Long)
+
+  private final class WorkflowActivity {
+    // Incremented when writes start and complete
+    var version = 0L
+    var writesInFlight = 0
+    var readsInFlight = 0
+    val queries = mutable.Set.empty[MetadataQuery]
+  }
+
+  private final case class Snapshot(events: Vector[MetadataEvent],
+                                    json: Option[JsObject],
+                                    eventBytes: Long,
+                                    filter: MetadataEvent => Boolean,
+                                    readNanos: Long) {
+    // Assumes the JSON takes about as much memory as the events it was built from
+    def bytes: Long = if (json.isDefined) eventBytes * 2 else eventBytes
+  }
+
+  // Object headers and references of an event, its key, value and timestamp
+  private val EventOverheadBytes = 200L
+
+  private def estimateBytes(events: Iterable[MetadataEvent]): Long = events.foldLeft(0L) { (total, event) =>
+    val characters = event.key.key.length +
+      event.key.jobKey.map(_.callFqn.length).getOrElse(0) +
+      event.value.map(_.value.length).getOrElse(0)
+    total + EventOverheadBytes + 2L * characters
+  }
+
+  // The database reads are the same with or without expanded sub workflows, which are read separately
+  private def snapshotKey(query: MetadataQuery): MetadataQuery = query.copy(expandSubWorkflows = false)
+
+  /**
+    * Whether a written event would be read by `query`, matching the key constraints of the database query: included
+    * and excluded keys are LIKE prefixes, which ignore case on MySQL and MariaDB, and excluding `calls` only reads
+    * workflow level events.
+    */
+  private def eventFilter(query: MetadataQuery, caseInsensitive: Boolean): MetadataEvent => Boolean = {
+    val flags = if (caseInsensitive) Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE else Pattern.DOTALL
+
+    def likePrefix(key: String): Pattern = {
+      val regex = key.split("((?<=[%_])|(?=[%_]))").map {
+        case "%" => ".*"
+        case "_" => "."
+        case literal => Pattern.quote(literal)
+      }.mkString
+      Pattern.compile(regex + ".*", flags)
+    }
+
+    val included = query.includeKeysOption.map(_.toList.map(likePrefix))
+    val excluded = query.excludeKeysOption.map(_.toList).getOrElse(List.empty)
+    val workflowLevelOnly = excluded.contains("calls")
+    val excludedPatterns = excluded.map(likePrefix)
+
+    event => {
+      val key = event.key.key
+      (!workflowLevelOnly || event.key.jobKey.isEmpty) &&
+        included.forall(_.exists(_.matcher(key).matches)) &&
+        !excludedPatterns.exists(_.matcher(key).matches)
+    }
+  }
+
+  /** Reads the `metadata-snapshot-cache` section of the metadata service configuration, if enabled. */
+  def fromConfig(serviceConfig: Config, caseInsensitiveKeys: Boolean): Option[MetadataSnapshotCache] = {
+    serviceConfig.getAs[Config]("metadata-snapshot-cache").filter(_.getOrElse("enabled", false)) map { cacheConfig =>
+      val maxBytes = if (cacheConfig.hasPath("max-size")) cacheConfig.getBytes("max-size").longValue else DefaultMaxBytes
+      val timeToLive = cacheConfig.getOrElse[FiniteDuration]("time-to-live", DefaultTimeToLive)
+      new MetadataSnapshotCache(maxBytes, timeToLive, caseInsensitiveKeys)
+    }
+  }
+
+  val DefaultMaxBytes: Long = 256L * 1024 * 1024
+  val DefaultTimeToLive: FiniteDuration = 1.minute
+}
@@ -17,6 +17,8 @@ import scala.util.{Failure, Success}
   * Despite its package location this is not actually a service, but a type of actor spawned at the behest of
   * the MetadataServiceActor.
   *
+  * The summary queue is split into `partitions` partitions of the workflow ids, summarized concurrently. Each workflow
+  * belongs to a single partition, so concurrent partitions never update the same summary.
   */
 
 object MetadataSummaryRefreshActor {
@@ -25,7 +27,8 @@ object MetadataSummaryRefreshActor {
   case object MetadataSummarySuccess extends MetadataSummaryActorMessage
   final case class MetadataSummaryFailure(t: Throwable) extends MetadataSummaryActorMessage
 
-  def props(serviceRegistryActor: ActorRef) = Props(new MetadataSummaryRefreshActor(serviceRegistryActor)).withDispatcher(ServiceDispatcher)
+  def props(serviceRegistryActor: ActorRef, partitions: Int = 1) =
+    Props(new MetadataSummaryRefreshActor(serviceRegistryActor, partitions)).withDispatcher(ServiceDispatcher)
 
   sealed trait SummaryRefreshState
   case object WaitingForRequest extends SummaryRefreshState
@@ -35,7 +38,7 @@ object MetadataSummaryRefreshActor {
   case object SummaryRefreshData
 }
 
-class MetadataSummaryRefreshActor(override val serviceRegistryActor: ActorRef)
+class MetadataSummaryRefreshActor(override val serviceRegistryActor: ActorRef, partitions: Int)
   extends LoggingFSM[SummaryRefreshState, SummaryRefreshData.type]
     with MetadataDatabaseAccess
     with MetadataServicesStore
@@ -45,6 +48,7 @@ class MetadataSummaryRefreshActor(override val serviceRegistryActor: ActorRef)
 
   private val summaryMetricsGapsPath: NonEmptyList[String] = MetadataServiceActor.MetadataInstrumentationPrefix :+ "summarizer" :+ "gap"
   private val summaryMetricsProcessedPath: NonEmptyList[String] = MetadataServiceActor.MetadataInstrumentationPrefix :+ "summarizer" :+ "processed"
+  private val summaryMetricsLagPath: NonEmptyList[String] = MetadataServiceActor.MetadataInstrumentationPrefix :+ "summarizer" :+ "lag"
 
 
   val increasingGapPath = summaryMetricsGapsPath :+ "increasing"
@@ -53,18 +57,32 @@ class MetadataSummaryRefreshActor(override val serviceRegistryActor: ActorRef)
   val increasingProcessedPath = summaryMetricsProcessedPath :+ "increasing"
   val decreasingProcessedPath = summaryMetricsProcessedPath :+ "decreasing"
 
+  // The increasing gap is the backlog of the summary queue, the increasing lag how long its oldest entry has waited
+  val increasingLagPath = summaryMetricsLagPath :+ "increasing"
+
   private val instrumentationPrefix: Option[String] = InstrumentationPrefixes.ServicesPrefix
 
   private val summarizerQueueIncreasingGapMetricActor =
     context.actorOf(AsynchronousThrottlingGaugeMetricActor.props(increasingGapPath, instrumentationPrefix, serviceRegistryActor))
 
+  private val summarizerQueueIncreasingLagMetricActor =
+    context.actorOf(AsynchronousThrottlingGaugeMetricActor.props(increasingLagPath, instrumentationPrefix, serviceRegistryActor))
+
+  override def preStart(): Unit = {
+    log.info("Metadata summary refreshing in {} partition(s).", partitions)
+    super.preStart()
+  }
+
   startWith(WaitingForRequest, SummaryRefreshData)
 
   when (WaitingForRequest) {
     case Event(SummarizeMetadata(limit, respondTo), _) =>
-      refreshWorkflowMetadataSummaries(limit) onComplete {
+      refreshWorkflowMetadataSummaries(limit, partitions) onComplete {
         case Success(summaryResult) =>
           summarizerQueueIncreasingGapMetricActor ! CalculateMetricValue { ec => getSummaryQueueSize()(ec) }
+          summarizerQueueIncreasingLagMetricActor ! CalculateMetricValue { ec =>
+            getSummaryQueueLag()(ec).map(lag => lag.toMillis.min(Int.MaxValue.toLong).toInt)(ec)
+          }
           sendGauge(decreasingGapPath, summaryResult.decreasingGap, instrumentationPrefix)
 
           count(increasingProcessedPath, summaryResult.rowsProcessedIncreasing, instrumentationPrefix)
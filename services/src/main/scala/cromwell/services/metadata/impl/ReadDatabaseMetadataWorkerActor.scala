@@ -7,18 +7,22 @@ import cromwell.core.Dispatcher.ServiceDispatcher
 import cromwell.core.{WorkflowId, WorkflowSubmitted}
 import cromwell.services.MetadataServicesStore
 import cromwell.services.metadata.MetadataService._
-import cromwell.services.metadata.{MetadataQuery, WorkflowQueryParameters}
+import cromwell.services.metadata.{MetadataPageQuery, MetadataQuery, WorkflowQueryParameters}
 
 import scala.concurrent.Future
 import scala.concurrent.duration.Duration
 import scala.util.Try
 
 object ReadDatabaseMetadataWorkerActor {
-  def props(metadataReadTimeout: Duration, metadataReadRowNumberSafetyThreshold: Int) =
-    Props(new ReadDatabaseMetadataWorkerActor(metadataReadTimeout, metadataReadRowNumberSafetyThreshold)).withDispatcher(ServiceDispatcher)
+  def props(metadataReadTimeout: Duration,
+            metadataReadRowNumberSafetyThreshold: Int,
+            snapshotCache: Option[MetadataSnapshotCache] = None) =
+    Props(new ReadDatabaseMetadataWorkerActor(metadataReadTimeout, metadataReadRowNumberSafetyThreshold, snapshotCache)).withDispatcher(ServiceDispatcher)
 }
 
-class ReadDatabaseMetadataWorkerActor(metadataReadTimeout: Duration, metadataReadRowNumberSafetyThreshold: Int)
+class ReadDatabaseMetadataWorkerActor(metadataReadTimeout: Duration,
+                                      metadataReadRowNumberSafetyThreshold: Int,
+                                      snapshotCache: Option[MetadataSnapshotCache] = None)
   extends Actor
     with ActorLogging
     with MetadataDatabaseAccess
@@ -29,8 +33,10 @@ class ReadDatabaseMetadataWorkerActor(metadataReadTimeout: Duration, metadataRea
   def receive = {
     case GetMetadataAction(query: MetadataQuery, checkTotalMetadataRowNumberBeforeQuerying: Boolean) =>
       evaluateRespondAndStop(sender(), getMetadata(query, checkTotalMetadataRowNumberBeforeQuerying))
-    case GetMetadataStreamAction(workflowId) =>
-      evaluateRespondAndStop(sender(), Future.fromTry(getMetadataStream(workflowId)))
+    case GetMetadataStreamAction(workflowId, groupedByCall) =>
+      evaluateRespondAndStop(sender(), Future.fromTry(getMetadataStream(workflowId, groupedByCall)))
+    case GetMetadataPageAction(query, cursor, pageSize) =>
+      evaluateRespondAndStop(sender(), getMetadataPage(query, cursor, pageSize))
     case GetStatus(workflowId) => evaluateRespondAndStop(sender(), getStatus(workflowId))
     case GetLabels(workflowId) => evaluateRespondAndStop(sender(), queryLabelsAndRespond(workflowId))
     case GetRootAndSubworkflowLabels(rootWorkflowId: WorkflowId) => evaluateRespondAndStop(sender(), queryRootAndSubworkflowLabelsAndRespond(rootWorkflowId))
@@ -52,6 +58,28 @@ class ReadDatabaseMetadataWorkerActor(metadataReadTimeout: Duration, metadataRea
   }
 
   private def getMetadata(query: MetadataQuery, checkResultSizeBeforeQuerying: Boolean): Future[MetadataServiceResponse] = {
+    snapshotCache.filter(_.isCacheable(query)) match {
+      case Some(cache) =>
+        cache.events(query) match {
+          case Some(events) if checkResultSizeBeforeQuerying && events.size > metadataReadRowNumberSafetyThreshold =>
+            Future.successful(MetadataLookupFailedTooLargeResponse(query, events.size))
+          case Some(events) =>
+            Future.successful(MetadataLookupResponse(query, events))
+          case None =>
+            val token = cache.readStarted(query.workflowId)
+            // The same Vector is cached and sent to the builder, so that it can tell they are still the cached events
+            getMetadataFromDatabase(query, checkResultSizeBeforeQuerying) map {
+              case MetadataLookupResponse(q, events) => MetadataLookupResponse(q, events.toVector)
+              case other => other
+            } andThen { case result =>
+              cache.readCompleted(query, token, result.toOption.collect { case MetadataLookupResponse(_, events) => events })
+            }
+        }
+      case None => getMetadataFromDatabase(query, checkResultSizeBeforeQuerying)
+    }
+  }
+
+  private def getMetadataFromDatabase(query: MetadataQuery, checkResultSizeBeforeQuerying: Boolean): Future[MetadataServiceResponse] = {
     if (checkResultSizeBeforeQuerying) {
       getMetadataReadRowCount(query, metadataReadTimeout) flatMap { count =>
         if (count > metadataReadRowNumberSafetyThreshold) {
@@ -68,14 +96,29 @@ class ReadDatabaseMetadataWorkerActor(metadataReadTimeout: Duration, metadataRea
     }
   }
 
-  private def getMetadataStream(workflowId: WorkflowId): Try[MetadataServiceResponse] = {
-    metadataEventsStream(workflowId) map {
+  private def getMetadataStream(workflowId: WorkflowId, groupedByCall: Boolean): Try[MetadataServiceResponse] = {
+    metadataEventsStream(workflowId, groupedByCall) map {
       s => MetadataLookupStreamSuccess(workflowId, s)
     } recover {
       case t => MetadataLookupStreamFailed(workflowId, t)
     }
   }
 
+  /** Pages are bounded by the row safety threshold, like any metadata read at once. */
+  private def getMetadataPage(query: MetadataPageQuery, cursor: Option[Long], pageSize: Int): Future[MetadataServiceResponse] = {
+    if (pageSize < 1 || pageSize > metadataReadRowNumberSafetyThreshold) {
+      val reason = new IllegalArgumentException(
+        s"Page size must be between 1 and $metadataReadRowNumberSafetyThreshold but was $pageSize")
+      Future.successful(MetadataLookupPageFailed(query, reason))
+    } else {
+      queryMetadataEventsPage(query, cursor, pageSize, metadataReadTimeout) map {
+        page => MetadataLookupPageResponse(query, page)
+      } recover {
+        case t => MetadataLookupPageFailed(query, t)
+      }
+    }
+  }
+
   private def queryMetadata(query: MetadataQuery): Future[MetadataServiceResponse] =
     queryMetadataEvents(query, metadataReadTimeout) map {
       m => MetadataLookupResponse(query, m)
@@ -6,7 +6,7 @@ import akka.actor.{Actor, ActorLogging, ActorRef, Props}
 import cromwell.core.Dispatcher.ApiDispatcher
 import cromwell.services.MetadataJsonResponse
 import cromwell.services.metadata.MetadataService
-import cromwell.services.metadata.MetadataService.{BuildMetadataJsonAction, BuildWorkflowMetadataJsonAction, GetMetadataStreamAction, MetadataLookupStreamSuccess, MetadataQueryResponse, MetadataServiceAction, MetadataServiceResponse, RootAndSubworkflowLabelsLookupResponse}
+import cromwell.services.metadata.MetadataService.{BuildMetadataJsonAction, BuildWorkflowMetadataJsonAction, GetMetadataPageAction, GetMetadataStreamAction, MetadataLookupPageFailed, MetadataLookupPageResponse, MetadataLookupStreamFailed, MetadataLookupStreamSuccess, MetadataQueryResponse, MetadataServiceAction, MetadataServiceResponse, RootAndSubworkflowLabelsLookupResponse}
 import cromwell.services.metadata.impl.ReadMetadataRegulatorActor.PropsMaker
 import cromwell.services.metadata.impl.builder.MetadataBuilderActor
 
@@ -46,17 +46,17 @@ class ReadMetadataRegulatorActor(metadataBuilderActorProps: PropsMaker, readMeta
             readMetadataActor ! crossWorkflowAction
           }
       }
-    case streamRequest: GetMetadataStreamAction =>
-      val currentRequesters = apiRequests.getOrElse(streamRequest, Set.empty)
-      apiRequests.put(streamRequest, currentRequesters + sender())
+    case readRequest @ (_: GetMetadataStreamAction | _: GetMetadataPageAction) =>
+      val currentRequesters = apiRequests.getOrElse(readRequest, Set.empty)
+      apiRequests.put(readRequest, currentRequesters + sender())
       if(currentRequesters.isEmpty) {
         val readMetadataActor = context.actorOf(readMetadataWorkerProps.apply().withDispatcher(ApiDispatcher), s"MetadataQueryWorker-${UUID.randomUUID()}")
-        builderRequests.put(readMetadataActor, streamRequest)
-        readMetadataActor ! streamRequest
+        builderRequests.put(readMetadataActor, readRequest)
+        readMetadataActor ! readRequest
       }
     case serviceResponse: MetadataServiceResponse =>
       serviceResponse match {
-        case response @ (_: MetadataJsonResponse | _: MetadataQueryResponse | _: RootAndSubworkflowLabelsLookupResponse | _: MetadataLookupStreamSuccess) =>
+        case response @ (_: MetadataJsonResponse | _: MetadataQueryResponse | _: RootAndSubworkflowLabelsLookupResponse | _: MetadataLookupStreamSuccess | _: MetadataLookupStreamFailed | _: MetadataLookupPageResponse | _: MetadataLookupPageFailed) =>
           handleResponseFromMetadataWorker(response)
       }
     case other => log.error(s"Programmer Error: Unexpected message $other received from $sender")
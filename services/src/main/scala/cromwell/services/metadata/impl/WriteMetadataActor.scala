@@ -4,6 +4,7 @@ import akka.actor.{ActorLogging, ActorRef, Props}
 import cats.data.NonEmptyVector
 import cromwell.core.Dispatcher.ServiceDispatcher
 import cromwell.core.Mailbox.PriorityMailbox
+import cromwell.core.actor.AdaptiveBatchingConfig
 import cromwell.core.instrumentation.InstrumentationPrefixes
 import cromwell.services.metadata.MetadataEvent
 import cromwell.services.metadata.MetadataService._
@@ -16,7 +17,9 @@ import scala.util.{Failure, Success}
 class WriteMetadataActor(override val batchSize: Int,
                          override val flushRate: FiniteDuration,
                          override val serviceRegistryActor: ActorRef,
-                         override val threshold: Int)
+                         override val threshold: Int,
+                         override protected val adaptiveBatching: Option[AdaptiveBatchingConfig] = None,
+                         snapshotCache: Option[MetadataSnapshotCache] = None)
   extends EnhancedBatchActor[MetadataWriteAction](flushRate, batchSize)
     with ActorLogging
     with MetadataDatabaseAccess
@@ -32,8 +35,13 @@ class WriteMetadataActor(override val batchSize: Int,
         (putEvents, putAndRespondEvents :+ (action.events -> action.replyTo))
     })
     val allPutEvents: Iterable[MetadataEvent] = putWithoutResponse ++ putWithResponse.flatMap(_._1)
+    snapshotCache foreach { _.writeStarted(allPutEvents) }
     val dbAction = addMetadataEvents(allPutEvents)
 
+    dbAction onComplete { result =>
+      snapshotCache foreach { _.writeCompleted(allPutEvents, succeeded = result.isSuccess) }
+    }
+
     dbAction onComplete {
       case Success(_) =>
         putWithResponse foreach { case (ev, replyTo) => replyTo ! MetadataWriteSuccess(ev) }
@@ -84,8 +92,10 @@ object WriteMetadataActor {
   def props(dbBatchSize: Int,
             flushRate: FiniteDuration,
             serviceRegistryActor: ActorRef,
-            threshold: Int): Props =
-    Props(new WriteMetadataActor(dbBatchSize, flushRate, serviceRegistryActor, threshold))
+            threshold: Int,
+            adaptiveBatching: Option[AdaptiveBatchingConfig] = None,
+            snapshotCache: Option[MetadataSnapshotCache] = None): Props =
+    Props(new WriteMetadataActor(dbBatchSize, flushRate, serviceRegistryActor, threshold, adaptiveBatching, snapshotCache))
       .withDispatcher(ServiceDispatcher)
       .withMailbox(PriorityMailbox)
 }
@@ -21,7 +21,8 @@ final case class ArchiveMetadataConfig(pathBuilders: PathBuilders,
                                        archiveDelay: FiniteDuration,
                                        instrumentationInterval: FiniteDuration,
                                        debugLogging: Boolean,
-                                       batchSize: Long) {
+                                       batchSize: Long,
+                                       format: ArchiveMetadataFormat) {
 }
 
 object ArchiveMetadataConfig {
@@ -31,6 +32,7 @@ object ArchiveMetadataConfig {
     val defaultInstrumentationInterval = 1 minute
     val defaultDebugLogging = true
     val defaultBatchSize: Long = 1
+    val defaultFormat = ArchiveMetadataFormat.Csv.name
 
     for {
       _ <- Try(archiveMetadataConfig.getConfig("filesystems.gcs")).toCheckedWithContext("parse archiver 'filesystems.gcs' field from config")
@@ -43,6 +45,7 @@ object ArchiveMetadataConfig {
       instrumentationInterval <- Try(archiveMetadataConfig.getOrElse("instrumentation-interval", defaultInstrumentationInterval)).toChecked
       debugLogging <- Try(archiveMetadataConfig.getOrElse("debug-logging", defaultDebugLogging)).toChecked
       batchSize <- Try(archiveMetadataConfig.getOrElse("batch-size", defaultBatchSize)).toChecked
-    } yield ArchiveMetadataConfig(pathBuilders, bucket, backoffInterval, archiveDelay, instrumentationInterval, debugLogging, batchSize)
+      format <- Try(ArchiveMetadataFormat.fromName(archiveMetadataConfig.getOrElse("archive-format", defaultFormat))).toCheckedWithContext("parse archiver 'archive-format' field from config")
+    } yield ArchiveMetadataConfig(pathBuilders, bucket, backoffInterval, archiveDelay, instrumentationInterval, debugLogging, batchSize, format)
   }
 }
@@ -0,0 +1,168 @@
+package cromwell.services.metadata.impl.archiver
+
+import java.io._
+import java.nio.charset.StandardCharsets
+import java.time.OffsetDateTime
+import java.util.zip.{GZIPInputStream, GZIPOutputStream}
+import javax.sql.rowset.serial.SerialClob
+
+import common.util.TimeUtil.EnhancedOffsetDateTime
+import cromwell.database.sql.SqlConverters._
+import cromwell.database.sql.tables.MetadataEntry
+import org.apache.commons.csv.{CSVFormat, CSVPrinter, CSVRecord}
+
+import scala.collection.JavaConverters._
+
+/**
+  * How the metadata entries of a workflow are encoded in its archive file.
+  *
+  * Every format holds CSV rows with the same columns, so that an archive can be read back into the metadata entries it
+  * was written from whichever format it was written in.
+  *
+  * @param marksNullValues Whether the entries without value are archived with the `NullValueMarker` rather than an
+  *                        empty METADATA_VALUE, telling them apart from empty values. The archive header says which
+  *                        encoding an archive was written with.
+  */
+sealed abstract class ArchiveMetadataFormat(val name: String, val fileExtension: String, val marksNullValues: Boolean) {
+  /** Wraps the stream the archive is uploaded to. Closing the returned stream closes the wrapped one. */
+  def encode(out: OutputStream): OutputStream
+
+  /** Wraps a stream of the archive as uploaded. */
+  def decode(in: InputStream): InputStream
+}
+
+object ArchiveMetadataFormat {
+  /** The format archives were always written in, readable without any tooling. */
+  case object Csv extends ArchiveMetadataFormat("csv", ".csv", marksNullValues = false) {
+    override def encode(out: OutputStream): OutputStream = out
+    override def decode(in: InputStream): InputStream = in
+  }
+
+  /**
+    * Gzipped CSV. The keys, call names, workflow ids and timestamps repeated on every row make up most of an archive,
+    * and compress to a fraction of their size.
+    */
+  case object GzipCsv extends ArchiveMetadataFormat("csv-gzip", ".csv.gz", marksNullValues = true) {
+    override def encode(out: OutputStream): OutputStream = new GZIPOutputStream(out, CompressionBufferSize)
+    override def decode(in: InputStream): InputStream = new GZIPInputStream(in, CompressionBufferSize)
+  }
+
+  val Formats: List[ArchiveMetadataFormat] = List(Csv, GzipCsv)
+
+  def fromName(name: String): ArchiveMetadataFormat = {
+    Formats.find(_.name == name) getOrElse {
+      throw new IllegalArgumentException(
+        s"Unknown archive format '$name'. Supported formats are ${Formats.map(_.name).mkString(", ")}"
+      )
+    }
+  }
+
+  val CsvFileHeaders = List(
+    "METADATA_JOURNAL_ID",
+    "WORKFLOW_EXECUTION_UUID",
+    "METADATA_KEY",
+    "CALL_FQN",
+    "JOB_SCATTER_INDEX",
+    "JOB_RETRY_ATTEMPT",
+    "METADATA_VALUE",
+    "METADATA_TIMESTAMP",
+    "METADATA_VALUE_TYPE"
+  )
+
+  /**
+    * Written as the METADATA_VALUE of the entries without value by the formats marking them, so that they read back
+    * distinct from the entries with an empty value. Values starting with a backslash are escaped with another one so
+    * that none reads as the marker.
+    */
+  val NullValueMarker = "\\N"
+  private val Escape = "\\"
+
+  /** Replaces METADATA_VALUE in the header of the archives marking null values. */
+  val MarkedValueHeader = "METADATA_VALUE_NULL_MARKED"
+
+  private def csvFileHeaders(format: ArchiveMetadataFormat): List[String] = {
+    if (format.marksNullValues) CsvFileHeaders.map {
+      case "METADATA_VALUE" => MarkedValueHeader
+      case header => header
+    } else CsvFileHeaders
+  }
+
+  private val WriterBufferSize = 1024 * 1024
+  private val CompressionBufferSize = 64 * 1024
+
+  /**
+    * Creates a printer writing the CSV rows of an archive to `out`, which should already be wrapped by the format.
+    * The CSV printer writes each field separately, the buffer hands the encoded bytes down in large blocks.
+    */
+  def newCsvPrinter(format: ArchiveMetadataFormat, out: OutputStream): CSVPrinter = {
+    new CSVPrinter(
+      new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WriterBufferSize),
+      CSVFormat.DEFAULT.builder().setHeader(csvFileHeaders(format): _*).build(),
+    )
+  }
+
+  /** Prints `me` to a printer created for `format`. */
+  def printEntry(format: ArchiveMetadataFormat, csvPrinter: CSVPrinter, me: MetadataEntry): Unit = {
+    val value = if (format.marksNullValues) encodeValue(me.metadataValue.toRawStringOption) else me.metadataValue.toRawString
+
+    csvPrinter.printRecord(
+      me.metadataEntryId.map(_.toString).getOrElse(""),
+      me.workflowExecutionUuid,
+      me.metadataKey,
+      me.callFullyQualifiedName.getOrElse(""),
+      me.jobIndex.map(_.toString).getOrElse(""),
+      me.jobAttempt.map(_.toString).getOrElse(""),
+      value,
+      me.metadataTimestamp.toSystemOffsetDateTime.toUtcMilliString,
+      me.metadataValueType.getOrElse("")
+    )
+  }
+
+  /**
+    * Reads back the metadata entries of an archive written in `format`. The entries are only valid within `f`, after
+    * which the archive stream is closed.
+    */
+  def withArchivedEntries[A](format: ArchiveMetadataFormat, in: InputStream)(f: Iterator[MetadataEntry] => A): A = {
+    // The header is read from the archive, to decode the values as they were encoded whatever the format
+    val parser = CSVFormat.DEFAULT.builder()
+      .setHeader()
+      .build()
+      .parse(new BufferedReader(new InputStreamReader(format.decode(in), StandardCharsets.UTF_8), WriterBufferSize))
+    val marksNullValues = parser.getHeaderMap.containsKey(MarkedValueHeader)
+    try f(parser.iterator().asScala map { recordToEntry(_, marksNullValues) })
+    finally parser.close()
+  }
+
+  private def recordToEntry(record: CSVRecord, marksNullValues: Boolean): MetadataEntry = {
+    def optional(header: String): Option[String] = Option(record.get(header)).filter(_.nonEmpty)
+
+    // Archives not marking null values read empty values back as entries without value
+    val metadataValue =
+      if (marksNullValues) decodeValue(record.get(MarkedValueHeader)).map(value => new SerialClob(value.toCharArray))
+      else optional("METADATA_VALUE").toClobOption
+
+    MetadataEntry(
+      workflowExecutionUuid = record.get("WORKFLOW_EXECUTION_UUID"),
+      callFullyQualifiedName = optional("CALL_FQN"),
+      jobIndex = optional("JOB_SCATTER_INDEX").map(_.toInt),
+      jobAttempt = optional("JOB_RETRY_ATTEMPT").map(_.toInt),
+      metadataKey = record.get("METADATA_KEY"),
+      metadataValue = metadataValue,
+      metadataValueType = optional("METADATA_VALUE_TYPE"),
+      metadataTimestamp = OffsetDateTime.parse(record.get("METADATA_TIMESTAMP")).toSystemTimestamp,
+      metadataEntryId = optional("METADATA_JOURNAL_ID").map(_.toLong)
+    )
+  }
+
+  private def encodeValue(value: Option[String]): String = value match {
+    case None => NullValueMarker
+    case Some(escaped) if escaped.startsWith(Escape) => Escape + escaped
+    case Some(plain) => plain
+  }
+
+  private def decodeValue(value: String): Option[String] = value match {
+    case NullValueMarker => None
+    case escaped if escaped.startsWith(Escape) => Option(escaped.substring(Escape.length))
+    case plain => Option(plain)
+  }
+}
@@ -1,10 +1,11 @@
 package cromwell.services.metadata.impl.archiver
 
-import java.io.{OutputStream, OutputStreamWriter}
+import java.io.OutputStream
 import java.nio.file.{Files, StandardOpenOption}
 import java.time.{OffsetDateTime, Duration => JDuration}
 import java.util.UUID
 import java.util.concurrent.TimeUnit
+import java.util.zip.CRC32C
 
 import akka.actor.{Actor, ActorLogging, ActorRef, Props}
 import akka.pattern.ask
@@ -13,23 +14,21 @@ import cats.data.NonEmptyList
 import com.google.common.io.BaseEncoding
 import com.google.common.primitives.Longs
 import common.util.StringUtil.EnhancedToStringable
-import common.util.TimeUtil.EnhancedOffsetDateTime
 import cromwell.core.io.{AsyncIo, DefaultIoCommandBuilder}
 import cromwell.core.path.{Path, PathFactory}
 import cromwell.core.instrumentation.InstrumentationPrefixes.ServicesPrefix
 import cromwell.core.{WorkflowAborted, WorkflowFailed, WorkflowId, WorkflowSucceeded}
-import cromwell.database.sql.SqlConverters.{ClobOptionToRawString, TimestampToSystemOffsetDateTime}
+import cromwell.database.sql.SqlConverters.TimestampToSystemOffsetDateTime
 import cromwell.database.sql.tables.{MetadataEntry, WorkflowMetadataSummaryEntry}
 import cromwell.services.instrumentation.CromwellInstrumentation
 import cromwell.services.metadata.MetadataArchiveStatus.Archived
 import cromwell.services.metadata.MetadataService.{GetMetadataStreamAction, MetadataLookupStreamFailed, MetadataLookupStreamSuccess}
+import cromwell.services.metadata.impl.archiver.ArchiveMetadataFormat.{newCsvPrinter, printEntry}
 import cromwell.services.metadata.impl.archiver.ArchiveMetadataSchedulerActor._
 import cromwell.services.metadata.impl.{MetadataDatabaseAccess, MetadataServiceActor}
 import cromwell.services.{IoActorRequester, MetadataServicesStore}
 import cromwell.util.GracefulShutdownHelper
 import cromwell.util.GracefulShutdownHelper.ShutdownCommand
-import org.apache.commons.codec.digest.PureJavaCrc32C
-import org.apache.commons.csv.{CSVFormat, CSVPrinter}
 import slick.basic.DatabasePublisher
 
 import scala.concurrent.duration._
@@ -59,6 +58,8 @@ class ArchiveMetadataSchedulerActor(archiveMetadataConfig: ArchiveMetadataConfig
   private val rowsPerWorkflowMetricPath: NonEmptyList[String] = archiverMetricsBasePath :+ "rows_per_workflow"
   private val bytesProcessedMetricPath: NonEmptyList[String] = archiverMetricsBasePath :+ "bytes_processed"
   private val bytesPerWorkflowMetricPath: NonEmptyList[String] = archiverMetricsBasePath :+ "bytes_per_workflow"
+  private val rowsPerSecondMetricPath: NonEmptyList[String] = archiverMetricsBasePath :+ "rows_per_second"
+  private val bytesPerSecondMetricPath: NonEmptyList[String] = archiverMetricsBasePath :+ "bytes_per_second"
   private val workflowsProcessedSuccessMetricPath: NonEmptyList[String] = archiverMetricsBasePath :+ "workflows_processed" :+ "success"
   private val workflowsProcessedFailureMetricPath: NonEmptyList[String] = archiverMetricsBasePath :+ "workflows_processed" :+ "failure"
   private val timeBehindExpectedDelayMetricPath: NonEmptyList[String] = archiverMetricsBasePath :+ "time_behind_expected_delay"
@@ -197,13 +198,14 @@ class ArchiveMetadataSchedulerActor(archiveMetadataConfig: ArchiveMetadataConfig
         - if a workflow has no root workflow, its archived metadata is put in GCS at <workflow_id>/<workflow_id>.csv
         - if a workflow is a subworkflow, its archived metadata is put in GCS under it's root workflow's directory i.e.
           <root_workflow_id>/<subworkflow_id>.csv
+        - the extension is the one of the configured archive format, .csv unless configured otherwise
       Changing this convention would break the expectations of where to find the archived metadata files.
    */
     val bucket = archiveMetadataConfig.bucket
     val workflowId = summaryEntry.workflowExecutionUuid
     val rootWorkflowId = summaryEntry.rootWorkflowExecutionUuid.getOrElse(workflowId)
     Try {
-      PathFactory.buildPath(s"gs://$bucket/$rootWorkflowId/$workflowId.csv", archiveMetadataConfig.pathBuilders)
+      PathFactory.buildPath(s"gs://$bucket/$rootWorkflowId/$workflowId${archiveMetadataConfig.format.fileExtension}", archiveMetadataConfig.pathBuilders)
     }
   }
 
@@ -231,33 +233,22 @@ class ArchiveMetadataSchedulerActor(archiveMetadataConfig: ArchiveMetadataConfig
       gcsStreamCreatedTime = OffsetDateTime.now()
       _ = sendTiming(archiverStreamTimingMetricsBasePath :+ "create_gcs_stream", calculateTimeDifference(gotAsyncIoTime, gcsStreamCreatedTime), ServicesPrefix)
       crc32cStream = new Crc32cStream()
-      teeStream = new TeeingOutputStream(gcsStream, crc32cStream, new ByteCountingOutputStream())
-      csvPrinter =
-        new CSVPrinter(
-          new OutputStreamWriter(teeStream),
-          CSVFormat.DEFAULT.builder().setHeader(CsvFileHeaders : _*).build(),
-        )
+      byteCountingStream = new ByteCountingOutputStream()
+      teeStream = new TeeingOutputStream(gcsStream, crc32cStream, byteCountingStream)
+      csvPrinter = newCsvPrinter(archiveMetadataConfig.format, archiveMetadataConfig.format.encode(teeStream))
       csvPrinterCreatedTime = OffsetDateTime.now()
       _ = sendTiming(archiverStreamTimingMetricsBasePath :+ "create_csv_printer", calculateTimeDifference(gcsStreamCreatedTime, csvPrinterCreatedTime), ServicesPrefix)
       _ <- stream.foreach(me => {
-        csvPrinter.printRecord(
-          me.metadataEntryId.map(_.toString).getOrElse(""),
-          me.workflowExecutionUuid,
-          me.metadataKey,
-          me.callFullyQualifiedName.getOrElse(""),
-          me.jobIndex.map(_.toString).getOrElse(""),
-          me.jobAttempt.map(_.toString).getOrElse(""),
-          me.metadataValue.toRawString,
-          me.metadataTimestamp.toSystemOffsetDateTime.toUtcMilliString,
-          me.metadataValueType.getOrElse("")
-        )
+        printEntry(archiveMetadataConfig.format, csvPrinter, me)
         rowsCounter.increment()
       })
       _ = rowsCounter.manualLog()
       _ = sendGauge(rowsPerWorkflowMetricPath, rowsCounter.getTotalCount, ServicesPrefix)
       _ = csvPrinter.close()
       streamingCompleteTime = OffsetDateTime.now()
-      _ = sendTiming(archiverStreamTimingMetricsBasePath :+ "stream_data_to_gcs", calculateTimeDifference(csvPrinterCreatedTime, streamingCompleteTime), ServicesPrefix)
+      streamingDuration = calculateTimeDifference(csvPrinterCreatedTime, streamingCompleteTime)
+      _ = sendTiming(archiverStreamTimingMetricsBasePath :+ "stream_data_to_gcs", streamingDuration, ServicesPrefix)
+      _ = sendThroughput(path, rowsCounter.getTotalCount, byteCountingStream.byteCounter.getTotalCount, streamingDuration)
       expectedChecksum = crc32cStream.checksumString
       uploadedChecksum <- asyncIo.hashAsync(path)
       checksumValidatedTime = OffsetDateTime.now()
@@ -266,6 +257,16 @@ class ArchiveMetadataSchedulerActor(archiveMetadataConfig: ArchiveMetadataConfig
     } yield ()
   }
 
+  private def sendThroughput(path: Path, rows: Long, bytes: Long, duration: FiniteDuration): Unit = {
+    val millis = Math.max(duration.toMillis, 1L)
+    val rowsPerSecond = rows * 1000 / millis
+    val bytesPerSecond = bytes * 1000 / millis
+    sendGauge(rowsPerSecondMetricPath, rowsPerSecond, ServicesPrefix)
+    sendGauge(bytesPerSecondMetricPath, bytesPerSecond, ServicesPrefix)
+    if (archiveMetadataConfig.debugLogging)
+      log.info(f"Uploaded $rows rows to ${path.pathAsString} at $rowsPerSecond rows/s and ${bytesPerSecond / 1e6}%.2f MB/s")
+  }
+
   def scheduleNextWorkflowToArchive(): Unit = {
     context.system.scheduler.scheduleOnce(archiveMetadataConfig.backoffInterval)(self ! ArchiveNextWorkflowMessage)
     ()
@@ -278,6 +279,7 @@ class ArchiveMetadataSchedulerActor(archiveMetadataConfig: ArchiveMetadataConfig
     }, 100000)
 
     override def write(b: Int): Unit = byteCounter.increment()
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = byteCounter.add(len.toLong)
     override def close(): Unit = {
       byteCounter.manualLog()
       sendGauge(bytesPerWorkflowMetricPath, byteCounter.getTotalCount, ServicesPrefix)
@@ -289,30 +291,21 @@ class ArchiveMetadataSchedulerActor(archiveMetadataConfig: ArchiveMetadataConfig
 object ArchiveMetadataSchedulerActor {
   case object ArchiveNextWorkflowMessage
 
-  val CsvFileHeaders = List(
-    "METADATA_JOURNAL_ID",
-    "WORKFLOW_EXECUTION_UUID",
-    "METADATA_KEY",
-    "CALL_FQN",
-    "JOB_SCATTER_INDEX",
-    "JOB_RETRY_ATTEMPT",
-    "METADATA_VALUE",
-    "METADATA_TIMESTAMP",
-    "METADATA_VALUE_TYPE"
-  )
-
   def props(archiveMetadataConfig: ArchiveMetadataConfig, serviceRegistryActor: ActorRef): Props =
     Props(new ArchiveMetadataSchedulerActor(archiveMetadataConfig, serviceRegistryActor))
 
   final class TeeingOutputStream(streams: OutputStream*) extends OutputStream {
     override def write(b: Int): Unit = { streams.foreach(_.write(b)) }
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = { streams.foreach(_.write(b, off, len)) }
     override def close(): Unit = { streams.foreach(_.close())}
     override def flush(): Unit = { streams.foreach(_.flush())}
   }
 
   final class Crc32cStream() extends OutputStream {
-    private val checksumCalculator = new PureJavaCrc32C()
+    // Hardware accelerated on most CPUs
+    private val checksumCalculator = new CRC32C()
     override def write(b: Int): Unit = checksumCalculator.update(b)
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = checksumCalculator.update(b, off, len)
 
     def checksumString: String = {
       val finalChecksumValue = checksumCalculator.getValue
@@ -326,9 +319,11 @@ object ArchiveMetadataSchedulerActor {
     private var countSinceLog: Long = 0
     private var totalCount: Long = 0
 
-    def increment(): Unit = {
-      countSinceLog = countSinceLog + 1
-      totalCount = totalCount + 1
+    def increment(): Unit = add(1L)
+
+    def add(n: Long): Unit = {
+      countSinceLog = countSinceLog + n
+      totalCount = totalCount + n
       if (countSinceLog >= logInterval) {
         logFunction(countSinceLog, totalCount)
         countSinceLog = 0
@@ -11,6 +11,7 @@ import cromwell.core._
 import cromwell.services._
 import cromwell.services.metadata.MetadataService._
 import cromwell.services.metadata._
+import cromwell.services.metadata.impl.MetadataSnapshotCache
 import cromwell.services.metadata.impl.builder.MetadataBuilderActor._
 import mouse.all._
 import org.slf4j.LoggerFactory
@@ -43,26 +44,29 @@ object MetadataBuilderActor {
     def isComplete = subWorkflowsMetadata.size == waitFor
   }
 
-  def props(readMetadataWorkerMaker: () => Props, metadataReadRowNumberSafetyThreshold: Int, isForSubworkflows: Boolean = false) = {
-    Props(new MetadataBuilderActor(readMetadataWorkerMaker, metadataReadRowNumberSafetyThreshold, isForSubworkflows))
+  def props(readMetadataWorkerMaker: () => Props,
+            metadataReadRowNumberSafetyThreshold: Int,
+            isForSubworkflows: Boolean = false,
+            snapshotCache: Option[MetadataSnapshotCache] = None) = {
+    Props(new MetadataBuilderActor(readMetadataWorkerMaker, metadataReadRowNumberSafetyThreshold, isForSubworkflows, snapshotCache))
   }
 
   val log = LoggerFactory.getLogger("MetadataBuilder")
 
-  private val AttemptKey = "attempt"
-  private val ShardKey = "shardIndex"
+  private[builder] val AttemptKey = "attempt"
+  private[builder] val ShardKey = "shardIndex"
 
   /**
     * Metadata for a call attempt
     */
-  private case class MetadataForAttempt(attempt: Int, metadata: JsObject)
+  private[builder] case class MetadataForAttempt(attempt: Int, metadata: JsObject)
 
   /**
     * Metadata objects of all attempts for one shard
     */
   private case class MetadataForIndex(index: Int, metadata: List[JsObject])
 
-  private def eventsToAttemptMetadata(subWorkflowMetadata: Map[String, JsValue])(attempt: Int, events: Seq[MetadataEvent]) = {
+  private[builder] def eventsToAttemptMetadata(subWorkflowMetadata: Map[String, JsValue])(attempt: Int, events: Seq[MetadataEvent]) = {
     val withAttemptField = JsObject(MetadataComponent(events, subWorkflowMetadata).toJson.asJsObject.fields + (AttemptKey -> JsNumber(attempt)))
     MetadataForAttempt(attempt, withAttemptField)
   }
@@ -241,7 +245,10 @@ object MetadataBuilderActor {
   }
 }
 
-class MetadataBuilderActor(readMetadataWorkerMaker: () => Props, metadataReadRowNumberSafetyThreshold: Int, isForSubworkflows: Boolean)
+class MetadataBuilderActor(readMetadataWorkerMaker: () => Props,
+                           metadataReadRowNumberSafetyThreshold: Int,
+                           isForSubworkflows: Boolean,
+                           snapshotCache: Option[MetadataSnapshotCache] = None)
   extends LoggingFSM[MetadataBuilderActorState, MetadataBuilderActorData] with DefaultJsonProtocol {
 
   import MetadataBuilderActor._
@@ -251,11 +258,21 @@ class MetadataBuilderActor(readMetadataWorkerMaker: () => Props, metadataReadRow
 
   when(Idle) {
     case Event(action: BuildMetadataJsonAction, IdleData) =>
+      cachedJson(action) match {
+        case Some(json) =>
+          sender() ! SuccessfulMetadataJsonResponse(action, json)
+          allDone()
+        case None =>
+          val readActor = context.actorOf(readMetadataWorkerMaker.apply())
+
+          readActor ! action
+          goto(WaitingForMetadataService) using HasWorkData(sender(), action)
+      }
+  }
 
-      val readActor = context.actorOf(readMetadataWorkerMaker.apply())
-
-      readActor ! action
-      goto(WaitingForMetadataService) using HasWorkData(sender(), action)
+  private def cachedJson(action: BuildMetadataJsonAction): Option[JsObject] = action match {
+    case GetMetadataAction(query, _) => snapshotCache.flatMap(_.json(query))
+    case _ => None
   }
 
   private def allDone() = {
@@ -346,7 +363,9 @@ class MetadataBuilderActor(readMetadataWorkerMaker: () => Props, metadataReadRow
   def buildAndStop(query: MetadataQuery, eventsList: Seq[MetadataEvent], expandedValues: Map[String, JsValue], target: ActorRef, originalRequest: BuildMetadataJsonAction) = {
     val groupedEvents = groupEvents(eventsList)
     val res = processMetadataEvents(query, groupedEvents, expandedValues).fields
-    target ! SuccessfulMetadataJsonResponse(originalRequest, JsObject(res))
+    val json = JsObject(res)
+    snapshotCache foreach { _.putJson(query, eventsList, json) }
+    target ! SuccessfulMetadataJsonResponse(originalRequest, json)
     allDone()
   }
 
@@ -362,7 +381,7 @@ class MetadataBuilderActor(readMetadataWorkerMaker: () => Props, metadataReadRow
       else {
         // Otherwise spin up a metadata builder actor for each sub workflow
         subWorkflowIds foreach { subId =>
-          val subMetadataBuilder = context.actorOf(MetadataBuilderActor.props(readMetadataWorkerMaker, metadataReadRowNumberSafetyThreshold, isForSubworkflows = true), uniqueActorName(subId))
+          val subMetadataBuilder = context.actorOf(MetadataBuilderActor.props(readMetadataWorkerMaker, metadataReadRowNumberSafetyThreshold, isForSubworkflows = true, snapshotCache), uniqueActorName(subId))
           subMetadataBuilder ! GetMetadataAction(query.copy(workflowId = WorkflowId.fromString(subId)), checkTotalMetadataRowNumberBeforeQuerying = false)
         }
         goto(WaitingForSubWorkflows) using HasReceivedEventsData(target, originalRequest, query, eventsList, Map.empty, subWorkflowIds.size)
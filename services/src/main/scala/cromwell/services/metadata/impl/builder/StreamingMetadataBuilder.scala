@@ -0,0 +1,98 @@
+package cromwell.services.metadata.impl.builder
+
+import akka.NotUsed
+import akka.stream.scaladsl.Source
+import akka.util.ByteString
+import cromwell.core.ExecutionIndex.ExecutionIndex
+import cromwell.core.{WorkflowId, WorkflowMetadataKeys}
+import cromwell.services.metadata.MetadataEvent
+import cromwell.services.metadata.impl.builder.MetadataBuilderActor._
+import cromwell.services.metadata.impl.builder.MetadataComponent._
+import spray.json._
+
+import scala.collection.immutable.VectorBuilder
+
+/**
+  * Renders the metadata of a workflow as JSON while its events are streamed, workflow level events first and then the
+  * events of each call attempt together, as returned by `streamMetadataEntriesGroupedByCall`.
+  *
+  * Only the events of one call attempt are held in memory at a time, so that the metadata of workflows too large for
+  * the MetadataBuilderActor can be rendered. The JSON is the same as the one the MetadataBuilderActor builds for the
+  * whole workflow, without expanding the sub workflows.
+  */
+object StreamingMetadataBuilder {
+
+  def jsonSource(workflowId: WorkflowId, events: Source[MetadataEvent, NotUsed]): Source[ByteString, NotUsed] = {
+    events
+      .map(Option(_))
+      // Marks the end of the events, so that the last group is rendered and the JSON closed
+      .concat(Source.single(None))
+      .statefulMapConcat { () =>
+        val renderer = new Renderer(workflowId)
+        event => renderer.next(event)
+      }
+      .prepend(Source.single("{"))
+      .map(ByteString(_))
+  }
+
+  private case class CallAttempt(callFqn: String, index: ExecutionIndex, attempt: Int)
+
+  private class Renderer(workflowId: WorkflowId) {
+    // None for the workflow level events, which come first
+    private var groupKey: Option[CallAttempt] = None
+    private var group = new VectorBuilder[MetadataEvent]
+    private var hasFields = false
+    private var openCallFqn: Option[String] = None
+
+    def next(event: Option[MetadataEvent]): List[String] = event match {
+      case Some(e) =>
+        val key = e.key.jobKey map { jobKey => CallAttempt(jobKey.callFqn, jobKey.index, jobKey.attempt) }
+        if (key == groupKey) {
+          group += e
+          Nil
+        } else {
+          val rendered = renderGroup()
+          groupKey = key
+          group = new VectorBuilder[MetadataEvent]
+          group += e
+          rendered
+        }
+      case None => renderGroup() :+ close()
+    }
+
+    private def renderGroup(): List[String] = {
+      val events = groupEvents(group.result())
+      if (events.isEmpty) Nil else groupKey match {
+        case None =>
+          // The id is written last, as the MetadataBuilderActor overrides any id event with the workflow id
+          val fields = MetadataComponent(events).toJson.asJsObject.fields - WorkflowMetadataKeys.Id
+          if (fields.isEmpty) Nil else {
+            hasFields = true
+            List(fields.map({ case (name, value) => field(name, value) }).mkString(","))
+          }
+        case Some(CallAttempt(callFqn, index, attempt)) =>
+          val attemptMetadata = eventsToAttemptMetadata(Map.empty)(attempt, events).metadata
+          val attemptJson = JsObject(attemptMetadata.fields + (ShardKey -> JsNumber(index.getOrElse(-1)))).compactPrint
+          val prefix = openCallFqn match {
+            case Some(`callFqn`) => ","
+            case Some(_) => s"],${JsString(callFqn).compactPrint}:["
+            case None => s"${separator()}${JsString(WorkflowMetadataKeys.Calls).compactPrint}:{${JsString(callFqn).compactPrint}:["
+          }
+          openCallFqn = Option(callFqn)
+          List(prefix + attemptJson)
+      }
+    }
+
+    private def close(): String = {
+      val calls = openCallFqn match {
+        case Some(_) => "]}"
+        case None => separator() + field(WorkflowMetadataKeys.Calls, JsObject.empty)
+      }
+      s"$calls,${field(WorkflowMetadataKeys.Id, JsString(workflowId.toString))}}"
+    }
+
+    private def separator(): String = if (hasFields) "," else ""
+
+    private def field(name: String, value: JsValue): String = s"${JsString(name).compactPrint}:${value.compactPrint}"
+  }
+}
@@ -19,7 +19,7 @@ import cromwell.util.GracefulShutdownHelper.ShutdownCommand
 
 import scala.concurrent.duration._
 import scala.concurrent.{ExecutionContext, Future}
-import scala.util.{Failure, Success}
+import scala.util.{Failure, Success, Try}
 
 class DeleteMetadataActor(deleteMetadataConfig: DeleteMetadataConfig,
                           override val serviceRegistryActor: ActorRef)
@@ -48,31 +48,34 @@ class DeleteMetadataActor(deleteMetadataConfig: DeleteMetadataConfig,
   override def receive: Receive = {
     case DeleteNextWorkflowMessage => {
       val startTime = OffsetDateTime.now()
-      def calculateTimeSinceStart() = {
-        FiniteDuration(JDuration.between(startTime, OffsetDateTime.now()).toMillis, TimeUnit.MILLISECONDS)
-      }
 
       // These handlers send metrics for most paths even when they're not incremented, so that the metrics
       // paths are actively receiving data points throughout:
-      deleteNextWorkflow().onComplete({
-        case Success(true) =>
-          increment(workflowsDeletedSuccessMetricPath, ServicesPrefix)
-          count(workflowsDeletedFailureMetricPath, 0L, ServicesPrefix)
-          sendTiming(workflowDeleteTotalTimeMetricPath, calculateTimeSinceStart(), ServicesPrefix)
-          self ! DeleteNextWorkflowMessage
-        case Success(false) =>
+      deleteNextWorkflows().onComplete({
+        case Success(results) if results.nonEmpty =>
+          val failures = results collect { case (id, Failure(error)) => id -> error }
+          count(workflowsDeletedSuccessMetricPath, (results.size - failures.size).longValue(), ServicesPrefix)
+          count(workflowsDeletedFailureMetricPath, failures.size.longValue(), ServicesPrefix)
+          failures foreach { case (id, error) => log.error(error, s"Error while deleting metadata for $id") }
+          if (failures.isEmpty) {
+            self ! DeleteNextWorkflowMessage
+          } else {
+            log.error(s"Failed to delete the metadata of ${failures.size} of ${results.size} workflows, will wait ${deleteMetadataConfig.backoffInterval} then try again.")
+            scheduleNextDeleteAttemptAfterInterval()
+          }
+        case Success(_) =>
           count(rowsDeletedMetricPath, 0L, ServicesPrefix)
           count(workflowsDeletedSuccessMetricPath, 0L, ServicesPrefix)
           count(workflowsDeletedFailureMetricPath, 0L, ServicesPrefix)
           sendGauge(workflowsToDeleteMetricPath, 0L, ServicesPrefix)
-          sendTiming(workflowDeleteTotalTimeMetricPath, calculateTimeSinceStart(), ServicesPrefix)
+          sendTiming(workflowDeleteTotalTimeMetricPath, timeSince(startTime), ServicesPrefix)
           scheduleNextDeleteAttemptAfterInterval()
           if (deleteMetadataConfig.debugLogging) log.info(s"No archived workflows which finished over ${deleteMetadataConfig.delayAfterWorkflowCompletion} ago remain to be deleted. Scheduling next poll in ${deleteMetadataConfig.backoffInterval}.")
         case Failure(error) =>
           count(rowsDeletedMetricPath, 0L, ServicesPrefix)
           count(workflowsDeletedSuccessMetricPath, 0L, ServicesPrefix)
           increment(workflowsDeletedFailureMetricPath, ServicesPrefix)
-          sendTiming(workflowDeleteTotalTimeMetricPath, calculateTimeSinceStart(), ServicesPrefix)
+          sendTiming(workflowDeleteTotalTimeMetricPath, timeSince(startTime), ServicesPrefix)
           log.error(error, s"Error while deleting, will wait ${deleteMetadataConfig.backoffInterval} then try again.")
           scheduleNextDeleteAttemptAfterInterval()
       })
@@ -97,27 +100,46 @@ class DeleteMetadataActor(deleteMetadataConfig: DeleteMetadataConfig,
     })
   }
 
-  def deleteNextWorkflow(): Future[Boolean] = for {
-    maybeWorkflowId <- lookupNextWorkflowToDelete()
-    result <- maybeWorkflowId match {
-      case Some(id) =>
-        log.info(s"Workflow $id identified for metadata deletion")
-        for {
-          rowsDeleted <- deleteAllMetadataEntriesForWorkflowAndUpdateArchiveStatus(id, MetadataArchiveStatus.toDatabaseValue(ArchivedAndDeleted))
-          _ = count(rowsDeletedMetricPath, rowsDeleted.longValue(), ServicesPrefix)
-          _ = log.info(s"Deleted $rowsDeleted metadata rows for $id")
-        } yield true
-      case None => Future.successful(false)
+  /**
+    * Deletes the metadata of up to `max-parallelism` workflows concurrently, each a chunk of rows at a time.
+    *
+    * @return The outcome of deleting the metadata of each workflow, empty if there was nothing to delete.
+    */
+  def deleteNextWorkflows(): Future[List[(WorkflowId, Try[Long])]] = for {
+    workflowIds <- lookupNextWorkflowsToDelete()
+    results <- Future.traverse(workflowIds) { id =>
+      deleteWorkflow(id) transform { result => Success(id -> result) }
+    }
+  } yield results
+
+  def deleteWorkflow(id: WorkflowId): Future[Long] = {
+    val startTime = OffsetDateTime.now()
+    log.info(s"Workflow $id identified for metadata deletion")
+    deleteMetadataEntriesInChunksForWorkflowAndUpdateArchiveStatus(
+      id,
+      MetadataArchiveStatus.toDatabaseValue(ArchivedAndDeleted),
+      deleteMetadataConfig.chunkSize
+    ) andThen {
+      case Success(rowsDeleted) =>
+        count(rowsDeletedMetricPath, rowsDeleted, ServicesPrefix)
+        sendTiming(workflowDeleteTotalTimeMetricPath, timeSince(startTime), ServicesPrefix)
+        log.info(s"Deleted $rowsDeleted metadata rows for $id")
+      case Failure(_) =>
+        sendTiming(workflowDeleteTotalTimeMetricPath, timeSince(startTime), ServicesPrefix)
     }
-  } yield result
+  }
 
-  def lookupNextWorkflowToDelete(): Future[Option[WorkflowId]] = {
+  def lookupNextWorkflowsToDelete(): Future[List[WorkflowId]] = {
     val currentTimestampMinusDelay = OffsetDateTime.now().minusSeconds(deleteMetadataConfig.delayAfterWorkflowCompletion.toSeconds)
     queryWorkflowIdsByArchiveStatusAndOlderThanTimestamp(
       MetadataArchiveStatus.toDatabaseValue(Archived),
       currentTimestampMinusDelay,
-      batchSize = 1
-    ).map(_.headOption.map(WorkflowId.fromString))
+      batchSize = deleteMetadataConfig.maxParallelism.toLong
+    ).map(_.toList.map(WorkflowId.fromString))
+  }
+
+  private def timeSince(startTime: OffsetDateTime): FiniteDuration = {
+    FiniteDuration(JDuration.between(startTime, OffsetDateTime.now()).toMillis, TimeUnit.MILLISECONDS)
   }
 
   def scheduleNextDeleteAttemptAfterInterval(): Unit = {
@@ -12,7 +12,9 @@ import scala.util.Try
 final case class DeleteMetadataConfig(backoffInterval: FiniteDuration,
                                       delayAfterWorkflowCompletion: FiniteDuration,
                                       instrumentationInterval: FiniteDuration,
-                                      debugLogging: Boolean)
+                                      debugLogging: Boolean,
+                                      chunkSize: Int,
+                                      maxParallelism: Int)
 
 object DeleteMetadataConfig {
 
@@ -20,13 +22,21 @@ object DeleteMetadataConfig {
     val defaultBackoffInterval: FiniteDuration = 1 minute
     val defaultInstrumentationInterval = 1 minute
     val defaultDebugLogging = true
-
+    val defaultChunkSize = 10000
+    val defaultMaxParallelism = 1
 
     for {
       backoffInterval <- Try(deleteMetadataConfig.getOrElse[FiniteDuration]("backoff-interval", defaultBackoffInterval)).toChecked
       delayAfterWorkflowCompletion <- Try(deleteMetadataConfig.as[FiniteDuration]("deletion-delay")).toChecked
       instrumentationInterval <- Try(deleteMetadataConfig.getOrElse("instrumentation-interval", defaultInstrumentationInterval)).toChecked
       debugLogging <- Try(deleteMetadataConfig.getOrElse("debug-logging", defaultDebugLogging)).toChecked
-    } yield DeleteMetadataConfig(backoffInterval, delayAfterWorkflowCompletion, instrumentationInterval, debugLogging)
+      chunkSize <- Try(positive("chunk-size", deleteMetadataConfig.getOrElse("chunk-size", defaultChunkSize))).toChecked
+      maxParallelism <- Try(positive("max-parallelism", deleteMetadataConfig.getOrElse("max-parallelism", defaultMaxParallelism))).toChecked
+    } yield DeleteMetadataConfig(backoffInterval, delayAfterWorkflowCompletion, instrumentationInterval, debugLogging, chunkSize, maxParallelism)
+  }
+
+  private def positive(name: String, value: Int): Int = {
+    require(value > 0, s"$name must be positive but was $value")
+    value
   }
 }
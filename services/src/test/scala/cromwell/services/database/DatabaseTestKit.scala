@@ -145,11 +145,15 @@ object DatabaseTestKit extends StrictLogging {
 
   def initializeDatabaseByContainerOptTypeAndSystem[A <: SlickDatabase](containerOpt: Option[Container],
                                                                         databaseType: CromwellDatabaseType[A],
-                                                                        databaseSystem: DatabaseSystem): A with TestSlickDatabase = {
+                                                                        databaseSystem: DatabaseSystem,
+                                                                        configOverrides: Config = ConfigFactory.empty
+                                                                       ): A with TestSlickDatabase = {
     containerOpt match {
-      case None => initializedDatabaseFromConfig(databaseType, getConfig(databaseSystem, None))
+      case None =>
+        initializedDatabaseFromConfig(databaseType, configOverrides withFallback getConfig(databaseSystem, None))
       case Some(cont) if cont.isInstanceOf[JdbcDatabaseContainer] =>
-        initializedDatabaseFromConfig(databaseType, getConfig(databaseSystem, Option(cont.asInstanceOf[JdbcDatabaseContainer])))
+        val config = getConfig(databaseSystem, Option(cont.asInstanceOf[JdbcDatabaseContainer]))
+        initializedDatabaseFromConfig(databaseType, configOverrides withFallback config)
       case Some(_) => throw new RuntimeException("ERROR: container is not a JdbcDatabaseContainer.")
     }
   }
@@ -0,0 +1,107 @@
+package cromwell.services.database
+
+import java.time.OffsetDateTime
+
+import com.typesafe.config.ConfigFactory
+import cromwell.core.{WorkflowId, WorkflowMetadataKeys}
+import cromwell.database.slick.MetadataSlickDatabase
+import cromwell.database.sql.SqlConverters._
+import cromwell.database.sql.tables.MetadataEntry
+import org.scalameter.api._
+import org.scalameter.picklers.Implicits._
+import org.scalameter.reporting.RegressionReporter.Historian.Window
+import org.scalameter.reporting.RegressionReporter.Tester.Accepter
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, ExecutionContext}
+
+/**
+  * Compares writing metadata with its keys and call FQNs inline and dictionary encoded, against an in memory HSQLDB,
+  * and prints the number of characters of keys and call FQNs stored inline in METADATA_ENTRY for each.
+  * This is not run automatically by "sbt test". To run this test specifically, either use intellij integration, or run
+  * sbt "services/benchmark:testOnly cromwell.services.database.MetadataDictionaryEncodingBenchmark"
+  */
+object MetadataDictionaryEncodingBenchmark extends Bench[Double] {
+  /* Benchmark configuration */
+  lazy val measurer = new Measurer.Default
+  lazy val executor = LocalExecutor(new Executor.Warmer.Default, Aggregator.average, measurer)
+  lazy val reporter = new RegressionReporter[Double](Accepter(), Window(0))
+  lazy val persistor = Persistor.None
+
+  implicit val ec = ExecutionContext.global
+
+  private def newDatabase(dictionaryEncoding: Boolean) = DatabaseTestKit.initializedDatabaseFromConfig(
+    MetadataDatabaseType,
+    ConfigFactory.parseString(s"dictionary-encoding = $dictionaryEncoding") withFallback
+      DatabaseTestKit.getConfig(HsqldbDatabaseSystem),
+  )
+
+  private lazy val inlineDatabase = newDatabase(dictionaryEncoding = false)
+  private lazy val encodedDatabase = newDatabase(dictionaryEncoding = true)
+
+  // Number of metadata rows written, as the WriteMetadataActor would in batches
+  private val rowCounts: Gen[Int] = Gen.range("rows")(from = 10000, upto = 30000, hop = 10000)
+
+  private def entries(rowCounts: Gen[Int]): Gen[Seq[MetadataEntry]] = rowCounts map { count =>
+    val workflowId = WorkflowId.randomId().toString
+    val now = OffsetDateTime.now.toSystemTimestamp
+    (1 to count) map { row =>
+      val shard = row / 20
+      MetadataEntry(
+        workflowId,
+        Option(s"benchmark_workflow.scattered_call_${shard % 5}"),
+        Option(shard),
+        Option(1),
+        s"executionEvents[${row % 20}]:description",
+        s"gs://bucket/cromwell-executions/$workflowId/call-${shard % 5}/shard-$shard/stdout".toClobOption,
+        Option("string"),
+        now,
+      )
+    }
+  }
+
+  private def write(database: MetadataSlickDatabase, entries: Seq[MetadataEntry]): Unit = {
+    entries.grouped(200) foreach { batch =>
+      Await.result(
+        database.addMetadataEntries(
+          batch,
+          startMetadataKey = WorkflowMetadataKeys.StartTime,
+          endMetadataKey = WorkflowMetadataKeys.EndTime,
+          nameMetadataKey = WorkflowMetadataKeys.Name,
+          statusMetadataKey = WorkflowMetadataKeys.Status,
+          submissionMetadataKey = WorkflowMetadataKeys.SubmissionTime,
+          parentWorkflowIdKey = WorkflowMetadataKeys.ParentWorkflowId,
+          rootWorkflowIdKey = WorkflowMetadataKeys.RootWorkflowId,
+          labelMetadataKey = WorkflowMetadataKeys.Labels,
+        ),
+        1.minute
+      )
+    }
+  }
+
+  private def printInlineSize(description: String, database: MetadataSlickDatabase with TestSlickDatabase): Unit = {
+    import database.dataAccess.driver.api._
+    val inlineCharacters = database.dataAccess.metadataEntriesTable
+      .map(entry => entry.metadataKey.length + entry.callFullyQualifiedName.length.getOrElse(0))
+      .sum
+      .result
+    val rows = database.dataAccess.metadataEntriesTable.length.result
+    val (characters, rowCount) = Await.result(database.runTestTransaction(inlineCharacters zip rows), 1.minute)
+    println(s"$description: ${characters.getOrElse(0)} characters of keys and call FQNs inline in $rowCount rows")
+  }
+
+  performance of "MetadataSlickDatabase" in {
+    measure method "addMetadataEntries with inline keys" in {
+      using(entries(rowCounts)) in { es => write(inlineDatabase, es) }
+    }
+
+    measure method "addMetadataEntries with dictionary encoded keys" in {
+      using(entries(rowCounts)) in { es => write(encodedDatabase, es) }
+    }
+  }
+
+  afterTests {
+    printInlineSize("inline keys", inlineDatabase)
+    printInlineSize("dictionary encoded keys", encodedDatabase)
+  }
+}
@@ -3,11 +3,12 @@ package cromwell.services.database
 import java.time.OffsetDateTime
 
 import com.dimafeng.testcontainers.Container
+import com.typesafe.config.ConfigFactory
 import common.assertion.CromwellTimeoutSpec
 import cromwell.core.Tags.DbmsTest
 import cromwell.core.{WorkflowId, WorkflowMetadataKeys}
 import cromwell.database.migration.metadata.table.symbol.MetadataStatement._
-import cromwell.database.slick.MetadataSlickDatabase
+import cromwell.database.slick.{MetadataSlickDatabase, SlickDatabase}
 import cromwell.database.slick.MetadataSlickDatabase.SummarizationPartitionedMetadata
 import cromwell.database.sql.joins.{CallOrWorkflowQuery, CallQuery, WorkflowQuery}
 import cromwell.database.sql.tables.{MetadataEntry, WorkflowMetadataSummaryEntry}
@@ -48,7 +49,7 @@ class MetadataSlickDatabaseSpec extends AnyFlatSpec with CromwellTimeoutSpec wit
 
     it should "set up the test data" taggedAs DbmsTest in {
       database.runTestTransaction(
-        database.dataAccess.metadataEntries ++= Seq(
+        database.dataAccess.metadataEntriesTable ++= Seq(
           MetadataEntry("workflow id: 4 to delete, including 1 label", None, None, None, "someKey", None, None, OffsetDateTime.now().toSystemTimestamp, None),
           MetadataEntry("workflow id: 4 to delete, including 1 label", None, None, None, "someKey", None, None, OffsetDateTime.now().toSystemTimestamp, None),
           MetadataEntry("workflow id: 4 to delete, including 1 label", None, None, None, "someKey", None, None, OffsetDateTime.now().toSystemTimestamp, None),
@@ -198,9 +199,71 @@ class MetadataSlickDatabaseSpec extends AnyFlatSpec with CromwellTimeoutSpec wit
       }
     }
 
+    it should "write and read back dictionary encoded metadata" taggedAs DbmsTest in {
+      // Connects to the same database, including the same in memory HSQLDB
+      val urlKey = SlickDatabase.urlKey(database.databaseConfig)
+      val encodingConfig = ConfigFactory.parseString("dictionary-encoding = true")
+        .withValue(urlKey, database.databaseConfig.getValue(urlKey))
+      val encodingDatabase = DatabaseTestKit.initializeDatabaseByContainerOptTypeAndSystem(
+        containerOpt, MetadataDatabaseType, databaseSystem, encodingConfig
+      )
+      val workflowId = "workflow id: dictionary encoded"
+      val entries = List(
+        MetadataEntry(workflowId, None, None, None, WorkflowMetadataKeys.Status, None, None, now, None),
+        MetadataEntry(workflowId, Option("wf.call"), Option(0), Option(1), "executionStatus", None, None, now, None),
+        MetadataEntry(workflowId, Option("wf.call"), Option(1), Option(1), "executionStatus", None, None, now, None),
+      )
+
+      def write() = encodingDatabase.addMetadataEntries(
+        entries,
+        startMetadataKey = WorkflowMetadataKeys.StartTime,
+        endMetadataKey = WorkflowMetadataKeys.EndTime,
+        nameMetadataKey = WorkflowMetadataKeys.Name,
+        statusMetadataKey = WorkflowMetadataKeys.Status,
+        submissionMetadataKey = WorkflowMetadataKeys.SubmissionTime,
+        parentWorkflowIdKey = WorkflowMetadataKeys.ParentWorkflowId,
+        rootWorkflowIdKey = WorkflowMetadataKeys.RootWorkflowId,
+        labelMetadataKey = WorkflowMetadataKeys.Labels,
+      )
+
+      // The second write finds the ids of its keys and call FQN in the cache
+      write().futureValue(Timeout(10.seconds))
+      write().futureValue(Timeout(10.seconds))
+
+      def withoutIds(entries: Seq[MetadataEntry]) = entries.map(_.copy(metadataEntryId = None)).sortBy(_.toString)
+
+      val read = encodingDatabase.queryMetadataEntries(workflowId, 10.seconds).futureValue(Timeout(10.seconds))
+      withoutIds(read) should be(withoutIds(entries ++ entries))
+
+      // The entries are still read back with their keys and call FQNs once dictionary encoding is disabled, as long
+      // as dictionary decoding stays enabled
+      val decodingConfig = ConfigFactory.parseString("dictionary-decoding = true")
+        .withValue(urlKey, database.databaseConfig.getValue(urlKey))
+      val decodingDatabase = DatabaseTestKit.initializeDatabaseByContainerOptTypeAndSystem(
+        containerOpt, MetadataDatabaseType, databaseSystem, decodingConfig
+      )
+      val readWithoutEncoding = decodingDatabase.queryMetadataEntries(workflowId, 10.seconds).futureValue(Timeout(10.seconds))
+      withoutIds(readWithoutEncoding) should be(withoutIds(entries ++ entries))
+      decodingDatabase.close()
+
+      // The table itself only stores references to the dictionaries
+      val stored = database.runTestTransaction(
+        database.dataAccess.metadataEntriesTable
+          .filter(_.workflowExecutionUuid === workflowId)
+          .map(entry => (entry.metadataKey, entry.callFullyQualifiedName, entry.metadataKeyDictionaryEntryId.isDefined))
+          .result
+      ).futureValue(Timeout(10.seconds))
+      stored should have size 6L
+      stored foreach { _ should be(("", None, true)) }
+
+      encodingDatabase.deleteAllMetadataForWorkflowAndUpdateArchiveStatus(workflowId, None)
+        .futureValue(Timeout(10.seconds)) should be(6)
+      encodingDatabase.close()
+    }
+
     it should "clean up & close the database" taggedAs DbmsTest in {
       // Not relevant in Travis where all state gets nuked but useful for testing locally
-      database.runTestTransaction(database.dataAccess.metadataEntries.delete).futureValue(Timeout(10.seconds))
+      database.runTestTransaction(database.dataAccess.metadataEntriesTable.delete).futureValue(Timeout(10.seconds))
       database.runTestTransaction(database.dataAccess.workflowMetadataSummaryEntries.delete).futureValue(Timeout(10.seconds))
 
       database.close()
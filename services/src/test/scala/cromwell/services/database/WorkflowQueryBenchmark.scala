@@ -0,0 +1,108 @@
+package cromwell.services.database
+
+import java.time.OffsetDateTime
+
+import cromwell.core.{WorkflowId, WorkflowMetadataKeys}
+import cromwell.database.slick.MetadataSlickDatabase
+import cromwell.database.sql.SqlConverters._
+import cromwell.database.sql.tables.{CustomLabelEntry, WorkflowMetadataSummaryEntry}
+import org.scalameter.api._
+import org.scalameter.picklers.Implicits._
+import org.scalameter.reporting.RegressionReporter.Historian.Window
+import org.scalameter.reporting.RegressionReporter.Tester.Accepter
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, ExecutionContext, Future}
+
+/**
+  * Compares looking up the labels of a page of workflow query results one workflow at a time and for the whole page at
+  * once, against an in memory HSQLDB seeded with workflow summaries and their labels.
+  * The number of summaries seeded defaults to 100000, a production sized table of 10 million summaries can be seeded
+  * with -Dcromwell.benchmark.workflow-summaries=10000000 given enough memory.
+  * This is not run automatically by "sbt test". To run this test specifically, either use intellij integration, or run
+  * sbt "services/benchmark:testOnly cromwell.services.database.WorkflowQueryBenchmark"
+  */
+object WorkflowQueryBenchmark extends Bench[Double] {
+  /* Benchmark configuration */
+  lazy val measurer = new Measurer.Default
+  lazy val executor = LocalExecutor(new Executor.Warmer.Default, Aggregator.average, measurer)
+  lazy val reporter = new RegressionReporter[Double](Accepter(), Window(0))
+  lazy val persistor = Persistor.None
+
+  implicit val ec = ExecutionContext.global
+
+  private val summaryCount = sys.props.get("cromwell.benchmark.workflow-summaries").map(_.toInt).getOrElse(100000)
+  private val seedBatchSize = 10000
+  private val statuses = List("Submitted", "Running", "Succeeded", "Failed", "Aborted")
+
+  private lazy val database = {
+    val database = DatabaseTestKit.initializedDatabaseFromSystem(MetadataDatabaseType, HsqldbDatabaseSystem)
+    seed(database)
+    database
+  }
+
+  private def seed(database: MetadataSlickDatabase with TestSlickDatabase): Unit = {
+    import database.dataAccess.driver.api._
+    val now = OffsetDateTime.now.toSystemTimestamp
+    (0 until summaryCount).grouped(seedBatchSize) foreach { batch =>
+      val workflowIds = batch.map(_ => WorkflowId.randomId().toString)
+      val summaries = batch.zip(workflowIds).zipWithIndex map { case ((row, workflowId), index) =>
+        // One in five workflows is a sub workflow of the workflow before it
+        val parent = if (row % 5 == 4) Option(workflowIds(index - 1)) else None
+        WorkflowMetadataSummaryEntry(workflowId, Option(s"benchmark_workflow_${row % 100}"),
+          Option(statuses(row % statuses.size)), Option(now), Option(now), Option(now), parent, parent, None)
+      }
+      val labels = summaries flatMap { summary =>
+        List(
+          CustomLabelEntry("cromwell-workflow-name", summary.workflowName.get, summary.workflowExecutionUuid),
+          CustomLabelEntry("project", s"project-${summary.workflowExecutionUuid.last}", summary.workflowExecutionUuid),
+        )
+      }
+      val action = for {
+        _ <- database.dataAccess.workflowMetadataSummaryEntries ++= summaries
+        _ <- database.dataAccess.customLabelEntries ++= labels
+      } yield ()
+      Await.result(database.runTestTransaction(action), 10.minutes)
+    }
+  }
+
+  private val pageSizes: Gen[Int] = Gen.enumeration("pageSize")(100, 500, 1000)
+
+  private def queryPage(pageSize: Int) = Await.result(
+    database.queryWorkflowSummaries(
+      parentIdWorkflowMetadataKey = WorkflowMetadataKeys.ParentWorkflowId,
+      workflowStatuses = Set("Succeeded", "Failed"),
+      workflowNames = Set.empty,
+      workflowExecutionUuids = Set.empty,
+      labelAndKeyLabelValues = Set.empty,
+      labelOrKeyLabelValues = Set.empty,
+      excludeLabelAndValues = Set.empty,
+      excludeLabelOrValues = Set.empty,
+      submissionTimestampOption = None,
+      startTimestampOption = None,
+      endTimestampOption = None,
+      metadataArchiveStatus = Set.empty,
+      includeSubworkflows = false,
+      page = Option(2),
+      pageSize = Option(pageSize),
+      newestFirst = true,
+    ),
+    1.minute
+  )
+
+  performance of "MetadataSlickDatabase" in {
+    measure method "queryWorkflowSummaries with the labels of each workflow" in {
+      using(pageSizes) in { pageSize =>
+        val summaries = queryPage(pageSize)
+        Await.result(Future.traverse(summaries)(summary => database.getWorkflowLabels(summary.workflowExecutionUuid)), 1.minute)
+      }
+    }
+
+    measure method "queryWorkflowSummaries with the labels of the page" in {
+      using(pageSizes) in { pageSize =>
+        val summaries = queryPage(pageSize)
+        Await.result(database.getWorkflowsLabels(summaries.map(_.workflowExecutionUuid).toSet), 1.minute)
+      }
+    }
+  }
+}
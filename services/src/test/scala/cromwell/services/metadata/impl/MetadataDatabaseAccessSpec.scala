@@ -422,6 +422,24 @@ class MetadataDatabaseAccessSpec extends AnyFlatSpec with CromwellTimeoutSpec wi
       } yield ()).futureValue(Timeout(scaled(Span(30, Seconds))), Interval(scaled(Span(500, Millis))))
     }
 
+    it should "return the labels of each workflow of a page of query results" taggedAs DbmsTest in {
+      val uniqueWorkflowName = s"labelled_${WorkflowId.randomId()}".filterNot(_ == '-')
+      (for {
+        workflowId1 <- baseWorkflowMetadata(uniqueWorkflowName, Set(Label("color", "red")))
+        workflowId2 <- baseWorkflowMetadata(uniqueWorkflowName, Set(Label("color", "blue"), Label("size", "large")))
+        _ <- dataAccess.refreshWorkflowMetadataSummaries(1000) map assertRowsProcessedAndSummarizationComplete
+        _ <- dataAccess.queryWorkflowSummaries(WorkflowQueryParameters(Seq(
+          WorkflowQueryKey.Name.name -> uniqueWorkflowName,
+          WorkflowQueryKey.AdditionalQueryResultFields.name -> "labels"))) map { case (response, _) =>
+          val labels = response.results.map(result => result.id -> result.labels).toMap
+          labels shouldBe Map(
+            workflowId1.toString -> Option(Map("cromwell-workflow-name" -> uniqueWorkflowName, "color" -> "red")),
+            workflowId2.toString -> Option(Map("cromwell-workflow-name" -> uniqueWorkflowName, "color" -> "blue", "size" -> "large")),
+          )
+        }
+      } yield ()).futureValue(Timeout(scaled(Span(30, Seconds))), Interval(scaled(Span(500, Millis))))
+    }
+
     it should "return totalResultsCount when page and pagesize query params are specified" taggedAs DbmsTest in {
       val uniqueWorkflow3Name = s"${Workflow3Name}_${WorkflowId.randomId()}".filterNot(_ == '-')
       (for {
@@ -443,6 +461,50 @@ class MetadataDatabaseAccessSpec extends AnyFlatSpec with CromwellTimeoutSpec wi
       } yield()).futureValue
     }
 
+    it should "summarize workflows in concurrent partitions" taggedAs DbmsTest in {
+      val uniqueWorkflowName = s"partitioned_${WorkflowId.randomId()}".filterNot(_ == '-')
+      (for {
+        workflowIds <- Future.sequence((1 to 8).toList map { _ => baseWorkflowMetadata(uniqueWorkflowName) })
+        _ <- dataAccess.refreshWorkflowMetadataSummaries(1000, partitions = 4) map assertRowsProcessedAndSummarizationComplete
+        _ <- dataAccess.queryWorkflowSummaries(WorkflowQueryParameters(Seq(
+          WorkflowQueryKey.Name.name -> uniqueWorkflowName))) map { case (response, _) =>
+          response.results.map(_.id).toSet shouldBe workflowIds.map(_.toString).toSet
+        }
+      } yield ()).futureValue(Timeout(scaled(Span(30, Seconds))), Interval(scaled(Span(500, Millis))))
+    }
+
+    it should "page through the metadata of a workflow in the order it was written" taggedAs DbmsTest in {
+      def callEvent(id: WorkflowId, index: Int, key: String) =
+        MetadataEvent(MetadataKey(id, Option(MetadataJobKey("paged.call", Option(index), 1)), key), MetadataValue(s"$key-$index"))
+
+      def readAllPages(query: MetadataPageQuery, pageSize: Int): Future[List[MetadataPage]] = {
+        def readFrom(cursor: Option[Long]): Future[List[MetadataPage]] = {
+          dataAccess.queryMetadataEventsPage(query, cursor, pageSize, 5.seconds) flatMap { page =>
+            if (page.nextCursor.isDefined) readFrom(page.nextCursor).map(page :: _) else Future.successful(List(page))
+          }
+        }
+        readFrom(None)
+      }
+
+      def keysAndValues(events: Seq[MetadataEvent]) = events.map(event => (event.key, event.value))
+
+      (for {
+        workflowId <- baseWorkflowMetadata("paged_workflow")
+        written = (0 until 5).toList flatMap { index => List(callEvent(workflowId, index, "stdout"), callEvent(workflowId, index, "stderr")) }
+        // One event at a time so that they are written in this order
+        _ <- written.foldLeft(Future.unit) { (previous, event) => previous.flatMap(_ => dataAccess.addMetadataEvents(List(event))) }
+        // The 5 workflow level events of the base workflow metadata, then the call events
+        allPages <- readAllPages(MetadataPageQuery.forWorkflow(workflowId), pageSize = 4)
+        _ = allPages.map(_.events.size) shouldBe List(4, 4, 4, 3)
+        _ = keysAndValues(allPages.flatMap(_.events).drop(5)) shouldBe keysAndValues(written)
+        shardPages <- readAllPages(MetadataPageQuery(workflowId, Option("paged.call"), Option(2), Option(1), None), pageSize = 4)
+        _ = keysAndValues(shardPages.flatMap(_.events)) shouldBe keysAndValues(written.filter(_.key.jobKey.flatMap(_.index).contains(2)))
+        prefixPages <- readAllPages(MetadataPageQuery(workflowId, None, None, None, Option("stde")), pageSize = 5)
+        _ = prefixPages should have size 1
+        _ = keysAndValues(prefixPages.head.events) shouldBe keysAndValues(written.filter(_.key.key == "stderr"))
+      } yield ()).futureValue(Timeout(scaled(Span(30, Seconds))), Interval(scaled(Span(500, Millis))))
+    }
+
     it should "revert to an prior label value" taggedAs DbmsTest in {
       def upsertLabelAndValidate(workflowId: WorkflowId, customLabelValue: String): Future[Unit] = {
         val customLabelKey = "key-1"
@@ -573,6 +635,30 @@ class MetadataDatabaseAccessSpec extends AnyFlatSpec with CromwellTimeoutSpec wi
       summaryResponse._1.results.head.metadataArchiveStatus.toString shouldBe "ArchivedAndDeleted"
     }
 
+    it should "delete the metadata of a workflow in chunks and update its archive status" taggedAs DbmsTest in {
+      val workflowId = WorkflowId.randomId()
+      val otherWorkflowId = WorkflowId.randomId()
+      val workflowKey = MetadataKey(workflowId, jobKey = None, key = null)
+      def rowCount(id: WorkflowId) = dataAccess.getMetadataReadRowCount(MetadataQuery.forWorkflow(id), 5.seconds)
+
+      (for {
+        _ <- succeededWorkflowMetadata(workflowId)
+        _ <- succeededWorkflowMetadata(otherWorkflowId)
+        _ <- publishMetadataEvents(workflowKey, Array.tabulate(10)(i => (s"outputs:output$i", s"value$i")))
+        _ <- dataAccess.refreshWorkflowMetadataSummaries(1000)
+        rowsWritten <- rowCount(workflowId)
+        otherRowsWritten <- rowCount(otherWorkflowId)
+        rowsDeleted <- dataAccess.deleteMetadataEntriesInChunksForWorkflowAndUpdateArchiveStatus(
+          workflowId, MetadataArchiveStatus.toDatabaseValue(MetadataArchiveStatus.ArchivedAndDeleted), chunkSize = 3)
+        _ = rowsDeleted shouldBe rowsWritten.toLong
+        _ <- rowCount(workflowId) map { _ shouldBe 0 }
+        _ <- rowCount(otherWorkflowId) map { _ shouldBe otherRowsWritten }
+        _ <- dataAccess.getMetadataArchiveStatusAndEndTime(workflowId) map {
+          _.archiveStatus shouldBe MetadataArchiveStatus.toDatabaseValue(MetadataArchiveStatus.ArchivedAndDeleted)
+        }
+      } yield ()).futureValue(Timeout(scaled(Span(30, Seconds))), Interval(scaled(Span(500, Millis))))
+    }
+
     it should "error when deleting metadata for a root workflow that does not exist" taggedAs DbmsTest in {
       dataAccess
         .deleteAllMetadataEntriesForWorkflowAndUpdateArchiveStatus(WorkflowId.fromString("00000000-0000-0000-0000-000000000000"), None)
@@ -0,0 +1,198 @@
+package cromwell.services.metadata.impl
+
+import java.time.OffsetDateTime
+
+import cats.data.NonEmptyList
+import common.assertion.CromwellTimeoutSpec
+import cromwell.core.WorkflowId
+import cromwell.services.metadata._
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+import spray.json.{JsObject, JsString}
+
+import scala.concurrent.duration._
+
+class MetadataSnapshotCacheSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers {
+
+  behavior of "MetadataSnapshotCache"
+
+  private val start = OffsetDateTime.now
+
+  private def event(workflowId: WorkflowId, key: String, second: Int, jobKey: Option[MetadataJobKey] = None) =
+    MetadataEvent(MetadataKey(workflowId, jobKey, key), Option(MetadataValue(s"value-$second")), start.plusSeconds(second.toLong))
+
+  private def newCache(maxBytes: Long = MetadataSnapshotCache.DefaultMaxBytes,
+                       caseInsensitiveKeys: Boolean = false,
+                       nanoTime: () => Long = () => System.nanoTime) =
+    new MetadataSnapshotCache(maxBytes, MetadataSnapshotCache.DefaultTimeToLive, caseInsensitiveKeys, nanoTime)
+
+  private def readThrough(cache: MetadataSnapshotCache, query: MetadataQuery, events: Seq[MetadataEvent]): Unit = {
+    cache.events(query) shouldBe None
+    val token = cache.readStarted(query.workflowId)
+    cache.readCompleted(query, token, Option(events))
+  }
+
+  it should "cache the events read and patch them with the events written since" in {
+    val cache = newCache()
+    val workflowId = WorkflowId.randomId()
+    val query = MetadataQuery.forWorkflow(workflowId)
+    val read = Vector(event(workflowId, "status", 1), event(workflowId, "name", 2))
+    readThrough(cache, query, read)
+
+    cache.events(query) shouldBe Option(read)
+    // Expanding sub workflows reads the same events for this workflow
+    cache.events(query.copy(expandSubWorkflows = true)) shouldBe Option(read)
+
+    val written = List(event(workflowId, "status", 3), event(WorkflowId.randomId(), "status", 3))
+    cache.writeStarted(written)
+    cache.writeCompleted(written, succeeded = true)
+
+    cache.events(query) shouldBe Option(read :+ written.head)
+    cache.drainHitsAndMisses() shouldBe ((3L, 1L))
+  }
+
+  it should "only patch the events matching the included and excluded keys of the query" in {
+    val cache = newCache()
+    val workflowId = WorkflowId.randomId()
+    val jobKey = Option(MetadataJobKey("wf.call", None, 1))
+    val query = MetadataQuery(workflowId, None, None, Option(NonEmptyList.of("status", "executionEvents")), Option(NonEmptyList.of("calls")), expandSubWorkflows = false)
+    readThrough(cache, query, Vector(event(workflowId, "status", 1)))
+
+    val written = List(
+      event(workflowId, "status", 2),
+      event(workflowId, "name", 3),
+      event(workflowId, "executionEvents[0]:description", 4),
+      event(workflowId, "status", 5, jobKey),
+    )
+    cache.writeStarted(written)
+    cache.writeCompleted(written, succeeded = true)
+
+    cache.events(query).map(_.map(_.key.key)) shouldBe Option(Vector("status", "status", "executionEvents[0]:description"))
+  }
+
+  it should "match the included and excluded keys regardless of case when the database does" in {
+    val workflowId = WorkflowId.randomId()
+    val query = MetadataQuery(workflowId, None, None, Option(NonEmptyList.of("Status", "outputs")), Option(NonEmptyList.of("OUTPUTS:wf.secret")), expandSubWorkflows = false)
+    val written = List(
+      event(workflowId, "status", 2),
+      event(workflowId, "Outputs:wf.result", 3),
+      event(workflowId, "outputs:wf.Secret", 4),
+    )
+
+    val caseSensitive = newCache()
+    readThrough(caseSensitive, query, Vector.empty)
+    caseSensitive.writeStarted(written)
+    caseSensitive.writeCompleted(written, succeeded = true)
+    caseSensitive.events(query).map(_.map(_.key.key)) shouldBe Option(Vector("outputs:wf.Secret"))
+
+    val caseInsensitive = newCache(caseInsensitiveKeys = true)
+    readThrough(caseInsensitive, query, Vector.empty)
+    caseInsensitive.writeStarted(written)
+    caseInsensitive.writeCompleted(written, succeeded = true)
+    caseInsensitive.events(query).map(_.map(_.key.key)) shouldBe Option(Vector("status", "Outputs:wf.result"))
+  }
+
+  it should "keep the patched events ordered by timestamp" in {
+    val cache = newCache()
+    val workflowId = WorkflowId.randomId()
+    val query = MetadataQuery.forWorkflow(workflowId)
+    readThrough(cache, query, Vector(event(workflowId, "a", 1), event(workflowId, "c", 3)))
+
+    val written = List(event(workflowId, "b", 2))
+    cache.writeStarted(written)
+    cache.writeCompleted(written, succeeded = true)
+
+    cache.events(query).map(_.map(_.key.key)) shouldBe Option(Vector("a", "b", "c"))
+  }
+
+  it should "not cache a read interleaved with a write of the same workflow" in {
+    val cache = newCache()
+    val workflowId = WorkflowId.randomId()
+    val query = MetadataQuery.forWorkflow(workflowId)
+    val written = List(event(workflowId, "status", 2))
+
+    // The write completes while reading
+    val token = cache.readStarted(workflowId)
+    cache.writeStarted(written)
+    cache.writeCompleted(written, succeeded = true)
+    cache.readCompleted(query, token, Option(Vector(event(workflowId, "status", 1))))
+    cache.events(query) shouldBe None
+
+    // The write is still in flight when the read completes
+    val secondToken = cache.readStarted(workflowId)
+    cache.writeStarted(written)
+    cache.readCompleted(query, secondToken, Option(Vector(event(workflowId, "status", 1))))
+    cache.writeCompleted(written, succeeded = true)
+    cache.events(query) shouldBe None
+  }
+
+  it should "drop the cached events of a workflow whose write failed" in {
+    val cache = newCache()
+    val workflowId = WorkflowId.randomId()
+    val query = MetadataQuery.forWorkflow(workflowId)
+    readThrough(cache, query, Vector(event(workflowId, "status", 1)))
+
+    val written = List(event(workflowId, "status", 2))
+    cache.writeStarted(written)
+    cache.writeCompleted(written, succeeded = false)
+
+    cache.events(query) shouldBe None
+    cache.estimatedBytes shouldBe 0L
+  }
+
+  it should "keep the JSON built from the cached events until they are patched" in {
+    val cache = newCache()
+    val workflowId = WorkflowId.randomId()
+    val query = MetadataQuery.forWorkflow(workflowId)
+    readThrough(cache, query, Vector(event(workflowId, "status", 1)))
+    val json = JsObject("status" -> JsString("value-1"))
+
+    val events = cache.events(query).get
+    cache.putJson(query, events, json)
+    cache.json(query) shouldBe Option(json)
+    cache.json(query.copy(expandSubWorkflows = true)) shouldBe None
+
+    val written = List(event(workflowId, "status", 2))
+    cache.writeStarted(written)
+    cache.writeCompleted(written, succeeded = true)
+    cache.json(query) shouldBe None
+
+    // JSON built from the events before the patch is not kept
+    cache.putJson(query, events, json)
+    cache.json(query) shouldBe None
+  }
+
+  it should "evict the least recently read queries beyond its maximum size" in {
+    // About 2300 bytes of events per workflow
+    val cache = newCache(maxBytes = 2500L)
+    val workflowIds = List.fill(3)(WorkflowId.randomId())
+    workflowIds foreach { workflowId =>
+      readThrough(cache, MetadataQuery.forWorkflow(workflowId), Vector.tabulate(10)(second => event(workflowId, "status", second)))
+    }
+
+    cache.size shouldBe 1
+    cache.estimatedBytes should be <= 2500L
+    cache.events(MetadataQuery.forWorkflow(workflowIds.last)) should not be empty
+    cache.events(MetadataQuery.forWorkflow(workflowIds.head)) shouldBe None
+  }
+
+  it should "stop serving the events read more than the time to live ago, even if patched since" in {
+    var now = 0L
+    val cache = newCache(nanoTime = () => now)
+    val workflowId = WorkflowId.randomId()
+    val query = MetadataQuery.forWorkflow(workflowId)
+    readThrough(cache, query, Vector(event(workflowId, "status", 1)))
+
+    now += (MetadataSnapshotCache.DefaultTimeToLive - 1.second).toNanos
+    val written = List(event(workflowId, "status", 2))
+    cache.writeStarted(written)
+    cache.writeCompleted(written, succeeded = true)
+    cache.events(query).map(_.size) shouldBe Option(2)
+
+    // Other instances may have written metadata of the workflow since it was read
+    now += 1.second.toNanos
+    cache.events(query) shouldBe None
+    cache.size shouldBe 0
+    cache.estimatedBytes shouldBe 0L
+  }
+}
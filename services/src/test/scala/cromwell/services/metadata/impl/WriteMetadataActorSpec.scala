@@ -126,6 +126,8 @@ class WriteMetadataActorSpec extends TestKitSuite with AnyFlatSpecLike with Matc
 
     override def connectionDescription: String = "Mock Database"
 
+    override def metadataKeyLikeIsCaseInsensitive: Nothing = notImplemented()
+
     override def existsMetadataEntries()(
       implicit ec: ExecutionContext): Nothing = notImplemented()
 
@@ -162,6 +164,18 @@ class WriteMetadataActorSpec extends TestKitSuite with AnyFlatSpecLike with Matc
 
     override def streamMetadataEntries(workflowExecutionUuid: String): Nothing = notImplemented()
 
+    override def streamMetadataEntriesGroupedByCall(workflowExecutionUuid: String): Nothing = notImplemented()
+
+    override def queryMetadataEntriesPage(workflowExecutionUuid: String,
+                                          afterMetadataEntryId: Option[Long],
+                                          callFullyQualifiedName: Option[String],
+                                          jobIndex: Option[Int],
+                                          jobAttempt: Option[Int],
+                                          metadataKeyPrefix: Option[String],
+                                          limit: Int,
+                                          timeout: Duration)
+                                         (implicit ec: ExecutionContext): Nothing = notImplemented()
+
     override def queryMetadataEntries(workflowExecutionUuid: String,
                                       metadataKey: String,
                                       timeout: Duration)(implicit ec: ExecutionContext): Nothing = notImplemented()
@@ -188,6 +202,8 @@ class WriteMetadataActorSpec extends TestKitSuite with AnyFlatSpecLike with Matc
 
     override def summarizeIncreasing(labelMetadataKey: String,
                                      limit: Int,
+                                     partition: Int,
+                                     partitionCount: Int,
                                      buildUpdatedSummary:
                                      (Option[WorkflowMetadataSummaryEntry], Seq[MetadataEntry])
                                        => WorkflowMetadataSummaryEntry)
@@ -214,6 +230,9 @@ class WriteMetadataActorSpec extends TestKitSuite with AnyFlatSpecLike with Matc
     override def getWorkflowLabels(workflowExecutionUuid: String)
                                   (implicit ec: ExecutionContext): Nothing = notImplemented()
 
+    override def getWorkflowsLabels(workflowExecutionUuids: Set[String])
+                                   (implicit ec: ExecutionContext): Nothing = notImplemented()
+
     override def getRootAndSubworkflowLabels(rootWorkflowExecutionUuid: String)
                                   (implicit ec: ExecutionContext): Nothing = notImplemented()
 
@@ -266,6 +285,9 @@ class WriteMetadataActorSpec extends TestKitSuite with AnyFlatSpecLike with Matc
       notImplemented()
     }
 
+    override def deleteMetadataEntriesChunkForWorkflow(workflowExecutionUuid: String, afterMetadataEntryId: Long, chunkSize: Int)
+                                                      (implicit ec: ExecutionContext): Nothing = notImplemented()
+
     override def getRootWorkflowId(workflowId: String)(implicit ec: ExecutionContext): Future[Option[String]] = {
       notImplemented()
     }
@@ -278,6 +300,10 @@ class WriteMetadataActorSpec extends TestKitSuite with AnyFlatSpecLike with Matc
       notImplemented()
     }
 
+    override def getSummaryQueueOldestTimestamp()(implicit ec: ExecutionContext): Future[Option[Timestamp]] = {
+      notImplemented()
+    }
+
     override def countMetadataEntries(workflowExecutionUuid: String, expandSubWorkflows: Boolean, timeout: Duration)(implicit ec: ExecutionContext): Future[Int] = {
       notImplemented()
     }
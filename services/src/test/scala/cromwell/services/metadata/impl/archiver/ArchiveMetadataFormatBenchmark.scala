@@ -0,0 +1,66 @@
+package cromwell.services.metadata.impl.archiver
+
+import java.io.ByteArrayInputStream
+import java.time.OffsetDateTime
+
+import cromwell.core.WorkflowId
+import cromwell.database.sql.SqlConverters._
+import cromwell.database.sql.tables.MetadataEntry
+import cromwell.services.metadata.impl.archiver.ArchiveMetadataFormat._
+import cromwell.services.metadata.impl.archiver.ArchiveMetadataFormatTestKit.archive
+import org.scalameter.api._
+import org.scalameter.picklers.Implicits._
+import org.scalameter.reporting.RegressionReporter.Historian.Window
+import org.scalameter.reporting.RegressionReporter.Tester.Accepter
+
+/**
+  * Compares writing and reading back the metadata archive of a workflow as CSV and as gzipped CSV.
+  * This is not run automatically by "sbt test". To run this test specifically, either use intellij integration, or run
+  * sbt "services/benchmark:testOnly cromwell.services.metadata.impl.archiver.ArchiveMetadataFormatBenchmark"
+  */
+object ArchiveMetadataFormatBenchmark extends Bench[Double] {
+  /* Benchmark configuration */
+  lazy val measurer = new Measurer.Default
+  lazy val executor = LocalExecutor(new Executor.Warmer.Default, Aggregator.average, measurer)
+  lazy val reporter = new RegressionReporter[Double](Accepter(), Window(0))
+  lazy val persistor = Persistor.None
+
+  // Number of metadata rows archived
+  private val rowCounts: Gen[Int] = Gen.range("rows")(from = 100000, upto = 300000, hop = 100000)
+
+  // Rows shaped like those of a scattered call: few distinct keys and call names, many shards and timestamps
+  private def entries(rowCounts: Gen[Int]): Gen[Vector[MetadataEntry]] = rowCounts map { count =>
+    val workflowId = WorkflowId.randomId().toString
+    val start = OffsetDateTime.now
+    (1 to count).toVector map { row =>
+      val shard = row / 20
+      MetadataEntry(
+        workflowExecutionUuid = workflowId,
+        callFullyQualifiedName = Option(s"benchmark.call${shard % 5}"),
+        jobIndex = Option(shard),
+        jobAttempt = Option(1),
+        metadataKey = s"executionEvents[${row % 20}]:description",
+        metadataValue = s"gs://bucket/cromwell-executions/$workflowId/call-${shard % 5}/shard-$shard/stdout".toClobOption,
+        metadataValueType = Option("string"),
+        metadataTimestamp = start.plusNanos(row * 1000000L).toSystemTimestamp,
+        metadataEntryId = Option(row.toLong)
+      )
+    }
+  }
+
+  private def archives(format: ArchiveMetadataFormat): Gen[Array[Byte]] = entries(rowCounts) map { archive(format, _) }
+
+  performance of "ArchiveMetadataFormat" in {
+    Formats foreach { format =>
+      measure method s"write ${format.name}" in {
+        using(entries(rowCounts)) in { es => archive(format, es) }
+      }
+
+      measure method s"read ${format.name}" in {
+        using(archives(format)) in { archived =>
+          withArchivedEntries(format, new ByteArrayInputStream(archived))(_.size)
+        }
+      }
+    }
+  }
+}
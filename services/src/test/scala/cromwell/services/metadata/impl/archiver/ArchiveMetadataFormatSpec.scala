@@ -0,0 +1,85 @@
+package cromwell.services.metadata.impl.archiver
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream}
+import java.nio.charset.StandardCharsets
+import java.time.{OffsetDateTime, ZoneOffset}
+import javax.sql.rowset.serial.SerialClob
+
+import common.assertion.CromwellTimeoutSpec
+import cromwell.database.sql.SqlConverters._
+import cromwell.database.sql.tables.MetadataEntry
+import cromwell.services.metadata.impl.archiver.ArchiveMetadataFormat._
+import cromwell.services.metadata.impl.archiver.ArchiveMetadataFormatTestKit.archive
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.prop.TableDrivenPropertyChecks
+
+class ArchiveMetadataFormatSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers with TableDrivenPropertyChecks {
+
+  behavior of "ArchiveMetadataFormat"
+
+  private val workflowId = "0d1bc4c4-ba6e-4ab2-9be0-3b4a1a3a8f0a"
+  private val timestamp = OffsetDateTime.of(2021, 6, 1, 12, 30, 15, 123000000, ZoneOffset.UTC).toSystemTimestamp
+
+  private val entries = List(
+    MetadataEntry(workflowId, None, None, None, "status", "Succeeded".toClobOption, Option("string"), timestamp, Option(1L)),
+    MetadataEntry(workflowId, None, None, None, "labels:empty", None, None, timestamp, Option(2L)),
+    MetadataEntry(workflowId, Option("wf.call"), Option(3), Option(2), "stdout", "gs://bucket/with,comma\n\"and quotes\"".toClobOption, Option("string"), timestamp, Option(3L)),
+    MetadataEntry(workflowId, Option("wf.call"), None, Option(1), "outputs:unicode", "éè✓".toClobOption, Option("string"), timestamp, Option(4L)),
+    MetadataEntry(workflowId, None, None, None, "outputs:empty", Option(new SerialClob(Array.empty[Char])), Option("string"), timestamp, Option(5L)),
+    MetadataEntry(workflowId, None, None, None, "outputs:marker", NullValueMarker.toClobOption, Option("string"), timestamp, Option(6L)),
+    MetadataEntry(workflowId, None, None, None, "outputs:backslashes", "\\\\server\\share".toClobOption, Option("string"), timestamp, Option(7L)),
+  )
+
+  private val formats = Table("format", Formats: _*)
+
+  // Clobs have no structural equality, compare their content
+  private def comparable(entry: MetadataEntry) = entry.copy(metadataValue = None) -> entry.metadataValue.toRawStringOption
+
+  // Without the null marker, empty values read back as entries without value
+  private def readBack(format: ArchiveMetadataFormat)(entry: MetadataEntry) = {
+    if (format.marksNullValues) entry
+    else entry.copy(metadataValue = entry.metadataValue.toRawStringOption.filter(_.nonEmpty).toClobOption)
+  }
+
+  it should "read back the entries it archived" in {
+    forAll(formats) { format =>
+      val archived = archive(format, entries)
+      val read = withArchivedEntries(format, new ByteArrayInputStream(archived))(_.toList)
+      read.map(comparable) shouldBe entries.map(readBack(format)).map(comparable)
+    }
+  }
+
+  it should "archive the entries without value as empty CSV values" in {
+    val csv = new String(archive(Csv, entries.take(2)), StandardCharsets.UTF_8)
+    csv shouldBe
+      "METADATA_JOURNAL_ID,WORKFLOW_EXECUTION_UUID,METADATA_KEY,CALL_FQN,JOB_SCATTER_INDEX,JOB_RETRY_ATTEMPT,METADATA_VALUE,METADATA_TIMESTAMP,METADATA_VALUE_TYPE\r\n" +
+        s"1,$workflowId,status,,,,Succeeded,2021-06-01T12:30:15.123Z,string\r\n" +
+        s"2,$workflowId,labels:empty,,,,,2021-06-01T12:30:15.123Z,\r\n"
+  }
+
+  it should "read back compressed archives not marking null values" in {
+    val csv = archive(Csv, entries)
+    val bytes = new ByteArrayOutputStream()
+    val gzip = GzipCsv.encode(bytes)
+    gzip.write(csv)
+    gzip.close()
+
+    val read = withArchivedEntries(GzipCsv, new ByteArrayInputStream(bytes.toByteArray))(_.toList)
+    read.map(comparable) shouldBe entries.map(readBack(Csv)).map(comparable)
+  }
+
+  it should "archive compressed" in {
+    val repeated = List.fill(1000)(entries).flatten
+    val csv = archive(Csv, repeated)
+    val gzipCsv = archive(GzipCsv, repeated)
+
+    gzipCsv.length should be < csv.length / 10
+  }
+
+  it should "be configured by name" in {
+    fromName("csv") shouldBe Csv
+    fromName("csv-gzip") shouldBe GzipCsv
+    an[IllegalArgumentException] should be thrownBy fromName("parquet")
+  }
+}
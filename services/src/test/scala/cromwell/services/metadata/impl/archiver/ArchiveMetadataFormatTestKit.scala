@@ -0,0 +1,17 @@
+package cromwell.services.metadata.impl.archiver
+
+import java.io.ByteArrayOutputStream
+
+import cromwell.database.sql.tables.MetadataEntry
+import cromwell.services.metadata.impl.archiver.ArchiveMetadataFormat._
+
+object ArchiveMetadataFormatTestKit {
+  /** Archives `entries` in `format` in memory, as the archiver would upload them. */
+  def archive(format: ArchiveMetadataFormat, entries: Seq[MetadataEntry]): Array[Byte] = {
+    val bytes = new ByteArrayOutputStream()
+    val csvPrinter = newCsvPrinter(format, format.encode(bytes))
+    entries foreach { printEntry(format, csvPrinter, _) }
+    csvPrinter.close()
+    bytes.toByteArray
+  }
+}
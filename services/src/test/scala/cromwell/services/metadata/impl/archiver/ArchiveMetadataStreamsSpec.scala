@@ -0,0 +1,56 @@
+package cromwell.services.metadata.impl.archiver
+
+import java.io.ByteArrayOutputStream
+import java.nio.charset.StandardCharsets
+
+import common.assertion.CromwellTimeoutSpec
+import cromwell.services.metadata.impl.archiver.ArchiveMetadataSchedulerActor.{CounterAndProgressiveLogger, Crc32cStream, TeeingOutputStream}
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+class ArchiveMetadataStreamsSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers {
+
+  behavior of "The metadata archiver streams"
+
+  private val content = "123456789".getBytes(StandardCharsets.US_ASCII)
+  // Base64 of the big endian crc32c of "123456789", 0xE3069283, as reported by GCS
+  private val expectedChecksum = "4waSgw=="
+
+  it should "checksum the same content the same way whether written byte by byte or by blocks" in {
+    val byteByByte = new Crc32cStream()
+    content foreach { b => byteByByte.write(b.toInt) }
+
+    val byBlocks = new Crc32cStream()
+    byBlocks.write(content, 0, 4)
+    byBlocks.write(content, 4, content.length - 4)
+
+    byteByByte.checksumString shouldBe expectedChecksum
+    byBlocks.checksumString shouldBe expectedChecksum
+  }
+
+  it should "tee blocks to every stream" in {
+    val copy = new ByteArrayOutputStream()
+    val checksum = new Crc32cStream()
+    val tee = new TeeingOutputStream(copy, checksum)
+
+    tee.write(content, 0, content.length)
+    tee.close()
+
+    copy.toByteArray shouldBe content
+    checksum.checksumString shouldBe expectedChecksum
+  }
+
+  it should "count by increments and by blocks" in {
+    var logged = List.empty[(Long, Long)]
+    val counter = new CounterAndProgressiveLogger((newCount, total) => logged :+= (newCount -> total), 10)
+
+    counter.add(8L)
+    counter.increment()
+    logged shouldBe empty
+    counter.add(5L)
+    logged shouldBe List(14L -> 14L)
+    counter.manualLog()
+    logged shouldBe List(14L -> 14L, 0L -> 14L)
+    counter.getTotalCount shouldBe 14L
+  }
+}
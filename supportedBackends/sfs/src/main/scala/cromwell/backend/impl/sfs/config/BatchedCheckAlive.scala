@@ -0,0 +1,78 @@
+package cromwell.backend.impl.sfs.config
+
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+
+import com.typesafe.config.Config
+import cromwell.backend.impl.sfs.config.ConfigConstants._
+import net.ceedubs.ficus.Ficus._
+
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.duration._
+import scala.sys.process._
+import scala.util.Try
+
+/**
+  * Lists the jobs alive on the scheduler with a single command, for example `squeue -h -o %i`, instead of running the
+  * `check-alive` command once per job.
+  *
+  * The listing is shared by all the jobs of a backend and refreshed at most once per `interval`: jobs asking while the
+  * listing is being refreshed wait for it rather than running their own.
+  *
+  * @param command Command printing the ids of the alive jobs, one per line
+  * @param interval Time during which a listing is reused
+  */
+class BatchedCheckAlive(command: String, val interval: FiniteDuration) {
+  // Guarded by `this`
+  private var listing: Option[(Instant, Try[Set[String]])] = None
+
+  def isAlive(jobId: String): Try[Boolean] = aliveJobIds().map(_.contains(jobId))
+
+  def aliveJobIds(): Try[Set[String]] = synchronized {
+    listing match {
+      case Some((listedAt, jobIds)) if listedAt.plusMillis(interval.toMillis).isAfter(Instant.now) => jobIds
+      case _ =>
+        val listedAt = Instant.now
+        // Failures are cached too, so that a failing scheduler isn't queried by every job
+        val jobIds = Try(listAliveJobIds())
+        listing = Option(listedAt -> jobIds)
+        jobIds
+    }
+  }
+
+  private def listAliveJobIds(): Set[String] = {
+    val stdout = ListBuffer.empty[String]
+    val stderr = new StringBuilder
+    val logger = ProcessLogger(
+      line => { stdout += line; () },
+      line => { stderr.append(line).append('\n'); () }
+    )
+    val exitValue = Seq("/bin/bash", "-c", command) ! logger
+    if (exitValue != 0)
+      throw new RuntimeException(s"Listing the alive jobs with '$command' failed with exit code $exitValue: $stderr")
+    stdout.map(_.trim).filter(_.nonEmpty).toSet
+  }
+}
+
+object BatchedCheckAlive {
+  private val instances = new ConcurrentHashMap[Config, Option[BatchedCheckAlive]]()
+
+  /**
+    * Returns the batched check shared by the jobs of the backend configured by `backendConfig`, if the backend
+    * configures one.
+    */
+  def forBackend(backendConfig: Config): Option[BatchedCheckAlive] = {
+    instances.computeIfAbsent(backendConfig, { _ =>
+      backendConfig.getAs[Config](CheckAliveBatchConfig) map { batchConfig =>
+        val interval = batchConfig.getAs[FiniteDuration]("interval").getOrElse(30.seconds)
+        // A job submitted after a listing would be considered dead if the listing were reused until its next check
+        backendConfig.getAs[Long](ExitCodeTimeoutConfig) foreach { timeout =>
+          if (interval >= timeout.seconds)
+            throw new IllegalArgumentException(
+              s"'$CheckAliveBatchConfig.interval' ($interval) must be shorter than '$ExitCodeTimeoutConfig' ($timeout)")
+        }
+        new BatchedCheckAlive(batchConfig.getString("command"), interval)
+      }
+    })
+  }
+}
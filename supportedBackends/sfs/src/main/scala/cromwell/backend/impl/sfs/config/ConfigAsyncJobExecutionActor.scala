@@ -1,7 +1,7 @@
 package cromwell.backend.impl.sfs.config
 
 import java.nio.file.FileAlreadyExistsException
-import java.time.Instant
+import java.time.{Duration, Instant}
 
 import common.validation.Validation._
 import cromwell.backend.RuntimeEnvironmentBuilder
@@ -19,7 +19,9 @@ import wom.expression.NoIoFunctionSet
 import wom.transforms.WomCommandTaskDefinitionMaker.ops._
 import wom.values.{WomEvaluatedCallInputs, WomOptionalValue, WomString, WomValue}
 
-import scala.util.{Failure, Success}
+import scala.concurrent.Future
+import scala.concurrent.duration._
+import scala.util.{Failure, Success, Try}
 
 /**
   * Base ConfigAsyncJobExecutionActor that reads the config and generates an outer script to submit an inner script
@@ -174,6 +176,31 @@ sealed trait ConfigAsyncJobExecutionActor extends SharedFileSystemAsyncJobExecut
     inputOptions.flatten.toMap
   }
 
+  private lazy val returnCodeWatcher = ReturnCodeWatcher.forBackend(configurationDescriptor.backendConfig)
+
+  /**
+    * When the backend has a return code watcher, waits for it to report the rc file before polling. The poll still
+    * runs once the safety net interval or the deadline of the current state has passed.
+    */
+  override def pollStatusAsync(handle: StandardAsyncPendingExecutionHandle): Future[SharedFileSystemRunState] = {
+    returnCodeWatcher match {
+      // The first poll only records the job as running
+      case Some((watcher, settings)) if handle.previousState.isDefined =>
+        watcher.awaitFile(jobPaths.returnCode, returnCodeWaitTimeout(handle, settings.safetyNetInterval)) flatMap { _ =>
+          super.pollStatusAsync(handle)
+        }
+      case _ => super.pollStatusAsync(handle)
+    }
+  }
+
+  private def returnCodeWaitTimeout(handle: StandardAsyncPendingExecutionHandle, safetyNetInterval: FiniteDuration): FiniteDuration = {
+    val deadline = handle.previousState collect {
+      case SharedFileSystemJobRunning(Some(validUntil)) => validUntil
+      case SharedFileSystemJobWaitingForReturnCode(Some(waitUntil)) => waitUntil
+    }
+    deadline.map(d => Math.max(0L, Duration.between(Instant.now, d).toMillis).millis min safetyNetInterval).getOrElse(safetyNetInterval)
+  }
+
   // `runtimeAttributeInputs` has already adjusted for the case of a `JobDescriptor` with `DockerWithHash`.
   override lazy val dockerImageUsed: Option[String] = runtimeAttributeInputs.get(DockerValidation.instance.key).map(_.valueString)
 
@@ -249,6 +276,17 @@ class DispatchedConfigAsyncJobExecutionActor(override val standardParams: Standa
     else jobScriptArgs(job, "kill", KillTask)
   }
 
+  private lazy val batchedCheckAlive = BatchedCheckAlive.forBackend(configurationDescriptor.backendConfig)
+
+  /**
+    * Looks the job up in the listing shared by the jobs of this backend when `check-alive-batch` is configured, instead
+    * of running `check-alive` for this job.
+    */
+  override def isAlive(job: StandardAsyncJob): Try[Boolean] = batchedCheckAlive match {
+    case Some(batched) => batched.isAlive(job.jobId)
+    case None => super.isAlive(job)
+  }
+
   protected lazy val exitCodeTimeout: Option[Long] = {
     val timeout = configurationDescriptor.backendConfig.as[Option[Long]](ExitCodeTimeoutConfig)
     timeout match {
@@ -286,7 +324,8 @@ class DispatchedConfigAsyncJobExecutionActor(override val standardParams: Standa
               // The job has stopped but we don't have an RC yet. We'll wait one more 'timeout' for the RC to arrive:
               SharedFileSystemJobWaitingForReturnCode(nextTimeout)
             case Failure(e) =>
-              log.error(e, s"Failed to check status for ${handle.jobDescriptor.key.tag} using command: ${checkAliveArgs(handle.pendingJob)}")
+              val command = if (batchedCheckAlive.isDefined) CheckAliveBatchConfig else checkAliveArgs(handle.pendingJob).toString
+              log.error(e, s"Failed to check status for ${handle.jobDescriptor.key.tag} using command: $command")
               SharedFileSystemJobRunning(nextTimeout)
           }
         } else {
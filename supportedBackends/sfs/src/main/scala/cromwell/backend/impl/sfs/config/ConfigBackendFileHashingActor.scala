@@ -1,28 +1,48 @@
 package cromwell.backend.impl.sfs.config
 
 import akka.actor.Props
+import cats.data.NonEmptyList
 import com.typesafe.config.Config
 import cromwell.backend.standard.callcaching.StandardFileHashingActor.SingleFileHashRequest
 import cromwell.backend.standard.callcaching.{StandardFileHashingActor, StandardFileHashingActorParams}
+import cromwell.core.instrumentation.InstrumentationPrefixes._
+import cromwell.core.io.LocalHashCache
 import cromwell.filesystems.gcs.batch.GcsBatchCommandBuilder
+import cromwell.services.instrumentation.CromwellInstrumentation
 import net.ceedubs.ficus.Ficus._
 
 import scala.util.Try
 
 object ConfigBackendFileHashingActor {
   def props(standardParams: StandardFileHashingActorParams) = Props(new ConfigBackendFileHashingActor(standardParams))
+
+  private val HashCacheKey = NonEmptyList.of("local_hash_cache")
 }
 
-class ConfigBackendFileHashingActor(standardParams: StandardFileHashingActorParams) extends StandardFileHashingActor(standardParams) {
+class ConfigBackendFileHashingActor(standardParams: StandardFileHashingActorParams)
+  extends StandardFileHashingActor(standardParams) with CromwellInstrumentation {
+  import ConfigBackendFileHashingActor._
 
   override val ioCommandBuilder = GcsBatchCommandBuilder
-  
+
+  private lazy val cachingConfig: Option[Config] = configurationDescriptor.backendConfig.as[Option[Config]]("filesystems.local.caching")
+
   lazy val hashingStrategy: ConfigHashingStrategy = {
-    configurationDescriptor.backendConfig.as[Option[Config]]("filesystems.local.caching") map ConfigHashingStrategy.apply getOrElse ConfigHashingStrategy.defaultStrategy
+    cachingConfig map ConfigHashingStrategy.apply getOrElse ConfigHashingStrategy.defaultStrategy
   }
+
+  lazy val hashCache: Option[LocalHashCache] = cachingConfig flatMap LocalHashCache.fromConfig
   
   override def customHashStrategy(fileRequest: SingleFileHashRequest): Option[Try[String]] = {
     log.debug(hashingStrategy.toString)
-    Option(hashingStrategy.getHash(fileRequest, log))
+    val hash = hashingStrategy.getHash(fileRequest, log, hashCache)
+    hashCache foreach { cache =>
+      // Cumulative values, the hit rate is derived from the hits and misses
+      val stats = cache.stats
+      sendGauge(HashCacheKey.concatNel("hits"), stats.hits, BackendPrefix)
+      sendGauge(HashCacheKey.concatNel("misses"), stats.misses, BackendPrefix)
+      sendGauge(HashCacheKey.concatNel("entries"), stats.entries.toLong, BackendPrefix)
+    }
+    Option(hash)
   }
 }
@@ -16,6 +16,7 @@ object ConfigConstants {
   val KillConfig = "kill"
   val KillDockerConfig = "kill-docker"
   val CheckAliveConfig = "check-alive"
+  val CheckAliveBatchConfig = "check-alive-batch"
   val ExitCodeTimeoutConfig = "exit-code-timeout-seconds"
   val RuntimeAttributesConfig = "runtime-attributes"
   val RuntimeAttributesCachingConfig = "runtime-attributes-for-caching"
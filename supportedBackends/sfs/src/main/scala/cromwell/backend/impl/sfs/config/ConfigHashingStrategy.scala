@@ -1,11 +1,14 @@
 package cromwell.backend.impl.sfs.config
 
 import java.io.{FileNotFoundException, InputStream}
+import java.util.concurrent.ConcurrentHashMap
 
 import akka.event.LoggingAdapter
 import com.typesafe.config.Config
 import cromwell.backend.standard.StandardInitializationData
 import cromwell.backend.standard.callcaching.StandardFileHashingActor.SingleFileHashRequest
+import cromwell.core.io.{LocalFileHasher, LocalHashCache}
+import cromwell.core.io.LocalFileHasher.{LocalHashingConfig, Xxh64}
 import cromwell.core.path.{Path, PathFactory}
 import cromwell.util.TryWithResource._
 import net.ceedubs.ficus.Ficus._
@@ -34,6 +37,10 @@ object ConfigHashingStrategy {
         case "path+modtime" => HashPathModTimeStrategy(checkSiblingMd5)
         case "xxh64" => HashFileXxH64Strategy(checkSiblingMd5)
         case "fingerprint" => FingerprintStrategy(checkSiblingMd5, fingerprintSize)
+        case "xxh64-parallel" =>
+          val chunkSize = hashingConfig.as[Option[Long]]("chunk-size").getOrElse(HashFileXxH64ParallelStrategy.DefaultChunkSize)
+          val parallelism = hashingConfig.as[Option[Int]]("parallelism").getOrElse(Runtime.getRuntime.availableProcessors())
+          HashFileXxH64ParallelStrategy(checkSiblingMd5, chunkSize, parallelism)
         case what =>
           logger.warn(s"Unrecognized hashing strategy $what.")
           HashPathStrategy(checkSiblingMd5)
@@ -46,10 +53,24 @@ abstract class ConfigHashingStrategy {
   protected def hash(file: Path): Try[String]
   protected def description: String
 
+  /**
+    * Identifies the hashes of this strategy in the local hash cache: the strategy and only the parameters the hashes
+    * depend on.
+    */
+  def cacheIdentity: String
+
   protected lazy val checkSiblingMessage: String =
     if (checkSiblingMd5) "Check first for sibling md5 and if not found " else ""
 
-  def getHash(request: SingleFileHashRequest, log: LoggingAdapter): Try[String] = {
+  /**
+    * @param hashCache If defined, hashes are looked up in this cache before being computed, and added to it.
+    */
+  def getHash(request: SingleFileHashRequest, log: LoggingAdapter, hashCache: Option[LocalHashCache] = None): Try[String] = {
+    def cachedHash(file: Path): Try[String] = hashCache match {
+      case Some(cache) => cache.getOrCompute(cacheIdentity, file)(hash(file))
+      case None => hash(file)
+    }
+
     def usingStandardInitData(initData: StandardInitializationData) = {
       val pathBuilders = initData.workflowPaths.pathBuilders
       val file = PathFactory.buildPath(request.file.valueString, pathBuilders).followSymbolicLinks
@@ -57,9 +78,9 @@ abstract class ConfigHashingStrategy {
         if (checkSiblingMd5) {
           precomputedMd5(file) match {
             case Some(md5) => Try(md5.contentAsString.trim)
-            case None => hash(file)
+            case None => cachedHash(file)
           }
-        } else hash(file)
+        } else cachedHash(file)
       }
     }
 
@@ -85,6 +106,7 @@ final case class HashPathStrategy(checkSiblingMd5: Boolean) extends ConfigHashin
   }
 
   override val description = "hash file path"
+  override val cacheIdentity = "path"
 }
 
 final case class HashPathModTimeStrategy(checkSiblingMd5: Boolean) extends ConfigHashingStrategy {
@@ -94,6 +116,7 @@ final case class HashPathModTimeStrategy(checkSiblingMd5: Boolean) extends Confi
   }
 
   override val description = "hash file path and last modified time"
+  override val cacheIdentity = "path+modtime"
 }
 
 final case class HashFileMd5Strategy(checkSiblingMd5: Boolean) extends ConfigHashingStrategy {
@@ -102,6 +125,7 @@ final case class HashFileMd5Strategy(checkSiblingMd5: Boolean) extends ConfigHas
   }
 
   override val description = "hash file content with md5"
+  override val cacheIdentity = "md5"
 }
 
 final case class HashFileXxH64Strategy(checkSiblingMd5: Boolean) extends ConfigHashingStrategy {
@@ -109,6 +133,29 @@ final case class HashFileXxH64Strategy(checkSiblingMd5: Boolean) extends ConfigH
     tryWithResource(() => file.newInputStream) {HashFileXxH64StrategyMethods.xxh64sum(_)}
   }
   override val description = "hash file content with xxh64"
+  override val cacheIdentity = "xxh64"
+}
+
+/**
+  * Hashes chunks of the file in parallel over memory mapped regions, and then hashes the concatenation of the chunk
+  * hashes. The hashes differ from the ones of the "xxh64" strategy and depend on the chunk size.
+  */
+final case class HashFileXxH64ParallelStrategy(checkSiblingMd5: Boolean, chunkSize: Long, parallelism: Int) extends ConfigHashingStrategy {
+  private val hasher = HashFileXxH64ParallelStrategy.hasher(LocalHashingConfig(Xxh64, Option(chunkSize), parallelism))
+
+  override protected def hash(file: Path): Try[String] = Try(hasher.hash(file.nioPath))
+
+  override val description = s"hash file content with xxh64 by chunks of $chunkSize bytes, $parallelism in parallel"
+  override val cacheIdentity = s"xxh64-parallel:$chunkSize"
+}
+
+object HashFileXxH64ParallelStrategy {
+  val DefaultChunkSize: Long = 64L * 1024 * 1024
+
+  // Strategies are created by every hashing actor, share their hashers and the threads of these
+  private val hashers = new ConcurrentHashMap[LocalHashingConfig, LocalFileHasher]()
+
+  private def hasher(config: LocalHashingConfig): LocalFileHasher = hashers.computeIfAbsent(config, new LocalFileHasher(_))
 }
 
 final case class FingerprintStrategy(checkSiblingMd5: Boolean, fingerprintSize: Long) extends ConfigHashingStrategy {
@@ -122,6 +169,7 @@ final case class FingerprintStrategy(checkSiblingMd5: Boolean, fingerprintSize:
       }
     }
   override val description = "fingerprint the file with last modified time, size and a xxh64 hash of the first part of the file"
+  override val cacheIdentity = s"fingerprint:$fingerprintSize"
 }
 
 object HashFileXxH64StrategyMethods {
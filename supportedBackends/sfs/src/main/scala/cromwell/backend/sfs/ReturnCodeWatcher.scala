@@ -0,0 +1,271 @@
+package cromwell.backend.sfs
+
+import java.nio.file.{ClosedWatchServiceException, FileSystems, Files, StandardWatchEventKinds, WatchKey, Path => NioPath}
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ConcurrentHashMap, Executors, ScheduledExecutorService, ThreadFactory, TimeUnit}
+
+import com.typesafe.config.Config
+import com.typesafe.scalalogging.StrictLogging
+import common.util.Backoff
+import cromwell.backend.sfs.ReturnCodeWatcher._
+import cromwell.core.path.Path
+import cromwell.core.retry.SimpleExponentialBackoff
+import net.ceedubs.ficus.Ficus._
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+import scala.concurrent.duration._
+import scala.concurrent.{Future, Promise}
+import scala.util.control.NonFatal
+
+/**
+  * Watches for the rc files of running jobs, so that job actors learn about the completion of their job without each
+  * of them checking for its own rc file on every poll.
+  *
+  * A single watcher is shared by all the jobs of a backend, see `ReturnCodeWatcher.forBackend`.
+  */
+sealed abstract class ReturnCodeWatcher extends StrictLogging {
+  // Jobs waiting for their rc file, by absolute path of the rc file
+  private val waiting = new ConcurrentHashMap[NioPath, Promise[Boolean]]()
+
+  /**
+    * Returns a future completed with true as soon as `file` is found, or with false if it is not found within
+    * `timeout`.
+    */
+  def awaitFile(file: Path, timeout: FiniteDuration): Future[Boolean] = {
+    val nioPath = file.nioPath.toAbsolutePath
+    val promise = Promise[Boolean]()
+    // A job only waits for its file once at a time, a new wait supersedes the previous one
+    Option(waiting.put(nioPath, promise)) foreach { previous =>
+      previous.trySuccess(false)
+      stopWatching(nioPath)
+    }
+    startWatching(nioPath)
+    TimeoutScheduler.schedule(new Runnable {
+      override def run(): Unit = if (waiting.remove(nioPath, promise)) {
+        promise.trySuccess(false)
+        stopWatching(nioPath)
+      }
+    }, timeout.toMillis, TimeUnit.MILLISECONDS)
+    promise.future
+  }
+
+  def waitingCount: Int = waiting.size()
+
+  protected def waitingFiles: Iterable[NioPath] = waiting.keySet().asScala
+
+  protected def found(file: NioPath): Unit = {
+    Option(waiting.remove(file)) foreach { promise =>
+      promise.trySuccess(true)
+      stopWatching(file)
+    }
+  }
+
+  protected def startWatching(file: NioPath): Unit
+
+  protected def stopWatching(file: NioPath): Unit
+}
+
+object ReturnCodeWatcher {
+  val ReturnCodeWatcherConfig = "return-code-watcher"
+
+  /**
+    * @param mode "watch-service" or "scan"
+    * @param scanInterval Initial interval between two scans of an execution directory, for the "scan" mode, and interval
+    *                     between two checks of the files that could not be watched, for the "watch-service" mode
+    * @param safetyNetInterval Maximum time a job waits for a notification before checking its rc file itself
+    */
+  case class ReturnCodeWatcherSettings(mode: String, scanInterval: FiniteDuration, safetyNetInterval: FiniteDuration)
+
+  object ReturnCodeWatcherSettings {
+    def apply(config: Config): ReturnCodeWatcherSettings = {
+      val settings = ReturnCodeWatcherSettings(
+        mode = config.getAs[String]("mode").getOrElse(WatchServiceMode),
+        scanInterval = config.getAs[FiniteDuration]("scan-interval").getOrElse(10.seconds),
+        safetyNetInterval = config.getAs[FiniteDuration]("safety-net-interval").getOrElse(10.minutes)
+      )
+      if (!Modes.contains(settings.mode))
+        throw new IllegalArgumentException(s"Unrecognized $ReturnCodeWatcherConfig mode '${settings.mode}'. Valid modes are ${Modes.mkString(", ")}")
+      settings
+    }
+  }
+
+  val WatchServiceMode = "watch-service"
+  val ScanMode = "scan"
+  private val Modes = List(WatchServiceMode, ScanMode)
+
+  private val watchers = new ConcurrentHashMap[Config, Option[(ReturnCodeWatcher, ReturnCodeWatcherSettings)]]()
+
+  /**
+    * Returns the watcher shared by the jobs of the backend configured by `backendConfig`, if the backend enables one.
+    */
+  def forBackend(backendConfig: Config): Option[(ReturnCodeWatcher, ReturnCodeWatcherSettings)] = {
+    watchers.computeIfAbsent(backendConfig, { _ =>
+      backendConfig.getAs[Config](ReturnCodeWatcherConfig) map { watcherConfig =>
+        val settings = ReturnCodeWatcherSettings(watcherConfig)
+        val watcher = settings.mode match {
+          case WatchServiceMode => new WatchServiceReturnCodeWatcher(settings.scanInterval)
+          case _ => new ScanningReturnCodeWatcher(settings.scanInterval)
+        }
+        watcher -> settings
+      }
+    })
+  }
+
+  private[sfs] class DaemonThreadFactory(name: String) extends ThreadFactory {
+    private val counter = new AtomicInteger(0)
+    override def newThread(runnable: Runnable): Thread = {
+      val thread = new Thread(runnable, s"$name-${counter.incrementAndGet()}")
+      thread.setDaemon(true)
+      thread
+    }
+  }
+
+  // Only times out waits, the work done on this thread is small. Separate from the scans so that a slow scan of a
+  // network file system never delays timeouts.
+  private[sfs] lazy val TimeoutScheduler: ScheduledExecutorService =
+    Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("return-code-watcher-timeouts"))
+
+  // Runs the scans of the directories of the files waited for
+  private[sfs] lazy val ScanScheduler: ScheduledExecutorService =
+    Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("return-code-watcher-scans"))
+}
+
+/**
+  * Relies on file system notifications (inotify on Linux). Only suited to file systems local to the Cromwell host:
+  * notifications are not raised for files written by other hosts on network file systems.
+  *
+  * The files whose directory can't be watched, for instance beyond the inotify watch limit, are checked every
+  * `pollInterval` instead.
+  */
+private[sfs] class WatchServiceReturnCodeWatcher(pollInterval: FiniteDuration) extends ReturnCodeWatcher {
+  private val watchService = FileSystems.getDefault.newWatchService()
+  // Number of files waited for and watch key, by directory
+  private val directories = new ConcurrentHashMap[NioPath, (Int, WatchKey)]()
+  // Files waited for whose directory could not be watched
+  private val polled = ConcurrentHashMap.newKeySet[NioPath]()
+
+  private val thread = new DaemonThreadFactory("return-code-watcher").newThread(new Runnable {
+    override def run(): Unit = processEvents()
+  })
+  thread.start()
+
+  ScanScheduler.scheduleWithFixedDelay(new Runnable {
+    override def run(): Unit = poll()
+  }, pollInterval.toMillis, pollInterval.toMillis, TimeUnit.MILLISECONDS)
+
+  override protected def startWatching(file: NioPath): Unit = {
+    try {
+      directories.compute(file.getParent, { (directory, current) =>
+        Option(current) match {
+          case Some((count, key)) => (count + 1, key)
+          case None => (1, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE))
+        }
+      })
+    } catch {
+      case NonFatal(e) =>
+        logger.warn(s"Unable to watch ${file.getParent}, checking for $file every $pollInterval instead", e)
+        polled.add(file)
+    }
+    // The file may have been created before the directory was registered
+    if (Files.exists(file)) found(file)
+  }
+
+  override protected def stopWatching(file: NioPath): Unit = {
+    // The directories of polled files were not registered
+    if (!polled.remove(file)) {
+      directories.computeIfPresent(file.getParent, { (_, current) =>
+        current match {
+          case (1, key) =>
+            key.cancel()
+            null
+          case (count, key) => (count - 1, key)
+        }
+      })
+    }
+    ()
+  }
+
+  private def poll(): Unit = {
+    polled.asScala.toList foreach { file =>
+      try {
+        if (Files.exists(file)) found(file)
+      } catch {
+        case NonFatal(e) => logger.debug(s"Unable to check for return code file $file", e)
+      }
+    }
+  }
+
+  private def processEvents(): Unit = {
+    try {
+      while (true) {
+        val key = watchService.take()
+        val directory = key.watchable().asInstanceOf[NioPath]
+        key.pollEvents().asScala foreach { event =>
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            // Events were lost, look for the files waited for in this directory
+            waitingFiles.filter(_.getParent == directory).filter(Files.exists(_)).foreach(found)
+          } else {
+            found(directory.resolve(event.context().asInstanceOf[NioPath]))
+          }
+        }
+        key.reset()
+        ()
+      }
+    } catch {
+      case _: ClosedWatchServiceException | _: InterruptedException => ()
+      case NonFatal(e) =>
+        // Jobs fall back on checking for their rc file themselves
+        logger.error("The return code watch service stopped", e)
+    }
+  }
+}
+
+/**
+  * Lists the directories of all the files waited for from a single thread. Suited to network file systems.
+  *
+  * Every job writes its rc file to its own directory, so each waiting job costs a directory listing: listing a common
+  * ancestor would not show the files below its children. The listings of each directory are instead backed off from
+  * `interval` up to `MaxScanInterval`, as the jobs polling for their rc file themselves back off their checks, so that
+  * long running jobs cost ever fewer listings.
+  */
+private[sfs] class ScanningReturnCodeWatcher(interval: FiniteDuration) extends ReturnCodeWatcher {
+  import ScanningReturnCodeWatcher._
+
+  // When to list each directory next and its backoff, only accessed from the scan thread
+  private val schedules = mutable.HashMap.empty[NioPath, (Long, Backoff)]
+
+  ScanScheduler.scheduleWithFixedDelay(new Runnable {
+    override def run(): Unit = scan()
+  }, interval.toMillis, interval.toMillis, TimeUnit.MILLISECONDS)
+
+  override protected def startWatching(file: NioPath): Unit = ()
+
+  override protected def stopWatching(file: NioPath): Unit = ()
+
+  private def scan(): Unit = {
+    val now = System.nanoTime()
+    val directories = waitingFiles.groupBy(_.getParent)
+    schedules.retain((directory, _) => directories.contains(directory))
+
+    directories foreach { case (directory, files) =>
+      val (nextScan, backoff) = schedules.getOrElseUpdate(directory, (now, SimpleExponentialBackoff(interval, MaxScanInterval, ScanBackoffMultiplier)))
+      if (now - nextScan >= 0) {
+        try {
+          val stream = Files.list(directory)
+          val present = try stream.iterator().asScala.map(_.getFileName).toSet finally stream.close()
+          files.filter(file => present.contains(file.getFileName)).foreach(found)
+        } catch {
+          case NonFatal(e) => logger.debug(s"Unable to scan $directory for return code files", e)
+        }
+        schedules.put(directory, (now + backoff.backoffMillis.millis.toNanos, backoff.next))
+      }
+    }
+  }
+}
+
+object ScanningReturnCodeWatcher {
+  // As the backoff of the jobs polling for their own rc file
+  val MaxScanInterval: FiniteDuration = 5.minutes
+  val ScanBackoffMultiplier = 1.1
+}
@@ -1,6 +1,9 @@
 package cromwell.backend.sfs
 
 import java.io.{FileNotFoundException, IOException}
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.{CompletableFuture, ConcurrentHashMap}
 
 import akka.actor.ActorContext
 import akka.stream.ActorMaterializer
@@ -19,7 +22,6 @@ import wom.WomFileMapper
 import wom.values._
 
 import scala.collection.JavaConverters._
-import scala.collection.mutable
 import scala.concurrent.{Await, ExecutionContext}
 import scala.concurrent.duration.Duration
 import scala.language.postfixOps
@@ -95,14 +97,58 @@ object SharedFileSystem extends StrictLogging {
     }
   }
 
-  private lazy val beingCopied: mutable.Map[Path, Boolean] = mutable.Map[Path, Boolean]()
+  // Copies to the cached copy directory currently performed by this process, by destination
+  private val copiesInProgress = new ConcurrentHashMap[Path, CompletableFuture[Unit]]()
 
-  private def waitOnCopy(path: Path, lockFile: Path): Unit = {
-    while (beingCopied.getOrElse(path, false) || lockFile.exists)  {
-      Thread.sleep(1)
+  /**
+    * Runs `copy` to create `target` if `needsCopy`, making sure that a single thread across all Cromwell processes
+    * sharing the file system does it:
+    *   - threads of this process wait on the copy of the first thread that asked for the same target
+    *   - processes coordinate through a file lock on `lockFile`
+    * Waiting threads are parked until the copy completes, they do not poll. Copies of different targets never contend.
+    */
+  private def copyOnce(target: Path, lockFile: Path)(needsCopy: () => Boolean)(copy: => Unit): Unit = {
+    val thisCopy = new CompletableFuture[Unit]()
+    Option(copiesInProgress.putIfAbsent(target, thisCopy)) match {
+      case Some(otherCopy) =>
+        // Throws if the other copy failed, in which case the next localization strategy will be tried
+        otherCopy.join()
+        ()
+      case None =>
+        try {
+          copyUnderFileLock(lockFile)(needsCopy)(copy)
+          thisCopy.complete(())
+          ()
+        } catch {
+          case e: Throwable =>
+            thisCopy.completeExceptionally(e)
+            throw e
+        } finally {
+          // Remove the entry once done, we don't want this map to grow forever when Cromwell runs in server mode.
+          copiesInProgress.remove(target, thisCopy)
+          ()
+        }
     }
   }
 
+  /**
+    * The lock file is left in place: deleting it while other processes may have it open would let two processes lock
+    * different files for the same copy.
+    */
+  private def copyUnderFileLock(lockFile: Path)(needsCopy: () => Boolean)(copy: => Unit): Unit = {
+    val channel = FileChannel.open(lockFile.nioPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+    try {
+      Option(channel.tryLock()) match {
+        case Some(lock) =>
+          // Another process may have completed the copy between our check and the lock
+          try if (needsCopy()) copy finally lock.release()
+        case None =>
+          // Another Cromwell process is copying. This blocks in the kernel until it releases its lock.
+          channel.lock(0L, Long.MaxValue, true).release()
+      }
+    } finally channel.close()
+  }
+
   private def countLinks(path: Path): Int = {
     path.getAttribute("unix:nlink").asInstanceOf[Int]
   }
@@ -129,64 +175,17 @@ trait SharedFileSystem extends PathFactory {
       val cachedCopyPath: Path = cachedCopySubDir./(pathAndModTime)
       val cachedCopyPathLockFile: Path = cachedCopyPath.plusSuffix(".lock")
 
-      if (!cachedCopyPath.exists || countLinks(cachedCopyPath) >= maxHardLinks) {
-        // This variable is used so we can release the lock before we start with the copying.
-        var shouldCopy = false
-
-        // LOCK: This block should only be accessed by one thread at a time. Otherwise multiple threads
-        // will copy the same cache file. The performance impact should be minimal as it is only a few
-        // decisions which are not time consuming.
-        SharedFileSystem.synchronized {
-
-          // We check again if cachedCopyPath is there or if the number of Hardlinks is still exceeded.
-          // The copying may have been started while waiting on the lock.
-          // If it is not there or the maxHardLinks are exceeded, is it already being copied by another thread?
-          // if not copied by another thread, is it copied by another cromwell process? (Lock file present)
-          if ((!cachedCopyPath.exists || countLinks(cachedCopyPath) >= maxHardLinks) &&
-            !SharedFileSystem.beingCopied.getOrElse(cachedCopyPath, false) &&
-            !cachedCopyPathLockFile.exists) {
-            // Create a lock file so other cromwell processes know copying has started
-            try {
-              cachedCopyPathLockFile.touch()
-              // Create an entry in the dictionary so other threads in this process know copying
-              // has started (filesystem can be too slow if multiple threads need the same file at
-              // exactly the same time)
-              SharedFileSystem.beingCopied(cachedCopyPath) = true
-              // Set should copy to true for *this* thread. The lock can now be released.
-              // this thread will do the copying. The other threads and/or processes will wait for the copying to
-              // be completed.
-              shouldCopy = true
-            } catch {
-              case e: Exception =>
-                // In case any error happens, make sure that all locks are removed. Otherwise cromwell will hang in the
-                // future.
-                SharedFileSystem.beingCopied.remove(cachedCopyPath)
-                cachedCopyPathLockFile.delete(true)
-                throw e
-            }
-          }
-        } // LOCK RELEASE
-        if (shouldCopy) {
-          try {
-            val cachedCopyTmpPath = cachedCopyPath.plusExt("tmp")
-            // CachedCopyPath is overwritten. It is possible that the number of hardlinks is exceeded. In which case
-            // the file is already there.
-            originalPath.copyTo(cachedCopyTmpPath, overwrite = true).moveTo(cachedCopyPath, overwrite = true)
-          } catch {
-            case e: Exception => throw e
-          }
-          finally {
-            // Always remove the locks after copying. Even if there is an exception.
-            // We remove the key! Not set it to false. We don't want this map being flooded with
-            // keys if the cromwell process is active for months in server mode. (Memory leak!)
-            SharedFileSystem.beingCopied.remove(cachedCopyPath)
-            cachedCopyPathLockFile.delete()
-          }
+      def needsCopy(): Boolean = !cachedCopyPath.exists || countLinks(cachedCopyPath) >= maxHardLinks
+
+      if (needsCopy()) {
+        copyOnce(cachedCopyPath, cachedCopyPathLockFile)(needsCopy _) {
+          val cachedCopyTmpPath = cachedCopyPath.plusExt("tmp")
+          // CachedCopyPath is overwritten. It is possible that the number of hardlinks is exceeded. In which case
+          // the file is already there. The move makes the new copy appear at once.
+          originalPath.copyTo(cachedCopyTmpPath, overwrite = true).moveTo(cachedCopyPath, overwrite = true)
+          ()
         }
       }
-      // If the file does exist, it may still be copied/moved and therefore not all the bits might
-      // be there. Therefore we always wait until the locks are cleared.
-      SharedFileSystem.waitOnCopy(cachedCopyPath, cachedCopyPathLockFile)
       cachedCopyPath.linkTo(executionPath)
     }.void
     logOnFailure(action, "cached copy file")
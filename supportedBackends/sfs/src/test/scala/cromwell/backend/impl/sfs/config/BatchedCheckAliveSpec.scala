@@ -0,0 +1,53 @@
+package cromwell.backend.impl.sfs.config
+
+import com.typesafe.config.ConfigFactory
+import common.assertion.CromwellTimeoutSpec
+import cromwell.core.path.DefaultPathBuilder
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration._
+import scala.util.Success
+
+class BatchedCheckAliveSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers {
+  behavior of "BatchedCheckAlive"
+
+  it should "list the alive jobs once per interval" in {
+    val counter = DefaultPathBuilder.createTempFile("BatchedCheckAliveSpec")
+    val batched = new BatchedCheckAlive(s"echo run >> ${counter.pathAsString}; printf '12\\n 34 \\n'", 1.minute)
+
+    batched.isAlive("12") shouldBe Success(true)
+    batched.isAlive("34") shouldBe Success(true)
+    batched.isAlive("56") shouldBe Success(false)
+    counter.lines.size shouldBe 1
+    counter.delete(swallowIOExceptions = true)
+  }
+
+  it should "list the alive jobs again once the interval has passed" in {
+    val counter = DefaultPathBuilder.createTempFile("BatchedCheckAliveSpec")
+    val batched = new BatchedCheckAlive(s"echo run >> ${counter.pathAsString}", Duration.Zero)
+
+    batched.aliveJobIds()
+    batched.aliveJobIds()
+    counter.lines.size shouldBe 2
+    counter.delete(swallowIOExceptions = true)
+  }
+
+  it should "fail when the command fails" in {
+    val batched = new BatchedCheckAlive("echo oops >&2; exit 3", 1.minute)
+    batched.isAlive("12").failed.get.getMessage should include("exit code 3: oops")
+  }
+
+  it should "only be created when configured" in {
+    BatchedCheckAlive.forBackend(ConfigFactory.parseString("""check-alive = "squeue -j 12"""")) shouldBe None
+    BatchedCheckAlive.forBackend(ConfigFactory.parseString("""check-alive-batch.command = "squeue -h -o %i"""")) should not be empty
+  }
+
+  it should "reject an interval longer than the exit code timeout" in {
+    an[IllegalArgumentException] should be thrownBy BatchedCheckAlive.forBackend(ConfigFactory.parseString(
+      """
+        |exit-code-timeout-seconds = 60
+        |check-alive-batch { command = "squeue -h -o %i", interval = 2 minutes }
+        |""".stripMargin))
+  }
+}
@@ -0,0 +1,60 @@
+package cromwell.backend.impl.sfs.config
+
+import akka.event.LoggingAdapter
+import com.typesafe.config.ConfigFactory
+import cromwell.backend.io.WorkflowPaths
+import cromwell.backend.standard.StandardInitializationData
+import cromwell.backend.standard.callcaching.StandardFileHashingActor.SingleFileHashRequest
+import cromwell.core.path.{DefaultPathBuilder, Path}
+import org.scalameter.api._
+import org.scalameter.picklers.Implicits._
+import org.scalameter.reporting.RegressionReporter.Historian.Window
+import org.scalameter.reporting.RegressionReporter.Tester.Accepter
+import org.specs2.mock.Mockito
+import wom.values.WomSingleFile
+
+/**
+  * Compares the hashing strategies reading the content of local files.
+  * This is not run automatically by "sbt test". To run this test specifically, either use intellij integration, or run
+  * sbt "sfsBackend/benchmark:testOnly cromwell.backend.impl.sfs.config.ConfigHashingStrategyBenchmark"
+  */
+object ConfigHashingStrategyBenchmark extends Bench[Double] with Mockito {
+  /* Benchmark configuration */
+  lazy val measurer = new Measurer.Default
+  lazy val executor = LocalExecutor(new Executor.Warmer.Default, Aggregator.average, measurer)
+  lazy val reporter = new RegressionReporter[Double](Accepter(), Window(0))
+  lazy val persistor = Persistor.None
+
+  // File sizes in MB
+  private val sizes: Gen[Int] = Gen.range("size")(from = 256, upto = 1024, hop = 256)
+
+  private def files(sizes: Gen[Int]): Gen[Path] = sizes map { size =>
+    val file = DefaultPathBuilder.createTempFile("config-hashing-strategy-benchmark", ".bin")
+    file.toFile.deleteOnExit()
+    val block = Array.tabulate[Byte](1024 * 1024)(_.toByte)
+    val output = file.newOutputStream
+    try (1 to size) foreach { _ => output.write(block) } finally output.close()
+    file
+  }
+
+  private lazy val initializationData = {
+    val workflowPaths = mock[WorkflowPaths]
+    workflowPaths.pathBuilders returns List(DefaultPathBuilder)
+    val initData = mock[StandardInitializationData]
+    initData.workflowPaths returns workflowPaths
+    initData
+  }
+
+  private lazy val log = mock[LoggingAdapter]
+
+  private def request(file: Path) = SingleFileHashRequest(null, null, WomSingleFile(file.pathAsString), Option(initializationData))
+
+  performance of "ConfigHashingStrategy" in {
+    List("md5", "xxh64", "xxh64-parallel") foreach { strategyName =>
+      val strategy = ConfigHashingStrategy(ConfigFactory.parseString(s"""hashing-strategy: "$strategyName""""))
+      measure method strategyName in {
+        using(files(sizes)) in { file => strategy.getHash(request(file), log).get }
+      }
+    }
+  }
+}
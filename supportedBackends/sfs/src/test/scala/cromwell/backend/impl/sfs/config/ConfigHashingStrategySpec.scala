@@ -8,6 +8,8 @@ import common.assertion.CromwellTimeoutSpec
 import cromwell.backend.io.WorkflowPaths
 import cromwell.backend.standard.StandardInitializationData
 import cromwell.backend.standard.callcaching.StandardFileHashingActor.SingleFileHashRequest
+import cromwell.core.io.LocalFileHasher
+import cromwell.core.io.LocalFileHasher.{LocalHashingConfig, Xxh64}
 import cromwell.core.path.{DefaultPathBuilder, Path}
 import org.apache.commons.codec.digest.DigestUtils
 import org.scalatest.BeforeAndAfterAll
@@ -284,6 +286,62 @@ class ConfigHashingStrategySpec extends AnyFlatSpec with CromwellTimeoutSpec wit
     }
   }
 
+  it should "create a parallel xxh64 hashing strategy from config" in {
+    val default = makeStrategy("xxh64-parallel").asInstanceOf[HashFileXxH64ParallelStrategy]
+    default.chunkSize shouldBe 64 * 1024 * 1024
+    default.parallelism shouldBe Runtime.getRuntime.availableProcessors()
+
+    val config = ConfigFactory.parseString(
+      """|hashing-strategy: "xxh64-parallel"
+         |chunk-size: 1048576
+         |parallelism: 2
+         |""".stripMargin)
+    val configured = ConfigHashingStrategy(config).asInstanceOf[HashFileXxH64ParallelStrategy]
+    configured.chunkSize shouldBe 1048576
+    configured.parallelism shouldBe 2
+    configured.toString shouldBe "Call caching hashing strategy: hash file content with xxh64 by chunks of 1048576 bytes, 2 in parallel."
+  }
+
+  it should "have a parallel xxh64 hashing strategy and use md5 sibling file when appropriate" in {
+    val chunkedXxh64 = new LocalFileHasher(LocalHashingConfig(Xxh64, Option(64L * 1024 * 1024), 1)).hash(file.nioPath)
+    chunkedXxh64 should startWith("xxh64-tree-67108864:")
+    val table = Table(
+      ("check", "withMd5", "expected"),
+      (true, true, md5FileHash),
+      (false, true, chunkedXxh64),
+      (true, false, chunkedXxh64),
+      (false, false, chunkedXxh64)
+    )
+
+    forAll(table) { (check, withMd5, expected) =>
+      md5File.delete(swallowIOExceptions = true)
+      val checkSibling = makeStrategy("xxh64-parallel", Option(check))
+
+      checkSibling.getHash(mockRequest(withMd5, symlink = false), mock[LoggingAdapter]) shouldBe Success(expected)
+
+      val symLinkRequest: SingleFileHashRequest = mockRequest(withMd5, symlink = true)
+      val symlink = DefaultPathBuilder.get(symLinkRequest.file.valueString)
+
+      symlink.isSymbolicLink shouldBe true
+      checkSibling.getHash(symLinkRequest, mock[LoggingAdapter]) shouldBe Success(expected)
+    }
+  }
+
+  it should "identify its hashes in the hash cache by the parameters they depend on only" in {
+    def strategy(hashingConfig: String) = ConfigHashingStrategy(ConfigFactory.parseString(hashingConfig))
+
+    val parallel = strategy("hashing-strategy: xxh64-parallel, chunk-size: 1048576, parallelism: 2")
+    parallel.cacheIdentity shouldBe strategy("hashing-strategy: xxh64-parallel, chunk-size: 1048576, parallelism: 4").cacheIdentity
+    parallel.cacheIdentity should not be strategy("hashing-strategy: xxh64-parallel, chunk-size: 2097152, parallelism: 2").cacheIdentity
+
+    val fingerprint = strategy("hashing-strategy: fingerprint, fingerprint-size: 1048576")
+    fingerprint.cacheIdentity should not be strategy("hashing-strategy: fingerprint, fingerprint-size: 2097152").cacheIdentity
+
+    // Checking for sibling md5 files doesn't change the hashes cached
+    makeStrategy("md5", Option(true)).cacheIdentity shouldBe makeStrategy("md5", Option(false)).cacheIdentity
+    makeStrategy("md5").cacheIdentity should not be makeStrategy("xxh64").cacheIdentity
+  }
+
   override def afterAll() = {
     file.delete(true)
     md5File.delete(true)
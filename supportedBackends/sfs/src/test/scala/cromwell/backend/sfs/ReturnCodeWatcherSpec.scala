@@ -0,0 +1,67 @@
+package cromwell.backend.sfs
+
+import com.typesafe.config.ConfigFactory
+import common.assertion.CromwellTimeoutSpec
+import cromwell.core.path.DefaultPathBuilder
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+class ReturnCodeWatcherSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers {
+  behavior of "ReturnCodeWatcher"
+
+  private def watcher(mode: String): ReturnCodeWatcher = ReturnCodeWatcher.forBackend(ConfigFactory.parseString(
+    s"""return-code-watcher { mode = "$mode", scan-interval = 100 milliseconds }"""
+  )).get._1
+
+  List(ReturnCodeWatcher.WatchServiceMode, ReturnCodeWatcher.ScanMode) foreach { mode =>
+    it should s"report a file moved in place in $mode mode" in {
+      val directory = DefaultPathBuilder.createTempDirectory("ReturnCodeWatcherSpec")
+      val rc = directory./("rc")
+      val future = watcher(mode).awaitFile(rc, 1.minute)
+      future.isCompleted shouldBe false
+
+      directory./("rc.tmp").write("0\n").moveTo(rc)
+      Await.result(future, 30.seconds) shouldBe true
+      watcher(mode).waitingCount shouldBe 0
+      directory.delete(swallowIOExceptions = true)
+    }
+
+    it should s"report a file that already exists in $mode mode" in {
+      val rc = DefaultPathBuilder.createTempDirectory("ReturnCodeWatcherSpec")./("rc").write("0\n")
+      Await.result(watcher(mode).awaitFile(rc, 1.minute), 30.seconds) shouldBe true
+      rc.parent.delete(swallowIOExceptions = true)
+    }
+
+    it should s"time out when the file does not appear in $mode mode" in {
+      val rc = DefaultPathBuilder.createTempDirectory("ReturnCodeWatcherSpec")./("rc")
+      Await.result(watcher(mode).awaitFile(rc, 200.milliseconds), 30.seconds) shouldBe false
+      rc.parent.delete(swallowIOExceptions = true)
+    }
+  }
+
+  it should "check for the files whose directory can't be watched instead" in {
+    val watcher = new WatchServiceReturnCodeWatcher(100.milliseconds)
+    // Registering a directory that doesn't exist yet fails, like registering beyond the inotify watch limit
+    val directory = DefaultPathBuilder.createTempDirectory("ReturnCodeWatcherSpec")./("not-yet-created")
+    val rc = directory./("rc")
+    val future = watcher.awaitFile(rc, 1.minute)
+    future.isCompleted shouldBe false
+
+    directory.createDirectories()./("rc.tmp").write("0\n").moveTo(rc)
+    Await.result(future, 30.seconds) shouldBe true
+    watcher.waitingCount shouldBe 0
+    directory.parent.delete(swallowIOExceptions = true)
+  }
+
+  it should "not create a watcher for backends without configuration" in {
+    ReturnCodeWatcher.forBackend(ConfigFactory.empty) shouldBe None
+  }
+
+  it should "reject unknown modes" in {
+    an[IllegalArgumentException] should be thrownBy
+      ReturnCodeWatcher.forBackend(ConfigFactory.parseString("""return-code-watcher.mode = "sometimes""""))
+  }
+}
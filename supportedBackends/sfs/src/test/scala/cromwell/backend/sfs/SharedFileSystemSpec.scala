@@ -1,23 +1,37 @@
 package cromwell.backend.sfs
 
+import java.util.concurrent.{ExecutorService, Executors}
+
 import akka.actor.ActorContext
 import com.typesafe.config.{Config, ConfigFactory}
 import common.assertion.CromwellTimeoutSpec
 import cromwell.backend.BackendSpec
 import cromwell.core.CromwellFatalExceptionMarker
 import cromwell.core.path.{DefaultPathBuilder, Path}
+import org.scalatest.BeforeAndAfterAll
 import org.scalatest.flatspec.AnyFlatSpec
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.prop.TableDrivenPropertyChecks
 import org.specs2.mock.Mockito
 import wom.values.WomSingleFile
 
+import scala.concurrent.duration._
+import scala.concurrent.{Await, ExecutionContext, Future}
 import scala.io.Source
 
-class SharedFileSystemSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers with Mockito with TableDrivenPropertyChecks with BackendSpec {
+class SharedFileSystemSpec extends AnyFlatSpec with CromwellTimeoutSpec with Matchers with Mockito with TableDrivenPropertyChecks with BackendSpec with BeforeAndAfterAll {
 
   behavior of "SharedFileSystem"
 
+  // Localizes the same file from several threads at once
+  private val concurrentLocalizations = 8
+  private val localizationPool: ExecutorService = Executors.newFixedThreadPool(concurrentLocalizations)
+
+  override def afterAll(): Unit = {
+    localizationPool.shutdownNow()
+    ()
+  }
+
   val defaultLocalization = ConfigFactory.parseString(""" localization: [copy, hard-link, soft-link] """)
   val hardLinkLocalization = ConfigFactory.parseString(""" localization: [hard-link] """)
   val softLinkLocalization = ConfigFactory.parseString(""" localization: [soft-link] """)
@@ -172,6 +186,32 @@ it should "copy the file again when the copy-cached file has exceeded the maximu
   }
 
 
+  it should "copy the file only once when localized concurrently via cached copy" in {
+    val callDirs: List[Path] = List.fill(concurrentLocalizations)(DefaultPathBuilder.createTempDirectory("SharedFileSystem"))
+    val orig = DefaultPathBuilder.createTempFile("inputFile")
+    orig.write("content")
+    val inputs = fqnWdlMapToDeclarationMap(Map("input" -> WomSingleFile(orig.pathAsString)))
+    val sharedFS = new SharedFileSystem {
+      override val pathBuilders = localPathBuilder
+      override val sharedFileSystemConfig = cachedCopyLocalization
+      override implicit def actorContext: ActorContext = null
+      override lazy val cachedCopyDir = Some(DefaultPathBuilder.createTempDirectory("cached-copy"))
+    }
+    val cachedFile: Path = sharedFS.cachedCopyDir.get
+      ./(orig.parent.pathAsString.hashCode.toString)./(orig.lastModifiedTime.toEpochMilli.toString + orig.name)
+
+    implicit val ec: ExecutionContext = ExecutionContext.fromExecutor(localizationPool)
+    val results = Await.result(
+      Future.sequence(callDirs.map(callDir => Future(sharedFS.localizeInputs(callDir, docker = true)(inputs)))),
+      1.minute
+    )
+
+    results.foreach(_.isSuccess shouldBe true)
+    countLinks(cachedFile) shouldBe callDirs.size + 1
+    cachedFile.contentAsString shouldBe "content"
+    orig.delete(swallowIOExceptions = true)
+  }
+
   private[this] def countLinks(file: Path): Int = file.getAttribute("unix:nlink").asInstanceOf[Int]
 
   private[this] def isSymLink(file: Path): Boolean = file.isSymbolicLink